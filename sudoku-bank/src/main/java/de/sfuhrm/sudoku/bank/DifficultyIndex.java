@@ -0,0 +1,224 @@
+/*
+Sudoku - a fast Java Sudoku game creation library.
+Copyright (C) 2017-2018  Stephan Fuhrmann
+
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Library General Public
+License as published by the Free Software Foundation; either
+version 2 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+Library General Public License for more details.
+
+You should have received a copy of the GNU Library General Public
+License along with this library; if not, write to the
+Free Software Foundation, Inc., 51 Franklin St, Fifth Floor,
+Boston, MA  02110-1301, USA.
+*/
+package de.sfuhrm.sudoku.bank;
+
+import de.sfuhrm.sudoku.Difficulty;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.util.Arrays;
+
+/**
+ * The record numbers of a bank by difficulty and clue count.
+ * Each difficulty and clue count has one bucket of ascending
+ * record numbers, so counting and picking the n-th record of
+ * a clue range only touches the buckets of the range.
+ * @author Stephan Fuhrmann
+ */
+final class DifficultyIndex {
+
+    /** The initial capacity of a bucket. */
+    private static final int INITIAL_CAPACITY = 16;
+
+    /** The number of difficulties. */
+    private static final int DIFFICULTY_COUNT = Difficulty.values().length;
+
+    /** The highest clue count. */
+    private final int maximumClues;
+
+    /** The record numbers per bucket. */
+    private final int[][] records;
+
+    /** The number of record numbers per bucket. */
+    private final int[] sizes;
+
+    /**
+     * Creates an empty index.
+     * @param inMaximumClues the highest clue count, the number of cells.
+     */
+    DifficultyIndex(final int inMaximumClues) {
+        this.maximumClues = inMaximumClues;
+        int buckets = DIFFICULTY_COUNT * (inMaximumClues + 1);
+        this.records = new int[buckets][];
+        this.sizes = new int[buckets];
+    }
+
+    /**
+     * Get the bucket of a difficulty and clue count.
+     * @param difficulty the difficulty.
+     * @param clues the clue count.
+     * @return the bucket index.
+     */
+    private int bucket(final Difficulty difficulty, final int clues) {
+        return difficulty.ordinal() * (maximumClues + 1) + clues;
+    }
+
+    /**
+     * Checks a clue range.
+     * @param minClues the lowest clue count, inclusive.
+     * @param maxClues the highest clue count, inclusive.
+     * @throws IllegalArgumentException if the range is not within
+     * zero and the number of cells.
+     */
+    private void checkRange(final int minClues, final int maxClues) {
+        if (minClues < 0 || maxClues > maximumClues || minClues > maxClues) {
+            throw new IllegalArgumentException("Clue range " + minClues
+                    + " to " + maxClues + " is not within 0 to "
+                    + maximumClues);
+        }
+    }
+
+    /**
+     * Adds a record. Records have to be added in ascending order.
+     * @param record the record number.
+     * @param difficulty the difficulty of the record.
+     * @param clues the clue count of the record.
+     */
+    void add(final int record, final Difficulty difficulty, final int clues) {
+        int bucket = bucket(difficulty, clues);
+        int[] bucketRecords = records[bucket];
+        if (bucketRecords == null) {
+            bucketRecords = new int[INITIAL_CAPACITY];
+            records[bucket] = bucketRecords;
+        } else if (sizes[bucket] == bucketRecords.length) {
+            bucketRecords = Arrays.copyOf(bucketRecords,
+                    bucketRecords.length * 2);
+            records[bucket] = bucketRecords;
+        }
+        bucketRecords[sizes[bucket]++] = record;
+    }
+
+    /** Removes all records. */
+    void clear() {
+        Arrays.fill(records, null);
+        Arrays.fill(sizes, 0);
+    }
+
+    /**
+     * Counts the records of a difficulty and clue range.
+     * @param difficulty the difficulty.
+     * @param minClues the lowest clue count, inclusive.
+     * @param maxClues the highest clue count, inclusive.
+     * @return the number of records.
+     * @throws IllegalArgumentException if the range is not within
+     * zero and the number of cells.
+     */
+    int count(final Difficulty difficulty,
+            final int minClues,
+            final int maxClues) {
+        checkRange(minClues, maxClues);
+        int count = 0;
+        for (int clues = minClues; clues <= maxClues; clues++) {
+            count += sizes[bucket(difficulty, clues)];
+        }
+        return count;
+    }
+
+    /**
+     * Get the n-th record of a difficulty and clue range.
+     * The records are ordered by clue count, then by record number.
+     * @param difficulty the difficulty.
+     * @param minClues the lowest clue count, inclusive.
+     * @param maxClues the highest clue count, inclusive.
+     * @param n the position of the record, less than the
+     * {@link #count(Difficulty, int, int) count} of the range.
+     * @return the record number.
+     * @throws IllegalArgumentException if the range is not within
+     * zero and the number of cells, or n is out of range.
+     */
+    int get(final Difficulty difficulty,
+            final int minClues,
+            final int maxClues,
+            final int n) {
+        checkRange(minClues, maxClues);
+        int rest = n;
+        for (int clues = minClues; clues <= maxClues && rest >= 0;
+             clues++) {
+            int bucket = bucket(difficulty, clues);
+            if (rest < sizes[bucket]) {
+                return records[bucket][rest];
+            }
+            rest -= sizes[bucket];
+        }
+        throw new IllegalArgumentException("No record at " + n);
+    }
+
+    /**
+     * Get the size of the buckets when written.
+     * @return the number of bytes {@link #write(ByteBuffer)} writes.
+     */
+    long byteSize() {
+        long ints = sizes.length;
+        for (int size : sizes) {
+            ints += size;
+        }
+        return ints * Integer.BYTES;
+    }
+
+    /**
+     * Writes the buckets.
+     * @param out the buffer to write to, advanced by {@link #byteSize()}.
+     */
+    void write(final ByteBuffer out) {
+        IntBuffer ints = out.asIntBuffer();
+        for (int bucket = 0; bucket < sizes.length; bucket++) {
+            ints.put(sizes[bucket]);
+            if (sizes[bucket] > 0) {
+                ints.put(records[bucket], 0, sizes[bucket]);
+            }
+        }
+        out.position(out.position() + ints.position() * Integer.BYTES);
+    }
+
+    /**
+     * Reads buckets written by {@link #write(ByteBuffer)},
+     * replacing the current content.
+     * @param in the buffer to read from, advanced past the buckets.
+     * @param recordCount the number of records in the buckets.
+     * @throws IOException if the buckets do not fit the record count.
+     */
+    void read(final ByteBuffer in, final int recordCount)
+            throws IOException {
+        clear();
+        IntBuffer ints = in.asIntBuffer();
+        long total = 0;
+        for (int bucket = 0; bucket < sizes.length; bucket++) {
+            int size = ints.hasRemaining() ? ints.get() : -1;
+            total += size;
+            if (size < 0 || total > recordCount
+                    || ints.remaining() < size) {
+                throw new IOException("Bucket " + bucket
+                        + " does not fit " + recordCount + " records");
+            }
+            if (size > 0) {
+                int[] bucketRecords = new int[size];
+                ints.get(bucketRecords);
+                records[bucket] = bucketRecords;
+                sizes[bucket] = size;
+            }
+        }
+        if (total != recordCount) {
+            throw new IOException("Buckets hold " + total
+                    + " of " + recordCount + " records");
+        }
+        in.position(in.position() + ints.position() * Integer.BYTES);
+    }
+}
@@ -0,0 +1,614 @@
+/*
+Sudoku - a fast Java Sudoku game creation library.
+Copyright (C) 2017-2018  Stephan Fuhrmann
+
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Library General Public
+License as published by the Free Software Foundation; either
+version 2 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+Library General Public License for more details.
+
+You should have received a copy of the GNU Library General Public
+License along with this library; if not, write to the
+Free Software Foundation, Inc., 51 Franklin St, Fifth Floor,
+Boston, MA  02110-1301, USA.
+*/
+package de.sfuhrm.sudoku.bank;
+
+import de.sfuhrm.sudoku.Difficulty;
+import de.sfuhrm.sudoku.GameSchema;
+import de.sfuhrm.sudoku.Riddle;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.Random;
+import java.util.zip.CRC32;
+
+/**
+ * An append-only file of riddles of one schema.
+ * <p>
+ * The file starts with a header naming the schema, followed by
+ * fixed-size records, each with its own checksum. Records are read
+ * through memory mappings, so looking at the difficulty or the clue
+ * count of a record copies nothing and a riddle is only decoded when
+ * requested. Up to {@link Integer#MAX_VALUE} records are supported.
+ * <p>
+ * Appended records are buffered and written in batches.
+ * {@link #flush()} writes and syncs them to the disk, records appended
+ * after the last flush may be lost in a crash. On opening, a torn
+ * tail left by a crash is cut off after the last record with a
+ * correct checksum. Damaged records before it are kept in the file,
+ * but left out of the index, and reading them fails.
+ * <p>
+ * A side index by {@link Difficulty} and clue count is kept in memory.
+ * It is saved next to the bank file with the suffix
+ * {@value #INDEX_SUFFIX} on {@link #close()}, so opening only scans the
+ * records appended after the index was saved. A missing or damaged
+ * index is rebuilt from the records.
+ * <p>
+ * Instances are not thread safe.
+ * @author Stephan Fuhrmann
+ */
+public final class PuzzleBank implements Closeable {
+
+    /** The suffix of the side index file. */
+    public static final String INDEX_SUFFIX = ".idx";
+
+    /** Returned by {@link #sample(Difficulty, int, int, Random)} if no
+     * record matches. */
+    public static final int NO_RECORD = -1;
+
+    /** The magic number of bank files, "SUDOKUBK". */
+    private static final long MAGIC = 0x5355444f4b55424bL;
+
+    /** The magic number of index files, "SUDOKUIX". */
+    private static final long INDEX_MAGIC = 0x5355444f4b554958L;
+
+    /** The version of the file formats. */
+    private static final int VERSION = 1;
+
+    /** The size of the header in bytes. */
+    private static final int HEADER_SIZE = 32;
+
+    /** The offset of the header checksum. */
+    private static final int HEADER_CHECKSUM_OFFSET =
+            HEADER_SIZE - Integer.BYTES;
+
+    /** The size of the side index header in bytes. */
+    private static final int INDEX_HEADER_SIZE =
+            Long.BYTES + 5 * Integer.BYTES;
+
+    /** The maximum size of one memory mapping, one GiB. */
+    private static final int SEGMENT_BYTES =
+            Integer.highestOneBit(Integer.MAX_VALUE);
+
+    /** The number of records written in one batch. */
+    private static final int WRITE_BATCH = 4096;
+
+    /** The schema of the riddles. */
+    private final GameSchema schema;
+
+    /** The side index file. */
+    private final Path indexFile;
+
+    /** The codec of the records. */
+    private final RecordCodec codec;
+
+    /** The size of a record in bytes. */
+    private final int recordSize;
+
+    /** The number of records per memory mapping. */
+    private final int recordsPerSegment;
+
+    /** The channel of the bank file. */
+    private final FileChannel channel;
+
+    /** The records not written yet. */
+    private final ByteBuffer writeBuffer;
+
+    /** The index by difficulty and clue count of all records. */
+    private final DifficultyIndex index;
+
+    /** The memory mappings of the written records, created on demand. */
+    private MappedByteBuffer[] segments;
+
+    /** The number of records written to the file. */
+    private int written;
+
+    /** The number of damaged records left out of {@link #index}. */
+    private int damaged;
+
+    /** The number of records in {@link #writeBuffer}. */
+    private int pending;
+
+    /** Whether the bank is closed. */
+    private boolean closed;
+
+    /**
+     * Opens a bank file, creating it if it does not exist.
+     * @param file the bank file.
+     * @param inSchema the schema of the riddles in the bank.
+     * @throws IOException if the file can not be opened, is not a bank
+     * file or belongs to another schema.
+     */
+    public PuzzleBank(final Path file, final GameSchema inSchema)
+            throws IOException {
+        this.schema = Objects.requireNonNull(inSchema, "inSchema is null");
+        this.indexFile = file.resolveSibling(file.getFileName()
+                + INDEX_SUFFIX);
+        this.codec = new RecordCodec(inSchema);
+        this.recordSize = codec.getRecordSize();
+        this.recordsPerSegment = SEGMENT_BYTES / recordSize;
+        this.writeBuffer = ByteBuffer.allocate(WRITE_BATCH * recordSize);
+        this.index = new DifficultyIndex(inSchema.getTotalFields());
+        this.segments = new MappedByteBuffer[1];
+        this.channel = FileChannel.open(file,
+                StandardOpenOption.CREATE,
+                StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        try {
+            if (channel.size() == 0) {
+                writeHeader();
+            } else {
+                readHeader();
+            }
+            recover();
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Get the schema of the riddles.
+     * @return the schema.
+     */
+    public GameSchema getSchema() {
+        return schema;
+    }
+
+    /**
+     * Get the number of records, including the ones not flushed yet.
+     * @return the record count.
+     */
+    public int size() {
+        return written + pending;
+    }
+
+    /**
+     * Creates the header of the file.
+     * @return the header bytes.
+     */
+    private ByteBuffer createHeader() {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        header.putLong(MAGIC);
+        header.putInt(VERSION);
+        header.putInt(schema.getWidth());
+        header.putInt(schema.getBlockWidth());
+        header.putInt(recordSize);
+        CRC32 crc = new CRC32();
+        crc.update(header.array(), 0, HEADER_CHECKSUM_OFFSET);
+        header.putInt(HEADER_CHECKSUM_OFFSET, (int) crc.getValue());
+        header.clear();
+        return header;
+    }
+
+    /**
+     * Writes the header to a new file.
+     * @throws IOException if writing fails.
+     */
+    private void writeHeader() throws IOException {
+        ByteBuffer header = createHeader();
+        long position = 0;
+        while (header.hasRemaining()) {
+            position += channel.write(header, position);
+        }
+        channel.force(true);
+    }
+
+    /**
+     * Checks the header of an existing file.
+     * @throws IOException if reading fails or the header does not
+     * match the schema.
+     */
+    private void readHeader() throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        long position = 0;
+        while (header.hasRemaining()) {
+            int read = channel.read(header, position);
+            if (read < 0) {
+                throw new IOException("Not a puzzle bank, file too short");
+            }
+            position += read;
+        }
+        header.flip();
+        if (!header.equals(createHeader())) {
+            throw new IOException("Not a puzzle bank of schema "
+                    + schema.getWidth() + "x" + schema.getWidth()
+                    + " with version " + VERSION);
+        }
+    }
+
+    /**
+     * Loads the side index and indexes the records it does not cover.
+     * Damaged records are left out of the index. Only a torn tail,
+     * that is the damaged records after the last intact one and a
+     * partial record, is cut off.
+     * @throws IOException if reading or truncating fails.
+     */
+    private void recover() throws IOException {
+        long bytes = channel.size() - HEADER_SIZE;
+        long complete = bytes / recordSize;
+        if (complete > Integer.MAX_VALUE) {
+            throw new IOException("Too many records: " + complete);
+        }
+        written = (int) complete;
+        int end = readIndex();
+        int skipped = 0;
+        for (int record = end; record < written; record++) {
+            ByteBuffer segment = segment(record);
+            int offset = offset(record);
+            if (codec.isIntact(segment, offset)) {
+                index.add(record,
+                        codec.getDifficulty(segment, offset),
+                        codec.getClueCount(segment, offset));
+                damaged += skipped;
+                skipped = 0;
+                end = record + 1;
+            } else {
+                skipped++;
+            }
+        }
+        if (end < written || bytes % recordSize != 0) {
+            written = end;
+            Arrays.fill(segments, null);
+            channel.truncate(HEADER_SIZE + (long) end * recordSize);
+            channel.force(true);
+        }
+    }
+
+    /**
+     * Reads the side index and the number of damaged records it
+     * leaves out if it is intact.
+     * @return the number of records covered by the index, zero if
+     * the index is missing or damaged.
+     */
+    private int readIndex() {
+        if (!Files.isRegularFile(indexFile)) {
+            return 0;
+        }
+        try (FileChannel in = FileChannel.open(indexFile,
+                StandardOpenOption.READ)) {
+            long size = in.size();
+            if (size < INDEX_HEADER_SIZE + Integer.BYTES
+                    || size > Integer.MAX_VALUE) {
+                return 0;
+            }
+            ByteBuffer buffer = in.map(FileChannel.MapMode.READ_ONLY,
+                    0, size);
+            int checksumOffset = (int) size - Integer.BYTES;
+            ByteBuffer content = buffer.duplicate();
+            content.limit(checksumOffset);
+            CRC32 crc = new CRC32();
+            crc.update(content);
+            if (buffer.getInt(checksumOffset) != (int) crc.getValue()
+                    || buffer.getLong() != INDEX_MAGIC
+                    || buffer.getInt() != VERSION
+                    || buffer.getInt() != schema.getWidth()
+                    || buffer.getInt() != schema.getBlockWidth()) {
+                return 0;
+            }
+            int covered = buffer.getInt();
+            int skipped = buffer.getInt();
+            if (covered < 0 || covered > written
+                    || skipped < 0 || skipped > covered) {
+                return 0;
+            }
+            buffer.limit(checksumOffset);
+            index.read(buffer, covered - skipped);
+            damaged = skipped;
+            return covered;
+        } catch (IOException e) {
+            // the index is rebuilt from the records
+            index.clear();
+            damaged = 0;
+            return 0;
+        }
+    }
+
+    /**
+     * Saves the side index, replacing the old one atomically.
+     * An index too large for one buffer is removed instead and
+     * rebuilt on the next opening.
+     * @throws IOException if writing fails.
+     */
+    private void writeIndex() throws IOException {
+        long size = INDEX_HEADER_SIZE + index.byteSize() + Integer.BYTES;
+        if (size > Integer.MAX_VALUE) {
+            Files.deleteIfExists(indexFile);
+            return;
+        }
+        ByteBuffer buffer = ByteBuffer.allocate((int) size);
+        buffer.putLong(INDEX_MAGIC);
+        buffer.putInt(VERSION);
+        buffer.putInt(schema.getWidth());
+        buffer.putInt(schema.getBlockWidth());
+        buffer.putInt(written);
+        buffer.putInt(damaged);
+        index.write(buffer);
+        CRC32 crc = new CRC32();
+        crc.update(buffer.array(), 0, buffer.position());
+        buffer.putInt((int) crc.getValue());
+        buffer.flip();
+
+        Path temporary = indexFile.resolveSibling(indexFile.getFileName()
+                + ".tmp");
+        try (FileChannel out = FileChannel.open(temporary,
+                StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.WRITE)) {
+            while (buffer.hasRemaining()) {
+                out.write(buffer);
+            }
+        }
+        Files.move(temporary, indexFile,
+                StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Get the memory mapping of a written record.
+     * The last mapping is extended when records were written after
+     * mapping it.
+     * @param record the record number, less than {@link #written}.
+     * @return the mapping holding the record.
+     * @throws IOException if mapping fails.
+     */
+    private MappedByteBuffer segment(final int record) throws IOException {
+        int number = record / recordsPerSegment;
+        int first = number * recordsPerSegment;
+        int records = Math.min(recordsPerSegment, written - first);
+        if (number >= segments.length) {
+            segments = Arrays.copyOf(segments, number + 1);
+        }
+        MappedByteBuffer segment = segments[number];
+        if (segment == null || segment.capacity() < records * recordSize) {
+            segment = channel.map(FileChannel.MapMode.READ_ONLY,
+                    HEADER_SIZE + (long) first * recordSize,
+                    (long) records * recordSize);
+            segments[number] = segment;
+        }
+        return segment;
+    }
+
+    /**
+     * Get the offset of a record in its memory mapping.
+     * @param record the record number.
+     * @return the byte offset in the mapping.
+     */
+    private int offset(final int record) {
+        return (record % recordsPerSegment) * recordSize;
+    }
+
+    /**
+     * Checks that the bank is open.
+     * @throws IllegalStateException if the bank is closed.
+     */
+    private void ensureOpen() {
+        if (closed) {
+            throw new IllegalStateException("Bank is closed");
+        }
+    }
+
+    /**
+     * Checks a record number and writes the record if it is pending.
+     * @param record the record number.
+     * @throws IOException if writing fails.
+     * @throws IllegalArgumentException if there is no such record.
+     */
+    private void prepareRead(final int record) throws IOException {
+        ensureOpen();
+        if (record < 0 || record >= size()) {
+            throw new IllegalArgumentException("Record " + record
+                    + " is not within 0 to " + (size() - 1));
+        }
+        if (record >= written) {
+            writePending();
+        }
+    }
+
+    /**
+     * Appends a riddle with the difficulty of its analysis.
+     * @param riddle the riddle to append.
+     * @return the record number of the riddle.
+     * @throws IOException if writing fails.
+     * @throws IllegalArgumentException if the riddle has another schema.
+     * @see Riddle#getAnalysis()
+     */
+    public int append(final Riddle riddle) throws IOException {
+        return append(riddle,
+                riddle.getAnalysis().getClassifiedDifficulty());
+    }
+
+    /**
+     * Appends a riddle. Only the givens are stored, that are the set
+     * cells that are not writable.
+     * @param riddle the riddle to append.
+     * @param difficulty the difficulty to index the riddle by.
+     * @return the record number of the riddle.
+     * @throws IOException if writing fails.
+     * @throws IllegalArgumentException if the riddle has another schema.
+     * @throws IllegalStateException if the bank is full.
+     */
+    public int append(final Riddle riddle, final Difficulty difficulty)
+            throws IOException {
+        ensureOpen();
+        Objects.requireNonNull(difficulty, "difficulty is null");
+        if (!schema.equals(riddle.getSchema())) {
+            throw new IllegalArgumentException("Schema "
+                    + riddle.getSchema() + " does not match " + schema);
+        }
+        int record = size();
+        if (record == Integer.MAX_VALUE) {
+            throw new IllegalStateException("Bank is full");
+        }
+        if (!writeBuffer.hasRemaining()) {
+            writePending();
+        }
+        int position = writeBuffer.position();
+        int clues = codec.encode(riddle, difficulty, writeBuffer, position);
+        writeBuffer.position(position + recordSize);
+        pending++;
+        index.add(record, difficulty, clues);
+        return record;
+    }
+
+    /**
+     * Writes the pending records to the file without syncing.
+     * @throws IOException if writing fails.
+     */
+    private void writePending() throws IOException {
+        writeBuffer.flip();
+        long position = HEADER_SIZE + (long) written * recordSize;
+        while (writeBuffer.hasRemaining()) {
+            position += channel.write(writeBuffer, position);
+        }
+        writeBuffer.clear();
+        written += pending;
+        pending = 0;
+    }
+
+    /**
+     * Writes the pending records and syncs them to the disk.
+     * @throws IOException if writing fails.
+     */
+    public void flush() throws IOException {
+        ensureOpen();
+        writePending();
+        channel.force(false);
+    }
+
+    /**
+     * Reads a riddle. The givens are set and not writable, all other
+     * cells are unset and writable.
+     * @param record the record number.
+     * @return a new riddle.
+     * @throws IOException if the record is damaged.
+     * @throws IllegalArgumentException if there is no such record.
+     */
+    public Riddle get(final int record) throws IOException {
+        ByteBuffer segment = readIntact(record);
+        return codec.decode(segment, offset(record));
+    }
+
+    /**
+     * Checks that a record exists and is intact.
+     * @param record the record number.
+     * @return the mapping holding the record.
+     * @throws IOException if the record is damaged.
+     * @throws IllegalArgumentException if there is no such record.
+     */
+    private ByteBuffer readIntact(final int record) throws IOException {
+        prepareRead(record);
+        ByteBuffer segment = segment(record);
+        if (!codec.isIntact(segment, offset(record))) {
+            throw new IOException("Record " + record + " is damaged");
+        }
+        return segment;
+    }
+
+    /**
+     * Reads the difficulty of a record without decoding the riddle.
+     * @param record the record number.
+     * @return the difficulty stored with the riddle.
+     * @throws IOException if the record is damaged.
+     * @throws IllegalArgumentException if there is no such record.
+     */
+    public Difficulty getDifficulty(final int record) throws IOException {
+        return codec.getDifficulty(readIntact(record), offset(record));
+    }
+
+    /**
+     * Reads the number of givens of a record without decoding the riddle.
+     * @param record the record number.
+     * @return the clue count of the riddle.
+     * @throws IOException if the record is damaged.
+     * @throws IllegalArgumentException if there is no such record.
+     */
+    public int getClueCount(final int record) throws IOException {
+        return codec.getClueCount(readIntact(record), offset(record));
+    }
+
+    /**
+     * Counts the records of a difficulty and clue range.
+     * @param difficulty the difficulty.
+     * @param minClues the lowest clue count, inclusive.
+     * @param maxClues the highest clue count, inclusive.
+     * @return the number of matching records.
+     * @throws IllegalArgumentException if the range is not within
+     * zero and the number of cells.
+     */
+    public int count(final Difficulty difficulty,
+            final int minClues,
+            final int maxClues) {
+        ensureOpen();
+        return index.count(difficulty, minClues, maxClues);
+    }
+
+    /**
+     * Picks a uniformly random record of a difficulty and clue range.
+     * Use {@link #get(int)} to read the riddle.
+     * @param difficulty the difficulty.
+     * @param minClues the lowest clue count, inclusive.
+     * @param maxClues the highest clue count, inclusive.
+     * @param random the source of randomness.
+     * @return the record number, or {@link #NO_RECORD} if no
+     * record matches.
+     * @throws IllegalArgumentException if the range is not within
+     * zero and the number of cells.
+     */
+    public int sample(final Difficulty difficulty,
+            final int minClues,
+            final int maxClues,
+            final Random random) {
+        int count = count(difficulty, minClues, maxClues);
+        if (count == 0) {
+            return NO_RECORD;
+        }
+        return index.get(difficulty, minClues, maxClues,
+                random.nextInt(count));
+    }
+
+    /**
+     * Flushes the pending records, saves the side index and closes the
+     * file. Closing a closed bank has no effect.
+     * @throws IOException if writing fails.
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        try {
+            flush();
+            writeIndex();
+        } finally {
+            closed = true;
+            segments = null;
+            channel.close();
+        }
+    }
+}
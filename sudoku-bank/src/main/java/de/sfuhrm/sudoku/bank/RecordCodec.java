@@ -0,0 +1,232 @@
+/*
+Sudoku - a fast Java Sudoku game creation library.
+Copyright (C) 2017-2018  Stephan Fuhrmann
+
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Library General Public
+License as published by the Free Software Foundation; either
+version 2 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+Library General Public License for more details.
+
+You should have received a copy of the GNU Library General Public
+License along with this library; if not, write to the
+Free Software Foundation, Inc., 51 Franklin St, Fifth Floor,
+Boston, MA  02110-1301, USA.
+*/
+package de.sfuhrm.sudoku.bank;
+
+import de.sfuhrm.sudoku.Difficulty;
+import de.sfuhrm.sudoku.GameMatrixFactory;
+import de.sfuhrm.sudoku.GameSchema;
+import de.sfuhrm.sudoku.Riddle;
+
+import java.nio.ByteBuffer;
+import java.util.zip.CRC32;
+
+/**
+ * Packs riddles into fixed-size records.
+ * A record holds the difficulty ordinal in one byte, the clue count
+ * in two bytes, the givens with as few bits per cell as the schema
+ * needs, and a CRC32 checksum of the preceding bytes.
+ * Writable cells are stored as unset, so a record keeps the riddle
+ * as it was created and not the values entered into it.
+ * A 9x9 record takes 48 bytes.
+ * Instances are not thread safe.
+ * @author Stephan Fuhrmann
+ */
+final class RecordCodec {
+
+    /** The offset of the difficulty ordinal. */
+    private static final int DIFFICULTY_OFFSET = 0;
+
+    /** The offset of the clue count. */
+    private static final int CLUES_OFFSET = DIFFICULTY_OFFSET + 1;
+
+    /** The offset of the packed cells. */
+    private static final int CELLS_OFFSET = CLUES_OFFSET + Short.BYTES;
+
+    /** The mask of the bits of a byte. */
+    private static final int BYTE_MASK = 0xff;
+
+    /** The difficulties by ordinal. */
+    private static final Difficulty[] DIFFICULTIES = Difficulty.values();
+
+    /** The schema of the riddles. */
+    private final GameSchema schema;
+
+    /** The edge dimension of the schema. */
+    private final int width;
+
+    /** The value of unset cells. */
+    private final byte unset;
+
+    /** The bits of one packed cell. */
+    private final int bitsPerCell;
+
+    /** The mask of one packed cell. */
+    private final int cellMask;
+
+    /** The offset of the checksum. */
+    private final int checksumOffset;
+
+    /** The size of a record in bytes. */
+    private final int recordSize;
+
+    /** The factory for decoded riddles. */
+    private final GameMatrixFactory factory;
+
+    /** The checksum calculator. */
+    private final CRC32 crc;
+
+    /**
+     * Creates a codec.
+     * @param inSchema the schema of the riddles.
+     */
+    RecordCodec(final GameSchema inSchema) {
+        this.schema = inSchema;
+        this.width = inSchema.getWidth();
+        this.unset = inSchema.getUnsetValue();
+        this.bitsPerCell = Integer.SIZE
+                - Integer.numberOfLeadingZeros(inSchema.getMaximumValue());
+        this.cellMask = (1 << bitsPerCell) - 1;
+        int cellBytes = (inSchema.getTotalFields() * bitsPerCell
+                + Byte.SIZE - 1) / Byte.SIZE;
+        this.checksumOffset = CELLS_OFFSET + cellBytes;
+        this.recordSize = checksumOffset + Integer.BYTES;
+        this.factory = new GameMatrixFactory();
+        this.crc = new CRC32();
+    }
+
+    /**
+     * Get the size of a record.
+     * @return the record size in bytes.
+     */
+    int getRecordSize() {
+        return recordSize;
+    }
+
+    /**
+     * Writes the record of a riddle.
+     * The position of the target is not changed.
+     * @param riddle the riddle to write.
+     * @param difficulty the difficulty to store with the riddle.
+     * @param target the buffer to write to.
+     * @param offset the offset of the record in the target.
+     * @return the number of givens of the riddle.
+     */
+    int encode(final Riddle riddle,
+            final Difficulty difficulty,
+            final ByteBuffer target,
+            final int offset) {
+        int clues = 0;
+        long bits = 0;
+        int bitCount = 0;
+        int position = offset + CELLS_OFFSET;
+        for (int row = 0; row < width; row++) {
+            for (int column = 0; column < width; column++) {
+                byte value = riddle.get(row, column);
+                if (value == unset || riddle.getWritable(row, column)) {
+                    value = unset;
+                } else {
+                    clues++;
+                }
+                bits |= (long) value << bitCount;
+                bitCount += bitsPerCell;
+                while (bitCount >= Byte.SIZE) {
+                    target.put(position++, (byte) bits);
+                    bits >>>= Byte.SIZE;
+                    bitCount -= Byte.SIZE;
+                }
+            }
+        }
+        if (bitCount > 0) {
+            target.put(position, (byte) bits);
+        }
+        target.put(offset + DIFFICULTY_OFFSET, (byte) difficulty.ordinal());
+        target.putShort(offset + CLUES_OFFSET, (short) clues);
+        target.putInt(offset + checksumOffset, checksum(target, offset));
+        return clues;
+    }
+
+    /**
+     * Reads the riddle of a record.
+     * The givens are set and not writable, all other cells are unset
+     * and writable.
+     * @param source the buffer to read from.
+     * @param offset the offset of the record in the source.
+     * @return a new riddle.
+     */
+    Riddle decode(final ByteBuffer source, final int offset) {
+        Riddle riddle = factory.newRiddle(schema);
+        long bits = 0;
+        int bitCount = 0;
+        int position = offset + CELLS_OFFSET;
+        for (int row = 0; row < width; row++) {
+            for (int column = 0; column < width; column++) {
+                if (bitCount < bitsPerCell) {
+                    bits |= (long) (source.get(position++) & BYTE_MASK)
+                            << bitCount;
+                    bitCount += Byte.SIZE;
+                }
+                byte value = (byte) (bits & cellMask);
+                bits >>>= bitsPerCell;
+                bitCount -= bitsPerCell;
+                if (value != unset) {
+                    riddle.set(row, column, value);
+                    riddle.setWritable(row, column, false);
+                }
+            }
+        }
+        return riddle;
+    }
+
+    /**
+     * Get the difficulty of a record.
+     * @param source the buffer to read from.
+     * @param offset the offset of the record in the source.
+     * @return the stored difficulty.
+     */
+    Difficulty getDifficulty(final ByteBuffer source, final int offset) {
+        return DIFFICULTIES[source.get(offset + DIFFICULTY_OFFSET)];
+    }
+
+    /**
+     * Get the number of givens of a record.
+     * @param source the buffer to read from.
+     * @param offset the offset of the record in the source.
+     * @return the stored clue count.
+     */
+    int getClueCount(final ByteBuffer source, final int offset) {
+        return source.getShort(offset + CLUES_OFFSET);
+    }
+
+    /**
+     * Checks the checksum of a record.
+     * @param source the buffer to read from.
+     * @param offset the offset of the record in the source.
+     * @return {@code true} if the record is intact.
+     */
+    boolean isIntact(final ByteBuffer source, final int offset) {
+        return source.getInt(offset + checksumOffset)
+                == checksum(source, offset);
+    }
+
+    /**
+     * Calculates the checksum of a record.
+     * @param source the buffer holding the record.
+     * @param offset the offset of the record in the source.
+     * @return the CRC32 of the bytes before the checksum.
+     */
+    private int checksum(final ByteBuffer source, final int offset) {
+        ByteBuffer view = source.duplicate();
+        view.limit(offset + checksumOffset);
+        view.position(offset);
+        crc.reset();
+        crc.update(view);
+        return (int) crc.getValue();
+    }
+}
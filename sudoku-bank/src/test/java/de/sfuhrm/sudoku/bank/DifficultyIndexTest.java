@@ -0,0 +1,119 @@
+/*
+Sudoku - a fast Java Sudoku game creation library.
+Copyright (C) 2017-2018  Stephan Fuhrmann
+
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Library General Public
+License as published by the Free Software Foundation; either
+version 2 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+Library General Public License for more details.
+
+You should have received a copy of the GNU Library General Public
+License along with this library; if not, write to the
+Free Software Foundation, Inc., 51 Franklin St, Fifth Floor,
+Boston, MA  02110-1301, USA.
+*/
+package de.sfuhrm.sudoku.bank;
+
+import de.sfuhrm.sudoku.Difficulty;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Test for {@link DifficultyIndex}.
+ */
+public class DifficultyIndexTest {
+
+    private DifficultyIndex newIndex() {
+        DifficultyIndex index = new DifficultyIndex(81);
+        // records 0 to 99, clue counts 20 to 29, alternating difficulty
+        for (int record = 0; record < 100; record++) {
+            index.add(record,
+                    record % 2 == 0 ? Difficulty.EASY : Difficulty.HARD,
+                    20 + record % 10);
+        }
+        return index;
+    }
+
+    @Test
+    public void testCount() {
+        DifficultyIndex index = newIndex();
+        assertEquals(50, index.count(Difficulty.EASY, 0, 81));
+        assertEquals(50, index.count(Difficulty.HARD, 0, 81));
+        assertEquals(0, index.count(Difficulty.MEDIUM, 0, 81));
+        assertEquals(10, index.count(Difficulty.EASY, 20, 20));
+        assertEquals(20, index.count(Difficulty.HARD, 21, 24));
+    }
+
+    @Test
+    public void testGetOrdersByCluesThenRecord() {
+        DifficultyIndex index = newIndex();
+        assertEquals(0, index.get(Difficulty.EASY, 20, 29, 0));
+        assertEquals(10, index.get(Difficulty.EASY, 20, 29, 1));
+        assertEquals(90, index.get(Difficulty.EASY, 20, 29, 9));
+        assertEquals(2, index.get(Difficulty.EASY, 20, 29, 10));
+        assertEquals(98, index.get(Difficulty.EASY, 20, 29, 49));
+        assertThrows(IllegalArgumentException.class,
+                () -> index.get(Difficulty.EASY, 20, 29, 50));
+        assertThrows(IllegalArgumentException.class,
+                () -> index.get(Difficulty.EASY, 20, 29, -1));
+    }
+
+    @Test
+    public void testIllegalRange() {
+        DifficultyIndex index = newIndex();
+        assertThrows(IllegalArgumentException.class,
+                () -> index.count(Difficulty.EASY, -1, 20));
+        assertThrows(IllegalArgumentException.class,
+                () -> index.count(Difficulty.EASY, 0, 82));
+        assertThrows(IllegalArgumentException.class,
+                () -> index.count(Difficulty.EASY, 30, 20));
+    }
+
+    @Test
+    public void testWriteAndRead() throws IOException {
+        DifficultyIndex index = newIndex();
+        ByteBuffer buffer = ByteBuffer.allocate((int) index.byteSize());
+        index.write(buffer);
+        assertEquals(buffer.capacity(), buffer.position());
+        buffer.flip();
+
+        DifficultyIndex copy = new DifficultyIndex(81);
+        copy.read(buffer, 100);
+        assertEquals(buffer.capacity(), buffer.position());
+        for (Difficulty difficulty : Difficulty.values()) {
+            int count = index.count(difficulty, 0, 81);
+            assertEquals(count, copy.count(difficulty, 0, 81));
+            for (int i = 0; i < count; i++) {
+                assertEquals(index.get(difficulty, 0, 81, i),
+                        copy.get(difficulty, 0, 81, i));
+            }
+        }
+    }
+
+    @Test
+    public void testReadRejectsOtherRecordCount() throws IOException {
+        DifficultyIndex index = newIndex();
+        ByteBuffer buffer = ByteBuffer.allocate((int) index.byteSize());
+        index.write(buffer);
+
+        DifficultyIndex copy = new DifficultyIndex(81);
+        buffer.flip();
+        assertThrows(IOException.class, () -> copy.read(buffer, 99));
+        buffer.rewind();
+        assertThrows(IOException.class, () -> copy.read(buffer, 101));
+        // cut off within a bucket
+        buffer.rewind();
+        buffer.limit(buffer.limit() - Integer.BYTES);
+        assertThrows(IOException.class, () -> copy.read(buffer, 100));
+    }
+}
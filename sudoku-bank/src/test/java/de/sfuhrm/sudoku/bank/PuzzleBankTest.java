@@ -0,0 +1,337 @@
+/*
+Sudoku - a fast Java Sudoku game creation library.
+Copyright (C) 2017-2018  Stephan Fuhrmann
+
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Library General Public
+License as published by the Free Software Foundation; either
+version 2 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+Library General Public License for more details.
+
+You should have received a copy of the GNU Library General Public
+License along with this library; if not, write to the
+Free Software Foundation, Inc., 51 Franklin St, Fifth Floor,
+Boston, MA  02110-1301, USA.
+*/
+package de.sfuhrm.sudoku.bank;
+
+import de.sfuhrm.sudoku.Creator;
+import de.sfuhrm.sudoku.Difficulty;
+import de.sfuhrm.sudoku.GameMatrix;
+import de.sfuhrm.sudoku.GameMatrixFactory;
+import de.sfuhrm.sudoku.GameSchemas;
+import de.sfuhrm.sudoku.Riddle;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Test for {@link PuzzleBank}.
+ */
+public class PuzzleBankTest {
+
+    private static final Difficulty[] DIFFICULTIES = Difficulty.values();
+
+    @TempDir
+    Path directory;
+
+    private Path file() {
+        return directory.resolve("riddles.bank");
+    }
+
+    private static List<Riddle> riddles(final int count) {
+        List<Riddle> result = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            GameMatrix full = Creator.createFull(GameSchemas.SCHEMA_9X9);
+            result.add(Creator.createRiddle(full, Difficulty.EASY));
+        }
+        return result;
+    }
+
+    private static void assertSameGivens(final Riddle expected,
+            final Riddle actual) {
+        for (int row = 0; row < 9; row++) {
+            for (int column = 0; column < 9; column++) {
+                assertEquals(expected.getWritable(row, column),
+                        actual.getWritable(row, column));
+                if (!expected.getWritable(row, column)) {
+                    assertEquals(expected.get(row, column),
+                            actual.get(row, column));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testAppendAndReadAcrossReopen() throws IOException {
+        List<Riddle> riddles = riddles(10);
+        try (PuzzleBank bank = new PuzzleBank(file(),
+                GameSchemas.SCHEMA_9X9)) {
+            for (int i = 0; i < riddles.size(); i++) {
+                assertEquals(i, bank.append(riddles.get(i),
+                        DIFFICULTIES[i % DIFFICULTIES.length]));
+            }
+            // pending records are readable before flushing
+            assertSameGivens(riddles.get(3), bank.get(3));
+        }
+        assertEquals(32 + 10 * 48, Files.size(file()));
+
+        try (PuzzleBank bank = new PuzzleBank(file(),
+                GameSchemas.SCHEMA_9X9)) {
+            assertEquals(10, bank.size());
+            for (int i = 0; i < riddles.size(); i++) {
+                assertSameGivens(riddles.get(i), bank.get(i));
+                assertEquals(DIFFICULTIES[i % DIFFICULTIES.length],
+                        bank.getDifficulty(i));
+                assertEquals(riddles.get(i).getSetCount(),
+                        bank.getClueCount(i));
+            }
+            assertThrows(IllegalArgumentException.class,
+                    () -> bank.get(10));
+            assertThrows(IllegalArgumentException.class,
+                    () -> bank.get(-1));
+        }
+    }
+
+    @Test
+    public void testAppendUsesAnalysis() throws IOException {
+        Riddle riddle = riddles(1).get(0);
+        try (PuzzleBank bank = new PuzzleBank(file(),
+                GameSchemas.SCHEMA_9X9)) {
+            bank.append(riddle);
+            assertEquals(riddle.getAnalysis().getClassifiedDifficulty(),
+                    bank.getDifficulty(0));
+        }
+    }
+
+    @Test
+    public void testCountAndSample() throws IOException {
+        List<Riddle> riddles = riddles(20);
+        try (PuzzleBank bank = new PuzzleBank(file(),
+                GameSchemas.SCHEMA_9X9)) {
+            for (int i = 0; i < riddles.size(); i++) {
+                bank.append(riddles.get(i),
+                        i % 4 == 0 ? Difficulty.HARD : Difficulty.EASY);
+            }
+            assertEquals(5, bank.count(Difficulty.HARD, 0, 81));
+            assertEquals(15, bank.count(Difficulty.EASY, 0, 81));
+            assertEquals(PuzzleBank.NO_RECORD, bank.sample(Difficulty.MEDIUM,
+                    0, 81, new Random(1)));
+
+            Random random = new Random(1);
+            boolean[] seen = new boolean[riddles.size()];
+            for (int i = 0; i < 200; i++) {
+                int record = bank.sample(Difficulty.HARD, 0, 81, random);
+                assertEquals(0, record % 4);
+                seen[record] = true;
+            }
+            for (int i = 0; i < riddles.size(); i += 4) {
+                assertTrue(seen[i]);
+            }
+
+            int clues = riddles.get(0).getSetCount();
+            int record = bank.sample(Difficulty.HARD, clues, clues, random);
+            assertEquals(clues, bank.getClueCount(record));
+            assertThrows(IllegalArgumentException.class,
+                    () -> bank.count(Difficulty.HARD, 0, 82));
+        }
+    }
+
+    @Test
+    public void testIndexIsRebuiltIfMissing() throws IOException {
+        List<Riddle> riddles = riddles(8);
+        try (PuzzleBank bank = new PuzzleBank(file(),
+                GameSchemas.SCHEMA_9X9)) {
+            for (int i = 0; i < riddles.size(); i++) {
+                bank.append(riddles.get(i), DIFFICULTIES[i % 2]);
+            }
+        }
+        Path indexFile = directory.resolve("riddles.bank"
+                + PuzzleBank.INDEX_SUFFIX);
+        assertTrue(Files.isRegularFile(indexFile));
+
+        // a damaged index is ignored
+        byte[] bytes = Files.readAllBytes(indexFile);
+        bytes[bytes.length / 2] ^= 1;
+        Files.write(indexFile, bytes);
+        try (PuzzleBank bank = new PuzzleBank(file(),
+                GameSchemas.SCHEMA_9X9)) {
+            assertEquals(4, bank.count(DIFFICULTIES[0], 0, 81));
+            assertEquals(4, bank.count(DIFFICULTIES[1], 0, 81));
+        }
+
+        Files.delete(indexFile);
+        try (PuzzleBank bank = new PuzzleBank(file(),
+                GameSchemas.SCHEMA_9X9)) {
+            assertEquals(4, bank.count(DIFFICULTIES[0], 0, 81));
+            assertEquals(4, bank.count(DIFFICULTIES[1], 0, 81));
+        }
+    }
+
+    @Test
+    public void testTornTailIsCut() throws IOException {
+        List<Riddle> riddles = riddles(6);
+        try (PuzzleBank bank = new PuzzleBank(file(),
+                GameSchemas.SCHEMA_9X9)) {
+            for (int i = 0; i < 4; i++) {
+                bank.append(riddles.get(i), Difficulty.EASY);
+            }
+        }
+        // a crash after the index was saved: two more records,
+        // the first one damaged and the second one half written
+        try (FileChannel channel = FileChannel.open(file(),
+                StandardOpenOption.WRITE)) {
+            ByteBuffer tail = ByteBuffer.allocate(48 + 20);
+            new RecordCodec(GameSchemas.SCHEMA_9X9).encode(riddles.get(4),
+                    Difficulty.EASY, tail, 0);
+            tail.put(5, (byte) (tail.get(5) ^ 1));
+            channel.write(tail, Files.size(file()));
+        }
+
+        try (PuzzleBank bank = new PuzzleBank(file(),
+                GameSchemas.SCHEMA_9X9)) {
+            assertEquals(4, bank.size());
+            assertEquals(32 + 4 * 48, Files.size(file()));
+            assertEquals(4, bank.count(Difficulty.EASY, 0, 81));
+            assertEquals(4, bank.append(riddles.get(5), Difficulty.HARD));
+            bank.flush();
+            assertSameGivens(riddles.get(5), bank.get(4));
+        }
+        try (PuzzleBank bank = new PuzzleBank(file(),
+                GameSchemas.SCHEMA_9X9)) {
+            assertEquals(5, bank.size());
+            assertEquals(1, bank.count(Difficulty.HARD, 0, 81));
+        }
+    }
+
+    @Test
+    public void testDamagedRecordInTheMiddleIsSkipped() throws IOException {
+        List<Riddle> riddles = riddles(6);
+        try (PuzzleBank bank = new PuzzleBank(file(),
+                GameSchemas.SCHEMA_9X9)) {
+            for (Riddle riddle : riddles) {
+                bank.append(riddle, Difficulty.EASY);
+            }
+        }
+        // bit rot in record 2 of a bank without index
+        Files.delete(directory.resolve("riddles.bank"
+                + PuzzleBank.INDEX_SUFFIX));
+        long size = Files.size(file());
+        flipBit(32 + 2 * 48 + 5);
+
+        for (int pass = 0; pass < 2; pass++) {
+            try (PuzzleBank bank = new PuzzleBank(file(),
+                    GameSchemas.SCHEMA_9X9)) {
+                assertEquals(6, bank.size());
+                assertEquals(size, Files.size(file()));
+                assertEquals(5, bank.count(Difficulty.EASY, 0, 81));
+                assertThrows(IOException.class, () -> bank.get(2));
+                assertThrows(IOException.class,
+                        () -> bank.getDifficulty(2));
+                assertThrows(IOException.class,
+                        () -> bank.getClueCount(2));
+                for (int i = 3; i < riddles.size(); i++) {
+                    assertSameGivens(riddles.get(i), bank.get(i));
+                }
+                Random random = new Random(pass);
+                for (int i = 0; i < 100; i++) {
+                    assertTrue(bank.sample(Difficulty.EASY, 0, 81,
+                            random) != 2);
+                }
+            }
+        }
+
+        // the saved index is loaded and not rebuilt, so bit rot in
+        // record 4 stays unnoticed until the record is read
+        flipBit(32 + 4 * 48 + 5);
+        try (PuzzleBank bank = new PuzzleBank(file(),
+                GameSchemas.SCHEMA_9X9)) {
+            assertEquals(5, bank.count(Difficulty.EASY, 0, 81));
+            assertThrows(IOException.class, () -> bank.get(4));
+        }
+    }
+
+    private void flipBit(final long position) throws IOException {
+        try (FileChannel channel = FileChannel.open(file(),
+                StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            ByteBuffer cell = ByteBuffer.allocate(1);
+            channel.read(cell, position);
+            cell.put(0, (byte) (cell.get(0) ^ 1));
+            cell.rewind();
+            channel.write(cell, position);
+        }
+    }
+
+    @Test
+    public void testRecordsAfterIndexAreIndexed() throws IOException {
+        List<Riddle> riddles = riddles(4);
+        try (PuzzleBank bank = new PuzzleBank(file(),
+                GameSchemas.SCHEMA_9X9)) {
+            bank.append(riddles.get(0), Difficulty.EASY);
+        }
+        // records flushed, but the bank was not closed
+        PuzzleBank crashed = new PuzzleBank(file(), GameSchemas.SCHEMA_9X9);
+        for (int i = 1; i < riddles.size(); i++) {
+            crashed.append(riddles.get(i), Difficulty.HARD);
+        }
+        crashed.flush();
+
+        try (PuzzleBank bank = new PuzzleBank(file(),
+                GameSchemas.SCHEMA_9X9)) {
+            assertEquals(4, bank.size());
+            assertEquals(1, bank.count(Difficulty.EASY, 0, 81));
+            assertEquals(3, bank.count(Difficulty.HARD, 0, 81));
+        }
+        crashed.close();
+    }
+
+    @Test
+    public void testOtherSchemaIsRejected() throws IOException {
+        new PuzzleBank(file(), GameSchemas.SCHEMA_9X9).close();
+        assertThrows(IOException.class,
+                () -> new PuzzleBank(file(), GameSchemas.SCHEMA_16X16));
+        try (PuzzleBank bank = new PuzzleBank(file(),
+                GameSchemas.SCHEMA_9X9)) {
+            Riddle riddle = new GameMatrixFactory()
+                    .newRiddle(GameSchemas.SCHEMA_4X4);
+            assertThrows(IllegalArgumentException.class,
+                    () -> bank.append(riddle, Difficulty.EASY));
+        }
+    }
+
+    @Test
+    public void testOtherFileIsRejected() throws IOException {
+        Files.write(file(), new byte[100]);
+        assertThrows(IOException.class,
+                () -> new PuzzleBank(file(), GameSchemas.SCHEMA_9X9));
+        Files.write(file(), new byte[10]);
+        assertThrows(IOException.class,
+                () -> new PuzzleBank(file(), GameSchemas.SCHEMA_9X9));
+    }
+
+    @Test
+    public void testClosedBank() throws IOException {
+        PuzzleBank bank = new PuzzleBank(file(), GameSchemas.SCHEMA_9X9);
+        bank.close();
+        bank.close();
+        assertThrows(IllegalStateException.class,
+                () -> bank.count(Difficulty.EASY, 0, 81));
+    }
+}
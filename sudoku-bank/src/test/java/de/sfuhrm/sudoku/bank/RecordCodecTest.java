@@ -0,0 +1,132 @@
+/*
+Sudoku - a fast Java Sudoku game creation library.
+Copyright (C) 2017-2018  Stephan Fuhrmann
+
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Library General Public
+License as published by the Free Software Foundation; either
+version 2 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+Library General Public License for more details.
+
+You should have received a copy of the GNU Library General Public
+License along with this library; if not, write to the
+Free Software Foundation, Inc., 51 Franklin St, Fifth Floor,
+Boston, MA  02110-1301, USA.
+*/
+package de.sfuhrm.sudoku.bank;
+
+import de.sfuhrm.sudoku.Creator;
+import de.sfuhrm.sudoku.Difficulty;
+import de.sfuhrm.sudoku.GameMatrix;
+import de.sfuhrm.sudoku.GameMatrixFactory;
+import de.sfuhrm.sudoku.GameSchema;
+import de.sfuhrm.sudoku.GameSchemas;
+import de.sfuhrm.sudoku.Riddle;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Test for {@link RecordCodec}.
+ */
+public class RecordCodecTest {
+
+    /** Creates a riddle with every third cell of a full grid cleared. */
+    static Riddle newRiddle(final GameSchema schema) {
+        GameMatrix full = Creator.createFull(schema);
+        Riddle riddle = new GameMatrixFactory().newRiddle(schema);
+        riddle.setAll(full.getArray());
+        int width = schema.getWidth();
+        for (int row = 0; row < width; row++) {
+            for (int column = 0; column < width; column++) {
+                if ((row * width + column) % 3 == 0) {
+                    riddle.set(row, column, schema.getUnsetValue());
+                } else {
+                    riddle.setWritable(row, column, false);
+                }
+            }
+        }
+        return riddle;
+    }
+
+    @Test
+    public void testRecordSizes() {
+        assertEquals(13, new RecordCodec(GameSchemas.SCHEMA_4X4)
+                .getRecordSize());
+        assertEquals(48, new RecordCodec(GameSchemas.SCHEMA_9X9)
+                .getRecordSize());
+        assertEquals(167, new RecordCodec(GameSchemas.SCHEMA_16X16)
+                .getRecordSize());
+        assertEquals(398, new RecordCodec(GameSchemas.SCHEMA_25X25)
+                .getRecordSize());
+    }
+
+    @Test
+    public void testRoundTripOfAllSchemas() {
+        for (GameSchema schema : GameSchemas.getSupportedGameSchemas()) {
+            RecordCodec codec = new RecordCodec(schema);
+            Riddle riddle = newRiddle(schema);
+            ByteBuffer buffer = ByteBuffer.allocate(
+                    codec.getRecordSize() + 3);
+
+            int clues = codec.encode(riddle, Difficulty.HARD, buffer, 3);
+            assertEquals(riddle.getSetCount(), clues);
+            assertTrue(codec.isIntact(buffer, 3));
+            assertEquals(Difficulty.HARD, codec.getDifficulty(buffer, 3));
+            assertEquals(clues, codec.getClueCount(buffer, 3));
+
+            Riddle decoded = codec.decode(buffer, 3);
+            int width = schema.getWidth();
+            for (int row = 0; row < width; row++) {
+                for (int column = 0; column < width; column++) {
+                    assertEquals(riddle.get(row, column),
+                            decoded.get(row, column));
+                    assertEquals(riddle.getWritable(row, column),
+                            decoded.getWritable(row, column));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testWritableCellsAreNotStored() {
+        RecordCodec codec = new RecordCodec(GameSchemas.SCHEMA_9X9);
+        GameMatrix full = Creator.createFull(GameSchemas.SCHEMA_9X9);
+        Riddle riddle = Creator.createRiddle(full, Difficulty.EASY);
+        int givens = riddle.getSetCount();
+        // enter a value like a player would
+        int row = 0;
+        int column = 0;
+        while (!riddle.getWritable(row, column)) {
+            column++;
+        }
+        riddle.set(row, column, full.get(row, column));
+
+        ByteBuffer buffer = ByteBuffer.allocate(codec.getRecordSize());
+        assertEquals(givens, codec.encode(riddle, Difficulty.EASY,
+                buffer, 0));
+        Riddle decoded = codec.decode(buffer, 0);
+        assertEquals(GameSchemas.SCHEMA_9X9.getUnsetValue(),
+                decoded.get(row, column));
+        assertTrue(decoded.getWritable(row, column));
+    }
+
+    @Test
+    public void testDamageIsDetected() {
+        RecordCodec codec = new RecordCodec(GameSchemas.SCHEMA_9X9);
+        GameMatrix full = Creator.createFull(GameSchemas.SCHEMA_9X9);
+        Riddle riddle = Creator.createRiddle(full, Difficulty.EASY);
+        ByteBuffer buffer = ByteBuffer.allocate(codec.getRecordSize());
+        codec.encode(riddle, Difficulty.EASY, buffer, 0);
+        buffer.put(10, (byte) (buffer.get(10) ^ 1));
+        assertFalse(codec.isIntact(buffer, 0));
+    }
+}
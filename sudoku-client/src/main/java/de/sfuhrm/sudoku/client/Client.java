@@ -19,8 +19,11 @@ Boston, MA  02110-1301, USA.
 */
 package de.sfuhrm.sudoku.client;
 
+import de.sfuhrm.sudoku.BulkRater;
+import de.sfuhrm.sudoku.Canonicalizer;
 import de.sfuhrm.sudoku.Creator;
 import de.sfuhrm.sudoku.Difficulty;
+import de.sfuhrm.sudoku.DuplicateFilter;
 import de.sfuhrm.sudoku.GameMatrix;
 import de.sfuhrm.sudoku.GameMatrixFactory;
 import de.sfuhrm.sudoku.GameSchema;
@@ -33,9 +36,13 @@ import de.sfuhrm.sudoku.output.JsonArrayFormatter;
 import de.sfuhrm.sudoku.output.LatexTableFormatter;
 import de.sfuhrm.sudoku.output.MarkdownTableFormatter;
 import de.sfuhrm.sudoku.output.PlainTextFormatter;
+import java.io.BufferedReader;
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
 import java.lang.reflect.InvocationTargetException;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.List;
@@ -50,6 +57,10 @@ import org.kohsuke.args4j.Option;
  */
 public class Client {
 
+    /** The number of duplicates in a row after which creating
+     * unique outputs stops. */
+    private static final int MAX_DUPLICATES_IN_ROW = 1000;
+
     /** The number of outputs to create. */
     @Option(name = "-n",
             aliases = {"-count"},
@@ -65,7 +76,9 @@ public class Client {
         /** Create a riddle and the solution. */
         Both,
         /** Solve a Sudoku. */
-        Solve
+        Solve,
+        /** Rate the difficulty of riddles, one per input line. */
+        Rate
     }
 
     /** The possible formatters that can be used. */
@@ -157,6 +170,14 @@ public class Client {
                     + "4x4, 9x9, 16x16 and 25x25 sudokus supported.")
     private SchemaEnum schema = SchemaEnum.S9X9;
 
+    /** Drop duplicate outputs. */
+    @Option(name = "-u",
+            aliases = {"-unique"},
+            usage = "Drop duplicate outputs. For schemas up to 9x9, "
+                    + "outputs that are transformations of each other "
+                    + "count as duplicates.")
+    private boolean unique;
+
     /** Show this command line help. */
     @Option(name = "-h",
             aliases = {"-help"},
@@ -225,60 +246,103 @@ public class Client {
         }
     }
 
-    /**
-     * Runs the client with the parsed command line options.
-     * Performs the actions requested by the user.
-     * @throws IOException if some IO goes wrong.
+    /** Rates riddles read from the input file, one riddle per line.
+     * The ratings are written to stdout, the statistics to stderr.
+     * @throws IOException for errors related to file IO.
      */
-    private void run() throws IOException {
-        GameMatrixFormatter formatter = format.newInstance();
-        long start = System.currentTimeMillis();
+    private void rate() throws IOException {
+        if (input == null) {
+            throw new IllegalArgumentException(
+                    "Expecting input file for Rate");
+        }
+        BulkRater rater = new BulkRater(getSchema());
+        try (BufferedReader reader = Files.newBufferedReader(input)) {
+            Writer writer = quiet
+                    ? new NullWriter()
+                    : new OutputStreamWriter(System.out,
+                            StandardCharsets.UTF_8);
+            BulkRater.Statistics statistics = rater.rate(reader, writer);
+            System.err.print(statistics);
+        }
+    }
 
-        if (!quiet) {
-            System.out.print(formatter.documentStart());
+    /** Writer that discards everything. */
+    private static final class NullWriter extends Writer {
+        @Override
+        public void write(final char[] cbuf, final int off, final int len) {
         }
 
-        if (op == Op.Solve) {
-            solve(formatter);
+        @Override
+        public void flush() {
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    /** Creates a riddle for a full matrix as requested.
+     * @param matrix the full matrix to create the riddle from.
+     * @return the riddle.
+     */
+    private Riddle createRiddle(final GameMatrix matrix) {
+        if (difficulty != null) {
+            return Creator.createRiddle(matrix, difficulty);
+        } else if (maxNumbersToClear > 0) {
+            return Creator.createRiddle(matrix, maxNumbersToClear);
         } else {
-            for (int i = 0; i < count; i++) {
-                GameMatrix matrix;
-                Riddle riddle;
+            return Creator.createRiddle(matrix);
+        }
+    }
+
+    /** Creates and prints the requested number of outputs.
+     * With {@link #unique}, outputs whose riddle (or full matrix)
+     * was created before are dropped and created again.
+     * @param formatter the formatter to print the outputs with.
+     */
+    private void create(final GameMatrixFormatter formatter) {
+        DuplicateFilter filter = null;
+        Canonicalizer canonicalizer = null;
+        if (unique) {
+            filter = new DuplicateFilter(Math.max(1, count),
+                    DuplicateFilter.DEFAULT_FALSE_POSITIVE_RATE);
+            if (Canonicalizer.supports(getSchema())) {
+                canonicalizer = new Canonicalizer(getSchema());
+            }
+        }
+        int created = 0;
+        int duplicatesInRow = 0;
+        while (created < count) {
+            GameMatrix matrix = Creator.createFull(getSchema());
+            Riddle riddle = op == Op.Full ? null : createRiddle(matrix);
+            if (filter != null) {
+                GameMatrix key = riddle != null ? riddle : matrix;
+                boolean added = canonicalizer != null
+                        ? filter.add(canonicalizer.canonicalize(key))
+                        : filter.add(key);
+                if (!added) {
+                    if (++duplicatesInRow == MAX_DUPLICATES_IN_ROW) {
+                        System.err.printf("Stopping after %d duplicates "
+                                + "in a row, created %d%n",
+                                duplicatesInRow, created);
+                        break;
+                    }
+                    continue;
+                }
+                duplicatesInRow = 0;
+            }
+            created++;
+            if (!quiet) {
                 switch (op) {
                     case Full:
-                        matrix = Creator.createFull(getSchema());
-                        if (!quiet) {
-                            System.out.println(formatter.format(matrix));
-                        }
+                        System.out.println(formatter.format(matrix));
                         break;
                     case Riddle:
-                        matrix = Creator.createFull(getSchema());
-                        if (difficulty != null) {
-                            riddle = Creator.createRiddle(matrix, difficulty);
-                        } else if (maxNumbersToClear > 0) {
-                            riddle = Creator
-                                    .createRiddle(matrix, maxNumbersToClear);
-                        } else {
-                            riddle = Creator.createRiddle(matrix);
-                        }
-                        if (!quiet) {
-                            System.out.println(formatter.format(riddle));
-                        }
+                        System.out.println(formatter.format(riddle));
                         break;
                     case Both:
-                        matrix = Creator.createFull(getSchema());
-                        if (difficulty != null) {
-                            riddle = Creator.createRiddle(matrix, difficulty);
-                        } else if (maxNumbersToClear > 0) {
-                            riddle = Creator
-                                    .createRiddle(matrix, maxNumbersToClear);
-                        } else {
-                            riddle = Creator.createRiddle(matrix);
-                        }
-                        if (!quiet) {
-                            System.out.println(formatter.format(matrix));
-                            System.out.println(formatter.format(riddle));
-                        }
+                        System.out.println(formatter.format(matrix));
+                        System.out.println(formatter.format(riddle));
                         break;
                     default:
                         throw new IllegalStateException("Unhandled case "
@@ -286,6 +350,31 @@ public class Client {
                 }
             }
         }
+        if (filter != null && timing) {
+            System.err.println(filter.getStatistics());
+        }
+    }
+
+    /**
+     * Runs the client with the parsed command line options.
+     * Performs the actions requested by the user.
+     * @throws IOException if some IO goes wrong.
+     */
+    private void run() throws IOException {
+        GameMatrixFormatter formatter = format.newInstance();
+        long start = System.currentTimeMillis();
+
+        if (!quiet) {
+            System.out.print(formatter.documentStart());
+        }
+
+        if (op == Op.Solve) {
+            solve(formatter);
+        } else if (op == Op.Rate) {
+            rate();
+        } else {
+            create(formatter);
+        }
         long end = System.currentTimeMillis();
         if (!quiet) {
             System.out.print(formatter.documentEnd());
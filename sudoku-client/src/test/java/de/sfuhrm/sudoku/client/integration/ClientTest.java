@@ -110,4 +110,20 @@ public class ClientTest {
         ));
         assertEquals(expected, actual);
     }
+
+    @Test
+    public void testMainWithRate() throws CmdLineException, IOException {
+        ByteArrayOutputStream arrayOutputStream = new ByteArrayOutputStream();
+        Path tmpFile = Files.createTempFile("sudoku", ".txt");
+        Files.write(tmpFile, Arrays.asList(
+                "__4_3_8_6__1______5___2__4_______92______65_3____73___"
+                + "___612__79______1__6_5_____"));
+        System.setOut(new PrintStream(arrayOutputStream));
+        Client.main(new String[] {"-e", "Rate", "-i", tmpFile.toAbsolutePath().toString()});
+
+        String output = arrayOutputStream.toString("UTF-8").trim();
+        String[] columns = output.split("\t");
+        assertEquals(4, columns.length);
+        assertTrue(columns[3].contains("NAKED_SINGLE="));
+    }
 }
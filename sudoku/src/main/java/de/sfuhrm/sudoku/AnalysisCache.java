@@ -0,0 +1,159 @@
+/*
+Sudoku - a fast Java Sudoku game creation library.
+Copyright (C) 2017-2018  Stephan Fuhrmann
+
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Library General Public
+License as published by the Free Software Foundation; either
+version 2 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+Library General Public License for more details.
+
+You should have received a copy of the GNU Library General Public
+License along with this library; if not, write to the
+Free Software Foundation, Inc., 51 Franklin St, Fifth Floor,
+Boston, MA  02110-1301, USA.
+*/
+package de.sfuhrm.sudoku;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * A least recently used cache of riddle analyses keyed by the
+ * cell contents of the analyzed grid.
+ * Grids with equal schema and cells share one analysis, no matter
+ * which {@link GameMatrix} instance holds them.
+ * Instances are thread safe.
+ * @author Stephan Fuhrmann
+ */
+final class AnalysisCache {
+
+    /** The load factor of the map. */
+    private static final float LOAD_FACTOR = 0.75f;
+
+    /** The maximum number of cached analyses. */
+    private final int capacity;
+
+    /** The cached analyses in access order. */
+    private final Map<GridKey, RiddleAnalysis> map;
+
+    /**
+     * Creates an empty cache.
+     * @param inCapacity the maximum number of cached analyses.
+     * @throws IllegalArgumentException if the capacity is not positive.
+     */
+    AnalysisCache(final int inCapacity) {
+        if (inCapacity <= 0) {
+            throw new IllegalArgumentException(
+                    "capacity must be positive: " + inCapacity);
+        }
+        this.capacity = inCapacity;
+        this.map = new LinkedHashMap<GridKey, RiddleAnalysis>(
+                inCapacity, LOAD_FACTOR, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(
+                    final Map.Entry<GridKey, RiddleAnalysis> eldest) {
+                return size() > capacity;
+            }
+        };
+    }
+
+    /**
+     * Gets the analysis of a grid, analyzing it on a cache miss.
+     * The analysis runs outside of the lock, so concurrent misses
+     * on the same grid may analyze it twice.
+     * @param matrix the grid to get the analysis for.
+     * @param analyzer the function analyzing the grid on a miss.
+     * @return the cached or new analysis.
+     */
+    RiddleAnalysis get(final GameMatrix matrix,
+            final Function<GameMatrix, RiddleAnalysis> analyzer) {
+        GridKey key = new GridKey(matrix);
+        RiddleAnalysis result;
+        synchronized (map) {
+            result = map.get(key);
+        }
+        if (result == null) {
+            result = analyzer.apply(matrix);
+            synchronized (map) {
+                map.put(key, result);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Stores the analysis of a grid.
+     * @param matrix the analyzed grid.
+     * @param analysis the analysis of the grid.
+     */
+    void put(final GameMatrix matrix, final RiddleAnalysis analysis) {
+        GridKey key = new GridKey(matrix);
+        synchronized (map) {
+            map.put(key, analysis);
+        }
+    }
+
+    /**
+     * Get the number of cached analyses.
+     * @return the number of entries.
+     */
+    int size() {
+        synchronized (map) {
+            return map.size();
+        }
+    }
+
+    /** The schema and the cells of a grid as row-major copy. */
+    private static final class GridKey {
+        /** The schema of the grid. */
+        private final GameSchema schema;
+        /** The cells of the grid in row-major order. */
+        private final byte[] cells;
+        /** The content hash of the grid. */
+        private final long hash;
+
+        /**
+         * Creates the key of a grid.
+         * @param matrix the grid to copy the cells from.
+         */
+        GridKey(final GameMatrix matrix) {
+            schema = matrix.getSchema();
+            int width = schema.getWidth();
+            cells = new byte[schema.getTotalFields()];
+            for (int row = 0; row < width; row++) {
+                for (int column = 0; column < width; column++) {
+                    cells[row * width + column] = matrix.get(row, column);
+                }
+            }
+            hash = matrix.getContentHash();
+        }
+
+        @Override
+        public int hashCode() {
+            return Long.hashCode(hash);
+        }
+
+        @Override
+        public boolean equals(final Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof GridKey)) {
+                return false;
+            }
+            GridKey other = (GridKey) o;
+            return hash == other.hash
+                    && schema.equals(other.schema)
+                    && Arrays.equals(cells, other.cells);
+        }
+    }
+}
@@ -0,0 +1,489 @@
+/*
+Sudoku - a fast Java Sudoku game creation library.
+Copyright (C) 2017-2018  Stephan Fuhrmann
+
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Library General Public
+License as published by the Free Software Foundation; either
+version 2 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+Library General Public License for more details.
+
+You should have received a copy of the GNU Library General Public
+License along with this library; if not, write to the
+Free Software Foundation, Inc., 51 Franklin St, Fifth Floor,
+Boston, MA  02110-1301, USA.
+*/
+package de.sfuhrm.sudoku;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Rates the difficulty of many riddles on all cores.
+ * The riddles are read from a text stream with one riddle per line.
+ * A line contains the cells in row-major order, either as one
+ * character per cell like {@code 4.3..8.6...} or as numbers separated
+ * by spaces. Empty cells are written as {@code 0}, {@code _} or
+ * {@code .}. Empty lines and lines starting with {@code #} are skipped.
+ * <p>
+ * For each riddle one line is written with tab separated columns:
+ * the input line, the difficulty, the points and a histogram of the
+ * techniques needed, for example
+ * {@code NAKED_SINGLE=41,HIDDEN_SINGLE=9,NAKED_PAIR=1}.
+ * Lines that are no valid riddle get the difficulty {@code INVALID}.
+ * This includes riddles that have no duplicate values, but no solution.
+ * The output has the order of the input.
+ * <p>
+ * Each thread keeps its own analyzer state, so rating a riddle does
+ * not allocate candidate tables.
+ * @author Stephan Fuhrmann
+ */
+public final class BulkRater {
+
+    /** The number of riddles read before rating them in parallel. */
+    public static final int DEFAULT_BATCH_SIZE = 4096;
+
+    /** The output column separator. */
+    private static final char SEPARATOR = '\t';
+
+    /** The base of the cell numbers. */
+    private static final int DECIMAL = 10;
+
+    /** The difficulty column of invalid lines. */
+    private static final String INVALID = "INVALID";
+
+    /** The schema of the riddles. */
+    private final GameSchema schema;
+
+    /** The number of threads to rate with. */
+    private final int threads;
+
+    /** The number of riddles read before rating them in parallel. */
+    private final int batchSize;
+
+    /**
+     * Creates a rater using all available processors.
+     * @param inSchema the schema of the riddles to rate.
+     */
+    public BulkRater(final GameSchema inSchema) {
+        this(inSchema, Runtime.getRuntime().availableProcessors(),
+                DEFAULT_BATCH_SIZE);
+    }
+
+    /**
+     * Creates a rater.
+     * @param inSchema the schema of the riddles to rate.
+     * @param inThreads the number of threads to rate with.
+     * @param inBatchSize the number of riddles read before rating them
+     *                    in parallel. Bounds the memory used.
+     * @throws IllegalArgumentException if threads or batch size are
+     * not positive.
+     */
+    public BulkRater(final GameSchema inSchema,
+            final int inThreads,
+            final int inBatchSize) {
+        if (inSchema == null) {
+            throw new NullPointerException("inSchema is null");
+        }
+        if (inThreads < 1) {
+            throw new IllegalArgumentException(
+                    "Threads must be positive: " + inThreads);
+        }
+        if (inBatchSize < 1) {
+            throw new IllegalArgumentException(
+                    "Batch size must be positive: " + inBatchSize);
+        }
+        this.schema = inSchema;
+        this.threads = inThreads;
+        this.batchSize = inBatchSize;
+    }
+
+    /**
+     * Rates all riddles of a stream.
+     * @param in the stream to read the riddles from.
+     * @param out the stream to write the ratings to.
+     * @return the statistics of the run.
+     * @throws IOException if reading or writing fails,
+     * or the thread is interrupted.
+     */
+    public Statistics rate(final BufferedReader in, final Writer out)
+            throws IOException {
+        long start = System.nanoTime();
+        Worker[] workers = new Worker[threads];
+        for (int i = 0; i < threads; i++) {
+            workers[i] = new Worker(schema);
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<String> batch = new ArrayList<>(batchSize);
+            String[] results = new String[batchSize];
+            String line = in.readLine();
+            while (line != null) {
+                String trimmed = line.trim();
+                if (!trimmed.isEmpty() && trimmed.charAt(0) != '#') {
+                    batch.add(trimmed);
+                    if (batch.size() == batchSize) {
+                        rateBatch(executor, workers, batch, results, out);
+                    }
+                }
+                line = in.readLine();
+            }
+            rateBatch(executor, workers, batch, results, out);
+            out.flush();
+        } finally {
+            executor.shutdownNow();
+        }
+        return new Statistics(workers, System.nanoTime() - start);
+    }
+
+    /**
+     * Rates a batch in parallel and writes the results in order.
+     * @param executor the executor to run the workers in.
+     * @param workers the workers, one per thread.
+     * @param batch the riddle lines, is cleared afterwards.
+     * @param results scratch array for the result lines.
+     * @param out the stream to write the ratings to.
+     * @throws IOException if writing fails or the thread is interrupted.
+     */
+    private void rateBatch(final ExecutorService executor,
+            final Worker[] workers,
+            final List<String> batch,
+            final String[] results,
+            final Writer out) throws IOException {
+        final int size = batch.size();
+        final int slice = (size + workers.length - 1) / workers.length;
+        List<Future<?>> futures = new ArrayList<>(workers.length);
+        for (int i = 0; i < workers.length && i * slice < size; i++) {
+            final Worker worker = workers[i];
+            final int from = i * slice;
+            final int to = Math.min(size, from + slice);
+            futures.add(executor.submit(() -> {
+                for (int j = from; j < to; j++) {
+                    results[j] = worker.rate(batch.get(j));
+                }
+            }));
+        }
+        try {
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while rating");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IOException(e.getCause());
+        }
+        for (int i = 0; i < size; i++) {
+            out.write(results[i]);
+            out.write(System.lineSeparator());
+            results[i] = null;
+        }
+        batch.clear();
+    }
+
+    /**
+     * The reusable rating state of one thread.
+     */
+    private static final class Worker {
+        /** The schema of the riddles. */
+        private final GameSchema schema;
+        /** The analyzer state. */
+        private final Eliminator eliminator;
+        /** The riddle being rated. */
+        private final GameMatrixImpl matrix;
+        /** Nanoseconds per technique ordinal. */
+        private final long[] techniqueNanos;
+        /** Steps per technique ordinal. */
+        private final long[] techniqueCounts;
+        /** Riddles per difficulty ordinal. */
+        private final long[] difficultyCounts;
+        /** Steps per technique ordinal of the current riddle. */
+        private final int[] histogram;
+        /** The number of invalid lines. */
+        private long invalidCount;
+
+        /**
+         * Constructor.
+         * @param inSchema the schema of the riddles.
+         */
+        Worker(final GameSchema inSchema) {
+            schema = inSchema;
+            eliminator = new Eliminator(new CandidateGrid(inSchema));
+            matrix = new GameMatrixImpl(inSchema);
+            techniqueNanos = new long[SolveTechnique.values().length];
+            techniqueCounts = new long[SolveTechnique.values().length];
+            difficultyCounts = new long[Difficulty.values().length];
+            histogram = new int[SolveTechnique.values().length];
+        }
+
+        /**
+         * Rates one riddle.
+         * @param line the riddle line.
+         * @return the output line.
+         */
+        String rate(final String line) {
+            StringBuilder result = new StringBuilder(line.length() * 2);
+            result.append(line).append(SEPARATOR);
+            if (!parse(line)) {
+                invalidCount++;
+                return result.append(INVALID).toString();
+            }
+            RiddleAnalysis analysis = RiddleAnalyzer.analyze(matrix,
+                    eliminator, techniqueNanos);
+            if (!isSolved(analysis)) {
+                invalidCount++;
+                return result.append(INVALID).toString();
+            }
+            difficultyCounts[analysis.getClassifiedDifficulty().ordinal()]++;
+            SolvePath path = analysis.getSolvePath();
+            for (int i = 0; i < path.size(); i++) {
+                histogram[path.getTechnique(i).ordinal()]++;
+            }
+            result.append(analysis.getClassifiedDifficulty())
+                    .append(SEPARATOR)
+                    .append(analysis.getScore().getPoints())
+                    .append(SEPARATOR);
+            boolean first = true;
+            for (SolveTechnique technique : SolveTechnique.values()) {
+                int count = histogram[technique.ordinal()];
+                if (count != 0) {
+                    if (!first) {
+                        result.append(',');
+                    }
+                    result.append(technique).append('=').append(count);
+                    techniqueCounts[technique.ordinal()] += count;
+                    histogram[technique.ordinal()] = 0;
+                    first = false;
+                }
+            }
+            return result.toString();
+        }
+
+        /**
+         * Tells whether the analysis found a solution. The analyzer
+         * falls back to a solver run when its techniques get stuck and
+         * records a backtracking step only if that run found a solution.
+         * @param analysis the analysis of {@link #matrix}.
+         * @return {@code true} if the riddle can be solved.
+         */
+        private boolean isSolved(final RiddleAnalysis analysis) {
+            if (eliminator.getGrid().getSetCount()
+                    == schema.getTotalFields()) {
+                return true;
+            }
+            SolvePath path = analysis.getSolvePath();
+            return path.size() != 0
+                    && path.getTechnique(path.size() - 1)
+                        == SolveTechnique.BACKTRACKING;
+        }
+
+        /**
+         * Parses a riddle line into {@link #matrix}.
+         * @param line the riddle line.
+         * @return {@code true} if the line is a riddle without
+         * duplicate values.
+         */
+        private boolean parse(final String line) {
+            final int width = schema.getWidth();
+            final int totalFields = schema.getTotalFields();
+            String[] parts = null;
+            if (line.length() != totalFields) {
+                parts = line.split(" +");
+                if (parts.length != totalFields) {
+                    return false;
+                }
+            }
+            for (int i = 0; i < totalFields; i++) {
+                byte value = parts != null
+                        ? parseNumber(parts[i], 0, parts[i].length())
+                        : parseNumber(line, i, i + 1);
+                if (!schema.validValue(value)) {
+                    return false;
+                }
+                matrix.set(i / width, i % width, value);
+            }
+            return matrix.isValid();
+        }
+
+        /**
+         * Parses the number of one cell.
+         * @param text the text containing the cell.
+         * @param from the index of the first character of the cell.
+         * @param to the index after the last character of the cell.
+         * @return the value, the unset value for the placeholders
+         * {@code 0}, {@code _} and {@code .}, or -1 if the text is
+         * no number or the number is too big.
+         */
+        private byte parseNumber(final String text, final int from,
+                final int to) {
+            if (to - from == 1) {
+                char c = text.charAt(from);
+                if (c == '_' || c == '.') {
+                    return schema.getUnsetValue();
+                }
+            }
+            int value = 0;
+            for (int i = from; i < to; i++) {
+                char c = text.charAt(i);
+                if (c < '0' || c > '9') {
+                    return -1;
+                }
+                value = value * DECIMAL + c - '0';
+                if (value > schema.getMaximumValue()) {
+                    return -1;
+                }
+            }
+            return value == 0 ? schema.getUnsetValue() : (byte) value;
+        }
+    }
+
+    /**
+     * Statistics of a bulk rating run.
+     */
+    public static final class Statistics {
+        /** Nanoseconds per second. */
+        private static final double NANOS_PER_SECOND = 1e9;
+        /** Nanoseconds per millisecond. */
+        private static final double NANOS_PER_MILLI = 1e6;
+
+        /** The number of rated riddles. */
+        private final long riddleCount;
+        /** The number of invalid lines. */
+        private final long invalidCount;
+        /** The wall clock time of the run. */
+        private final long elapsedNanos;
+        /** Nanoseconds per technique ordinal, summed over threads. */
+        private final long[] techniqueNanos;
+        /** Steps per technique ordinal. */
+        private final long[] techniqueCounts;
+        /** Riddles per difficulty ordinal. */
+        private final long[] difficultyCounts;
+
+        /**
+         * Merges the counters of the workers.
+         * @param workers the workers of the run.
+         * @param elapsed the wall clock time of the run.
+         */
+        private Statistics(final Worker[] workers, final long elapsed) {
+            techniqueNanos = new long[SolveTechnique.values().length];
+            techniqueCounts = new long[SolveTechnique.values().length];
+            difficultyCounts = new long[Difficulty.values().length];
+            long riddles = 0;
+            long invalid = 0;
+            for (Worker worker : workers) {
+                for (int i = 0; i < techniqueNanos.length; i++) {
+                    techniqueNanos[i] += worker.techniqueNanos[i];
+                    techniqueCounts[i] += worker.techniqueCounts[i];
+                }
+                for (int i = 0; i < difficultyCounts.length; i++) {
+                    difficultyCounts[i] += worker.difficultyCounts[i];
+                    riddles += worker.difficultyCounts[i];
+                }
+                invalid += worker.invalidCount;
+            }
+            this.riddleCount = riddles;
+            this.invalidCount = invalid;
+            this.elapsedNanos = elapsed;
+        }
+
+        /**
+         * Get the number of rated riddles.
+         * @return the number of valid riddles.
+         */
+        public long getRiddleCount() {
+            return riddleCount;
+        }
+
+        /**
+         * Get the number of lines that were no valid riddle.
+         * @return the number of invalid lines.
+         */
+        public long getInvalidCount() {
+            return invalidCount;
+        }
+
+        /**
+         * Get the wall clock time of the run.
+         * @return the elapsed nanoseconds.
+         */
+        public long getElapsedNanos() {
+            return elapsedNanos;
+        }
+
+        /**
+         * Get the throughput of the run.
+         * @return the rated riddles per second.
+         */
+        public double getRiddlesPerSecond() {
+            return elapsedNanos == 0 ? 0
+                    : riddleCount * NANOS_PER_SECOND / elapsedNanos;
+        }
+
+        /**
+         * Get the number of riddles rated with a difficulty.
+         * @param difficulty the difficulty.
+         * @return the number of riddles.
+         */
+        public long getDifficultyCount(final Difficulty difficulty) {
+            return difficultyCounts[difficulty.ordinal()];
+        }
+
+        /**
+         * Get the number of steps done with a technique.
+         * @param technique the technique.
+         * @return the number of steps over all riddles.
+         */
+        public long getTechniqueCount(final SolveTechnique technique) {
+            return techniqueCounts[technique.ordinal()];
+        }
+
+        /**
+         * Get the time spent with a technique, summed over all threads.
+         * Searches for eliminations that found nothing count for
+         * {@link SolveTechnique#BACKTRACKING}.
+         * @param technique the technique.
+         * @return the nanoseconds spent.
+         */
+        public long getTechniqueNanos(final SolveTechnique technique) {
+            return techniqueNanos[technique.ordinal()];
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder sb = new StringBuilder();
+            String nl = System.lineSeparator();
+            sb.append(String.format(Locale.ROOT,
+                    "%d riddles, %d invalid, %.1f ms, %.1f riddles/s%n",
+                    riddleCount, invalidCount,
+                    elapsedNanos / NANOS_PER_MILLI,
+                    getRiddlesPerSecond()));
+            for (Difficulty difficulty : Difficulty.values()) {
+                sb.append(difficulty).append(": ")
+                        .append(getDifficultyCount(difficulty)).append(nl);
+            }
+            for (SolveTechnique technique : SolveTechnique.values()) {
+                sb.append(String.format(Locale.ROOT,
+                        "%s: %d steps, %.1f ms%n",
+                        technique, getTechniqueCount(technique),
+                        getTechniqueNanos(technique) / NANOS_PER_MILLI));
+            }
+            return sb.toString();
+        }
+    }
+}
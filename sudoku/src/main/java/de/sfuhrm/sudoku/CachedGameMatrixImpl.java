@@ -26,10 +26,22 @@ import java.util.Arrays;
  * Note that this class expects that no illegal moves are performed.
  * This class is for calculations of a computer, not for playing with
  * a human being.
+ * The block of a cell is looked up in the shared {@link SchemaTables}
+ * of the schema, so the hot methods need no division by the
+ * block width.
  * @author Stephan Fuhrmann
  */
 class CachedGameMatrixImpl extends GameMatrixImpl {
 
+    /** The shared lookup tables of the schema. */
+    private final SchemaTables tables;
+
+    /** The edge dimension of the schema. */
+    private final int width;
+
+    /** The value of unset cells. */
+    private final byte unset;
+
     /** Buffered free masks per row.
      * A set 1-bit means that the digit 1 is free for use.
      * A set 2-bit means that the digit 2 is free for use.
@@ -42,28 +54,26 @@ class CachedGameMatrixImpl extends GameMatrixImpl {
      */
     private final int[] columnFree;
 
-    /** Buffered free masks per block.
+    /** Buffered free masks per block in row-major block order.
      * @see #rowFree
      */
-    private final int[][] blockFree;
+    private final int[] blockFree;
 
     /** The count of non-{@link GameSchema#getUnsetValue() unset} cells.
      * @see #getSetCount()
      */
     private int setCount;
 
-    /** Row index for each currently unset cell. */
-    private final int[] freeCellRows;
-
-    /** Column index for each currently unset cell. */
-    private final int[] freeCellColumns;
+    /** Row-major cell index for each currently unset cell. */
+    private final int[] freeCells;
 
-    /** Position lookup of a cell in {@link #freeCellRows} / freeCellColumns.
+    /** Position lookup of a cell in {@link #freeCells}
+     * by row-major cell index.
      * A value of -1 means the cell is currently set.
      */
-    private final int[][] freeCellIndex;
+    private final int[] freeCellIndex;
 
-    /** Number of entries used in freeCellRows/freeCellColumns. */
+    /** Number of entries used in freeCells. */
     private int freeCellCount;
 
     /**
@@ -72,38 +82,26 @@ class CachedGameMatrixImpl extends GameMatrixImpl {
      */
     CachedGameMatrixImpl(final GameSchema schema) {
         super(schema);
-        final int blockCount = schema.getBlockCount();
-        final int width = schema.getWidth();
         final int totalFields = schema.getTotalFields();
+        tables = SchemaTables.of(schema);
+        width = schema.getWidth();
+        unset = schema.getUnsetValue();
 
-        blockFree = new int[blockCount][blockCount];
+        blockFree = new int[width];
         rowFree = new int[width];
         columnFree = new int[width];
-        freeCellRows = new int[totalFields];
-        freeCellColumns = new int[totalFields];
-        freeCellIndex = new int[width][width];
+        freeCells = new int[totalFields];
+        freeCellIndex = new int[totalFields];
 
-        for (int i = 0; i < width; i++) {
-            rowFree[i] = schema.getBitMask();
-            columnFree[i] = schema.getBitMask();
-        }
+        Arrays.fill(rowFree, schema.getBitMask());
+        Arrays.fill(columnFree, schema.getBitMask());
+        Arrays.fill(blockFree, schema.getBitMask());
 
-        for (int i = 0; i < blockCount; i++) {
-            for (int j = 0; j < blockCount; j++) {
-                blockFree[i][j] = schema.getBitMask();
-            }
+        for (int cell = 0; cell < totalFields; cell++) {
+            freeCells[cell] = cell;
+            freeCellIndex[cell] = cell;
         }
-
-        int freeIndex = 0;
-        for (int row = 0; row < width; row++) {
-            for (int column = 0; column < width; column++) {
-                freeCellRows[freeIndex] = row;
-                freeCellColumns[freeIndex] = column;
-                freeCellIndex[row][column] = freeIndex;
-                freeIndex++;
-            }
-        }
-        freeCellCount = freeIndex;
+        freeCellCount = totalFields;
     }
 
     /**
@@ -112,39 +110,35 @@ class CachedGameMatrixImpl extends GameMatrixImpl {
      */
     CachedGameMatrixImpl(final CachedGameMatrixImpl source) {
         super(source);
-
-        blockFree = QuadraticArrays.cloneArray(source.blockFree);
-        columnFree = Arrays.copyOf(source.columnFree, source.columnFree.length);
-        rowFree = Arrays.copyOf(source.rowFree, source.rowFree.length);
-        freeCellRows = Arrays.copyOf(source.freeCellRows,
-                source.freeCellRows.length);
-        freeCellColumns = Arrays.copyOf(source.freeCellColumns,
-                source.freeCellColumns.length);
-        freeCellIndex = QuadraticArrays.cloneArray(source.freeCellIndex);
+        tables = source.tables;
+        width = source.width;
+        unset = source.unset;
+
+        blockFree = source.blockFree.clone();
+        columnFree = source.columnFree.clone();
+        rowFree = source.rowFree.clone();
+        freeCells = source.freeCells.clone();
+        freeCellIndex = source.freeCellIndex.clone();
         setCount = source.setCount;
         freeCellCount = source.freeCellCount;
     }
 
     @Override
-    FreeCellResult findLeastFreeCell(final CellIndex rowColumnResult) {
+    int findLeastFreeCellIndex() {
         if (freeCellCount == 0) {
-            return FreeCellResult.NONE_FREE;
+            return NO_FREE_CELL;
         }
 
         int minimumBits = Integer.MAX_VALUE;
-        int minimumRow = -1;
-        int minimumColumn = -1;
-        final int width = getSchema().getWidth();
-        final int blockWidth = getSchema().getBlockWidth();
+        int minimumCell = NO_FREE_CELL;
 
         for (int i = 0; i < freeCellCount; i++) {
-            int row = freeCellRows[i];
-            int column = freeCellColumns[i];
-            int free = rowFree[row]
-                    & columnFree[column]
-                    & blockFree[row / blockWidth][column / blockWidth];
+            int cell = freeCells[i];
+            int free = rowFree[tables.row(cell)]
+                    & columnFree[tables.column(cell)]
+                    & blockFree[tables.block(cell)];
             if (free == 0) {
-                return FreeCellResult.CONTRADICTION;
+                return CONTRADICTING_CELL;
             }
 
             int bits = Integer.bitCount(free);
@@ -152,58 +146,47 @@ class CachedGameMatrixImpl extends GameMatrixImpl {
 
             if (bits < minimumBits) {
                 minimumBits = bits;
-                minimumRow = row;
-                minimumColumn = column;
+                minimumCell = cell;
                 if (minimumBits == 1) {
                     break;
                 }
             }
         }
-
-        rowColumnResult.row = minimumRow;
-        rowColumnResult.column = minimumColumn;
-        return FreeCellResult.FOUND;
+        return minimumCell;
     }
 
     /** Remove an unset cell from the compact free-cell list.
-     * @param row the row of the cell.
-     * @param column the column of the cell.
+     * @param cell the row-major index of the cell.
     */
-    private void removeFreeCell(final int row, final int column) {
-        int index = freeCellIndex[row][column];
+    private void removeFreeCell(final int cell) {
+        int index = freeCellIndex[cell];
         assert index >= 0 && index < freeCellCount;
 
         int lastIndex = freeCellCount - 1;
         if (index != lastIndex) {
-            int movedRow = freeCellRows[lastIndex];
-            int movedColumn = freeCellColumns[lastIndex];
-            freeCellRows[index] = movedRow;
-            freeCellColumns[index] = movedColumn;
-            freeCellIndex[movedRow][movedColumn] = index;
+            int moved = freeCells[lastIndex];
+            freeCells[index] = moved;
+            freeCellIndex[moved] = index;
         }
 
-        freeCellIndex[row][column] = -1;
+        freeCellIndex[cell] = -1;
         freeCellCount--;
     }
 
     /** Add a newly unset cell to the compact free-cell list.
-     * @param row the row of the cell.
-     * @param column the column of the cell.
-     *
+     * @param cell the row-major index of the cell.
     */
-    private void addFreeCell(final int row, final int column) {
-        assert freeCellIndex[row][column] == -1;
+    private void addFreeCell(final int cell) {
+        assert freeCellIndex[cell] == -1;
 
-        freeCellRows[freeCellCount] = row;
-        freeCellColumns[freeCellCount] = column;
-        freeCellIndex[row][column] = freeCellCount;
+        freeCells[freeCellCount] = cell;
+        freeCellIndex[cell] = freeCellCount;
         freeCellCount++;
     }
 
     @Override
     int getBlockFreeMask(final int row, final int column) {
-        final int blockWidth = getSchema().getBlockWidth();
-        return blockFree[row / blockWidth][column / blockWidth];
+        return blockFree[tables.block(row * width + column)];
     }
 
     @Override
@@ -218,27 +201,58 @@ class CachedGameMatrixImpl extends GameMatrixImpl {
 
     @Override
     int getFreeMask(final int row, final int column) {
-        final int blockWidth = getSchema().getBlockWidth();
         return rowFree[row]
                 & columnFree[column]
-                & blockFree[row / blockWidth][column / blockWidth];
+                & blockFree[tables.block(row * width + column)];
+    }
+
+    /** Gets the free mask of a cell by its row-major index.
+     * @param cell the row-major index of the cell.
+     * @return bit mask with the bit 1 telling whether the number 1 is free,
+     * the bit 2 telling whether the number 2 is free, and so on.
+     * @see #getFreeMask(int, int)
+     */
+    final int getCellFreeMask(final int cell) {
+        return rowFree[tables.row(cell)]
+                & columnFree[tables.column(cell)]
+                & blockFree[tables.block(cell)];
+    }
+
+    /** Sets the value of a cell by its row-major index.
+     * @param cell the row-major index of the cell.
+     * @param value the value of the cell.
+     * @see #set(int, int, byte)
+     */
+    final void setCell(final int cell, final byte value) {
+        update(tables.row(cell), tables.column(cell), cell, value);
     }
 
     @Override
     public void set(final int row, final int column, final byte value) {
-        GameSchema schema = getSchema();
-        assert schema.validValue(value);
+        update(row, column, row * width + column, value);
+    }
+
+    /** Sets the value of a cell and updates the free masks.
+     * @param row the row of the cell.
+     * @param column the column of the cell.
+     * @param cell the row-major index of the cell.
+     * @param value the value of the cell.
+     */
+    private void update(final int row,
+            final int column,
+            final int cell,
+            final byte value) {
+        assert getSchema().validValue(value);
         byte oldValue = super.get(row, column);
-        assert schema.validValue(oldValue);
+        assert getSchema().validValue(oldValue);
 
-        final byte unset = schema.getUnsetValue();
-        final int blockWidth = schema.getBlockWidth();
+        final int block = tables.block(cell);
 
         if (oldValue != unset) {
             int bitMask = 1 << oldValue;
             rowFree[row] |= bitMask;
             columnFree[column] |= bitMask;
-            blockFree[row / blockWidth][column / blockWidth] |= bitMask;
+            blockFree[block] |= bitMask;
             setCount--;
             assert setCount >= 0;
         }
@@ -250,15 +264,15 @@ class CachedGameMatrixImpl extends GameMatrixImpl {
             int bitMask = ~(1 << value);
             rowFree[row] &= bitMask;
             columnFree[column] &= bitMask;
-            blockFree[row / blockWidth][column / blockWidth] &= bitMask;
+            blockFree[block] &= bitMask;
             setCount++;
             assert setCount <= getSchema().getTotalFields();
         }
 
         if (oldValue == unset && value != unset) {
-            removeFreeCell(row, column);
+            removeFreeCell(cell);
         } else if (oldValue != unset && value == unset) {
-            addFreeCell(row, column);
+            addFreeCell(cell);
         }
         assert freeCellCount == getSchema().getTotalFields() - setCount;
 
@@ -266,10 +280,8 @@ class CachedGameMatrixImpl extends GameMatrixImpl {
                 : "Row free mask is invalid: " + rowFree[row];
         assert getSchema().validBitMask(columnFree[column]) // NOSONAR
                 : "Column free mask is invalid: " + columnFree[column];
-        assert getSchema().validBitMask(// NOSONAR
-                blockFree[row / blockWidth][column / blockWidth])
-                : "Block free mask is invalid: "
-                    + blockFree[row / blockWidth][column / blockWidth];
+        assert getSchema().validBitMask(blockFree[block]) // NOSONAR
+                : "Block free mask is invalid: " + blockFree[block];
         super.set(row, column, value);
     }
 
@@ -0,0 +1,402 @@
+/*
+Sudoku - a fast Java Sudoku game creation library.
+Copyright (C) 2017-2018  Stephan Fuhrmann
+
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Library General Public
+License as published by the Free Software Foundation; either
+version 2 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+Library General Public License for more details.
+
+You should have received a copy of the GNU Library General Public
+License along with this library; if not, write to the
+Free Software Foundation, Inc., 51 Franklin St, Fifth Floor,
+Boston, MA  02110-1301, USA.
+*/
+package de.sfuhrm.sudoku;
+
+import java.util.Arrays;
+
+/**
+ * Candidate bookkeeping for logical solving.
+ * Keeps the candidate mask per cell and the position mask per unit
+ * and digit. Both are updated incrementally when a digit is placed
+ * or a candidate is eliminated, so each step costs in the order of
+ * the number of peers of a cell.
+ * Cells that are reduced to one candidate and units that changed
+ * are queued, so singles are found without scanning the grid.
+ * Instances can be {@link #reset(GameMatrix) reset} and reused.
+ * @author Stephan Fuhrmann
+ */
+final class CandidateGrid {
+
+    /** Return value for no single found. */
+    static final int NONE = -1;
+
+    /** The schema of the grid. */
+    private final GameSchema schema;
+
+    /** The lookup tables of the schema. */
+    private final SchemaTables tables;
+
+    /** The cell values in row-major order. */
+    private final byte[] cells;
+
+    /** The candidate mask per cell. Zero for set cells. */
+    private final int[] candidates;
+
+    /** The position mask per unit and digit.
+     * Bit {@code p} of {@code positions[unit * digits + digit]} is set
+     * if the cell at position {@code p} of the unit has the digit
+     * as a candidate.
+     */
+    private final int[] positions;
+
+    /** The mask of digits already placed per unit. */
+    private final int[] placed;
+
+    /** The size of the digit dimension of {@link #positions}. */
+    private final int digits;
+
+    /** The number of set cells. */
+    private int setCount;
+
+    /** Stack of cells that were reduced to one candidate.
+     * Entries can be stale and are checked when taken.
+     */
+    private final int[] nakedStack;
+
+    /** Whether a cell is in {@link #nakedStack}. */
+    private final boolean[] nakedQueued;
+
+    /** Number of entries in {@link #nakedStack}. */
+    private int nakedSize;
+
+    /** Ring buffer of units whose position masks changed. */
+    private final int[] unitQueue;
+
+    /** Whether a unit is in {@link #unitQueue}. */
+    private final boolean[] unitQueued;
+
+    /** Index of the first entry in {@link #unitQueue}. */
+    private int unitHead;
+
+    /** Number of entries in {@link #unitQueue}. */
+    private int unitSize;
+
+    /**
+     * Creates an empty grid.
+     * @param inSchema the schema of the grid.
+     */
+    CandidateGrid(final GameSchema inSchema) {
+        this.schema = inSchema;
+        this.tables = SchemaTables.of(inSchema);
+        final int totalFields = inSchema.getTotalFields();
+        final int unitCount = tables.getUnitCount();
+        this.digits = inSchema.getMaximumValue() + 1;
+        cells = new byte[totalFields];
+        candidates = new int[totalFields];
+        positions = new int[unitCount * digits];
+        placed = new int[unitCount];
+        nakedStack = new int[totalFields];
+        nakedQueued = new boolean[totalFields];
+        unitQueue = new int[unitCount];
+        unitQueued = new boolean[unitCount];
+    }
+
+    /**
+     * Loads the cells of a game matrix and recalculates all candidates.
+     * @param matrix the matrix to load. Must have the schema of this grid.
+     */
+    void reset(final GameMatrix matrix) {
+        final byte unset = schema.getUnsetValue();
+        final int unitCount = tables.getUnitCount();
+        Arrays.fill(placed, 0);
+        Arrays.fill(positions, 0);
+        Arrays.fill(nakedQueued, false);
+        Arrays.fill(unitQueued, false);
+        nakedSize = 0;
+        unitHead = 0;
+        unitSize = 0;
+        setCount = 0;
+
+        for (int cell = 0; cell < cells.length; cell++) {
+            byte value = matrix.get(tables.row(cell), tables.column(cell));
+            cells[cell] = value;
+            if (value != unset) {
+                int bit = 1 << value;
+                placed[tables.rowUnit(tables.row(cell))] |= bit;
+                placed[tables.columnUnit(tables.column(cell))] |= bit;
+                placed[tables.blockUnit(tables.block(cell))] |= bit;
+                setCount++;
+            }
+        }
+
+        for (int cell = 0; cell < cells.length; cell++) {
+            if (cells[cell] != unset) {
+                candidates[cell] = 0;
+                continue;
+            }
+            int mask = schema.getBitMask()
+                    & ~placed[tables.rowUnit(tables.row(cell))]
+                    & ~placed[tables.columnUnit(tables.column(cell))]
+                    & ~placed[tables.blockUnit(tables.block(cell))];
+            candidates[cell] = mask;
+            for (int rest = mask; rest != 0; rest &= rest - 1) {
+                int digit = Integer.numberOfTrailingZeros(rest);
+                positions[tables.rowUnit(tables.row(cell)) * digits + digit]
+                        |= 1 << tables.column(cell);
+                positions[tables.columnUnit(tables.column(cell)) * digits
+                        + digit] |= 1 << tables.row(cell);
+                positions[tables.blockUnit(tables.block(cell)) * digits
+                        + digit] |= 1 << tables.blockPosition(cell);
+            }
+            if (Integer.bitCount(mask) == 1) {
+                pushNaked(cell);
+            }
+        }
+        for (int unit = 0; unit < unitCount; unit++) {
+            queueUnit(unit);
+        }
+    }
+
+    /**
+     * Get the schema of this grid.
+     * @return the schema.
+     */
+    GameSchema getSchema() {
+        return schema;
+    }
+
+    /**
+     * Get the lookup tables of the schema.
+     * @return the tables.
+     */
+    SchemaTables getTables() {
+        return tables;
+    }
+
+    /**
+     * Get the number of set cells.
+     * @return the number of cells with a digit.
+     */
+    int getSetCount() {
+        return setCount;
+    }
+
+    /**
+     * Get the value of a cell.
+     * @param cell the cell index.
+     * @return the digit or the unset value.
+     */
+    byte get(final int cell) {
+        return cells[cell];
+    }
+
+    /**
+     * Get the candidates of a cell.
+     * @param cell the cell index.
+     * @return the candidate bit mask, zero for set cells.
+     */
+    int getCandidates(final int cell) {
+        return candidates[cell];
+    }
+
+    /**
+     * Get the positions of a digit in a unit.
+     * @param unit the unit number.
+     * @param digit the digit.
+     * @return the bit mask of positions in the unit that have
+     * the digit as a candidate.
+     */
+    int getPositions(final int unit, final int digit) {
+        return positions[unit * digits + digit];
+    }
+
+    /**
+     * Copies the cell values into a game matrix.
+     * @param target the matrix to write to.
+     */
+    void copyTo(final GameMatrix target) {
+        for (int cell = 0; cell < cells.length; cell++) {
+            target.set(tables.row(cell), tables.column(cell), cells[cell]);
+        }
+    }
+
+    /**
+     * Places a digit in an unset cell and removes it as a candidate
+     * from all peers.
+     * @param cell the cell index.
+     * @param digit the digit to place. Should be a candidate of the cell.
+     */
+    void place(final int cell, final int digit) {
+        assert cells[cell] == schema.getUnsetValue();
+        for (int rest = candidates[cell]; rest != 0; rest &= rest - 1) {
+            removePosition(cell, Integer.numberOfTrailingZeros(rest));
+        }
+        candidates[cell] = 0;
+        cells[cell] = (byte) digit;
+        setCount++;
+
+        int bit = 1 << digit;
+        placeInUnit(tables.rowUnit(tables.row(cell)), digit, bit);
+        placeInUnit(tables.columnUnit(tables.column(cell)), digit, bit);
+        placeInUnit(tables.blockUnit(tables.block(cell)), digit, bit);
+
+        final int peerCount = tables.getPeerCount();
+        for (int i = 0; i < peerCount; i++) {
+            int peer = tables.peer(cell, i);
+            if ((candidates[peer] & bit) != 0) {
+                eliminate(peer, digit);
+            }
+        }
+    }
+
+    /**
+     * Marks a digit as placed in a unit.
+     * @param unit the unit number.
+     * @param digit the digit.
+     * @param bit the bit of the digit.
+     */
+    private void placeInUnit(final int unit, final int digit, final int bit) {
+        placed[unit] |= bit;
+        positions[unit * digits + digit] = 0;
+    }
+
+    /**
+     * Removes a candidate from an unset cell.
+     * @param cell the cell index.
+     * @param digit the digit to remove.
+     * @return {@code true} if the digit was a candidate of the cell.
+     */
+    boolean eliminate(final int cell, final int digit) {
+        int bit = 1 << digit;
+        if ((candidates[cell] & bit) == 0) {
+            return false;
+        }
+        candidates[cell] &= ~bit;
+        removePosition(cell, digit);
+        if (Integer.bitCount(candidates[cell]) == 1) {
+            pushNaked(cell);
+        }
+        return true;
+    }
+
+    /**
+     * Removes a cell from the position masks of a digit in
+     * the three units of the cell.
+     * @param cell the cell index.
+     * @param digit the digit.
+     */
+    private void removePosition(final int cell, final int digit) {
+        int row = tables.rowUnit(tables.row(cell));
+        int column = tables.columnUnit(tables.column(cell));
+        int block = tables.blockUnit(tables.block(cell));
+        positions[row * digits + digit] &= ~(1 << tables.column(cell));
+        positions[column * digits + digit] &= ~(1 << tables.row(cell));
+        positions[block * digits + digit] &=
+                ~(1 << tables.blockPosition(cell));
+        queueUnit(row);
+        queueUnit(column);
+        queueUnit(block);
+    }
+
+    /**
+     * Queues a cell with one candidate.
+     * @param cell the cell index.
+     */
+    private void pushNaked(final int cell) {
+        if (!nakedQueued[cell]) {
+            nakedQueued[cell] = true;
+            nakedStack[nakedSize++] = cell;
+        }
+    }
+
+    /**
+     * Queues a changed unit.
+     * @param unit the unit number.
+     */
+    private void queueUnit(final int unit) {
+        if (!unitQueued[unit]) {
+            unitQueued[unit] = true;
+            int tail = unitHead + unitSize;
+            if (tail >= unitQueue.length) {
+                tail -= unitQueue.length;
+            }
+            unitQueue[tail] = unit;
+            unitSize++;
+        }
+    }
+
+    /**
+     * Finds an unset cell with exactly one candidate.
+     * @return the cell index, or {@link #NONE}.
+     */
+    int nextNakedSingle() {
+        while (nakedSize > 0) {
+            int cell = nakedStack[nakedSize - 1];
+            if (Integer.bitCount(candidates[cell]) == 1) {
+                // stays queued until placed
+                return cell;
+            }
+            nakedSize--;
+            nakedQueued[cell] = false;
+        }
+        return NONE;
+    }
+
+    /**
+     * Finds a digit that has only one cell left in a unit.
+     * @return the cell index times {@code digits} plus the digit,
+     * or {@link #NONE}.
+     * @see #singleCell(int)
+     * @see #singleDigit(int)
+     */
+    int nextHiddenSingle() {
+        final int bitMask = schema.getBitMask();
+        while (unitSize > 0) {
+            int unit = unitQueue[unitHead];
+            for (int rest = bitMask & ~placed[unit];
+                    rest != 0;
+                    rest &= rest - 1) {
+                int digit = Integer.numberOfTrailingZeros(rest);
+                int mask = positions[unit * digits + digit];
+                if (mask != 0 && (mask & (mask - 1)) == 0) {
+                    int cell = tables.unitCell(unit,
+                            Integer.numberOfTrailingZeros(mask));
+                    // stays queued, there may be more singles
+                    return cell * digits + digit;
+                }
+            }
+            unitQueued[unit] = false;
+            unitHead++;
+            if (unitHead == unitQueue.length) {
+                unitHead = 0;
+            }
+            unitSize--;
+        }
+        return NONE;
+    }
+
+    /**
+     * Get the cell of a {@link #nextHiddenSingle()} result.
+     * @param single the encoded hidden single.
+     * @return the cell index.
+     */
+    int singleCell(final int single) {
+        return single / digits;
+    }
+
+    /**
+     * Get the digit of a {@link #nextHiddenSingle()} result.
+     * @param single the encoded hidden single.
+     * @return the digit.
+     */
+    int singleDigit(final int single) {
+        return single % digits;
+    }
+}
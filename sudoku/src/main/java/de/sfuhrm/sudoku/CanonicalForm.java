@@ -0,0 +1,185 @@
+/*
+Sudoku - a fast Java Sudoku game creation library.
+Copyright (C) 2017-2018  Stephan Fuhrmann
+
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Library General Public
+License as published by the Free Software Foundation; either
+version 2 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+Library General Public License for more details.
+
+You should have received a copy of the GNU Library General Public
+License along with this library; if not, write to the
+Free Software Foundation, Inc., 51 Franklin St, Fifth Floor,
+Boston, MA  02110-1301, USA.
+*/
+package de.sfuhrm.sudoku;
+
+import java.util.Arrays;
+
+/**
+ * The canonical form of a game matrix, the representative of all
+ * matrices that can be transformed into each other.
+ * Matrices are isomorphic exactly if their canonical forms are equal,
+ * so the canonical form or its fingerprint can be used to detect
+ * duplicates up to the Sudoku symmetries.
+ * Instances are immutable.
+ * @see Canonicalizer
+ * @author Stephan Fuhrmann
+ */
+public final class CanonicalForm {
+
+    /** The multiplier of the second fingerprint half. */
+    private static final long MULTIPLIER = 0x100000001b3L;
+
+    /** The first mixing constant of the second fingerprint half. */
+    private static final long MIX1 = 0xbf58476d1ce4e5b9L;
+
+    /** The second mixing constant of the second fingerprint half. */
+    private static final long MIX2 = 0x94d049bb133111ebL;
+
+    /** The first mixing shift of the second fingerprint half. */
+    private static final int SHIFT1 = 30;
+
+    /** The second mixing shift of the second fingerprint half. */
+    private static final int SHIFT2 = 27;
+
+    /** The third mixing shift of the second fingerprint half. */
+    private static final int SHIFT3 = 31;
+
+    /** The schema of the matrix. */
+    private final GameSchema schema;
+
+    /** The canonical cells in row-major order. */
+    private final byte[] cells;
+
+    /** The transformation from the source matrix to this form. */
+    private final Transformation transformation;
+
+    /** The content hash of the canonical cells. */
+    private final long fingerprint;
+
+    /** The second, independent hash of the canonical cells. */
+    private final long fingerprintHigh;
+
+    /**
+     * Constructor.
+     * @param inSchema the schema of the matrix.
+     * @param inCells the canonical cells in row-major order, not copied.
+     * @param inTransformation the transformation from the source
+     *                         matrix to this form.
+     */
+    CanonicalForm(final GameSchema inSchema,
+            final byte[] inCells,
+            final Transformation inTransformation) {
+        this.schema = inSchema;
+        this.cells = inCells;
+        this.transformation = inTransformation;
+
+        SchemaTables tables = SchemaTables.of(inSchema);
+        long low = tables.emptyHash();
+        long high = inSchema.getWidth();
+        for (int cell = 0; cell < inCells.length; cell++) {
+            low ^= tables.cellValueKey(cell, inCells[cell]);
+            high = (high ^ inCells[cell]) * MULTIPLIER;
+        }
+        high = (high ^ (high >>> SHIFT1)) * MIX1;
+        high = (high ^ (high >>> SHIFT2)) * MIX2;
+        this.fingerprint = low;
+        this.fingerprintHigh = high ^ (high >>> SHIFT3);
+    }
+
+    /**
+     * Get the schema of the matrix.
+     * @return the schema.
+     */
+    public GameSchema getSchema() {
+        return schema;
+    }
+
+    /**
+     * Get the value of a canonical cell.
+     * @param row the row of the cell.
+     * @param column the column of the cell.
+     * @return the cell value.
+     */
+    public byte get(final int row, final int column) {
+        return cells[row * schema.getWidth() + column];
+    }
+
+    /**
+     * Gets a copy of the canonical cells.
+     * @return the cells with the first index being the row and the
+     * second index being the column.
+     */
+    public byte[][] getArray() {
+        final int width = schema.getWidth();
+        byte[][] result = new byte[width][width];
+        for (int row = 0; row < width; row++) {
+            System.arraycopy(cells, row * width, result[row], 0, width);
+        }
+        return result;
+    }
+
+    /**
+     * Get the transformation that maps the source matrix to this form.
+     * Applying it to a riddle keeps the writable flags of the cells.
+     * @return the transformation.
+     */
+    public Transformation getTransformation() {
+        return transformation;
+    }
+
+    /**
+     * Get a 64 bit fingerprint of the canonical cells.
+     * Equals the {@link GameMatrix#getContentHash() content hash}
+     * of the canonical matrix and is the same in every run.
+     * @return the lower 64 bits of the fingerprint.
+     */
+    public long getFingerprint() {
+        return fingerprint;
+    }
+
+    /**
+     * Get the upper 64 bits of a 128 bit fingerprint.
+     * They are calculated independently of the lower 64 bits, for
+     * duplicate detection in very large sets.
+     * @return the upper 64 bits of the fingerprint.
+     * @see #getFingerprint()
+     */
+    public long getFingerprintHigh() {
+        return fingerprintHigh;
+    }
+
+    @Override
+    public boolean equals(final Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof CanonicalForm)) {
+            return false;
+        }
+        CanonicalForm other = (CanonicalForm) o;
+        return fingerprint == other.fingerprint
+                && schema.equals(other.schema)
+                && Arrays.equals(cells, other.cells);
+    }
+
+    @Override
+    public int hashCode() {
+        return Long.hashCode(fingerprint);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder result = new StringBuilder(cells.length + 1);
+        for (byte cell : cells) {
+            result.append(Character.forDigit(cell, Character.MAX_RADIX));
+        }
+        return result.toString();
+    }
+}
@@ -0,0 +1,796 @@
+/*
+Sudoku - a fast Java Sudoku game creation library.
+Copyright (C) 2017-2018  Stephan Fuhrmann
+
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Library General Public
+License as published by the Free Software Foundation; either
+version 2 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+Library General Public License for more details.
+
+You should have received a copy of the GNU Library General Public
+License along with this library; if not, write to the
+Free Software Foundation, Inc., 51 Franklin St, Fifth Floor,
+Boston, MA  02110-1301, USA.
+*/
+package de.sfuhrm.sudoku;
+
+import java.util.Arrays;
+
+/**
+ * Computes the {@link CanonicalForm} of game matrices.
+ * The canonical form is the lexicographically smallest grid in row-major
+ * order that the symmetry group of {@link Transformation} can create
+ * from a matrix. Unset cells are smaller than all digits.
+ * Two matrices have the same canonical form exactly if one can be
+ * transformed into the other.
+ * <p>
+ * The search creates the output row by row and keeps only the branches
+ * whose rows so far are the smallest. Within a row it creates the
+ * output cell by cell and abandons a branch at the first cell that is
+ * larger than the smallest row so far. The column order is chosen
+ * lazily: columns that give the same output so far are kept in a group
+ * whose order is still open, and the stacks not placed yet form one
+ * such group. A group is split when a row puts different values into
+ * its columns, and the search only branches between columns or stacks
+ * that tie for the smallest value. Digits are labeled in the order they
+ * first appear. A digit that first appears in an open group gets the
+ * label of the position its column ends up at, so a full first row is
+ * labeled without fixing the order of its columns or stacks.
+ * <p>
+ * The search branches on ties, so the time grows quickly with the
+ * symmetries of wider schemas. Only schemas up to 9x9 are supported.
+ * <p>
+ * The search state is kept between calls, so canonicalizing
+ * allocates little more than the result.
+ * Instances are not thread safe, use one instance per thread.
+ * @author Stephan Fuhrmann
+ */
+public final class Canonicalizer {
+
+    /** The widest supported schema. */
+    private static final int MAXIMUM_WIDTH = 9;
+
+    /** Result of {@link #compare(int, int, boolean)}: the branch is
+     * larger than the best grid. */
+    private static final int LARGER = -1;
+
+    /** Result of {@link #compare(int, int, boolean)}: the branch equals
+     * the best grid so far. */
+    private static final int EQUAL = 0;
+
+    /** Result of {@link #compare(int, int, boolean)}: the branch is
+     * smaller than the best grid. */
+    private static final int SMALLER = 1;
+
+    /** The schema of the matrices. */
+    private final GameSchema schema;
+
+    /** The edge dimension of the schema. */
+    private final int width;
+
+    /** The edge dimension of a block. */
+    private final int blockWidth;
+
+    /** The value of unset cells. */
+    private final byte unset;
+
+    /** The number of label slots, one per value including unset. */
+    private final int labelCount;
+
+    /** The band of each row, which is also the stack of each column. */
+    private final int[] blocks;
+
+    /** The rows of each band as bit masks. */
+    private final int[] bandRows;
+
+    /** The matrix as is at index 0 and transposed at index 1,
+     * in row-major order. */
+    private final byte[][] views;
+
+    /** The view of the current branch. */
+    private byte[] current;
+
+    /** The rows without set cells per view as bit masks. */
+    private final int[] emptyRows;
+
+    /** The stacks without set cells per view as bit masks. */
+    private final int[] emptyStacks;
+
+    /** The offset of the source column per output column in
+     * {@link #state}. Open groups list their columns in any order. */
+    private final int orderOffset;
+
+    /** The offset of the output column per source column in
+     * {@link #state}. */
+    private final int positionOffset;
+
+    /** The offset of the source row per output row in {@link #state}. */
+    private final int rowOffset;
+
+    /** The offset of the column where each digit first appeared
+     * in {@link #state}, -1 for digits that did not appear yet. */
+    private final int definedOffset;
+
+    /** The offset of the label base of each digit in {@link #state}.
+     * A digit that first appeared in the group starting at output
+     * column {@code s} gets the label {@code base + p - s}, if its
+     * column ends up at output column {@code p}. */
+    private final int baseOffset;
+
+    /** The offset of the group start of each digit
+     * in {@link #state}. */
+    private final int startOffset;
+
+    /** The index of the group starts as bit mask in {@link #state}.
+     * Bit {@code p} is set if a group starts at output column
+     * {@code p}, the bit of the width ends the last group. */
+    private final int boundsIndex;
+
+    /** The index of the used source rows as bit mask
+     * in {@link #state}. */
+    private final int usedIndex;
+
+    /** The index of the placed source stacks as bit mask
+     * in {@link #state}. Stacks are placed in output order, the
+     * columns of the other stacks form one group behind them. */
+    private final int placedIndex;
+
+    /** The index of the next free label in {@link #state}. */
+    private final int nextLabelIndex;
+
+    /** The index of the view in {@link #state}. */
+    private final int viewIndex;
+
+    /** The state of the current branch. */
+    private final int[] state;
+
+    /** The states of the branches whose output rows so far are
+     * the smallest. */
+    private int[][] states;
+
+    /** The number of states in {@link #states}. */
+    private int stateCount;
+
+    /** The states of the branches that are kept for the next row. */
+    private int[][] nextStates;
+
+    /** The number of states in {@link #nextStates}. */
+    private int nextCount;
+
+    /** The saved states of the branching points on the current path. */
+    private int[][] saved;
+
+    /** The number of saved states in use. */
+    private int depth;
+
+    /** The smallest output so far in row-major order. */
+    private final byte[] best;
+
+    /**
+     * Creates a canonicalizer.
+     * @param inSchema the schema of the matrices to canonicalize.
+     * @throws IllegalArgumentException if the schema is not supported.
+     * @see #supports(GameSchema)
+     */
+    public Canonicalizer(final GameSchema inSchema) {
+        if (!supports(inSchema)) {
+            throw new IllegalArgumentException(
+                    "Schema not supported: " + inSchema);
+        }
+        this.schema = inSchema;
+        this.width = inSchema.getWidth();
+        this.blockWidth = inSchema.getBlockWidth();
+        this.unset = inSchema.getUnsetValue();
+        this.labelCount = inSchema.getMaximumValue() + 1;
+
+        this.blocks = new int[width];
+        this.bandRows = new int[blockWidth];
+        for (int row = 0; row < width; row++) {
+            blocks[row] = row / blockWidth;
+            bandRows[blocks[row]] |= 1 << row;
+        }
+        this.views = new byte[2][inSchema.getTotalFields()];
+        this.emptyRows = new int[2];
+        this.emptyStacks = new int[2];
+
+        this.orderOffset = 0;
+        this.positionOffset = orderOffset + width;
+        this.rowOffset = positionOffset + width;
+        this.definedOffset = rowOffset + width;
+        this.baseOffset = definedOffset + labelCount;
+        this.startOffset = baseOffset + labelCount;
+        this.boundsIndex = startOffset + labelCount;
+        this.usedIndex = boundsIndex + 1;
+        this.placedIndex = usedIndex + 1;
+        this.nextLabelIndex = placedIndex + 1;
+        this.viewIndex = nextLabelIndex + 1;
+        this.state = new int[viewIndex + 1];
+        this.states = new int[2][state.length];
+        this.nextStates = new int[2][state.length];
+        this.saved = new int[width][state.length];
+        this.best = new byte[inSchema.getTotalFields()];
+    }
+
+    /**
+     * Checks whether a schema is supported.
+     * @param schema the schema to check.
+     * @return {@code true} for schemas up to 9x9.
+     */
+    public static boolean supports(final GameSchema schema) {
+        return schema.getWidth() <= MAXIMUM_WIDTH;
+    }
+
+    /**
+     * Get the schema of the matrices.
+     * @return the schema.
+     */
+    public GameSchema getSchema() {
+        return schema;
+    }
+
+    /**
+     * Computes the canonical form of a matrix.
+     * @param matrix the matrix to canonicalize. Unset cells are allowed.
+     * @return the canonical form.
+     * @throws IllegalArgumentException if the matrix has another schema.
+     */
+    public CanonicalForm canonicalize(final GameMatrix matrix) {
+        if (!schema.equals(matrix.getSchema())) {
+            throw new IllegalArgumentException("Schema "
+                    + matrix.getSchema() + " does not match " + schema);
+        }
+        int setRows = 0;
+        int setColumns = 0;
+        for (int row = 0; row < width; row++) {
+            for (int column = 0; column < width; column++) {
+                byte value = matrix.get(row, column);
+                views[0][row * width + column] = value;
+                views[1][column * width + row] = value;
+                if (value != unset) {
+                    setRows |= 1 << row;
+                    setColumns |= 1 << column;
+                }
+            }
+        }
+        emptyRows[0] = ~setRows;
+        emptyRows[1] = ~setColumns;
+        emptyStacks[0] = emptyStacks(setColumns);
+        emptyStacks[1] = emptyStacks(setRows);
+
+        stateCount = 0;
+        for (int view = 0; view < views.length; view++) {
+            Arrays.fill(state, -1);
+            for (int i = 0; i < width; i++) {
+                state[orderOffset + i] = i;
+                state[positionOffset + i] = i;
+            }
+            state[boundsIndex] = 1 | 1 << width;
+            state[usedIndex] = 0;
+            state[placedIndex] = 0;
+            state[nextLabelIndex] = schema.getMinimumValue();
+            state[viewIndex] = view;
+            System.arraycopy(state, 0, states[stateCount++], 0,
+                    state.length);
+        }
+        for (int level = 0; level < width; level++) {
+            // the first row tried is smaller than this
+            Arrays.fill(best, level * width, (level + 1) * width,
+                    Byte.MAX_VALUE);
+            nextCount = 0;
+            for (int i = 0; i < stateCount; i++) {
+                searchRow(level, states[i]);
+            }
+            int[][] swap = states;
+            states = nextStates;
+            nextStates = swap;
+            stateCount = nextCount;
+        }
+        return createForm(states[0]);
+    }
+
+    /**
+     * Finds the stacks without set cells.
+     * @param setColumns the columns with set cells as bit mask.
+     * @return the empty stacks as bit mask.
+     */
+    private int emptyStacks(final int setColumns) {
+        final int stackMask = (1 << blockWidth) - 1;
+        int result = 0;
+        for (int stack = 0; stack < blockWidth; stack++) {
+            if ((setColumns >>> (stack * blockWidth) & stackMask) == 0) {
+                result |= 1 << stack;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Compares an output cell of the current branch with the best grid.
+     * @param index the row-major index of the cell.
+     * @param value the output value of the cell.
+     * @param smaller whether the branch is already smaller than the
+     *                best grid, which is then overwritten.
+     * @return {@link #LARGER}, {@link #EQUAL} or {@link #SMALLER}.
+     */
+    private int compare(final int index, final int value,
+            final boolean smaller) {
+        if (!smaller) {
+            if (value > best[index]) {
+                return LARGER;
+            }
+            if (value == best[index]) {
+                return EQUAL;
+            }
+        }
+        best[index] = (byte) value;
+        return SMALLER;
+    }
+
+    /**
+     * Saves the state before trying the branches of a branching point.
+     * @return the index of the saved state.
+     */
+    private int save() {
+        saved = grow(saved, depth);
+        System.arraycopy(state, 0, saved[depth], 0, state.length);
+        return depth++;
+    }
+
+    /**
+     * Keeps the state of a branch at the end of a row for the next row.
+     * @param smaller whether the row is smaller than the rows of the
+     *                states kept so far, which are then dropped.
+     */
+    private void keep(final boolean smaller) {
+        if (smaller) {
+            nextCount = 0;
+        }
+        nextStates = grow(nextStates, nextCount);
+        System.arraycopy(state, 0, nextStates[nextCount++], 0,
+                state.length);
+    }
+
+    /**
+     * Makes room for one more state in a pool of states.
+     * @param pool the pool of states.
+     * @param count the number of states in use.
+     * @return the pool or a larger copy of it.
+     */
+    private int[][] grow(final int[][] pool, final int count) {
+        if (count < pool.length) {
+            return pool;
+        }
+        int[][] result = Arrays.copyOf(pool, count * 2);
+        for (int i = count; i < result.length; i++) {
+            result[i] = new int[state.length];
+        }
+        return result;
+    }
+
+    /**
+     * Restores a saved state.
+     * @param index the index of the saved state.
+     */
+    private void restore(final int index) {
+        System.arraycopy(saved[index], 0, state, 0, state.length);
+    }
+
+    /**
+     * Get the start of the group of an output column.
+     * @param position the output column.
+     * @return the first output column of the group.
+     */
+    private int groupStart(final int position) {
+        return Integer.numberOfLeadingZeros(1)
+                - Integer.numberOfLeadingZeros(
+                        state[boundsIndex] & ((2 << position) - 1));
+    }
+
+    /**
+     * Get the end of the group of an output column.
+     * @param position the output column.
+     * @return the output column after the last one of the group.
+     */
+    private int groupEnd(final int position) {
+        return Integer.numberOfTrailingZeros(
+                state[boundsIndex] & -(2 << position));
+    }
+
+    /**
+     * Moves a column to the start of its group and makes it a group
+     * of its own.
+     * @param column the source column.
+     */
+    private void isolate(final int column) {
+        if ((state[placedIndex] & 1 << blocks[column]) == 0) {
+            moveStack(blocks[column]);
+        }
+        int position = state[positionOffset + column];
+        int start = groupStart(position);
+        int other = state[orderOffset + start];
+        state[orderOffset + start] = column;
+        state[positionOffset + column] = start;
+        state[orderOffset + position] = other;
+        state[positionOffset + other] = position;
+        state[boundsIndex] |= 2 << start;
+    }
+
+    /**
+     * Places a stack behind the placed stacks. The stack keeps the
+     * order of its columns, which are one group.
+     * @param stack the source stack.
+     */
+    private void moveStack(final int stack) {
+        final int start = Integer.bitCount(state[placedIndex]) * blockWidth;
+        for (int i = 0; i < blockWidth; i++) {
+            int column = stack * blockWidth + i;
+            int position = state[positionOffset + column];
+            int other = state[orderOffset + start + i];
+            state[orderOffset + start + i] = column;
+            state[positionOffset + column] = start + i;
+            state[orderOffset + position] = other;
+            state[positionOffset + other] = position;
+        }
+        state[boundsIndex] |= 1 << start | 1 << (start + blockWidth);
+        int placed = state[placedIndex] | 1 << stack;
+        if (Integer.bitCount(placed) == blockWidth - 1) {
+            // the last stack has no choice left
+            placed = (1 << blockWidth) - 1;
+        }
+        state[placedIndex] = placed;
+    }
+
+    /**
+     * Computes the output value of a cell if its column is put at
+     * the start of the group it is in.
+     * @param column the source column of the cell.
+     * @param start the output column the cell is put at.
+     * @param rowBase the index of the source row in the view.
+     * @return the unset value, the smallest label the digit of the cell
+     * can get, or the next free label if the digit is new.
+     */
+    private int value(final int column, final int start,
+            final int rowBase) {
+        final int digit = current[rowBase + column];
+        if (digit == unset) {
+            return unset;
+        }
+        final int defined = state[definedOffset + digit];
+        if (defined < 0) {
+            return state[nextLabelIndex];
+        }
+        int target = groupStart(state[positionOffset + defined]);
+        if (target == start && defined != column) {
+            // the defining column is in the same group, behind the cell
+            // or behind the stack of the cell if the stacks are open
+            target += blocks[defined] == blocks[column]
+                    ? 1 : blockWidth;
+        }
+        return state[baseOffset + digit] + target
+                - state[startOffset + digit];
+    }
+
+    /**
+     * Tries the source rows for an output row.
+     * @param level the output row.
+     * @param source the state of a branch kept at the end of the
+     *               previous row.
+     */
+    private void searchRow(final int level, final int[] source) {
+        final int view = source[viewIndex];
+        final int used = source[usedIndex];
+        int allowed;
+        if (level % blockWidth == 0) {
+            allowed = 0;
+            boolean emptyBand = false;
+            for (int band : bandRows) {
+                if ((used & band) == 0) {
+                    // empty bands can be swapped, so try only one
+                    boolean empty = (band & ~emptyRows[view]) == 0;
+                    if (!empty || !emptyBand) {
+                        allowed |= band;
+                    }
+                    emptyBand |= empty;
+                }
+            }
+        } else {
+            int previous = source[rowOffset + level - 1];
+            allowed = bandRows[blocks[previous]] & ~used;
+        }
+        int emptyRowsTried = 0;
+        while (allowed != 0) {
+            int row = Integer.numberOfTrailingZeros(allowed);
+            allowed &= allowed - 1;
+            int band = bandRows[blocks[row]];
+            if ((emptyRows[view] & 1 << row) != 0) {
+                // empty rows of a band can be swapped, so try only one
+                if ((emptyRowsTried & band) != 0) {
+                    continue;
+                }
+                emptyRowsTried |= band;
+            }
+            System.arraycopy(source, 0, state, 0, state.length);
+            current = views[view];
+            state[rowOffset + level] = row;
+            state[usedIndex] = used | 1 << row;
+            searchCells(level, 0, false);
+        }
+    }
+
+    /**
+     * Creates the cells of an output row from an output column on.
+     * Keeps the state at the end of the row.
+     * @param level the output row.
+     * @param from the first output column to create.
+     * @param inSmaller whether the branch is smaller than the best grid.
+     */
+    private void searchCells(final int level, final int from,
+            final boolean inSmaller) {
+        final int rowBase = state[rowOffset + level] * width;
+        final int cellBase = level * width;
+        boolean smaller = inSmaller;
+        int position = from;
+        while (position < width) {
+            final int end = groupEnd(position);
+            int minimum = Integer.MAX_VALUE;
+            int candidates = 0;
+            for (int i = position; i < end; i++) {
+                int v = value(state[orderOffset + i], position, rowBase);
+                if (v < minimum) {
+                    minimum = v;
+                    candidates = 0;
+                }
+                if (v == minimum) {
+                    candidates |= 1 << i;
+                }
+            }
+            final int nextLabel = state[nextLabelIndex];
+            int run = 0;
+            if (minimum == unset) {
+                if (position == Integer.bitCount(state[placedIndex])
+                        * blockWidth
+                        && Integer.bitCount(candidates) != end - position) {
+                    // unset cells in some of the open stacks
+                    placeStack(level, position, smaller);
+                    return;
+                }
+                run = groupUnset(position, end, rowBase);
+            } else if (minimum == nextLabel
+                    && defineNew(position, end, rowBase)) {
+                run = end - position;
+            }
+            if (run != 0) {
+                // the order within the run does not change the output
+                for (int i = 0; i < run; i++) {
+                    int result = compare(cellBase + position + i,
+                            minimum == unset ? unset : minimum + i,
+                            smaller);
+                    if (result == LARGER) {
+                        return;
+                    }
+                    smaller = result == SMALLER;
+                }
+                position += run;
+                continue;
+            }
+            int result = compare(cellBase + position, minimum, smaller);
+            if (result == LARGER) {
+                return;
+            }
+            smaller = result == SMALLER;
+            if (Integer.bitCount(candidates) == 1) {
+                place(state[orderOffset
+                        + Integer.numberOfTrailingZeros(candidates)],
+                        rowBase, position);
+                position++;
+                continue;
+            }
+            int branch = save();
+            boolean childSmaller = smaller;
+            while (candidates != 0) {
+                int i = Integer.numberOfTrailingZeros(candidates);
+                candidates &= candidates - 1;
+                restore(branch);
+                place(saved[branch][orderOffset + i], rowBase, position);
+                searchCells(level, position + 1, childSmaller);
+                childSmaller = false;
+            }
+            depth = branch;
+            return;
+        }
+        keep(smaller);
+    }
+
+    /**
+     * Moves the columns with unset cells to the front of a group and
+     * makes them a group of their own.
+     * @param start the start of the group.
+     * @param end the end of the group.
+     * @param rowBase the index of the source row in the view.
+     * @return the number of columns with unset cells.
+     */
+    private int groupUnset(final int start, final int end,
+            final int rowBase) {
+        int count = start;
+        for (int i = start; i < end; i++) {
+            int column = state[orderOffset + i];
+            if (current[rowBase + column] == unset) {
+                int other = state[orderOffset + count];
+                state[orderOffset + count] = column;
+                state[positionOffset + column] = count;
+                state[orderOffset + i] = other;
+                state[positionOffset + other] = i;
+                count++;
+            }
+        }
+        state[boundsIndex] |= 1 << count;
+        return count - start;
+    }
+
+    /**
+     * Labels the new digits of a group by the output column their
+     * column ends up at.
+     * @param start the start of the group.
+     * @param end the end of the group.
+     * @param rowBase the index of the source row in the view.
+     * @return {@code false} if a digit appears twice in the group,
+     * which then needs to be ordered by branching.
+     */
+    private boolean defineNew(final int start, final int end,
+            final int rowBase) {
+        int digits = 0;
+        for (int i = start; i < end; i++) {
+            int bit = 1 << current[rowBase + state[orderOffset + i]];
+            if ((digits & bit) != 0) {
+                return false;
+            }
+            digits |= bit;
+        }
+        final int nextLabel = state[nextLabelIndex];
+        for (int i = start; i < end; i++) {
+            int column = state[orderOffset + i];
+            int digit = current[rowBase + column];
+            state[definedOffset + digit] = column;
+            state[baseOffset + digit] = nextLabel;
+            state[startOffset + digit] = start;
+        }
+        state[nextLabelIndex] = nextLabel + end - start;
+        return true;
+    }
+
+    /**
+     * Puts a column at the start of its group and fixes the column
+     * its digit first appeared in so that the digit gets the smallest
+     * label possible.
+     * @param column the source column.
+     * @param rowBase the index of the source row in the view.
+     * @param position the output column of the start of the group.
+     */
+    private void place(final int column, final int rowBase,
+            final int position) {
+        isolate(column);
+        final int digit = current[rowBase + column];
+        final int defined = state[definedOffset + digit];
+        if (defined < 0) {
+            // a digit that appears twice in a group of new digits
+            final int nextLabel = state[nextLabelIndex];
+            state[definedOffset + digit] = column;
+            state[baseOffset + digit] = nextLabel;
+            state[startOffset + digit] = position;
+            state[nextLabelIndex] = nextLabel + 1;
+        } else {
+            isolate(defined);
+        }
+    }
+
+    /**
+     * Tries the open stacks for the next output stack if a row has
+     * unset cells in some of them. The unset cells come first, so only
+     * the stacks with the most unset cells are tried.
+     * @param level the output row.
+     * @param position the first output column of the open stacks.
+     * @param smaller whether the branch is smaller than the best grid.
+     */
+    private void placeStack(final int level, final int position,
+            final boolean smaller) {
+        final int view = state[viewIndex];
+        final int rowBase = state[rowOffset + level] * width;
+        final int placed = state[placedIndex];
+        int maximum = -1;
+        int candidates = 0;
+        boolean emptyStack = false;
+        for (int stack = 0; stack < blockWidth; stack++) {
+            if ((placed & 1 << stack) != 0) {
+                continue;
+            }
+            if ((emptyStacks[view] & 1 << stack) != 0) {
+                // empty stacks can be swapped, so try only one
+                if (emptyStack) {
+                    continue;
+                }
+                emptyStack = true;
+            }
+            int count = 0;
+            for (int i = 0; i < blockWidth; i++) {
+                if (current[rowBase + stack * blockWidth + i] == unset) {
+                    count++;
+                }
+            }
+            if (count > maximum) {
+                maximum = count;
+                candidates = 0;
+            }
+            if (count == maximum) {
+                candidates |= 1 << stack;
+            }
+        }
+        int branch = save();
+        boolean childSmaller = smaller;
+        while (candidates != 0) {
+            int stack = Integer.numberOfTrailingZeros(candidates);
+            candidates &= candidates - 1;
+            restore(branch);
+            moveStack(stack);
+            searchCells(level, position, childSmaller);
+            childSmaller = false;
+        }
+        depth = branch;
+    }
+
+    /**
+     * Creates the canonical form from the state of a best branch.
+     * @param bestState the state at the end of the last row.
+     * @return the canonical form.
+     */
+    private CanonicalForm createForm(final int[] bestState) {
+        final int view = bestState[viewIndex];
+
+        // digits that do not occur get the remaining labels
+        byte[] digitMap = new byte[labelCount];
+        int nextLabel = bestState[nextLabelIndex];
+        digitMap[unset] = unset;
+        for (int digit = schema.getMinimumValue();
+             digit <= schema.getMaximumValue(); digit++) {
+            int defined = bestState[definedOffset + digit];
+            digitMap[digit] = (byte) (defined < 0
+                    ? nextLabel++
+                    : bestState[baseOffset + digit]
+                        + bestState[positionOffset + defined]
+                        - bestState[startOffset + digit]);
+        }
+
+        byte[] cells = new byte[schema.getTotalFields()];
+        int[] sourceRows = new int[width];
+        int[] sourceColumns = new int[width];
+        for (int i = 0; i < width; i++) {
+            sourceRows[i] = bestState[rowOffset + i];
+            sourceColumns[i] = bestState[orderOffset + i];
+        }
+        for (int i = 0; i < width; i++) {
+            for (int j = 0; j < width; j++) {
+                cells[i * width + j] = digitMap[views[view][
+                        sourceRows[i] * width + sourceColumns[j]]];
+            }
+        }
+        assert Arrays.equals(cells, best) : "Form differs from search";
+
+        // output (i, j) comes from view cell (sourceRows[i], sourceColumns[j])
+        int[] viewRowMap = new int[width];
+        int[] viewColumnMap = new int[width];
+        for (int i = 0; i < width; i++) {
+            viewRowMap[sourceRows[i]] = i;
+            viewColumnMap[sourceColumns[i]] = i;
+        }
+        Transformation transformation = view == 0
+                ? Transformation.of(schema, viewRowMap, viewColumnMap,
+                    digitMap, false)
+                : Transformation.of(schema, viewColumnMap, viewRowMap,
+                    digitMap, true);
+        return new CanonicalForm(schema, cells, transformation);
+    }
+}
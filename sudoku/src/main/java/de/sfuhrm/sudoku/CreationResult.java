@@ -5,8 +5,12 @@ import java.util.Objects;
 
 /**
  * Result for creation with difficulty analysis details.
+ * Tells which difficulty a riddle created for a target difficulty
+ * actually reached and how many cells were cleared.
+ * Instances are immutable.
+ * @see Creator#createRiddleResult(GameMatrix, Difficulty, java.time.Duration)
  */
-final class CreationResult {
+public final class CreationResult {
     /** Created riddle. */
     private final Riddle riddle;
     /** Difficulty analysis data. */
@@ -29,15 +33,23 @@ final class CreationResult {
      * Generated riddle.
      * @return generated riddle.
      */
-    Riddle getRiddle() {
+    public Riddle getRiddle() {
         return riddle;
     }
 
+    /**
+     * Difficulty analysis of the generated riddle.
+     * @return analysis details.
+     */
+    public RiddleAnalysis getAnalysis() {
+        return analysis;
+    }
+
     /**
      * Aggregated difficulty score.
      * @return score details.
      */
-    DifficultyScore getScore() {
+    public DifficultyScore getScore() {
         return analysis.getScore();
     }
 
@@ -45,15 +57,24 @@ final class CreationResult {
      * Recorded solving steps.
      * @return immutable solving path.
      */
-    List<SolveStep> getPath() {
+    public List<SolveStep> getPath() {
         return analysis.getPath();
     }
 
+    /**
+     * Number of cleared fields in the generated riddle.
+     * @return the number of {@link GameSchema#getUnsetValue() unset}
+     * fields.
+     */
+    public int getClearCount() {
+        return riddle.getSchema().getTotalFields() - riddle.getSetCount();
+    }
+
     /**
      * Difficulty class measured from the path score.
      * @return classified difficulty.
      */
-    Difficulty getClassifiedDifficulty() {
+    public Difficulty getClassifiedDifficulty() {
         return analysis.getClassifiedDifficulty();
     }
 }
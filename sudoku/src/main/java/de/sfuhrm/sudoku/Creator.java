@@ -19,11 +19,11 @@ Boston, MA  02110-1301, USA.
 */
 package de.sfuhrm.sudoku;
 
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import java.util.Random;
-import java.util.function.Function;
 
 /**
  * Creates a fully filled sudoku.
@@ -39,6 +39,8 @@ public final class Creator {
     private static final int DIFFICULTY_SEARCH_MAX_DEPTH = 8;
     /** Number of candidates to evaluate per search node. */
     private static final int DIFFICULTY_SEARCH_RETRIES = 3;
+    /** Deadline value meaning that there is no time limit. */
+    private static final long NO_DEADLINE = Long.MIN_VALUE;
 
     /**
      * Sample value for 4x4 and difficulty very easy.
@@ -123,25 +125,14 @@ public final class Creator {
      */
     public static final int RIDDLE_25X25_EMPTY_FIELDS_VERY_HARD = 280;
 
-    /**
-     * The result consumer. Consumes a valid sudoku
-     * and returns whether to abort (true) or continue (false).
-     */
-    private final Function<GameMatrix, Boolean> resultConsumer;
-
     /**
      * Current work in progress.
      */
-    private final GameMatrixImpl riddle;
+    private final CachedGameMatrixImpl riddle;
 
     /** The game schema the riddle is for. */
     private final GameSchema schema;
 
-    /**
-     * Possibly found Sudoku.
-     */
-    private GameMatrix winner;
-
     /**
      * The random number generator.
      */
@@ -154,11 +145,6 @@ public final class Creator {
         this.schema = gameSchema;
         this.riddle = new CachedGameMatrixImpl(gameSchema);
         this.random = new Random();
-
-        resultConsumer = t -> {
-            winner = t;
-            return Boolean.TRUE;
-        };
     }
 
     /**
@@ -204,9 +190,42 @@ public final class Creator {
      * No fields are {@link GameSchema#getUnsetValue() unset}.
      */
     public static GameMatrix createFull(final GameSchema schema) {
+        return createFull(schema, GenerationStrategy.BACKTRACKING);
+    }
+
+    /**
+     * Creates a valid fully setup sudoku with a generation strategy.
+     * @param schema the dimensions of the game to create.
+     * @param strategy the way to create the sudoku.
+     * @return a fully filled sudoku board.
+     * No fields are {@link GameSchema#getUnsetValue() unset}.
+     * @throws IllegalArgumentException if the strategy is {@code null}
+     * or does not support the schema.
+     */
+    public static GameMatrix createFull(final GameSchema schema,
+            final GenerationStrategy strategy) {
+        if (strategy == null || !strategy.supports(schema)) {
+            throw new IllegalArgumentException(
+                    "Strategy " + strategy + " does not support " + schema);
+        }
+        if (strategy == GenerationStrategy.MIN_CONFLICTS) {
+            GameMatrix result = new GameMatrixImpl(schema);
+            MinConflictsGenerator generator =
+                    new MinConflictsGenerator(schema, new Random());
+            if (generator.generate(result,
+                    generator.getDefaultIterations())) {
+                return result;
+            }
+        }
+        if (Grid4x4Table.supports(schema)) {
+            GameMatrix result = new GameMatrixImpl(schema);
+            Grid4x4Table.random(new Random(), result);
+            return result;
+        }
         Creator c = new Creator(schema);
+        SearchKernel kernel = new SearchKernel(c.riddle);
 
-        BacktrackingResult backtrackingResult;
+        boolean found;
         do {
             c.riddle.clear();
 
@@ -224,76 +243,69 @@ public final class Creator {
             }
             // this will always work because the code above
             // creates a valid basis for everything
-            backtrackingResult = c.backtrack(schema.getTotalFields()
-                            - c.riddle.getSetCount(),
-                    new CellIndex());
-        } while (backtrackingResult != BacktrackingResult.FOUND);
+            found = kernel.search(matrix -> true);
+        } while (!found);
 
-        return c.winner;
+        return c.riddle;
     }
 
     /** Creates a variant of a fully-filled game matrix. The
-     * variant is calculated very efficiently by applying simple
-     * transformations.
+     * variant is calculated very efficiently by applying a random
+     * element of the Sudoku symmetry group: relabeling of the digits,
+     * permutation of bands, stacks, rows within bands and columns
+     * within stacks, and transposition. This works for all schemas.
      * @param fullyFilled the input matrix to transform. All fields need
      * to be filled.
      * @return a transformed variant of the input game matrix.
      * @throws IllegalArgumentException if there are unset fields in the
      * GameMatrix.
+     * @see Transformation
      */
     public static GameMatrix createVariant(
             final GameMatrix fullyFilled) {
         GameSchema schema = fullyFilled.getSchema();
-        GameMatrix target = new GameMatrixImpl(schema);
-        Random random = new Random();
-
-        byte[] substitution = createNumbersToDistribute(schema, random, 1);
         for (int row = 0; row < schema.getWidth(); row++) {
             for (int column = 0; column < schema.getWidth(); column++) {
-                byte original = fullyFilled.get(row, column);
-                if (original == schema.getUnsetValue()) {
+                if (fullyFilled.get(row, column) == schema.getUnsetValue()) {
                     throw new IllegalArgumentException(
                             "There are unset fields in the given GameMatrix, "
                             + "sample row " + row + ", column " + column);
                 }
-                byte substitute = substitution[original - 1];
-                target.set(row, column, substitute);
-            }
-        }
-
-        // row swapping within blocks
-        for (int i = 0; i < schema.getBlockCount(); i++) {
-            boolean swap = random.nextBoolean();
-            if (swap) {
-                // swapped row distance: 1 or 2
-                int distance = 1 + random.nextInt(2);
-                int offset = 0;
-                if (distance != 2) {
-                    offset = random.nextInt(2);
-                }
-                swapRow(target,
-                        i * schema.getBlockWidth() + offset,
-                        i * schema.getBlockWidth() + offset + distance);
             }
         }
+        GameMatrix target = new GameMatrixImpl(schema);
+        Transformation.random(schema, new Random())
+                .apply(fullyFilled, target);
+        return target;
+    }
 
-        // column swapping within blocks
-        for (int i = 0; i < schema.getBlockCount(); i++) {
-            boolean swap = random.nextBoolean();
-            if (swap) {
-                // swapped column distance: 1 or 2
-                int distance = 1 + random.nextInt(2);
-                int offset = 0;
-                if (distance != 2) {
-                    offset = random.nextInt(2);
-                }
-                swapColumn(target,
-                        i * schema.getBlockWidth() + offset,
-                        i * schema.getBlockWidth() + offset + distance);
-            }
-        }
+    /** Creates a variant of a riddle. The variant is calculated
+     * very efficiently by applying a random element of the Sudoku
+     * symmetry group: relabeling of the digits, permutation of bands,
+     * stacks, rows within bands and columns within stacks, and
+     * transposition.
+     * The variant has the same number of solutions and needs the same
+     * solving techniques as the input riddle, so it has the same
+     * difficulty.
+     * @param riddle the input riddle to transform. The writable
+     *               flags are transformed together with the cells.
+     * @return a transformed variant of the input riddle.
+     */
+    public static Riddle createRiddleVariant(final Riddle riddle) {
+        return Transformation.random(riddle.getSchema(), new Random())
+                .apply(riddle);
+    }
 
-        return target;
+    /** Creates a variant of a creation result including
+     * its difficulty analysis.
+     * @param result the creation result to transform.
+     * @return a creation result with a transformed riddle and solve
+     * path, and the same score and difficulty as the input.
+     * @see #createRiddleVariant(Riddle)
+     */
+    static CreationResult createRiddleVariant(final CreationResult result) {
+        return Transformation.random(result.getRiddle().getSchema(),
+                new Random()).apply(result);
     }
 
     /** Swaps two rows in the given matrix.
@@ -365,13 +377,18 @@ public final class Creator {
     /** Checks whether on the given riddle the given cell can
      * be cleared. A cell can only be cleared if the result remains
      * uniqely solvable.
+     * If the cleared riddle can be solved with singles only,
+     * it is unique and no backtracking is needed.
      * @param riddle riddle to check clearability in.
+     * @param singles the singles propagator holding the same cells
+     *                as the riddle.
      * @param column the column in the riddle.
      * @param row the row in the riddle.
      * @return {@code true} if the field with the coordinates can be
      * cleared without endangering the unique solvability of the Sudoku.
      */
     private static boolean canClear(final RiddleImpl riddle,
+            final SinglesPropagator singles,
             final int row,
             final int column) {
         GameSchema schema = riddle.getSchema();
@@ -384,16 +401,22 @@ public final class Creator {
             return true;
         }
 
-        int old = riddle.get(row, column);
-        riddle.set(row, column, schema.getUnsetValue());
+        byte old = riddle.get(row, column);
+        singles.set(row, column, schema.getUnsetValue());
+        boolean result = singles.solvesWithSingles();
 
-        Solver s = new Solver(riddle);
-        s.setLimit(2);
-        List<GameMatrix> results = s.solve();
-        boolean result = results.size() == 1;
+        if (!result) {
+            riddle.set(row, column, schema.getUnsetValue());
+
+            Solver s = new Solver(riddle);
+            s.setLimit(2);
+            result = s.countSolutions() == 1;
+
+            riddle.set(row, column, old);
+        }
 
         // rollback
-        riddle.set(row, column, (byte) old);
+        singles.set(row, column, old);
         return result;
     }
 
@@ -432,9 +455,88 @@ public final class Creator {
      * @param difficulty requested difficulty level.
      * @return creation result containing riddle, solve path and score.
      */
-    static CreationResult createRiddleResult(
+    public static CreationResult createRiddleResult(
             final GameMatrix fullMatrix,
             final Difficulty difficulty
+    ) {
+        return createRiddleResult(fullMatrix, difficulty, NO_DEADLINE);
+    }
+
+    /**
+     * Creates a riddle setup sudoku with selectable difficulty within
+     * a time limit.
+     * If no riddle of the requested difficulty is found until the
+     * time limit is reached, the riddle closest to the requested
+     * difficulty is returned.
+     * The time limit is checked between two riddle candidates, so the
+     * call can take longer than the time limit by the time needed
+     * for creating and analyzing one candidate.
+     *
+     * @param fullMatrix a fully set up (solved) and valid sudoku.
+     * @param difficulty requested difficulty level.
+     * @param timeout the time after which the best riddle found so far
+     *                is returned.
+     * @return a sudoku with a difficulty as close as possible to the
+     * requested difficulty.
+     * @throws IllegalArgumentException if the timeout is negative.
+     */
+    public static Riddle createRiddle(
+            final GameMatrix fullMatrix,
+            final Difficulty difficulty,
+            final Duration timeout
+    ) {
+        return createRiddleResult(fullMatrix, difficulty, timeout)
+                .getRiddle();
+    }
+
+    /**
+     * Creates a riddle setup sudoku with selectable difficulty and
+     * analysis details within a time limit.
+     * @param fullMatrix a fully set up (solved) and valid sudoku.
+     * @param difficulty requested difficulty level.
+     * @param timeout the time after which the best riddle found so far
+     *                is returned.
+     * @return creation result of the candidate closest to the requested
+     * difficulty, telling its {@link CreationResult#getClassifiedDifficulty()
+     * achieved difficulty} and {@link CreationResult#getClearCount()
+     * clear count}.
+     * @throws IllegalArgumentException if the timeout is negative.
+     * @see #createRiddle(GameMatrix, Difficulty, Duration)
+     */
+    public static CreationResult createRiddleResult(
+            final GameMatrix fullMatrix,
+            final Difficulty difficulty,
+            final Duration timeout
+    ) {
+        if (timeout == null || timeout.isNegative()) {
+            throw new IllegalArgumentException(
+                    "timeout must not be null or negative: " + timeout);
+        }
+        long deadline;
+        try {
+            deadline = System.nanoTime() + timeout.toNanos();
+        } catch (ArithmeticException e) {
+            // too far in the future to be represented
+            deadline = NO_DEADLINE;
+        }
+        return createRiddleResult(fullMatrix, difficulty, deadline);
+    }
+
+    /**
+     * Creates a riddle setup sudoku with selectable difficulty and
+     * analysis details.
+     *
+     * @param fullMatrix a fully set up (solved) and valid sudoku.
+     * @param difficulty requested difficulty level.
+     * @param deadline the {@link System#nanoTime()} value after which
+     *                 the best riddle found so far is returned, or
+     *                 {@link #NO_DEADLINE}.
+     * @return creation result containing riddle, solve path and score.
+     */
+    private static CreationResult createRiddleResult(
+            final GameMatrix fullMatrix,
+            final Difficulty difficulty,
+            final long deadline
     ) {
         if (difficulty == null) {
             throw new IllegalArgumentException("difficulty must not be null");
@@ -450,7 +552,19 @@ public final class Creator {
                 target,
                 corridor[0],
                 corridor[1],
-                DIFFICULTY_SEARCH_MAX_DEPTH);
+                DIFFICULTY_SEARCH_MAX_DEPTH,
+                deadline);
+    }
+
+    /**
+     * Checks whether a deadline has passed.
+     * @param deadline the {@link System#nanoTime()} value of the deadline,
+     *                 or {@link #NO_DEADLINE}.
+     * @return {@code true} if the deadline has passed.
+     */
+    private static boolean isExpired(final long deadline) {
+        return deadline != NO_DEADLINE
+                && System.nanoTime() - deadline >= 0;
     }
 
     /**
@@ -472,6 +586,7 @@ public final class Creator {
 
         RiddleImpl cur = new RiddleImpl(schema);
         cur.setAll(fullMatrix.getArray());
+        SinglesPropagator singles = new SinglesPropagator(cur);
 
         int numbersToClear = maxNumbersToClear;
         int randomClearCount = 0;
@@ -485,8 +600,9 @@ public final class Creator {
             int i = random.nextInt(width);
             int j = random.nextInt(width);
             if (cur.get(j, i) != schema.getUnsetValue()) {
-                if (canClear(cur, j, i)) {
+                if (canClear(cur, singles, j, i)) {
                     cur.set(j, i, schema.getUnsetValue());
+                    singles.set(j, i, schema.getUnsetValue());
                     numbersToClear--;
                 } else {
                     randomClearCount++;
@@ -499,8 +615,9 @@ public final class Creator {
             for (int j = 0; j < width; j++) {
                 if (numbersToClear > 0
                     && unset != cur.get(j, i)
-                    && canClear(cur, j, i)) {
+                    && canClear(cur, singles, j, i)) {
                     cur.set(j, i, unset);
+                    singles.set(j, i, unset);
                     numbersToClear--;
                 }
             }
@@ -525,6 +642,8 @@ public final class Creator {
      * @param minimumClearCount lower clear-count boundary.
      * @param maximumClearCount upper clear-count boundary.
      * @param depth recursion depth limit.
+     * @param deadline the {@link System#nanoTime()} value after which
+     *                 the search stops, or {@link #NO_DEADLINE}.
      * @return best found creation result.
      */
     private static CreationResult searchDifficultyBacktracking(
@@ -533,16 +652,19 @@ public final class Creator {
             final int targetClearCount,
             final int minimumClearCount,
             final int maximumClearCount,
-            final int depth) {
+            final int depth,
+            final long deadline) {
         int pivot = (minimumClearCount + maximumClearCount) / 2;
         CreationResult best = evaluateClearCount(fullMatrix,
                 targetDifficulty,
                 targetClearCount,
                 pivot,
-                null);
+                null,
+                deadline);
 
         if (best.getClassifiedDifficulty() == targetDifficulty || depth <= 0
-                || minimumClearCount >= maximumClearCount) {
+                || minimumClearCount >= maximumClearCount
+                || isExpired(deadline)) {
             return best;
         }
 
@@ -563,12 +685,14 @@ public final class Creator {
                     targetClearCount,
                     preferredMin,
                     preferredMax,
-                    depth - 1);
+                    depth - 1,
+                    deadline);
             best = pickBetterResult(targetDifficulty,
                     targetClearCount,
                     best,
                     preferred);
-            if (best.getClassifiedDifficulty() == targetDifficulty) {
+            if (best.getClassifiedDifficulty() == targetDifficulty
+                    || isExpired(deadline)) {
                 return best;
             }
         }
@@ -587,7 +711,8 @@ public final class Creator {
                     targetClearCount,
                     secondaryMin,
                     secondaryMax,
-                    depth - 1);
+                    depth - 1,
+                    deadline);
             best = pickBetterResult(targetDifficulty,
                     targetClearCount,
                     best,
@@ -599,12 +724,17 @@ public final class Creator {
 
     /**
      * Evaluates one clear-count point multiple times and keeps the best result.
+     * Each riddle that misses the target difficulty is changed by a
+     * {@link DifficultyAnnealer} before the next riddle is created.
      *
      * @param fullMatrix solved matrix.
      * @param targetDifficulty requested difficulty.
      * @param targetClearCount configured clear-count target.
      * @param clearCount count to clear.
      * @param best seed best result.
+     * @param deadline the {@link System#nanoTime()} value after which
+     *                 no more candidates are evaluated, or
+     *                 {@link #NO_DEADLINE}.
      * @return best result for this clear count.
      */
     private static CreationResult evaluateClearCount(
@@ -612,11 +742,17 @@ public final class Creator {
             final Difficulty targetDifficulty,
             final int targetClearCount,
             final int clearCount,
-            final CreationResult best) {
+            final CreationResult best,
+            final long deadline) {
         CreationResult localBest = best;
         for (int retry = 0; retry < DIFFICULTY_SEARCH_RETRIES; retry++) {
-            Riddle riddle = createRiddle(fullMatrix, clearCount);
+            if (localBest != null && isExpired(deadline)) {
+                break;
+            }
+            RiddleImpl riddle = (RiddleImpl) createRiddle(fullMatrix,
+                    clearCount);
             RiddleAnalysis analysis = RiddleAnalyzer.analyze(riddle);
+            riddle.setAnalysis(analysis);
             CreationResult candidate = new CreationResult(riddle, analysis);
             localBest = pickBetterResult(targetDifficulty,
                     targetClearCount,
@@ -625,6 +761,21 @@ public final class Creator {
             if (candidate.getClassifiedDifficulty() == targetDifficulty) {
                 return candidate;
             }
+            if (retry > 0) {
+                continue;
+            }
+            CreationResult annealed = new DifficultyAnnealer(fullMatrix,
+                    targetDifficulty,
+                    new Random()).anneal(candidate,
+                    DifficultyAnnealer.DEFAULT_MOVES,
+                    () -> isExpired(deadline));
+            localBest = pickBetterResult(targetDifficulty,
+                    targetClearCount,
+                    localBest,
+                    annealed);
+            if (annealed.getClassifiedDifficulty() == targetDifficulty) {
+                return annealed;
+            }
         }
         return localBest;
     }
@@ -745,79 +896,4 @@ public final class Creator {
             }
         }
     }
-
-    /** Result for {@linkplain #backtrack(int, CellIndex)}. */
-    enum BacktrackingResult {
-        /** A result was found, abort. */
-        FOUND,
-        /** No result found, continue search. */
-        CONTINUE,
-        /** There's a contradiction in the matrix that can't be solved.
-         * */
-        CONTRADICTION
-    }
-
-    /**
-     * Do the backtracking job.
-     * @param numbersToDistribute the count of fields left to fill.
-     * @param minimumCell coordinates of the so-far minimum cell.
-     * @return {@code true} if the search shall be aborted by the
-     * call hierarchy or {@code false} if search shall continue.
-     */
-    private BacktrackingResult backtrack(
-            final int numbersToDistribute,
-            final CellIndex minimumCell) {
-        if (numbersToDistribute == 0) {
-            assert riddle.isValid()
-                    : "Riddle went non-valid while backtracking";
-            if (resultConsumer.apply(riddle)) {
-                return BacktrackingResult.FOUND;
-            } else {
-                return BacktrackingResult.CONTINUE;
-            }
-        }
-
-        // determine rows + cols that are possible candidates
-        // (reduce random trying)
-        GameMatrixImpl.FreeCellResult result =
-                riddle.findLeastFreeCell(minimumCell);
-        switch (result) {
-            case CONTRADICTION:
-            case NONE_FREE:
-                // we have non-free cells, but not numbersToDistribute == 0
-                return BacktrackingResult.CONTRADICTION;
-            default:
-                break;
-        }
-
-        int minimumRow = minimumCell.row;
-        int minimumColumn = minimumCell.column;
-        int minimumFree = riddle.getFreeMask(minimumRow, minimumColumn);
-        assert minimumRow >= 0 && minimumRow < schema.getWidth();
-        assert minimumColumn >= 0 && minimumColumn < schema.getWidth();
-        int remainingChoices = minimumFree;
-        while (remainingChoices != 0) {
-            int selectedBit = remainingChoices & -remainingChoices;
-            assert Integer.bitCount(selectedBit) == 1;
-            int number = Integer.numberOfTrailingZeros(selectedBit);
-            assert number >= schema.getMinimumValue()
-                    && number <= schema.getMaximumValue();
-            assert (riddle.getFreeMask(minimumRow, minimumColumn)
-                    & (1 << number)) == 1 << number;
-            riddle.set(minimumRow, minimumColumn, (byte) (number));
-            assert (riddle.getFreeMask(minimumRow, minimumColumn)
-                    & (1 << number)) == 0;
-            BacktrackingResult subResult = backtrack(
-                    numbersToDistribute - 1,
-                    minimumCell);
-            if (subResult == BacktrackingResult.FOUND) {
-                return subResult;
-            }
-
-            remainingChoices ^= selectedBit;
-        }
-        riddle.set(minimumRow, minimumColumn, schema.getUnsetValue());
-
-        return BacktrackingResult.CONTINUE;
-    }
 }
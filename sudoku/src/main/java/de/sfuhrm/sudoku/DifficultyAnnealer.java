@@ -0,0 +1,269 @@
+/*
+Sudoku - a fast Java Sudoku game creation library.
+Copyright (C) 2017-2018  Stephan Fuhrmann
+
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Library General Public
+License as published by the Free Software Foundation; either
+version 2 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+Library General Public License for more details.
+
+You should have received a copy of the GNU Library General Public
+License along with this library; if not, write to the
+Free Software Foundation, Inc., 51 Franklin St, Fifth Floor,
+Boston, MA  02110-1301, USA.
+*/
+package de.sfuhrm.sudoku;
+
+import java.util.Random;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Moves a riddle towards a target difficulty by simulated annealing.
+ * A move adds a clue of the solution, removes a clue or does both.
+ * Moves that remove a clue are only done if the riddle stays uniquely
+ * solvable. The energy of a riddle is the
+ * {@link RiddleAnalyzer#distance(GameSchema, Difficulty, int) distance}
+ * of its points to the point range of the target difficulty. Riddles
+ * that are too easy get a bonus for the
+ * {@link RiddleAnalysis#getSearchNodes() search nodes} they need, so the
+ * energy keeps falling with the search effort after backtracking.
+ * Moves that lower the energy are always accepted, others with a
+ * probability that shrinks with the temperature, which is lowered
+ * after each move.
+ * Instances are not thread safe.
+ * @author Stephan Fuhrmann
+ */
+final class DifficultyAnnealer {
+
+    /** The default number of moves of one run. */
+    static final int DEFAULT_MOVES = 600;
+
+    /** The moves without a new best after which a run stops. */
+    static final int STALL_MOVES = 150;
+
+    /** The temperature at the start of a run, in points. */
+    private static final double START_TEMPERATURE = 20;
+
+    /** The factor the temperature is multiplied with after a move. */
+    private static final double COOLING = 0.98;
+
+    /** The energy one doubling of the search nodes is worth, in points. */
+    private static final int SEARCH_WEIGHT = 10;
+
+    /** The number of move kinds. */
+    private static final int MOVE_KINDS = 3;
+
+    /** The move kind adding a clue. */
+    private static final int ADD = 0;
+
+    /** The move kind removing a clue. */
+    private static final int REMOVE = 1;
+
+    /** The solution of the riddles. */
+    private final GameMatrix solution;
+
+    /** The difficulty to reach. */
+    private final Difficulty target;
+
+    /** The source of randomness. */
+    private final Random random;
+
+    /** The reusable state of the analyzer. */
+    private final Eliminator eliminator;
+
+    /** The riddle being changed. */
+    private final RiddleImpl current;
+
+    /**
+     * Creates an annealer.
+     * @param fullMatrix the solution of the riddles to change.
+     * @param targetDifficulty the difficulty to reach.
+     * @param inRandom the source of randomness.
+     */
+    DifficultyAnnealer(final GameMatrix fullMatrix,
+            final Difficulty targetDifficulty,
+            final Random inRandom) {
+        this.solution = fullMatrix;
+        this.target = targetDifficulty;
+        this.random = inRandom;
+        this.eliminator = new Eliminator(
+                new CandidateGrid(fullMatrix.getSchema()));
+        this.current = new RiddleImpl(fullMatrix.getSchema());
+    }
+
+    /**
+     * Computes the distance of an analysis to the target difficulty.
+     * @param analysis the analysis of a riddle.
+     * @return the distance of the points to the target difficulty.
+     */
+    private int distance(final RiddleAnalysis analysis) {
+        return RiddleAnalyzer.distance(solution.getSchema(), target,
+                analysis.getScore().getPoints());
+    }
+
+    /**
+     * Computes the energy of an analysis.
+     * The points of a riddle hardly change once it needs backtracking,
+     * so a riddle that is too easy also gets a lower energy for each
+     * doubling of the search nodes needed to solve it.
+     * @param analysis the analysis of a riddle.
+     * @return the distance of the points to the target difficulty,
+     * lowered by the search effort if the riddle is too easy.
+     */
+    private int energy(final RiddleAnalysis analysis) {
+        int distance = distance(analysis);
+        if (analysis.getClassifiedDifficulty().compareTo(target) >= 0) {
+            return distance;
+        }
+        int searchBits = Long.SIZE
+                - Long.numberOfLeadingZeros(analysis.getSearchNodes());
+        return distance - SEARCH_WEIGHT * searchBits;
+    }
+
+    /**
+     * Runs the annealing from a riddle.
+     * @param start the riddle to start from and its analysis.
+     * @param moves the maximum number of moves. The run also stops
+     *              after {@value #STALL_MOVES} moves without a new best.
+     * @param expired tells whether the time is up.
+     * @return the result with the lowest distance to the target
+     * difficulty seen, the one with the lowest energy of equally
+     * distant ones, or {@code start} if no move improved it.
+     */
+    CreationResult anneal(final CreationResult start,
+            final int moves,
+            final BooleanSupplier expired) {
+        final GameSchema schema = solution.getSchema();
+        current.setAll(start.getRiddle().getArray());
+        RiddleAnalysis analysis = start.getAnalysis();
+        int energy = energy(analysis);
+        CreationResult best = start;
+        int bestDistance = distance(analysis);
+        int bestEnergy = energy;
+        double temperature = START_TEMPERATURE;
+        final int[] cells = new int[2];
+        final byte[] old = new byte[2];
+
+        int lastImprovement = 0;
+        for (int move = 0; move < moves && bestDistance > 0
+                && move - lastImprovement < STALL_MOVES
+                && !expired.getAsBoolean(); move++) {
+            temperature *= COOLING;
+            int kind = random.nextInt(MOVE_KINDS);
+
+            int changed = 0;
+            if (kind != REMOVE) {
+                cells[changed] = randomCell(false);
+                changed += cells[changed] >= 0 ? 1 : 0;
+            }
+            if (kind != ADD) {
+                cells[changed] = randomCell(true);
+                changed += cells[changed] >= 0 ? 1 : 0;
+            }
+            if (changed == 0) {
+                continue;
+            }
+            boolean removes = false;
+            for (int i = 0; i < changed; i++) {
+                int row = cells[i] / schema.getWidth();
+                int column = cells[i] % schema.getWidth();
+                old[i] = current.get(row, column);
+                removes |= old[i] != schema.getUnsetValue();
+                current.set(row, column, old[i] == schema.getUnsetValue()
+                        ? solution.get(row, column)
+                        : schema.getUnsetValue());
+            }
+            if (removes && !isUnique()) {
+                undo(cells, old, changed);
+                continue;
+            }
+            RiddleAnalysis next = RiddleAnalyzer.analyze(current,
+                    eliminator, null);
+            int nextEnergy = energy(next);
+            if (nextEnergy <= energy || random.nextDouble()
+                    < Math.exp((energy - nextEnergy) / temperature)) {
+                analysis = next;
+                energy = nextEnergy;
+                int distance = distance(analysis);
+                if (distance < bestDistance || distance == bestDistance
+                        && energy < bestEnergy) {
+                    best = snapshot(analysis);
+                    bestDistance = distance;
+                    bestEnergy = energy;
+                    lastImprovement = move;
+                }
+            } else {
+                undo(cells, old, changed);
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Checks whether the current riddle has exactly one solution.
+     * @return {@code true} if the riddle is unique.
+     */
+    private boolean isUnique() {
+        Solver solver = new Solver(current);
+        solver.setLimit(2);
+        return solver.countSolutions() == 1;
+    }
+
+    /**
+     * Restores cells of the current riddle.
+     * @param cells the changed cells.
+     * @param old the values before the change.
+     * @param count the number of changed cells.
+     */
+    private void undo(final int[] cells, final byte[] old, final int count) {
+        for (int i = 0; i < count; i++) {
+            current.set(cells[i] / solution.getSchema().getWidth(),
+                    cells[i] % solution.getSchema().getWidth(),
+                    old[i]);
+        }
+    }
+
+    /**
+     * Picks a random cell that is set or unset.
+     * @param set {@code true} for a clue, {@code false} for an empty cell.
+     * @return the row-major index of the cell, or -1 if there is none.
+     */
+    private int randomCell(final boolean set) {
+        final GameSchema schema = solution.getSchema();
+        final int total = schema.getTotalFields();
+        final int offset = random.nextInt(total);
+        for (int i = 0; i < total; i++) {
+            int cell = (offset + i) % total;
+            boolean isSet = current.get(cell / schema.getWidth(),
+                    cell % schema.getWidth()) != schema.getUnsetValue();
+            if (isSet == set) {
+                return cell;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Copies the current riddle with its writable flags and analysis.
+     * @param analysis the analysis of the current riddle.
+     * @return the copy.
+     */
+    private CreationResult snapshot(final RiddleAnalysis analysis) {
+        final GameSchema schema = solution.getSchema();
+        RiddleImpl riddle = new RiddleImpl(schema);
+        riddle.setAll(current.getArray());
+        for (int row = 0; row < schema.getWidth(); row++) {
+            for (int column = 0; column < schema.getWidth(); column++) {
+                riddle.setWritable(row, column,
+                        riddle.get(row, column) == schema.getUnsetValue());
+            }
+        }
+        riddle.setAnalysis(analysis);
+        return new CreationResult(riddle, analysis);
+    }
+}
@@ -4,8 +4,9 @@ import java.util.List;
 
 /**
  * Aggregate score of a solving path.
+ * @see RiddleAnalysis#getScore()
  */
-final class DifficultyScore {
+public final class DifficultyScore {
     /** Sum of all step points. */
     private final int points;
     /** Number of steps. */
@@ -13,6 +14,18 @@ final class DifficultyScore {
     /** Highest single-step point value in path. */
     private final int maximumStepPoints;
 
+    /**
+     * Build score from precomputed values.
+     * @param sum sum of all step points.
+     * @param steps number of steps.
+     * @param maximum highest points of one step.
+     */
+    DifficultyScore(final int sum, final int steps, final int maximum) {
+        this.points = sum;
+        this.stepCount = steps;
+        this.maximumStepPoints = maximum;
+    }
+
     /**
      * Build score from a path.
      * @param steps solving path.
@@ -33,7 +46,7 @@ final class DifficultyScore {
      * Sum of points over the whole path.
      * @return total points.
      */
-    int getPoints() {
+    public int getPoints() {
         return points;
     }
 
@@ -41,7 +54,7 @@ final class DifficultyScore {
      * Number of recorded solve steps.
      * @return step count.
      */
-    int getStepCount() {
+    public int getStepCount() {
         return stepCount;
     }
 
@@ -49,7 +62,7 @@ final class DifficultyScore {
      * Highest points value of one step.
      * @return maximum single-step points.
      */
-    int getMaximumStepPoints() {
+    public int getMaximumStepPoints() {
         return maximumStepPoints;
     }
 }
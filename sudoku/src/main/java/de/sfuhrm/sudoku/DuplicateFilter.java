@@ -0,0 +1,429 @@
+/*
+Sudoku - a fast Java Sudoku game creation library.
+Copyright (C) 2017-2018  Stephan Fuhrmann
+
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Library General Public
+License as published by the Free Software Foundation; either
+version 2 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+Library General Public License for more details.
+
+You should have received a copy of the GNU Library General Public
+License along with this library; if not, write to the
+Free Software Foundation, Inc., 51 Franklin St, Fifth Floor,
+Boston, MA  02110-1301, USA.
+*/
+package de.sfuhrm.sudoku;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Locale;
+
+/**
+ * A Bloom filter dropping duplicate grids in bulk generation
+ * without keeping the grids.
+ * The keys are 64 bit hashes, like the
+ * {@link GameMatrix#getContentHash() content hash} of a matrix or the
+ * {@link CanonicalForm#getFingerprint() fingerprint} of its canonical
+ * form, which also drops grids that are only transformations of each
+ * other.
+ * <p>
+ * A key that was added before is always reported as duplicate.
+ * A new key is reported as duplicate with a small probability, the
+ * false positive rate, which grows as keys are added.
+ * The filter is sized for an expected number of keys and a target
+ * false positive rate, optionally bounded by a maximum memory size.
+ * The bits are kept off the heap in direct buffers, so the garbage
+ * collector neither scans nor copies them. Their size is limited by the
+ * JVM option {@code -XX:MaxDirectMemorySize}, and they are freed when
+ * the filter is garbage collected.
+ * <p>
+ * Instances are not thread safe.
+ * @author Stephan Fuhrmann
+ */
+public final class DuplicateFilter {
+
+    /** The default false positive rate. */
+    public static final double DEFAULT_FALSE_POSITIVE_RATE = 0.001;
+
+    /** The largest number of hash functions. */
+    private static final int MAXIMUM_HASH_COUNT = 30;
+
+    /** Shift from bit index to buffer index, buffers of 1 GiB. */
+    private static final int BUFFER_SHIFT = 33;
+
+    /** The mask of the bit index within a buffer. */
+    private static final long BUFFER_BIT_MASK = (1L << BUFFER_SHIFT) - 1;
+
+    /** Shift from bit index to long word index. */
+    private static final int WORD_SHIFT = 6;
+
+    /** The mask of the bit index within a long word. */
+    private static final int BIT_MASK = Long.SIZE - 1;
+
+    /** Shift from long word index to byte offset. */
+    private static final int BYTE_SHIFT = 3;
+
+    /** The odd constant distinguishing the second hash. */
+    private static final long GOLDEN_GAMMA = 0x9e3779b97f4a7c15L;
+
+    /** The first multiplier of the hash finalizer. */
+    private static final long MIX1 = 0xbf58476d1ce4e5b9L;
+
+    /** The second multiplier of the hash finalizer. */
+    private static final long MIX2 = 0x94d049bb133111ebL;
+
+    /** The first shift of the hash finalizer. */
+    private static final int SHIFT1 = 30;
+
+    /** The second shift of the hash finalizer. */
+    private static final int SHIFT2 = 27;
+
+    /** The third shift of the hash finalizer. */
+    private static final int SHIFT3 = 31;
+
+    /** The bits, {@code 2^BUFFER_SHIFT} per buffer. */
+    private final ByteBuffer[] buffers;
+
+    /** The number of bits. */
+    private final long bitCount;
+
+    /** The number of bits set per key. */
+    private final int hashCount;
+
+    /** The false positive rate the filter was sized for. */
+    private final double targetFalsePositiveRate;
+
+    /** The number of keys the filter was sized for. */
+    private final long expectedKeys;
+
+    /** The number of bits set. */
+    private long setBits;
+
+    /** The number of keys reported as new. */
+    private long newKeys;
+
+    /** The number of keys reported as duplicate. */
+    private long duplicateKeys;
+
+    /**
+     * Creates a filter with the optimal size for the expected keys.
+     * @param inExpectedKeys the number of keys to add.
+     * @param falsePositiveRate the target false positive rate after
+     * adding the expected keys.
+     * @throws IllegalArgumentException if a parameter is out of range.
+     */
+    public DuplicateFilter(final long inExpectedKeys,
+            final double falsePositiveRate) {
+        this(inExpectedKeys, falsePositiveRate, Long.MAX_VALUE);
+    }
+
+    /**
+     * Creates a filter with the optimal size for the expected keys,
+     * but not larger than a memory bound. If the bound cuts the size,
+     * the false positive rate gets higher than the target,
+     * see {@link Statistics#getExpectedFalsePositiveRate()}.
+     * @param inExpectedKeys the number of keys to add.
+     * @param falsePositiveRate the target false positive rate after
+     * adding the expected keys.
+     * @param maximumBytes the maximum memory for the bits.
+     * @throws IllegalArgumentException if a parameter is out of range.
+     */
+    public DuplicateFilter(final long inExpectedKeys,
+            final double falsePositiveRate,
+            final long maximumBytes) {
+        if (inExpectedKeys < 1) {
+            throw new IllegalArgumentException(
+                    "Expected keys must be positive: " + inExpectedKeys);
+        }
+        if (!(falsePositiveRate > 0 && falsePositiveRate < 1)) {
+            throw new IllegalArgumentException(
+                    "False positive rate must be within 0 and 1: "
+                    + falsePositiveRate);
+        }
+        if (maximumBytes < Long.BYTES) {
+            throw new IllegalArgumentException(
+                    "Maximum bytes must be at least " + Long.BYTES + ": "
+                    + maximumBytes);
+        }
+        this.expectedKeys = inExpectedKeys;
+        this.targetFalsePositiveRate = falsePositiveRate;
+
+        // m = -n ln p / (ln 2)^2 bits, k = m / n ln 2 hash functions
+        double ln2 = Math.log(2);
+        double optimalBits = -inExpectedKeys * Math.log(falsePositiveRate)
+                / (ln2 * ln2);
+        long words = Math.min((long) Math.ceil(optimalBits / Long.SIZE),
+                maximumBytes / Long.BYTES);
+        this.bitCount = Math.max(1, words) * Long.SIZE;
+        this.hashCount = (int) Math.max(1, Math.min(MAXIMUM_HASH_COUNT,
+                Math.round((double) bitCount / inExpectedKeys * ln2)));
+
+        long bytes = bitCount >>> BYTE_SHIFT;
+        long bufferBytes = 1L << (BUFFER_SHIFT - BYTE_SHIFT);
+        int bufferCount = (int) ((bytes + bufferBytes - 1) / bufferBytes);
+        this.buffers = new ByteBuffer[bufferCount];
+        for (int i = 0; i < bufferCount; i++) {
+            buffers[i] = ByteBuffer.allocateDirect(
+                    (int) Math.min(bufferBytes, bytes - i * bufferBytes))
+                    .order(ByteOrder.nativeOrder());
+        }
+    }
+
+    /**
+     * Mixes the bits of a hash.
+     * @param key the hash to mix.
+     * @return the mixed hash.
+     */
+    private static long mix(final long key) {
+        long z = key;
+        z = (z ^ (z >>> SHIFT1)) * MIX1;
+        z = (z ^ (z >>> SHIFT2)) * MIX2;
+        return z ^ (z >>> SHIFT3);
+    }
+
+    /**
+     * Get the second hash of a key used for stepping between bits.
+     * The step is odd and so never zero. Since the bit count is a
+     * multiple of {@link Long#SIZE}, the step stays below it.
+     * @param key the key to hash.
+     * @return the step, an odd number less than the bit count.
+     */
+    private long step(final long key) {
+        return (mix(key + GOLDEN_GAMMA) >>> 1) % bitCount | 1;
+    }
+
+    /**
+     * Get the bit of the next hash function by double hashing.
+     * Both hashes of a key are reduced to the bit count once, so
+     * the following bits need no division.
+     * @param bit the bit of the current hash function.
+     * @param step the second hash of the key, less than the bit count.
+     * @return the bit of the next hash function.
+     */
+    private long next(final long bit, final long step) {
+        long result = bit + step;
+        return result >= bitCount ? result - bitCount : result;
+    }
+
+    /**
+     * Get the byte offset of the long word holding a bit
+     * within its buffer.
+     * @param bit the bit index.
+     * @return the byte offset.
+     */
+    private static int offset(final long bit) {
+        return (int) ((bit & BUFFER_BIT_MASK) >>> WORD_SHIFT) << BYTE_SHIFT;
+    }
+
+    /**
+     * Adds a key.
+     * @param key the key to add.
+     * @return {@code true} if the key is new, {@code false} if it is
+     * a duplicate or a false positive.
+     */
+    public boolean add(final long key) {
+        long bit = (mix(key) >>> 1) % bitCount;
+        long step = step(key);
+        boolean added = false;
+        for (int i = 0; i < hashCount; i++) {
+            ByteBuffer buffer = buffers[(int) (bit >>> BUFFER_SHIFT)];
+            int offset = offset(bit);
+            long word = buffer.getLong(offset);
+            long mask = 1L << (bit & BIT_MASK);
+            if ((word & mask) == 0) {
+                buffer.putLong(offset, word | mask);
+                setBits++;
+                added = true;
+            }
+            bit = next(bit, step);
+        }
+        if (added) {
+            newKeys++;
+        } else {
+            duplicateKeys++;
+        }
+        return added;
+    }
+
+    /**
+     * Adds the content hash of a matrix.
+     * @param matrix the matrix to add.
+     * @return {@code true} if the matrix is new, {@code false} if it is
+     * a duplicate or a false positive.
+     * @see GameMatrix#getContentHash()
+     */
+    public boolean add(final GameMatrix matrix) {
+        return add(matrix.getContentHash());
+    }
+
+    /**
+     * Adds the fingerprint of a canonical form.
+     * @param form the canonical form to add.
+     * @return {@code true} if the form is new, {@code false} if it is
+     * a duplicate or a false positive.
+     * @see CanonicalForm#getFingerprint()
+     */
+    public boolean add(final CanonicalForm form) {
+        return add(form.getFingerprint());
+    }
+
+    /**
+     * Checks whether a key might have been added, without adding it.
+     * @param key the key to check.
+     * @return {@code false} if the key was not added,
+     * {@code true} if it was added or is a false positive.
+     */
+    public boolean mightContain(final long key) {
+        long bit = (mix(key) >>> 1) % bitCount;
+        long step = step(key);
+        for (int i = 0; i < hashCount; i++) {
+            ByteBuffer buffer = buffers[(int) (bit >>> BUFFER_SHIFT)];
+            if ((buffer.getLong(offset(bit)) & 1L << (bit & BIT_MASK))
+                    == 0) {
+                return false;
+            }
+            bit = next(bit, step);
+        }
+        return true;
+    }
+
+    /**
+     * Get a snapshot of the counters and sizes of the filter.
+     * @return the current statistics.
+     */
+    public Statistics getStatistics() {
+        return new Statistics(this);
+    }
+
+    /** Counters and sizes of a filter at one point in time. */
+    public static final class Statistics {
+        /** The number of bytes per kibibyte. */
+        private static final double BYTES_PER_KIB = 1024;
+        /** The factor of ratios to percent. */
+        private static final double PERCENT = 100;
+
+        /** The number of keys reported as new. */
+        private final long newKeys;
+        /** The number of keys reported as duplicate. */
+        private final long duplicateKeys;
+        /** The number of keys the filter was sized for. */
+        private final long expectedKeys;
+        /** The number of bits. */
+        private final long bitCount;
+        /** The number of bits set. */
+        private final long setBits;
+        /** The number of bits set per key. */
+        private final int hashCount;
+        /** The false positive rate the filter was sized for. */
+        private final double targetFalsePositiveRate;
+
+        /**
+         * Copies the counters of a filter.
+         * @param filter the filter.
+         */
+        private Statistics(final DuplicateFilter filter) {
+            this.newKeys = filter.newKeys;
+            this.duplicateKeys = filter.duplicateKeys;
+            this.expectedKeys = filter.expectedKeys;
+            this.bitCount = filter.bitCount;
+            this.setBits = filter.setBits;
+            this.hashCount = filter.hashCount;
+            this.targetFalsePositiveRate = filter.targetFalsePositiveRate;
+        }
+
+        /**
+         * Get the number of keys reported as new.
+         * @return the new keys.
+         */
+        public long getNewCount() {
+            return newKeys;
+        }
+
+        /**
+         * Get the number of keys reported as duplicate, including
+         * false positives.
+         * @return the dropped keys.
+         */
+        public long getDuplicateCount() {
+            return duplicateKeys;
+        }
+
+        /**
+         * Get the number of keys the filter was sized for.
+         * @return the expected keys.
+         */
+        public long getExpectedCount() {
+            return expectedKeys;
+        }
+
+        /**
+         * Get the memory used by the bits.
+         * @return the off-heap bytes.
+         */
+        public long getMemoryBytes() {
+            return bitCount / Byte.SIZE;
+        }
+
+        /**
+         * Get the number of bits set per key.
+         * @return the number of hash functions.
+         */
+        public int getHashCount() {
+            return hashCount;
+        }
+
+        /**
+         * Get the false positive rate the filter was sized for.
+         * @return the target rate.
+         */
+        public double getTargetFalsePositiveRate() {
+            return targetFalsePositiveRate;
+        }
+
+        /**
+         * Get the share of bits set.
+         * @return the fill ratio between 0 and 1.
+         */
+        public double getFillRatio() {
+            return (double) setBits / bitCount;
+        }
+
+        /**
+         * Get the probability that the next new key is reported as
+         * duplicate, estimated from the bits set.
+         * @return the current false positive rate.
+         */
+        public double getFalsePositiveRate() {
+            return Math.pow(getFillRatio(), hashCount);
+        }
+
+        /**
+         * Get the false positive rate expected after adding the
+         * expected number of keys. Higher than the target if the memory
+         * bound cut the size of the filter.
+         * @return the expected false positive rate.
+         */
+        public double getExpectedFalsePositiveRate() {
+            return Math.pow(1 - Math.exp(-(double) hashCount * expectedKeys
+                    / bitCount), hashCount);
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.ROOT,
+                    "%d new, %d duplicate, %.1f KiB, %d hashes, "
+                    + "%.1f%% filled, false positive rate %.2e "
+                    + "(target %.2e, expected %.2e)",
+                    newKeys, duplicateKeys,
+                    getMemoryBytes() / BYTES_PER_KIB, hashCount,
+                    getFillRatio() * PERCENT, getFalsePositiveRate(),
+                    targetFalsePositiveRate,
+                    getExpectedFalsePositiveRate());
+        }
+    }
+}
@@ -0,0 +1,539 @@
+/*
+Sudoku - a fast Java Sudoku game creation library.
+Copyright (C) 2017-2018  Stephan Fuhrmann
+
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Library General Public
+License as published by the Free Software Foundation; either
+version 2 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+Library General Public License for more details.
+
+You should have received a copy of the GNU Library General Public
+License along with this library; if not, write to the
+Free Software Foundation, Inc., 51 Franklin St, Fifth Floor,
+Boston, MA  02110-1301, USA.
+*/
+package de.sfuhrm.sudoku;
+
+/**
+ * Finds candidate eliminations with the intermediate and advanced
+ * techniques of {@link SolveTechnique} on a {@link CandidateGrid}.
+ * All techniques work on the candidate masks per cell and the
+ * position masks per unit and digit of the grid, and on the peer
+ * tables of {@link SchemaTables}.
+ * Each call of {@link #eliminate()} applies the cheapest technique
+ * that removes at least one candidate.
+ * @author Stephan Fuhrmann
+ */
+final class Eliminator {
+
+    /** The subset size of pairs and X-Wings. */
+    private static final int PAIR = 2;
+
+    /** The subset size of triples and Swordfishes. */
+    private static final int TRIPLE = 3;
+
+    /** The grid to eliminate candidates in. */
+    private final CandidateGrid grid;
+
+    /** The lookup tables of the schema. */
+    private final SchemaTables tables;
+
+    /** The schema of the grid. */
+    private final GameSchema schema;
+
+    /** The edge dimension of the schema. */
+    private final int width;
+
+    /** The edge dimension of a block. */
+    private final int blockWidth;
+
+    /** The block positions per row within a block. */
+    private final int[] blockRowMasks;
+
+    /** The block positions per column within a block. */
+    private final int[] blockColumnMasks;
+
+    /** Scratch masks of the subset candidates. */
+    private final int[] masks;
+
+    /** Scratch indexes of the subset candidates. */
+    private final int[] items;
+
+    /** Scratch indexes into {@link #masks} of one combination. */
+    private final int[] combination;
+
+    /** The cell of the first removed candidate of the last step. */
+    private int firstCell;
+
+    /** The first removed candidate of the last step. */
+    private int firstDigit;
+
+    /**
+     * Creates an eliminator for a grid.
+     * @param inGrid the grid to work on.
+     */
+    Eliminator(final CandidateGrid inGrid) {
+        this.grid = inGrid;
+        this.tables = inGrid.getTables();
+        this.schema = inGrid.getSchema();
+        this.width = schema.getWidth();
+        this.blockWidth = schema.getBlockWidth();
+        blockRowMasks = new int[blockWidth];
+        blockColumnMasks = new int[blockWidth];
+        for (int i = 0; i < blockWidth; i++) {
+            for (int j = 0; j < blockWidth; j++) {
+                blockRowMasks[i] |= 1 << (i * blockWidth + j);
+                blockColumnMasks[i] |= 1 << (j * blockWidth + i);
+            }
+        }
+        masks = new int[width];
+        items = new int[width];
+        combination = new int[TRIPLE];
+        firstCell = CandidateGrid.NONE;
+    }
+
+    /**
+     * Get the grid this eliminator works on.
+     * @return the candidate grid.
+     */
+    CandidateGrid getGrid() {
+        return grid;
+    }
+
+    /**
+     * Get the cell of the first candidate removed by the last
+     * successful {@link #eliminate()} call.
+     * @return the cell index.
+     */
+    int getCell() {
+        return firstCell;
+    }
+
+    /**
+     * Get the first candidate removed by the last
+     * successful {@link #eliminate()} call.
+     * @return the digit.
+     */
+    int getDigit() {
+        return firstDigit;
+    }
+
+    /**
+     * Applies the technique with the lowest points that removes
+     * at least one candidate. All candidates the technique finds
+     * in one place, for example all cells seen by a pair, are removed.
+     * @return the applied technique, or {@code null} if no technique
+     * removes a candidate.
+     */
+    SolveTechnique eliminate() {
+        firstCell = CandidateGrid.NONE;
+        if (nakedSubset(PAIR)) {
+            return SolveTechnique.NAKED_PAIR;
+        }
+        if (pointing()) {
+            return SolveTechnique.POINTING_PAIR;
+        }
+        if (boxLineReduction()) {
+            return SolveTechnique.BOX_LINE_REDUCTION;
+        }
+        if (hiddenSubset(PAIR)) {
+            return SolveTechnique.HIDDEN_PAIR;
+        }
+        if (nakedSubset(TRIPLE)) {
+            return SolveTechnique.NAKED_TRIPLE;
+        }
+        if (hiddenSubset(TRIPLE)) {
+            return SolveTechnique.HIDDEN_TRIPLE;
+        }
+        if (fish(PAIR)) {
+            return SolveTechnique.X_WING;
+        }
+        if (xyWing()) {
+            return SolveTechnique.XY_WING;
+        }
+        if (fish(TRIPLE)) {
+            return SolveTechnique.SWORDFISH;
+        }
+        return null;
+    }
+
+    /**
+     * Removes a candidate and remembers the first removal.
+     * @param cell the cell index.
+     * @param digit the candidate to remove.
+     * @return {@code true} if the digit was a candidate of the cell.
+     */
+    private boolean remove(final int cell, final int digit) {
+        if (!grid.eliminate(cell, digit)) {
+            return false;
+        }
+        if (firstCell == CandidateGrid.NONE) {
+            firstCell = cell;
+            firstDigit = digit;
+        }
+        return true;
+    }
+
+    /**
+     * Removes candidates from the cells of a unit.
+     * @param unit the unit number.
+     * @param skipPositions the positions within the unit to keep.
+     * @param digits the candidates to remove.
+     * @return {@code true} if at least one candidate was removed.
+     */
+    private boolean removeFromUnit(final int unit,
+            final int skipPositions,
+            final int digits) {
+        boolean changed = false;
+        for (int p = 0; p < width; p++) {
+            if ((skipPositions & (1 << p)) != 0) {
+                continue;
+            }
+            int cell = tables.unitCell(unit, p);
+            for (int rest = grid.getCandidates(cell) & digits;
+                    rest != 0;
+                    rest &= rest - 1) {
+                changed |= remove(cell, Integer.numberOfTrailingZeros(rest));
+            }
+        }
+        return changed;
+    }
+
+    /**
+     * Sets the first combination of {@code size} out of {@code n}.
+     * @param size the number of elements per combination.
+     */
+    private void firstCombination(final int size) {
+        for (int i = 0; i < size; i++) {
+            combination[i] = i;
+        }
+    }
+
+    /**
+     * Advances to the next combination in lexicographic order.
+     * @param size the number of elements per combination.
+     * @param n the number of elements to choose from.
+     * @return {@code false} if there is no next combination.
+     */
+    private boolean nextCombination(final int size, final int n) {
+        int i = size - 1;
+        while (i >= 0 && combination[i] == n - size + i) {
+            i--;
+        }
+        if (i < 0) {
+            return false;
+        }
+        combination[i]++;
+        for (int j = i + 1; j < size; j++) {
+            combination[j] = combination[j - 1] + 1;
+        }
+        return true;
+    }
+
+    /**
+     * Get the union of the masks of the current combination.
+     * @param size the number of elements per combination.
+     * @return the union of the chosen masks.
+     */
+    private int combinedMask(final int size) {
+        int union = 0;
+        for (int i = 0; i < size; i++) {
+            union |= masks[combination[i]];
+        }
+        return union;
+    }
+
+    /**
+     * Get the union of the item bits of the current combination.
+     * @param size the number of elements per combination.
+     * @return the union of the bits of the chosen items.
+     */
+    private int combinedItems(final int size) {
+        int union = 0;
+        for (int i = 0; i < size; i++) {
+            union |= 1 << items[combination[i]];
+        }
+        return union;
+    }
+
+    /**
+     * Naked pairs and triples: {@code size} cells of a unit that have
+     * only {@code size} candidates in total. These candidates are
+     * removed from the other cells of the unit.
+     * @param size the subset size.
+     * @return {@code true} if at least one candidate was removed.
+     */
+    private boolean nakedSubset(final int size) {
+        for (int unit = 0; unit < tables.getUnitCount(); unit++) {
+            int n = 0;
+            for (int p = 0; p < width; p++) {
+                int candidates = grid.getCandidates(tables.unitCell(unit, p));
+                int count = Integer.bitCount(candidates);
+                if (count >= 2 && count <= size) {
+                    masks[n] = candidates;
+                    items[n] = p;
+                    n++;
+                }
+            }
+            if (n < size) {
+                continue;
+            }
+            firstCombination(size);
+            do {
+                int digits = combinedMask(size);
+                if (Integer.bitCount(digits) == size
+                        && removeFromUnit(unit, combinedItems(size), digits)) {
+                    return true;
+                }
+            } while (nextCombination(size, n));
+        }
+        return false;
+    }
+
+    /**
+     * Hidden pairs and triples: {@code size} digits of a unit that fit
+     * only into the same {@code size} cells. The other candidates
+     * are removed from these cells.
+     * @param size the subset size.
+     * @return {@code true} if at least one candidate was removed.
+     */
+    private boolean hiddenSubset(final int size) {
+        for (int unit = 0; unit < tables.getUnitCount(); unit++) {
+            int n = 0;
+            for (int digit = schema.getMinimumValue();
+                    digit <= schema.getMaximumValue();
+                    digit++) {
+                int positions = grid.getPositions(unit, digit);
+                int count = Integer.bitCount(positions);
+                if (count >= 2 && count <= size) {
+                    masks[n] = positions;
+                    items[n] = digit;
+                    n++;
+                }
+            }
+            if (n < size) {
+                continue;
+            }
+            firstCombination(size);
+            do {
+                int positions = combinedMask(size);
+                if (Integer.bitCount(positions) == size
+                        && removeFromUnit(unit, ~positions,
+                                ~combinedItems(size))) {
+                    return true;
+                }
+            } while (nextCombination(size, n));
+        }
+        return false;
+    }
+
+    /**
+     * Pointing pairs: a digit whose candidates in a block are confined
+     * to one row or column. The digit is removed from this row or
+     * column outside of the block.
+     * @return {@code true} if at least one candidate was removed.
+     */
+    private boolean pointing() {
+        for (int block = 0; block < width; block++) {
+            int unit = tables.blockUnit(block);
+            int blockRow = (block / blockWidth) * blockWidth;
+            int blockColumn = (block % blockWidth) * blockWidth;
+            int skipColumns = ((1 << blockWidth) - 1) << blockColumn;
+            int skipRows = ((1 << blockWidth) - 1) << blockRow;
+            for (int digit = schema.getMinimumValue();
+                    digit <= schema.getMaximumValue();
+                    digit++) {
+                int positions = grid.getPositions(unit, digit);
+                if (positions == 0) {
+                    continue;
+                }
+                for (int i = 0; i < blockWidth; i++) {
+                    if ((positions & ~blockRowMasks[i]) == 0
+                            && removeFromUnit(
+                                    tables.rowUnit(blockRow + i),
+                                    skipColumns, 1 << digit)) {
+                        return true;
+                    }
+                    if ((positions & ~blockColumnMasks[i]) == 0
+                            && removeFromUnit(
+                                    tables.columnUnit(blockColumn + i),
+                                    skipRows, 1 << digit)) {
+                        return true;
+                    }
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Box-line reductions: a digit whose candidates in a row or column
+     * are confined to one block. The digit is removed from the
+     * other cells of the block.
+     * @return {@code true} if at least one candidate was removed.
+     */
+    private boolean boxLineReduction() {
+        final int span = (1 << blockWidth) - 1;
+        for (int line = 0; line < width; line++) {
+            int lineBlock = line / blockWidth;
+            int lineOffset = line % blockWidth;
+            for (int digit = schema.getMinimumValue();
+                    digit <= schema.getMaximumValue();
+                    digit++) {
+                int rowPositions = grid.getPositions(
+                        tables.rowUnit(line), digit);
+                int columnPositions = grid.getPositions(
+                        tables.columnUnit(line), digit);
+                for (int i = 0; i < blockWidth; i++) {
+                    int mask = span << (i * blockWidth);
+                    if (rowPositions != 0
+                            && (rowPositions & ~mask) == 0
+                            && removeFromUnit(tables.blockUnit(
+                                    lineBlock * blockWidth + i),
+                                    blockRowMasks[lineOffset],
+                                    1 << digit)) {
+                        return true;
+                    }
+                    if (columnPositions != 0
+                            && (columnPositions & ~mask) == 0
+                            && removeFromUnit(tables.blockUnit(
+                                    i * blockWidth + lineBlock),
+                                    blockColumnMasks[lineOffset],
+                                    1 << digit)) {
+                        return true;
+                    }
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * X-Wings and Swordfishes: {@code size} rows in which a digit is
+     * confined to the same {@code size} columns. The digit is removed
+     * from these columns in the other rows. The same is done with
+     * rows and columns swapped.
+     * @param size the number of rows or columns.
+     * @return {@code true} if at least one candidate was removed.
+     */
+    private boolean fish(final int size) {
+        for (int digit = schema.getMinimumValue();
+                digit <= schema.getMaximumValue();
+                digit++) {
+            if (fish(size, digit, true) || fish(size, digit, false)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * X-Wings and Swordfishes for one digit and orientation.
+     * @param size the number of rows or columns.
+     * @param digit the digit.
+     * @param rows {@code true} to look for base rows and cover columns,
+     *             {@code false} for base columns and cover rows.
+     * @return {@code true} if at least one candidate was removed.
+     */
+    private boolean fish(final int size, final int digit,
+            final boolean rows) {
+        int n = 0;
+        for (int line = 0; line < width; line++) {
+            int unit = rows ? tables.rowUnit(line) : tables.columnUnit(line);
+            int positions = grid.getPositions(unit, digit);
+            int count = Integer.bitCount(positions);
+            if (count >= 2 && count <= size) {
+                masks[n] = positions;
+                items[n] = line;
+                n++;
+            }
+        }
+        if (n < size) {
+            return false;
+        }
+        firstCombination(size);
+        do {
+            int cover = combinedMask(size);
+            if (Integer.bitCount(cover) != size) {
+                continue;
+            }
+            int baseLines = combinedItems(size);
+            boolean changed = false;
+            for (int rest = cover; rest != 0; rest &= rest - 1) {
+                int line = Integer.numberOfTrailingZeros(rest);
+                int unit = rows
+                        ? tables.columnUnit(line) : tables.rowUnit(line);
+                changed |= removeFromUnit(unit, baseLines, 1 << digit);
+            }
+            if (changed) {
+                return true;
+            }
+        } while (nextCombination(size, n));
+        return false;
+    }
+
+    /**
+     * XY-Wings: a pivot cell with the candidates x and y, and two
+     * peers of it with the candidates x and z, and y and z.
+     * One of the two wings is z in any case, so z is removed from
+     * all cells that see both wings.
+     * @return {@code true} if at least one candidate was removed.
+     */
+    private boolean xyWing() {
+        final int peerCount = tables.getPeerCount();
+        for (int pivot = 0; pivot < schema.getTotalFields(); pivot++) {
+            int xy = grid.getCandidates(pivot);
+            if (Integer.bitCount(xy) != 2) {
+                continue;
+            }
+            for (int i = 0; i < peerCount; i++) {
+                int first = tables.peer(pivot, i);
+                int xz = grid.getCandidates(first);
+                if (Integer.bitCount(xz) != 2
+                        || Integer.bitCount(xz & xy) != 1) {
+                    continue;
+                }
+                int z = xz & ~xy;
+                int yz = (xy & ~xz) | z;
+                for (int j = 0; j < peerCount; j++) {
+                    int second = tables.peer(pivot, j);
+                    if (grid.getCandidates(second) == yz
+                            && removeFromCommonPeers(first, second,
+                                    Integer.numberOfTrailingZeros(z))) {
+                        return true;
+                    }
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Removes a candidate from all cells that are peers of two cells.
+     * @param first the first cell.
+     * @param second the second cell.
+     * @param digit the candidate to remove.
+     * @return {@code true} if at least one candidate was removed.
+     */
+    private boolean removeFromCommonPeers(final int first,
+            final int second,
+            final int digit) {
+        boolean changed = false;
+        for (int word = 0; word < tables.getPeerWords(); word++) {
+            for (long rest = tables.peerWord(first, word)
+                    & tables.peerWord(second, word);
+                    rest != 0;
+                    rest &= rest - 1) {
+                int cell = word * Long.SIZE
+                        + Long.numberOfTrailingZeros(rest);
+                changed |= remove(cell, digit);
+            }
+        }
+        return changed;
+    }
+}
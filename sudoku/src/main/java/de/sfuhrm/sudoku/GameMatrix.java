@@ -102,4 +102,20 @@ public interface GameMatrix {
             int row,
             int column,
             byte value);
+
+    /**
+     * Get a 64 bit hash of the schema dimensions and cell values.
+     * Each schema has its own random keys, also for the hash of an
+     * empty matrix, so matrices of different schemas do not collide
+     * systematically. Matrices with the same schema and cells have the
+     * same hash, also in different runs of the program, so the hash can
+     * be used as a compact key for caches and duplicate detection.
+     * The library implementations keep the hash up to date while
+     * cells are set, so getting it takes constant time.
+     *
+     * @return the content hash.
+     */
+    default long getContentHash() {
+        return SchemaTables.of(getSchema()).contentHash(this);
+    }
 }
@@ -44,7 +44,7 @@ public final class GameMatrixFactory {
      * to {@link GameSchema#getUnsetValue() unset}.
      */
     public GameMatrix newGameMatrix(final GameSchema gameSchema) {
-        return new GameMatrixImpl(gameSchema);
+        return new MaskedGameMatrixImpl(gameSchema);
     }
 
     /** Creates a new 9x9 Riddle instance.
@@ -32,14 +32,26 @@ class GameMatrixImpl implements Cloneable, GameMatrix {
      * */
     private final GameSchema gameSchema;
 
+    /** The edge dimension of the schema. */
+    private final int width;
+
+    /** The shared lookup tables of the schema. */
+    private final SchemaTables schemaTables;
+
+    /** The content hash of the cells, updated in {@link #set}.
+     * @see #getContentHash()
+     */
+    private long contentHash;
+
     /**
-     * The game field. The first dimension is the row, the second the column.
+     * The game field in row-major order. The cell in row {@code r}
+     * and column {@code c} is at {@code r * width + c}.
      * The value 0 means unallocated
      * (see {@link GameSchema#getUnsetValue() unset}).
      * The values 1-9 mean the corresponding cell
      * value.
      */
-    private final byte[][] data;
+    private final byte[] data;
 
     /**
      * Creates an empty riddle.
@@ -49,7 +61,11 @@ class GameMatrixImpl implements Cloneable, GameMatrix {
      */
     GameMatrixImpl(final GameSchema inGameSchema) {
         this.gameSchema = inGameSchema;
-        data = new byte[inGameSchema.getWidth()][inGameSchema.getWidth()];
+        this.width = inGameSchema.getWidth();
+        this.schemaTables = SchemaTables.of(inGameSchema);
+        data = new byte[inGameSchema.getTotalFields()];
+        // unset cells have the key 0
+        contentHash = schemaTables.emptyHash();
     }
 
     /**
@@ -59,7 +75,10 @@ class GameMatrixImpl implements Cloneable, GameMatrix {
      */
     GameMatrixImpl(final GameMatrixImpl source) {
         this.gameSchema = source.gameSchema;
-        data = QuadraticArrays.cloneArray(source.data);
+        this.width = source.width;
+        this.schemaTables = source.schemaTables;
+        data = source.data.clone();
+        contentHash = source.contentHash;
     }
 
     /** Sets all cells to the given values.
@@ -88,7 +107,7 @@ class GameMatrixImpl implements Cloneable, GameMatrix {
      */
     protected final void row(final int index, final byte[] target) {
         assert target.length == gameSchema.getWidth();
-        System.arraycopy(data[index], 0, target, 0, gameSchema.getWidth());
+        System.arraycopy(data, index * width, target, 0, width);
     }
 
     /** Gets a copy of the given column.
@@ -98,7 +117,7 @@ class GameMatrixImpl implements Cloneable, GameMatrix {
     protected final void column(final int index, final byte[] target) {
         assert target.length == gameSchema.getWidth();
         for (int i = 0; i < gameSchema.getWidth(); i++) {
-            target[i] = data[i][index];
+            target[i] = data[i * width + index];
         }
     }
 
@@ -117,7 +136,7 @@ class GameMatrixImpl implements Cloneable, GameMatrix {
         int roundColumn = roundToBlock(column);
         for (int i = 0; i < gameSchema.getBlockWidth(); i++) {
             for (int j = 0; j < gameSchema.getBlockWidth(); j++) {
-                target[k++] = data[roundRow + i][roundColumn + j];
+                target[k++] = data[(roundRow + i) * width + roundColumn + j];
             }
         }
     }
@@ -144,7 +163,16 @@ class GameMatrixImpl implements Cloneable, GameMatrix {
     @Override
     public final byte get(final int row, final int column) {
         assert getSchema().validCoords(row, column);
-        return data[row][column];
+        return data[row * width + column];
+    }
+
+    /**
+     * Get the value of a field by its row-major index.
+     * @param cell the row-major index of the cell.
+     * @return the cell value.
+     */
+    final byte getCell(final int cell) {
+        return data[cell];
     }
 
     /**
@@ -158,7 +186,10 @@ class GameMatrixImpl implements Cloneable, GameMatrix {
         assert getSchema().validCoords(row, column);
         assert getSchema().validValue(value)
                 : "Value out of range: " + value;
-        data[row][column] = value;
+        final int cell = row * width + column;
+        contentHash ^= schemaTables.cellValueKey(cell, data[cell])
+                ^ schemaTables.cellValueKey(cell, value);
+        data[cell] = value;
     }
 
     /**
@@ -169,12 +200,11 @@ class GameMatrixImpl implements Cloneable, GameMatrix {
     @Override
     public int getSetCount() {
         int count = 0;
-        for (int i = 0; i < gameSchema.getWidth(); i++) {
-            for (int j = 0; j < gameSchema.getWidth(); j++) {
-                assert getSchema().validValue(data[i][j]);
-                if (data[i][j] != gameSchema.getUnsetValue()) {
-                    count++;
-                }
+        final byte unset = gameSchema.getUnsetValue();
+        for (byte value : data) {
+            assert getSchema().validValue(value);
+            if (value != unset) {
+                count++;
             }
         }
         assert count >= 0 && count <= gameSchema.getTotalFields();
@@ -188,7 +218,11 @@ class GameMatrixImpl implements Cloneable, GameMatrix {
      */
     @Override
     public final byte[][] getArray() {
-        return QuadraticArrays.cloneArray(data);
+        byte[][] result = new byte[width][width];
+        for (int row = 0; row < width; row++) {
+            System.arraycopy(data, row * width, result[row], 0, width);
+        }
+        return result;
     }
 
     @Override
@@ -198,7 +232,7 @@ class GameMatrixImpl implements Cloneable, GameMatrix {
 
     @Override
     public int hashCode() {
-        return Arrays.deepHashCode(this.data);
+        return Long.hashCode(contentHash);
     }
 
     @Override
@@ -213,7 +247,19 @@ class GameMatrixImpl implements Cloneable, GameMatrix {
             return false;
         }
         final GameMatrixImpl other = (GameMatrixImpl) obj;
-        return Arrays.deepEquals(this.data, other.data);
+        return this.contentHash == other.contentHash
+                && this.width == other.width
+                && Arrays.equals(this.data, other.data);
+    }
+
+    /**
+     * Get a 64 bit hash of the schema dimensions and cell values.
+     * Kept up to date while setting cells.
+     * @return the content hash.
+     */
+    @Override
+    public final long getContentHash() {
+        return contentHash;
     }
 
     @Override
@@ -264,37 +310,42 @@ class GameMatrixImpl implements Cloneable, GameMatrix {
 
     /**
      * Checks if the whole play field is valid.
+     * Row, column and block {@code i} are checked in the same iteration
+     * with running masks, without copying cells or allocating.
      * @return {@code true} if the filled rows, columns and blocks
      * contain no duplicate numbers.
      */
     @Override
-    public final boolean isValid() {
-        boolean result = true;
+    public boolean isValid() {
+        final int blockWidth = gameSchema.getBlockWidth();
+        // the bit of unset cells is never a duplicate
+        final int valueBits = ~(1 << gameSchema.getUnsetValue());
 
-        byte[] tmpData = new byte[gameSchema.getWidth()];
-
-        for (int i = 0; result && i < gameSchema.getWidth(); i++) {
-            row(i, tmpData);
-            result &= findDuplicateBits(gameSchema, tmpData) == 0;
-        }
-
-        for (int i = 0; result && i < gameSchema.getWidth(); i++) {
-            column(i, tmpData);
-            result &= findDuplicateBits(gameSchema, tmpData) == 0;
-        }
-
-        for (int i = 0;
-             result && i < gameSchema.getWidth();
-             i += gameSchema.getBlockWidth()) {
-            for (int j = 0;
-                 result && j < gameSchema.getWidth();
-                 j += gameSchema.getBlockWidth()) {
-                block(i, j, tmpData);
-                result &= findDuplicateBits(gameSchema, tmpData) == 0;
+        int duplicates = 0;
+        for (int i = 0; i < width && duplicates == 0; i++) {
+            int rowMask = 0;
+            int columnMask = 0;
+            for (int j = 0; j < width; j++) {
+                final int rowBit = 1 << data[i * width + j];
+                final int columnBit = 1 << data[j * width + i];
+                duplicates |= (rowMask & rowBit) | (columnMask & columnBit);
+                rowMask |= rowBit;
+                columnMask |= columnBit;
             }
+            final int blockRow = i - i % blockWidth;
+            final int blockColumn = (i % blockWidth) * blockWidth;
+            int blockMask = 0;
+            for (int row = blockRow; row < blockRow + blockWidth; row++) {
+                final int start = row * width + blockColumn;
+                for (int cell = start; cell < start + blockWidth; cell++) {
+                    final int blockBit = 1 << data[cell];
+                    duplicates |= blockMask & blockBit;
+                    blockMask |= blockBit;
+                }
+            }
+            duplicates &= valueBits;
         }
-
-        return result;
+        return duplicates == 0;
     }
 
     /** Gets the free mask for the given row.
@@ -398,6 +449,13 @@ class GameMatrixImpl implements Cloneable, GameMatrix {
         CONTRADICTION
     }
 
+    /** Marker of {@link #findLeastFreeCellIndex()} for no free cell. */
+    static final int NO_FREE_CELL = -1;
+
+    /** Marker of {@link #findLeastFreeCellIndex()} for a free cell
+     * without candidates. */
+    static final int CONTRADICTING_CELL = -2;
+
     /** Find the cell with the lest number of possible candidates.
      * @param rowColumnResult an object receiving the
      * row and column of the result.
@@ -406,12 +464,29 @@ class GameMatrixImpl implements Cloneable, GameMatrix {
      * {@linkplain FreeCellResult#CONTRADICTION} if cells were free but
      * could not be occupied.
      */
-    FreeCellResult findLeastFreeCell(final CellIndex rowColumnResult) {
+    final FreeCellResult findLeastFreeCell(final CellIndex rowColumnResult) {
+        int cell = findLeastFreeCellIndex();
+        if (cell == NO_FREE_CELL) {
+            return FreeCellResult.NONE_FREE;
+        }
+        if (cell == CONTRADICTING_CELL) {
+            return FreeCellResult.CONTRADICTION;
+        }
+        rowColumnResult.row = cell / gameSchema.getWidth();
+        rowColumnResult.column = cell % gameSchema.getWidth();
+        return FreeCellResult.FOUND;
+    }
+
+    /** Find the cell with the lest number of possible candidates.
+     * @return the row-major index of the cell,
+     * {@link #NO_FREE_CELL} if all cells are occupied, or
+     * {@link #CONTRADICTING_CELL} if cells were free but
+     * could not be occupied.
+     */
+    int findLeastFreeCellIndex() {
         int minimumBits = Integer.MAX_VALUE;
-        int minimumRow = -1;
-        int minimumColumn = -1;
+        int minimumCell = NO_FREE_CELL;
 
-        final int width = gameSchema.getWidth();
         final byte unset = gameSchema.getUnsetValue();
         search:
         for (int row = 0; row < width; row++) {
@@ -426,15 +501,14 @@ class GameMatrixImpl implements Cloneable, GameMatrix {
                 }
                 int free = getFreeMask(row, column);
                 if (free == 0) {
-                    return FreeCellResult.CONTRADICTION;
+                    return CONTRADICTING_CELL;
                 }
                 int bits = Integer.bitCount(free);
 
                 assert bits > 0 && bits <= width;
 
                 if (bits < minimumBits) {
-                    minimumColumn = column;
-                    minimumRow = row;
+                    minimumCell = row * width + column;
                     minimumBits = bits;
                     if (minimumBits == 1) {
                         // there is nothing better than 1 bits
@@ -444,10 +518,6 @@ class GameMatrixImpl implements Cloneable, GameMatrix {
                 }
             }
         }
-        rowColumnResult.row = minimumRow;
-        rowColumnResult.column = minimumColumn;
-        return minimumBits != Integer.MAX_VALUE
-                ? FreeCellResult.FOUND
-                : FreeCellResult.NONE_FREE;
+        return minimumCell;
     }
 }
@@ -0,0 +1,53 @@
+/*
+Sudoku - a fast Java Sudoku game creation library.
+Copyright (C) 2017-2018  Stephan Fuhrmann
+
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Library General Public
+License as published by the Free Software Foundation; either
+version 2 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+Library General Public License for more details.
+
+You should have received a copy of the GNU Library General Public
+License along with this library; if not, write to the
+Free Software Foundation, Inc., 51 Franklin St, Fifth Floor,
+Boston, MA  02110-1301, USA.
+*/
+package de.sfuhrm.sudoku;
+
+/**
+ * The ways {@link Creator} can create full grids.
+ * @see Creator#createFull(GameSchema, GenerationStrategy)
+ * @author Stephan Fuhrmann
+ */
+public enum GenerationStrategy {
+    /**
+     * Fills the blocks on the diagonal randomly and completes the
+     * grid by backtracking. Works for all schemas. Lower values are
+     * tried first, so the grids are not evenly distributed.
+     */
+    BACKTRACKING,
+
+    /**
+     * Repairs a grid of random row permutations by swapping cells
+     * within rows until no column or block has a duplicate digit.
+     * The running time is much more predictable than backtracking for
+     * large schemas like {@link GameSchemas#SCHEMA_25X25}.
+     * Falls back to {@link #BACKTRACKING} if the search does not
+     * converge within a number of iterations. Works for all schemas.
+     */
+    MIN_CONFLICTS;
+
+    /**
+     * Checks whether the strategy can create grids of a schema.
+     * @param schema the schema to check.
+     * @return {@code true} if the schema is supported.
+     */
+    public boolean supports(final GameSchema schema) {
+        return true;
+    }
+}
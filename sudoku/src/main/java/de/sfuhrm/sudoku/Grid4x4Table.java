@@ -0,0 +1,212 @@
+/*
+Sudoku - a fast Java Sudoku game creation library.
+Copyright (C) 2017-2018  Stephan Fuhrmann
+
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Library General Public
+License as published by the Free Software Foundation; either
+version 2 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+Library General Public License for more details.
+
+You should have received a copy of the GNU Library General Public
+License along with this library; if not, write to the
+Free Software Foundation, Inc., 51 Franklin St, Fifth Floor,
+Boston, MA  02110-1301, USA.
+*/
+package de.sfuhrm.sudoku;
+
+import java.util.List;
+import java.util.Random;
+
+/**
+ * A table of all valid full 4x4 grids.
+ * There are only {@value #GRID_COUNT} of them, so solving and counting
+ * solutions of a 4x4 riddle is a scan of the table instead of a search.
+ * Each grid is packed into one int with two bits per cell holding the
+ * value minus one, cell {@code row * 4 + column} at bit
+ * {@code 2 * (row * 4 + column)}.
+ * A riddle is packed into a mask with both bits of each set cell and
+ * the values of the set cells. A grid is a solution if its bits under
+ * the mask equal the values.
+ * The table is built when the class is first used.
+ * @author Stephan Fuhrmann
+ */
+final class Grid4x4Table {
+
+    /** The number of valid full 4x4 grids. */
+    static final int GRID_COUNT = 288;
+
+    /** The width of the grids. */
+    private static final int WIDTH = 4;
+
+    /** The width of the blocks. */
+    private static final int BLOCK_WIDTH = 2;
+
+    /** The number of cells of the grids. */
+    private static final int CELLS = WIDTH * WIDTH;
+
+    /** The bits per packed cell. */
+    private static final int CELL_BITS = 2;
+
+    /** The mask of one packed cell. */
+    private static final int CELL_MASK = (1 << CELL_BITS) - 1;
+
+    /** All valid full grids in lexicographic order. */
+    private static final int[] GRIDS = build();
+
+    /** Utility class. */
+    private Grid4x4Table() {
+    }
+
+    /**
+     * Checks whether the table is for a schema.
+     * @param schema the schema to check.
+     * @return {@code true} if the schema is the 4x4 schema.
+     */
+    static boolean supports(final GameSchema schema) {
+        return GameSchemas.SCHEMA_4X4.equals(schema);
+    }
+
+    /**
+     * Packs the set cells of a 4x4 matrix into a mask.
+     * @param matrix the matrix to pack.
+     * @return a mask with both bits of each set cell.
+     */
+    static int mask(final GameMatrix matrix) {
+        int result = 0;
+        for (int cell = 0; cell < CELLS; cell++) {
+            if (matrix.get(cell / WIDTH, cell % WIDTH)
+                    != matrix.getSchema().getUnsetValue()) {
+                result |= CELL_MASK << (cell * CELL_BITS);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Packs the values of the set cells of a 4x4 matrix.
+     * @param matrix the matrix to pack.
+     * @return the values minus one of the set cells.
+     */
+    static int values(final GameMatrix matrix) {
+        int result = 0;
+        for (int cell = 0; cell < CELLS; cell++) {
+            byte value = matrix.get(cell / WIDTH, cell % WIDTH);
+            if (value != matrix.getSchema().getUnsetValue()) {
+                result |= (value - matrix.getSchema().getMinimumValue())
+                        << (cell * CELL_BITS);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Finds the grids matching a packed riddle.
+     * @param mask the mask of the set cells of the riddle.
+     * @param values the values of the set cells of the riddle.
+     * @param limit the maximum number of grids to find.
+     * @param target the list to add the found grids to,
+     *               or {@code null} to only count them.
+     * @return the number of found grids, at most the limit.
+     */
+    static int find(final int mask,
+            final int values,
+            final int limit,
+            final List<GameMatrix> target) {
+        int count = 0;
+        for (int i = 0; i < GRIDS.length && count < limit; i++) {
+            if ((GRIDS[i] & mask) == values) {
+                if (target != null) {
+                    GameMatrix solution =
+                            new GameMatrixImpl(GameSchemas.SCHEMA_4X4);
+                    copyTo(GRIDS[i], solution);
+                    target.add(solution);
+                }
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Copies a random grid of the table to a matrix.
+     * @param random the source of randomness.
+     * @param target the 4x4 matrix to overwrite.
+     */
+    static void random(final Random random, final GameMatrix target) {
+        copyTo(GRIDS[random.nextInt(GRIDS.length)], target);
+    }
+
+    /**
+     * Unpacks a grid into a matrix.
+     * @param grid the packed grid.
+     * @param target the 4x4 matrix to overwrite.
+     */
+    private static void copyTo(final int grid, final GameMatrix target) {
+        for (int cell = 0; cell < CELLS; cell++) {
+            target.set(cell / WIDTH, cell % WIDTH,
+                    (byte) (((grid >>> (cell * CELL_BITS)) & CELL_MASK)
+                            + target.getSchema().getMinimumValue()));
+        }
+    }
+
+    /**
+     * Enumerates all valid full grids.
+     * @return the packed grids.
+     */
+    private static int[] build() {
+        int[] grids = new int[GRID_COUNT];
+        int count = fill(0, 0, new int[WIDTH], new int[WIDTH],
+                new int[WIDTH], grids, 0);
+        assert count == GRID_COUNT : "Unexpected grid count " + count;
+        return grids;
+    }
+
+    /**
+     * Fills the cells from a cell on with all values allowed.
+     * @param cell the cell to fill next.
+     * @param grid the packed cells before the cell.
+     * @param rows the used values per row as bits.
+     * @param columns the used values per column as bits.
+     * @param blocks the used values per block as bits.
+     * @param target the array to store the completed grids in.
+     * @param count the number of grids stored so far.
+     * @return the number of grids stored after this call.
+     */
+    private static int fill(final int cell,
+            final int grid,
+            final int[] rows,
+            final int[] columns,
+            final int[] blocks,
+            final int[] target,
+            final int count) {
+        if (cell == CELLS) {
+            target[count] = grid;
+            return count + 1;
+        }
+        int row = cell / WIDTH;
+        int column = cell % WIDTH;
+        int block = row / BLOCK_WIDTH * BLOCK_WIDTH + column / BLOCK_WIDTH;
+        int used = rows[row] | columns[column] | blocks[block];
+        int result = count;
+        for (int value = 0; value < WIDTH; value++) {
+            int bit = 1 << value;
+            if ((used & bit) == 0) {
+                rows[row] |= bit;
+                columns[column] |= bit;
+                blocks[block] |= bit;
+                result = fill(cell + 1,
+                        grid | value << (cell * CELL_BITS),
+                        rows, columns, blocks, target, result);
+                rows[row] &= ~bit;
+                columns[column] &= ~bit;
+                blocks[block] &= ~bit;
+            }
+        }
+        return result;
+    }
+}
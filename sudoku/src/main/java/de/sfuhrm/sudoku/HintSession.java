@@ -0,0 +1,207 @@
+/*
+Sudoku - a fast Java Sudoku game creation library.
+Copyright (C) 2017-2018  Stephan Fuhrmann
+
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Library General Public
+License as published by the Free Software Foundation; either
+version 2 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+Library General Public License for more details.
+
+You should have received a copy of the GNU Library General Public
+License along with this library; if not, write to the
+Free Software Foundation, Inc., 51 Franklin St, Fifth Floor,
+Boston, MA  02110-1301, USA.
+*/
+package de.sfuhrm.sudoku;
+
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Gives hints for the next logical step in a game that is being played.
+ * The session keeps the candidates of the current board and updates
+ * them with each move, so a hint usually costs a few microseconds
+ * instead of a full {@link Solver} or analyzer run.
+ * The memory of a session only depends on the schema, it does not
+ * grow with the number of moves or hints.
+ * <p>
+ * Usage:
+ * <pre>
+ * HintSession session = new HintSession(riddle);
+ * SolveStep hint = session.nextHint();
+ * session.set(row, column, value);
+ * </pre>
+ * Instances are not thread safe.
+ * @author Stephan Fuhrmann
+ */
+public final class HintSession {
+
+    /** The current board with the moves applied. */
+    private final GameMatrixImpl board;
+
+    /** The candidates of the current board. */
+    private final CandidateGrid grid;
+
+    /** Eliminates candidates in {@link #grid}. */
+    private final Eliminator eliminator;
+
+    /**
+     * Creates a session for a game.
+     * @param game the current state of the game, is copied.
+     */
+    public HintSession(final GameMatrix game) {
+        Objects.requireNonNull(game, "game is null");
+        board = new GameMatrixImpl(game.getSchema());
+        grid = new CandidateGrid(game.getSchema());
+        eliminator = new Eliminator(grid);
+        reset(game);
+    }
+
+    /**
+     * Starts over with another game of the same schema.
+     * @param game the current state of the game, is copied.
+     * @throws IllegalArgumentException if the schema differs.
+     */
+    public void reset(final GameMatrix game) {
+        Objects.requireNonNull(game, "game is null");
+        if (!board.getSchema().equals(game.getSchema())) {
+            throw new IllegalArgumentException("Schema mismatch");
+        }
+        board.setAll(game.getArray());
+        grid.reset(board);
+    }
+
+    /**
+     * Get the schema of the game.
+     * @return the game schema.
+     */
+    public GameSchema getSchema() {
+        return board.getSchema();
+    }
+
+    /**
+     * Get a value of the current board.
+     * @param row the row of the cell.
+     * @param column the column of the cell.
+     * @return the value of the cell or the unset value.
+     */
+    public byte get(final int row, final int column) {
+        return board.get(row, column);
+    }
+
+    /**
+     * Applies a move of the player.
+     * Setting a digit that is a candidate of an empty cell only updates
+     * the peers of the cell. Other moves, like clearing a cell, recompute
+     * the candidates of the board and drop the candidates removed by
+     * previous hints.
+     * @param row the row of the cell.
+     * @param column the column of the cell.
+     * @param value the new value of the cell or the unset value.
+     * @throws IllegalArgumentException if the coordinates or the value
+     * are out of range.
+     */
+    public void set(final int row, final int column, final byte value) {
+        GameSchema schema = board.getSchema();
+        if (!schema.validCoords(row, column)) {
+            throw new IllegalArgumentException(
+                    "Coordinates out of range: " + row + ", " + column);
+        }
+        if (!schema.validValue(value)) {
+            throw new IllegalArgumentException(
+                    "Value out of range: " + value);
+        }
+        byte old = board.get(row, column);
+        if (old == value) {
+            return;
+        }
+        board.set(row, column, value);
+        int cell = row * schema.getWidth() + column;
+        if (old == schema.getUnsetValue()
+                && (grid.getCandidates(cell) & (1 << value)) != 0) {
+            grid.place(cell, value);
+        } else {
+            grid.reset(board);
+        }
+    }
+
+    /**
+     * Finds the next logical step on the current board.
+     * Singles are returned first, then the cheapest elimination
+     * technique. Placing steps are not applied, the player does so
+     * with {@link #set(int, int, byte)}. The candidates removed by an
+     * eliminating step are removed from the session right away, so the
+     * following hint builds on them.
+     * If no technique applies, a {@link SolveTechnique#BACKTRACKING}
+     * step with a value of the solution is returned.
+     * @return the next step, or {@code null} if the board is complete
+     * or has no solution.
+     */
+    public SolveStep nextHint() {
+        final SchemaTables tables = grid.getTables();
+        if (grid.getSetCount() == board.getSchema().getTotalFields()) {
+            return null;
+        }
+        int cell = grid.nextNakedSingle();
+        if (cell != CandidateGrid.NONE) {
+            return new SolveStep(SolveTechnique.NAKED_SINGLE,
+                    tables.row(cell),
+                    tables.column(cell),
+                    (byte) Integer.numberOfTrailingZeros(
+                            grid.getCandidates(cell)));
+        }
+        int single = grid.nextHiddenSingle();
+        if (single != CandidateGrid.NONE) {
+            cell = grid.singleCell(single);
+            return new SolveStep(SolveTechnique.HIDDEN_SINGLE,
+                    tables.row(cell),
+                    tables.column(cell),
+                    (byte) grid.singleDigit(single));
+        }
+        SolveTechnique technique = eliminator.eliminate();
+        if (technique != null) {
+            return new SolveStep(technique,
+                    tables.row(eliminator.getCell()),
+                    tables.column(eliminator.getCell()),
+                    (byte) eliminator.getDigit());
+        }
+        return backtrackingHint();
+    }
+
+    /**
+     * Searches a solution of the current board and reveals the
+     * value of the unset cell with the least candidates.
+     * @return the step, or {@code null} if the board has no solution.
+     */
+    private SolveStep backtrackingHint() {
+        if (!board.isValid()) {
+            return null;
+        }
+        Solver solver = new Solver(board);
+        solver.setLimit(1);
+        List<GameMatrix> solutions = solver.solve();
+        if (solutions.isEmpty()) {
+            return null;
+        }
+        final SchemaTables tables = grid.getTables();
+        int best = CandidateGrid.NONE;
+        for (int cell = 0; cell < board.getSchema().getTotalFields();
+                cell++) {
+            if (grid.get(cell) == board.getSchema().getUnsetValue()
+                    && (best == CandidateGrid.NONE
+                    || Integer.bitCount(grid.getCandidates(cell))
+                    < Integer.bitCount(grid.getCandidates(best)))) {
+                best = cell;
+            }
+        }
+        return new SolveStep(SolveTechnique.BACKTRACKING,
+                tables.row(best),
+                tables.column(best),
+                solutions.get(0).get(tables.row(best), tables.column(best)));
+    }
+}
@@ -0,0 +1,214 @@
+/*
+Sudoku - a fast Java Sudoku game creation library.
+Copyright (C) 2017-2018  Stephan Fuhrmann
+
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Library General Public
+License as published by the Free Software Foundation; either
+version 2 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+Library General Public License for more details.
+
+You should have received a copy of the GNU Library General Public
+License along with this library; if not, write to the
+Free Software Foundation, Inc., 51 Franklin St, Fifth Floor,
+Boston, MA  02110-1301, USA.
+*/
+package de.sfuhrm.sudoku;
+
+/**
+ * A version with incrementally maintained free masks.
+ * Unlike {@link CachedGameMatrixImpl}, this class counts the duplicate
+ * values, so illegal moves that duplicate a value are allowed and
+ * undone correctly.
+ * Getting a free mask, {@link #canSet(int, int, byte)}
+ * and {@link #isValid()} take constant time and allocate nothing.
+ * Setting a cell takes constant time as long as the matrix is valid.
+ * Only clearing a value while duplicates exist scans the units
+ * of the cell.
+ * This class is for playing with a human being.
+ * @author Stephan Fuhrmann
+ */
+class MaskedGameMatrixImpl extends GameMatrixImpl {
+
+    /** The shared lookup tables of the schema. */
+    private final SchemaTables tables;
+
+    /** The edge dimension of the schema. */
+    private final int width;
+
+    /** The value of unset cells. */
+    private final byte unset;
+
+    /** The mask of all values of the schema. */
+    private final int bitMask;
+
+    /** The values occurring at least once per unit as bits.
+     * The units are numbered as in {@link SchemaTables}.
+     * A set 1-bit means that the digit 1 is used.
+     * A set 2-bit means that the digit 2 is used.
+     * And so on.
+     */
+    private final int[] used;
+
+    /** The number of occurrences of values in units beyond the
+     * first one. Zero if the matrix is valid.
+     */
+    private int duplicates;
+
+    /** The count of non-{@link GameSchema#getUnsetValue() unset} cells.
+     * @see #getSetCount()
+     */
+    private int setCount;
+
+    /**
+     * Creates an empty matrix.
+     * @param schema the game schema that defines the dimensions.
+     */
+    MaskedGameMatrixImpl(final GameSchema schema) {
+        super(schema);
+        tables = SchemaTables.of(schema);
+        width = schema.getWidth();
+        unset = schema.getUnsetValue();
+        bitMask = schema.getBitMask();
+        used = new int[tables.getUnitCount()];
+    }
+
+    /**
+     * Clone constructor.
+     * @param source the source to initialize with.
+     */
+    MaskedGameMatrixImpl(final MaskedGameMatrixImpl source) {
+        super(source);
+        tables = source.tables;
+        width = source.width;
+        unset = source.unset;
+        bitMask = source.bitMask;
+        used = source.used.clone();
+        duplicates = source.duplicates;
+        setCount = source.setCount;
+    }
+
+    @Override
+    public void set(final int row, final int column, final byte value) {
+        assert getSchema().validCoords(row, column);
+        assert getSchema().validValue(value)
+                : "Value out of range: " + value;
+        final byte oldValue = get(row, column);
+        if (oldValue != value) {
+            final int cell = row * width + column;
+            final int block = tables.block(cell);
+            if (oldValue != unset) {
+                remove(tables.rowUnit(row), oldValue, cell);
+                remove(tables.columnUnit(column), oldValue, cell);
+                remove(tables.blockUnit(block), oldValue, cell);
+                setCount--;
+            }
+            if (value != unset) {
+                add(tables.rowUnit(row), value);
+                add(tables.columnUnit(column), value);
+                add(tables.blockUnit(block), value);
+                setCount++;
+            }
+        }
+        super.set(row, column, value);
+    }
+
+    /** Adds an occurrence of a value to a unit.
+     * @param unit the unit number.
+     * @param value the value, not unset.
+     */
+    private void add(final int unit, final byte value) {
+        final int bit = 1 << value;
+        if ((used[unit] & bit) != 0) {
+            duplicates++;
+        } else {
+            used[unit] |= bit;
+        }
+    }
+
+    /** Removes an occurrence of a value from a unit.
+     * @param unit the unit number.
+     * @param value the value, not unset.
+     * @param cell the row-major index of the cell still holding
+     *             the value.
+     */
+    private void remove(final int unit, final byte value, final int cell) {
+        assert (used[unit] & (1 << value)) != 0;
+        // without duplicates no other cell of the unit has the value
+        if (duplicates > 0 && occursElsewhere(unit, value, cell)) {
+            duplicates--;
+        } else {
+            used[unit] &= ~(1 << value);
+        }
+    }
+
+    /** Checks whether a value occurs in another cell of a unit.
+     * @param unit the unit number.
+     * @param value the value to look for.
+     * @param cell the row-major index of the cell to skip.
+     * @return {@code true} if another cell of the unit has the value.
+     */
+    private boolean occursElsewhere(final int unit,
+            final byte value,
+            final int cell) {
+        for (int position = 0; position < width; position++) {
+            int other = tables.unitCell(unit, position);
+            if (other != cell && getCell(other) == value) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    int getRowFreeMask(final int row) {
+        return ~used[tables.rowUnit(row)] & bitMask;
+    }
+
+    @Override
+    int getColumnFreeMask(final int column) {
+        return ~used[tables.columnUnit(column)] & bitMask;
+    }
+
+    @Override
+    int getBlockFreeMask(final int row, final int column) {
+        int block = tables.block(row * width + column);
+        return ~used[tables.blockUnit(block)] & bitMask;
+    }
+
+    @Override
+    int getFreeMask(final int row, final int column) {
+        assert getSchema().validCoords(row, column);
+        int block = tables.block(row * width + column);
+        return ~(used[tables.rowUnit(row)]
+                | used[tables.columnUnit(column)]
+                | used[tables.blockUnit(block)])
+                & bitMask;
+    }
+
+    /**
+     * Checks if the whole play field is valid.
+     * Takes constant time because duplicates are counted while
+     * setting cells.
+     * @return {@code true} if the filled rows, columns and blocks
+     * contain no duplicate numbers.
+     */
+    @Override
+    public boolean isValid() {
+        return duplicates == 0;
+    }
+
+    @Override
+    public int getSetCount() {
+        return setCount;
+    }
+
+    @Override
+    public MaskedGameMatrixImpl clone() {
+        return new MaskedGameMatrixImpl(this);
+    }
+}
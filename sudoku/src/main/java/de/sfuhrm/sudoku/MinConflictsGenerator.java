@@ -0,0 +1,277 @@
+/*
+Sudoku - a fast Java Sudoku game creation library.
+Copyright (C) 2017-2018  Stephan Fuhrmann
+
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Library General Public
+License as published by the Free Software Foundation; either
+version 2 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+Library General Public License for more details.
+
+You should have received a copy of the GNU Library General Public
+License along with this library; if not, write to the
+Free Software Foundation, Inc., 51 Franklin St, Fifth Floor,
+Boston, MA  02110-1301, USA.
+*/
+package de.sfuhrm.sudoku;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Creates full grids by a min-conflicts local search with a tabu list.
+ * Each row always holds a permutation of all digits, so rows are never
+ * in conflict. The conflicts are the surplus digits in the columns and
+ * blocks, counted by per-column and per-block digit counters that are
+ * updated with each move. A move swaps two cells of one row: a random
+ * conflicting cell is swapped with the cell of its row that lowers the
+ * conflicts most, or raises them least. Recently moved cells are tabu
+ * for a few iterations unless the move lowers the conflicts.
+ * <p>
+ * Unlike backtracking, the running time grows smoothly with the
+ * schema size, so this is the better fit for large schemas.
+ * Instances are not thread safe.
+ * @author Stephan Fuhrmann
+ */
+final class MinConflictsGenerator {
+
+    /** The iterations a moved cell stays tabu. */
+    static final int TABU_TENURE = 3;
+
+    /** The iterations per cell before giving up. */
+    static final int ITERATIONS_PER_CELL = 100;
+
+    /** The schema of the grids. */
+    private final GameSchema schema;
+
+    /** The source of randomness. */
+    private final Random random;
+
+    /** The width of the grids. */
+    private final int width;
+
+    /** The cell values by row and column. */
+    private final byte[][] cells;
+
+    /** The occurrences of each digit per column. */
+    private final int[][] columnCounts;
+
+    /** The occurrences of each digit per block. */
+    private final int[][] blockCounts;
+
+    /** The iteration until which a cell is tabu, by row and column. */
+    private final long[][] tabu;
+
+    /** The surplus digits in all columns and blocks. */
+    private int conflicts;
+
+    /**
+     * Creates a generator.
+     * @param inSchema the schema of the grids to create.
+     * @param inRandom the source of randomness.
+     */
+    MinConflictsGenerator(final GameSchema inSchema, final Random inRandom) {
+        this.schema = inSchema;
+        this.random = inRandom;
+        this.width = inSchema.getWidth();
+        this.cells = new byte[width][width];
+        this.columnCounts = new int[width][inSchema.getMaximumValue() + 1];
+        this.blockCounts = new int[width][inSchema.getMaximumValue() + 1];
+        this.tabu = new long[width][width];
+    }
+
+    /**
+     * Get the default iteration limit for the schema.
+     * @return the number of iterations after which
+     * {@link #generate(GameMatrix, long)} should give up.
+     */
+    long getDefaultIterations() {
+        return (long) ITERATIONS_PER_CELL * schema.getTotalFields();
+    }
+
+    /**
+     * Searches a full grid.
+     * @param target the matrix to overwrite with the grid if one
+     *               is found.
+     * @param maxIterations the number of moves after which to give up.
+     * @return {@code true} if a grid was found and written to the target.
+     */
+    boolean generate(final GameMatrix target, final long maxIterations) {
+        init();
+        long iteration = 0;
+        while (conflicts > 0) {
+            if (iteration >= maxIterations) {
+                return false;
+            }
+            iteration++;
+            move(iteration);
+        }
+        for (int row = 0; row < width; row++) {
+            for (int column = 0; column < width; column++) {
+                target.set(row, column, cells[row][column]);
+            }
+        }
+        return true;
+    }
+
+    /** Fills each row with a random permutation and counts conflicts. */
+    private void init() {
+        for (int i = 0; i < width; i++) {
+            Arrays.fill(columnCounts[i], 0);
+            Arrays.fill(blockCounts[i], 0);
+            Arrays.fill(tabu[i], 0);
+        }
+        byte min = schema.getMinimumValue();
+        for (int row = 0; row < width; row++) {
+            for (int column = 0; column < width; column++) {
+                int other = random.nextInt(column + 1);
+                cells[row][column] = cells[row][other];
+                cells[row][other] = (byte) (min + column);
+            }
+            for (int column = 0; column < width; column++) {
+                columnCounts[column][cells[row][column]]++;
+                blockCounts[block(row, column)][cells[row][column]]++;
+            }
+        }
+        conflicts = 0;
+        for (int i = 0; i < width; i++) {
+            for (int digit = min; digit <= schema.getMaximumValue();
+                    digit++) {
+                conflicts += Math.max(0, columnCounts[i][digit] - 1)
+                        + Math.max(0, blockCounts[i][digit] - 1);
+            }
+        }
+    }
+
+    /**
+     * Moves a random conflicting cell.
+     * @param iteration the number of the current iteration.
+     */
+    private void move(final long iteration) {
+        int row;
+        int column;
+        do {
+            row = random.nextInt(width);
+            column = random.nextInt(width);
+        } while (!isConflicting(row, column));
+
+        int best = Integer.MAX_VALUE;
+        int bestColumn = -1;
+        int ties = 0;
+        for (int other = 0; other < width; other++) {
+            if (other == column) {
+                continue;
+            }
+            int delta = delta(row, column, other);
+            if (tabu[row][other] > iteration && delta >= 0) {
+                continue;
+            }
+            if (delta < best) {
+                best = delta;
+                bestColumn = other;
+                ties = 1;
+            } else if (delta == best && random.nextInt(++ties) == 0) {
+                bestColumn = other;
+            }
+        }
+        if (bestColumn != -1) {
+            swap(row, column, bestColumn);
+            conflicts += best;
+            tabu[row][column] = iteration + TABU_TENURE;
+            tabu[row][bestColumn] = iteration + TABU_TENURE;
+        }
+    }
+
+    /**
+     * Checks whether the digit of a cell occurs more than once in
+     * its column or block.
+     * @param row the row of the cell.
+     * @param column the column of the cell.
+     * @return {@code true} if the cell is in conflict.
+     */
+    private boolean isConflicting(final int row, final int column) {
+        byte digit = cells[row][column];
+        return columnCounts[column][digit] > 1
+                || blockCounts[block(row, column)][digit] > 1;
+    }
+
+    /**
+     * Computes the change of the conflicts when swapping two cells.
+     * @param row the row of the cells.
+     * @param first the column of the first cell.
+     * @param second the column of the second cell.
+     * @return the change of the conflicts.
+     */
+    private int delta(final int row, final int first, final int second) {
+        byte a = cells[row][first];
+        byte b = cells[row][second];
+        int result = change(columnCounts[first], a, b)
+                + change(columnCounts[second], b, a);
+        int firstBlock = block(row, first);
+        int secondBlock = block(row, second);
+        if (firstBlock != secondBlock) {
+            result += change(blockCounts[firstBlock], a, b)
+                    + change(blockCounts[secondBlock], b, a);
+        }
+        return result;
+    }
+
+    /**
+     * Computes the change of the conflicts of a unit when one digit
+     * is replaced by another.
+     * @param counts the digit counts of the unit.
+     * @param removed the digit leaving the unit.
+     * @param added the digit entering the unit.
+     * @return the change of the conflicts.
+     */
+    private static int change(final int[] counts,
+            final byte removed,
+            final byte added) {
+        int result = 0;
+        if (counts[removed] > 1) {
+            result--;
+        }
+        if (counts[added] > 0) {
+            result++;
+        }
+        return result;
+    }
+
+    /**
+     * Swaps two cells of a row and updates the counts.
+     * @param row the row of the cells.
+     * @param first the column of the first cell.
+     * @param second the column of the second cell.
+     */
+    private void swap(final int row, final int first, final int second) {
+        byte a = cells[row][first];
+        byte b = cells[row][second];
+        columnCounts[first][a]--;
+        columnCounts[first][b]++;
+        columnCounts[second][b]--;
+        columnCounts[second][a]++;
+        int firstBlock = block(row, first);
+        int secondBlock = block(row, second);
+        blockCounts[firstBlock][a]--;
+        blockCounts[firstBlock][b]++;
+        blockCounts[secondBlock][b]--;
+        blockCounts[secondBlock][a]++;
+        cells[row][first] = b;
+        cells[row][second] = a;
+    }
+
+    /**
+     * Get the block of a cell.
+     * @param row the row of the cell.
+     * @param column the column of the cell.
+     * @return the block index in row-major order.
+     */
+    private int block(final int row, final int column) {
+        int blockWidth = schema.getBlockWidth();
+        return row / blockWidth * blockWidth + column / blockWidth;
+    }
+}
@@ -41,4 +41,16 @@ public interface Riddle extends GameMatrix {
      */
     void setWritable(int row, int column, boolean set);
 
+    /**
+     * Get the difficulty analysis of the current cells.
+     * Riddles returned by {@link Creator} come with the analysis
+     * that was done while creating them. Otherwise the riddle is
+     * analyzed, unless a grid with the same cells was analyzed
+     * recently.
+     * @return the analysis of this riddle.
+     */
+    default RiddleAnalysis getAnalysis() {
+        return RiddleAnalyzer.analyzeCached(this);
+    }
+
 }
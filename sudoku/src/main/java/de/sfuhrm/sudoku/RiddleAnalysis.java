@@ -1,48 +1,103 @@
 package de.sfuhrm.sudoku;
 
-import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import java.util.Objects;
 
 /**
  * Result of analyzing a riddle's difficulty.
+ * Instances are immutable.
+ * @see Riddle#getAnalysis()
  */
-final class RiddleAnalysis {
+public final class RiddleAnalysis {
     /** Recorded solving path. */
-    private final List<SolveStep> path;
+    private final SolvePath packed;
+    /** Step objects of the path, created on first request. */
+    private volatile List<SolveStep> path;
     /** Aggregated score. */
     private final DifficultyScore score;
     /** Classified difficulty. */
     private final Difficulty classifiedDifficulty;
+    /** Search nodes needed after the logical techniques got stuck. */
+    private final long searchNodes;
+    /** Maximum guess depth needed after the techniques got stuck. */
+    private final int searchDepth;
 
     /**
-     * Constructor.
+     * Constructor for an analysis without search.
      * @param solvePath solving path.
      * @param difficulty classified difficulty.
      */
     RiddleAnalysis(final List<SolveStep> solvePath,
             final Difficulty difficulty) {
-        Objects.requireNonNull(solvePath, "solvePath is null");
-        this.path = Collections.unmodifiableList(new ArrayList<>(solvePath));
-        this.score = new DifficultyScore(path);
+        this(solvePath, difficulty, 0, 0);
+    }
+
+    /**
+     * Constructor.
+     * @param solvePath solving path.
+     * @param difficulty classified difficulty.
+     * @param nodes search nodes needed to finish the riddle.
+     * @param depth maximum guess depth needed to finish the riddle.
+     */
+    RiddleAnalysis(final List<SolveStep> solvePath,
+            final Difficulty difficulty,
+            final long nodes,
+            final int depth) {
+        this(new SolvePath(Objects.requireNonNull(solvePath,
+                "solvePath is null")), difficulty, nodes, depth);
+    }
+
+    /**
+     * Constructor.
+     * @param packedPath solving path, is copied.
+     * @param difficulty classified difficulty.
+     * @param nodes search nodes needed to finish the riddle.
+     * @param depth maximum guess depth needed to finish the riddle.
+     */
+    RiddleAnalysis(final SolvePath packedPath,
+            final Difficulty difficulty,
+            final long nodes,
+            final int depth) {
+        Objects.requireNonNull(packedPath, "packedPath is null");
+        this.packed = packedPath.copy();
+        this.score = new DifficultyScore(packed.getPoints(),
+                packed.size(),
+                packed.getMaximumStepPoints());
         this.classifiedDifficulty = Objects.requireNonNull(difficulty,
                 "difficulty is null");
+        this.searchNodes = nodes;
+        this.searchDepth = depth;
     }
 
     /**
      * Path of logged solving steps.
+     * The step objects are created on the first call.
      * @return immutable solve path.
      */
-    List<SolveStep> getPath() {
-        return path;
+    public List<SolveStep> getPath() {
+        List<SolveStep> result = path;
+        if (result == null) {
+            result = Collections.unmodifiableList(packed.toList());
+            path = result;
+        }
+        return result;
+    }
+
+    /**
+     * Packed path of logged solving steps.
+     * Must not be modified.
+     * @return the packed solve path.
+     */
+    SolvePath getSolvePath() {
+        return packed;
     }
 
     /**
      * Aggregated score over the solve path.
      * @return score details.
      */
-    DifficultyScore getScore() {
+    public DifficultyScore getScore() {
         return score;
     }
 
@@ -50,7 +105,26 @@ final class RiddleAnalysis {
      * Difficulty class derived from the score.
      * @return classified difficulty.
      */
-    Difficulty getClassifiedDifficulty() {
+    public Difficulty getClassifiedDifficulty() {
         return classifiedDifficulty;
     }
+
+    /**
+     * Number of search nodes needed to finish the riddle after the
+     * logical techniques got stuck. Zero if no search was needed.
+     * Finer-grained than the backtracking step of the path.
+     * @return search node count.
+     */
+    public long getSearchNodes() {
+        return searchNodes;
+    }
+
+    /**
+     * Maximum number of nested guesses needed to finish the riddle
+     * after the logical techniques got stuck.
+     * @return guess depth, zero if no guess was needed.
+     */
+    public int getSearchDepth() {
+        return searchDepth;
+    }
 }
@@ -1,16 +1,13 @@
 package de.sfuhrm.sudoku;
 
-import java.util.ArrayList;
-import java.util.List;
-
 /**
  * Analyzes riddles and creates a technique-based difficulty score.
+ * Singles are placed as long as possible. When they get stuck, the
+ * cheapest elimination technique of {@link Eliminator} is applied.
+ * Only riddles that need more than these techniques fall back to
+ * backtracking.
  */
 final class RiddleAnalyzer {
-    /** Marker for unresolved unique candidate coordinates. */
-    private static final int NONE = -1;
-    /** Marker for duplicate candidates. */
-    private static final int MULTIPLE = -2;
     /** Marker row for non-cell-specific steps. */
     private static final int NO_ROW = -1;
     /** Marker column for non-cell-specific steps. */
@@ -38,6 +35,13 @@ final class RiddleAnalyzer {
     /** Scaled boundary factor for HARD. */
     private static final int SCALE_HARD = 16;
 
+    /** Maximum number of analyses in {@link #CACHE}. */
+    static final int CACHE_CAPACITY = 1024;
+
+    /** Analyses of recently analyzed grids. */
+    private static final AnalysisCache CACHE =
+            new AnalysisCache(CACHE_CAPACITY);
+
     /** Utility class. */
     private RiddleAnalyzer() {
     }
@@ -48,215 +52,142 @@ final class RiddleAnalyzer {
      * @return analysis with path and score.
      */
     static RiddleAnalysis analyze(final GameMatrix riddle) {
-        CachedGameMatrixImpl work =
-                new CachedGameMatrixImpl(riddle.getSchema());
-        work.setAll(riddle.getArray());
-        List<SolveStep> path = new ArrayList<>();
-
-        boolean progress;
-        do {
-            progress = fillNakedSingles(work, path)
-                    || fillHiddenSingles(work, path);
-        } while (progress);
-
-        if (work.getSetCount() != work.getSchema().getTotalFields()) {
-            Solver solver = new Solver(riddle);
-            solver.setLimit(2);
-            if (!solver.solve().isEmpty()) {
-                path.add(new SolveStep(SolveTechnique.BACKTRACKING,
-                        NO_ROW,
-                        NO_COLUMN,
-                        NO_VALUE));
-            }
-        }
-
-        Difficulty difficulty = classify(riddle.getSchema(),
-                new DifficultyScore(path).getPoints());
-        return new RiddleAnalysis(path, difficulty);
-    }
-
-    /**
-     * Fills one naked single if available.
-     *
-     * @param work mutable working matrix.
-     * @param path collected solve steps.
-     * @return {@code true} if one cell was filled.
-     */
-    private static boolean fillNakedSingles(final CachedGameMatrixImpl work,
-            final List<SolveStep> path) {
-        final int width = work.getSchema().getWidth();
-        final byte unset = work.getSchema().getUnsetValue();
-        for (int row = 0; row < width; row++) {
-            for (int column = 0; column < width; column++) {
-                if (work.get(row, column) == unset) {
-                    int freeMask = work.getFreeMask(row, column);
-                    if (Integer.bitCount(freeMask) == 1) {
-                        int number = Integer.numberOfTrailingZeros(freeMask);
-                        work.set(row, column, (byte) number);
-                        path.add(new SolveStep(SolveTechnique.NAKED_SINGLE,
-                                row,
-                                column,
-                                (byte) number));
-                        return true;
-                    }
-                }
-            }
-        }
-        return false;
+        return analyze(riddle,
+                new Eliminator(new CandidateGrid(riddle.getSchema())),
+                null);
     }
 
     /**
-     * Tries to fill one hidden single in rows, columns, or blocks.
-     *
-     * @param work mutable working matrix.
-     * @param path collected solve steps.
-     * @return {@code true} if one cell was filled.
+     * Analyze a riddle or get the analysis of a grid with the
+     * same contents from the cache.
+     * @param riddle input riddle.
+     * @return analysis with path and score.
      */
-    private static boolean fillHiddenSingles(final CachedGameMatrixImpl work,
-            final List<SolveStep> path) {
-        return fillHiddenSingleInRows(work, path)
-                || fillHiddenSingleInColumns(work, path)
-                || fillHiddenSingleInBlocks(work, path);
+    static RiddleAnalysis analyzeCached(final GameMatrix riddle) {
+        return CACHE.get(riddle, RiddleAnalyzer::analyze);
     }
 
     /**
-     * Fills one hidden single in any row.
-     *
-     * @param work mutable working matrix.
-     * @param path collected solve steps.
-     * @return {@code true} if one cell was filled.
+     * Analyze a riddle with reusable state.
+     * @param riddle input riddle.
+     * @param eliminator the eliminator whose grid is reset to
+     *                   the riddle and used for the analysis.
+     *                   Must have the schema of the riddle.
+     * @param techniqueNanos the array to add the nanoseconds spent per
+     *                       technique to, indexed by the ordinal of
+     *                       {@link SolveTechnique}, or {@code null}.
+     * @return analysis with path and score.
      */
-    private static boolean fillHiddenSingleInRows(
-            final CachedGameMatrixImpl work,
-            final List<SolveStep> path) {
-        final int width = work.getSchema().getWidth();
-        final byte unset = work.getSchema().getUnsetValue();
-        for (int row = 0; row < width; row++) {
-            for (int candidate = work.getSchema().getMinimumValue();
-                    candidate <= work.getSchema().getMaximumValue();
-                    candidate++) {
-                int onlyColumn = NONE;
-                for (int column = 0; column < width; column++) {
-                    if (work.get(row, column) == unset
-                            && (work.getFreeMask(row, column)
-                            & (1 << candidate)) != 0) {
-                        if (onlyColumn != NONE) {
-                            onlyColumn = MULTIPLE;
-                            break;
-                        }
-                        onlyColumn = column;
-                    }
+    static RiddleAnalysis analyze(final GameMatrix riddle,
+            final Eliminator eliminator,
+            final long[] techniqueNanos) {
+        CandidateGrid grid = eliminator.getGrid();
+        grid.reset(riddle);
+        SolvePath path = new SolvePath(
+                riddle.getSchema().getTotalFields());
+
+        final SchemaTables tables = grid.getTables();
+        final int totalFields = riddle.getSchema().getTotalFields();
+        boolean progress;
+        long start = 0;
+        do {
+            fillSingles(grid, path, techniqueNanos);
+            progress = false;
+            if (grid.getSetCount() != totalFields) {
+                if (techniqueNanos != null) {
+                    start = System.nanoTime();
                 }
-                if (onlyColumn >= 0) {
-                    work.set(row, onlyColumn, (byte) candidate);
-                    path.add(new SolveStep(SolveTechnique.HIDDEN_SINGLE,
-                            row,
-                            onlyColumn,
-                            (byte) candidate));
-                    return true;
+                SolveTechnique technique = eliminator.eliminate();
+                if (technique != null) {
+                    path.add(technique,
+                            tables.row(eliminator.getCell()),
+                            tables.column(eliminator.getCell()),
+                            eliminator.getDigit());
+                    progress = true;
+                }
+                if (techniqueNanos != null) {
+                    // a failed search counts for the fallback
+                    SolveTechnique charged = technique != null
+                            ? technique : SolveTechnique.BACKTRACKING;
+                    techniqueNanos[charged.ordinal()] +=
+                            System.nanoTime() - start;
                 }
             }
-        }
-        return false;
-    }
+        } while (progress);
 
-    /**
-     * Fills one hidden single in any column.
-     *
-     * @param work mutable working matrix.
-     * @param path collected solve steps.
-     * @return {@code true} if one cell was filled.
-     */
-    private static boolean fillHiddenSingleInColumns(
-            final CachedGameMatrixImpl work,
-            final List<SolveStep> path) {
-        final int width = work.getSchema().getWidth();
-        final byte unset = work.getSchema().getUnsetValue();
-        for (int column = 0; column < width; column++) {
-            for (int candidate = work.getSchema().getMinimumValue();
-                    candidate <= work.getSchema().getMaximumValue();
-                    candidate++) {
-                int onlyRow = NONE;
-                for (int row = 0; row < width; row++) {
-                    if (work.get(row, column) == unset
-                            && (work.getFreeMask(row, column)
-                            & (1 << candidate)) != 0) {
-                        if (onlyRow != NONE) {
-                            onlyRow = MULTIPLE;
-                            break;
-                        }
-                        onlyRow = row;
-                    }
-                }
-                if (onlyRow >= 0) {
-                    work.set(onlyRow, column, (byte) candidate);
-                    path.add(new SolveStep(SolveTechnique.HIDDEN_SINGLE,
-                            onlyRow,
-                            column,
-                            (byte) candidate));
-                    return true;
-                }
+        long nodes = 0;
+        int depth = 0;
+        if (grid.getSetCount() != totalFields) {
+            if (techniqueNanos != null) {
+                start = System.nanoTime();
+            }
+            // continue from the state reached by the techniques
+            GameMatrixImpl rest = new GameMatrixImpl(riddle.getSchema());
+            grid.copyTo(rest);
+            Solver solver = new Solver(rest);
+            solver.setLimit(2);
+            if (solver.countSolutions() > 0) {
+                path.add(SolveTechnique.BACKTRACKING,
+                        NO_ROW,
+                        NO_COLUMN,
+                        NO_VALUE);
+                nodes = solver.getSearchNodes();
+                depth = solver.getSearchDepth();
+            }
+            if (techniqueNanos != null) {
+                techniqueNanos[SolveTechnique.BACKTRACKING.ordinal()] +=
+                        System.nanoTime() - start;
             }
         }
-        return false;
+
+        Difficulty difficulty = classify(riddle.getSchema(),
+                path.getPoints());
+        return new RiddleAnalysis(path, difficulty, nodes, depth);
     }
 
     /**
-     * Fills one hidden single in any block.
+     * Fills naked and hidden singles until none are left.
+     * Naked singles are preferred because they are easier to spot.
+     * The grid queues the cells and units changed by each step,
+     * so no step needs to rescan the whole grid.
      *
-     * @param work mutable working matrix.
+     * @param grid mutable candidate grid.
      * @param path collected solve steps.
-     * @return {@code true} if one cell was filled.
+     * @param techniqueNanos the array to add the time per technique to,
+     *                       or {@code null}.
      */
-    private static boolean fillHiddenSingleInBlocks(
-            final CachedGameMatrixImpl work,
-            final List<SolveStep> path) {
-        final int blockWidth = work.getSchema().getBlockWidth();
-        final int width = work.getSchema().getWidth();
-        final byte unset = work.getSchema().getUnsetValue();
-        for (int blockRow = 0; blockRow < width; blockRow += blockWidth) {
-            for (int blockColumn = 0;
-                    blockColumn < width;
-                    blockColumn += blockWidth) {
-                for (int candidate = work.getSchema().getMinimumValue();
-                        candidate <= work.getSchema().getMaximumValue();
-                        candidate++) {
-                    int onlyRow = NONE;
-                    int onlyColumn = NONE;
-                    boolean duplicate = false;
-                    for (int row = blockRow;
-                            row < blockRow + blockWidth;
-                            row++) {
-                        for (int column = blockColumn;
-                                column < blockColumn + blockWidth;
-                                column++) {
-                            if (work.get(row, column) == unset
-                                    && (work.getFreeMask(row, column)
-                                    & (1 << candidate)) != 0) {
-                                if (onlyRow != NONE) {
-                                    duplicate = true;
-                                    break;
-                                }
-                                onlyRow = row;
-                                onlyColumn = column;
-                            }
-                        }
-                        if (duplicate) {
-                            break;
-                        }
-                    }
-                    if (!duplicate && onlyRow >= 0) {
-                        work.set(onlyRow, onlyColumn, (byte) candidate);
-                        path.add(new SolveStep(SolveTechnique.HIDDEN_SINGLE,
-                                onlyRow,
-                                onlyColumn,
-                                (byte) candidate));
-                        return true;
-                    }
+    private static void fillSingles(final CandidateGrid grid,
+            final SolvePath path,
+            final long[] techniqueNanos) {
+        final SchemaTables tables = grid.getTables();
+        while (true) {
+            long start = techniqueNanos != null ? System.nanoTime() : 0;
+            SolveTechnique technique;
+            int cell = grid.nextNakedSingle();
+            int digit;
+            if (cell != CandidateGrid.NONE) {
+                technique = SolveTechnique.NAKED_SINGLE;
+                digit = Integer.numberOfTrailingZeros(
+                        grid.getCandidates(cell));
+            } else {
+                int single = grid.nextHiddenSingle();
+                if (single == CandidateGrid.NONE) {
+                    return;
                 }
+                technique = SolveTechnique.HIDDEN_SINGLE;
+                cell = grid.singleCell(single);
+                digit = grid.singleDigit(single);
+            }
+            grid.place(cell, digit);
+            path.add(technique,
+                    tables.row(cell),
+                    tables.column(cell),
+                    digit);
+            if (techniqueNanos != null) {
+                techniqueNanos[technique.ordinal()] +=
+                        System.nanoTime() - start;
             }
         }
-        return false;
     }
 
     /**
@@ -268,39 +199,57 @@ final class RiddleAnalyzer {
      */
     private static Difficulty classify(final GameSchema schema,
             final int points) {
-        if (schema.getWidth() == WIDTH_9X9) {
-            if (points <= BORDER_9X9_VERY_EASY) {
-                return Difficulty.VERY_EASY;
-            }
-            if (points <= BORDER_9X9_EASY) {
-                return Difficulty.EASY;
-            }
-            if (points <= BORDER_9X9_MEDIUM) {
-                return Difficulty.MEDIUM;
+        int[] borders = borders(schema);
+        Difficulty[] values = Difficulty.values();
+        for (int i = 0; i < borders.length; i++) {
+            if (points <= borders[i]) {
+                return values[i];
             }
-            if (points <= BORDER_9X9_HARD) {
-                return Difficulty.HARD;
-            }
-            return Difficulty.VERY_HARD;
         }
+        return values[values.length - 1];
+    }
 
-        int veryEasyBorder = schema.getWidth() * SCALE_VERY_EASY;
-        int easyBorder = schema.getWidth() * SCALE_EASY;
-        int mediumBorder = schema.getWidth() * SCALE_MEDIUM;
-        int hardBorder = schema.getWidth() * SCALE_HARD;
-
-        if (points <= veryEasyBorder) {
-            return Difficulty.VERY_EASY;
-        }
-        if (points <= easyBorder) {
-            return Difficulty.EASY;
+    /**
+     * Computes how far a score is from the point range of a difficulty.
+     * @param schema the schema of the riddle.
+     * @param difficulty the difficulty to reach.
+     * @param points the points of the riddle.
+     * @return zero if the points classify as the difficulty, otherwise
+     * the points missing or in excess to the nearest border.
+     */
+    static int distance(final GameSchema schema,
+            final Difficulty difficulty,
+            final int points) {
+        int[] borders = borders(schema);
+        int index = difficulty.ordinal();
+        if (index > 0 && points <= borders[index - 1]) {
+            return borders[index - 1] + 1 - points;
         }
-        if (points <= mediumBorder) {
-            return Difficulty.MEDIUM;
+        if (index < borders.length && points > borders[index]) {
+            return points - borders[index];
         }
-        if (points <= hardBorder) {
-            return Difficulty.HARD;
+        return 0;
+    }
+
+    /**
+     * Get the highest points of each difficulty but the hardest.
+     * @param schema the schema of the riddle.
+     * @return the upper borders in the order of {@link Difficulty}.
+     */
+    private static int[] borders(final GameSchema schema) {
+        if (schema.getWidth() == WIDTH_9X9) {
+            return new int[] {
+                BORDER_9X9_VERY_EASY,
+                BORDER_9X9_EASY,
+                BORDER_9X9_MEDIUM,
+                BORDER_9X9_HARD
+            };
         }
-        return Difficulty.VERY_HARD;
+        return new int[] {
+            schema.getWidth() * SCALE_VERY_EASY,
+            schema.getWidth() * SCALE_EASY,
+            schema.getWidth() * SCALE_MEDIUM,
+            schema.getWidth() * SCALE_HARD
+        };
     }
 }
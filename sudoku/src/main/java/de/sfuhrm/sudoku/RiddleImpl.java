@@ -19,19 +19,31 @@ Boston, MA  02110-1301, USA.
 */
 package de.sfuhrm.sudoku;
 
+import java.util.Arrays;
+
 /**
  * The Sudoku game field.
  * This is a game matrix that has the information whether fields
  * may be written to or not.
  * @author Stephan Fuhrmann
  */
-class RiddleImpl extends GameMatrixImpl implements Riddle {
+class RiddleImpl extends MaskedGameMatrixImpl implements Riddle {
 
     /**
-     * Whether the cell is writable. Pre-defined cells are only readable, use
+     * Whether the cell is writable as a bit set over the row-major
+     * cell indexes. Pre-defined cells are only readable, use
      * settable cells are writable.
      */
-    private final boolean[][] writeable;
+    private final long[] writeable;
+
+    /** The edge dimension of the schema. */
+    private final int width;
+
+    /**
+     * The analysis of the current cells, or {@code null} if not known.
+     * Reset when a cell changes.
+     */
+    private volatile RiddleAnalysis analysis;
 
     /**
      * Creates an empty full-writable riddle.
@@ -40,13 +52,10 @@ class RiddleImpl extends GameMatrixImpl implements Riddle {
      */
     RiddleImpl(final GameSchema inGameSchema) {
         super(inGameSchema);
-        int width = inGameSchema.getWidth();
-        writeable = new boolean[width][width];
-        for (int i = 0; i < width; i++) {
-            for (int j = 0; j < width; j++) {
-                setWritable(i, j, true);
-            }
-        }
+        width = inGameSchema.getWidth();
+        writeable = new long[(inGameSchema.getTotalFields() + Long.SIZE - 1)
+                / Long.SIZE];
+        Arrays.fill(writeable, -1L);
     }
 
     /**
@@ -55,7 +64,9 @@ class RiddleImpl extends GameMatrixImpl implements Riddle {
      */
     RiddleImpl(final RiddleImpl source) {
         super(source);
-        writeable = QuadraticArrays.cloneArray(source.writeable);
+        width = source.width;
+        writeable = source.writeable.clone();
+        analysis = source.analysis;
     }
 
     /**
@@ -66,7 +77,9 @@ class RiddleImpl extends GameMatrixImpl implements Riddle {
      */
     @Override
     public final boolean getWritable(final int row, final int column) {
-        return writeable[row][column];
+        assert getSchema().validCoords(row, column);
+        final int cell = row * width + column;
+        return (writeable[cell / Long.SIZE] & (1L << cell)) != 0;
     }
 
     /**
@@ -79,7 +92,61 @@ class RiddleImpl extends GameMatrixImpl implements Riddle {
     public final void setWritable(final int row,
             final int column,
             final boolean set) {
-        writeable[row][column] = set;
+        assert getSchema().validCoords(row, column);
+        final int cell = row * width + column;
+        if (set) {
+            writeable[cell / Long.SIZE] |= 1L << cell;
+        } else {
+            writeable[cell / Long.SIZE] &= ~(1L << cell);
+        }
+    }
+
+    /**
+     * Set the value of a field and forget the analysis if the
+     * value changes.
+     * @param row the row of the field.
+     * @param column the column of the field.
+     * @param value the value of the field.
+     */
+    @Override
+    public final void set(final int row,
+            final int column,
+            final byte value) {
+        if (analysis != null && get(row, column) != value) {
+            analysis = null;
+        }
+        super.set(row, column, value);
+    }
+
+    /**
+     * Get the difficulty analysis of the current cells.
+     * The analysis is kept until a cell changes.
+     * @return the analysis of this riddle.
+     */
+    @Override
+    public final RiddleAnalysis getAnalysis() {
+        RiddleAnalysis result = analysis;
+        if (result == null) {
+            result = RiddleAnalyzer.analyzeCached(this);
+            analysis = result;
+        }
+        return result;
+    }
+
+    /**
+     * Get the analysis of the current cells if it is already known.
+     * @return the analysis, or {@code null} if not known.
+     */
+    final RiddleAnalysis getKnownAnalysis() {
+        return analysis;
+    }
+
+    /**
+     * Attaches an analysis of the current cells.
+     * @param inAnalysis the analysis of the current cells.
+     */
+    final void setAnalysis(final RiddleAnalysis inAnalysis) {
+        this.analysis = inAnalysis;
     }
 
     @Override
@@ -0,0 +1,342 @@
+/*
+Sudoku - a fast Java Sudoku game creation library.
+Copyright (C) 2017-2018  Stephan Fuhrmann
+
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Library General Public
+License as published by the Free Software Foundation; either
+version 2 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+Library General Public License for more details.
+
+You should have received a copy of the GNU Library General Public
+License along with this library; if not, write to the
+Free Software Foundation, Inc., 51 Franklin St, Fifth Floor,
+Boston, MA  02110-1301, USA.
+*/
+package de.sfuhrm.sudoku;
+
+import java.util.Objects;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A thread-safe pool of pre-generated riddles per
+ * {@link GameSchema} and {@link Difficulty}.
+ * Riddle creation with a target difficulty can take a long time.
+ * The pool keeps between the low and the high watermark of riddles
+ * per schema and difficulty ready. Riddles are created by background
+ * workers, so {@link #take(GameSchema, Difficulty)} usually is a
+ * lock-free queue poll.
+ *
+ * <p>Each schema and difficulty pair holds at most
+ * {@link #getHighWatermark() high watermark} riddles, so the memory
+ * used by the pool is bounded by the number of requested pairs.</p>
+ *
+ * @author Stephan Fuhrmann
+ */
+public final class RiddlePool implements AutoCloseable {
+
+    /** Default number of riddles per pair that triggers a refill. */
+    public static final int DEFAULT_LOW_WATERMARK = 4;
+
+    /** Default number of riddles per pair to refill up to. */
+    public static final int DEFAULT_HIGH_WATERMARK = 16;
+
+    /** The refill is triggered when a pair has less riddles than this. */
+    private final int lowWatermark;
+
+    /** The refill creates riddles until a pair holds this many riddles. */
+    private final int highWatermark;
+
+    /** The background workers creating riddles. */
+    private final ExecutorService workers;
+
+    /** The riddle buckets per schema and difficulty. */
+    private final ConcurrentMap<Key, Bucket> buckets;
+
+    /** Whether this pool was closed. */
+    private volatile boolean closed;
+
+    /**
+     * Creates a pool with the default watermarks and one background
+     * worker per available processor.
+     */
+    public RiddlePool() {
+        this(DEFAULT_LOW_WATERMARK,
+                DEFAULT_HIGH_WATERMARK,
+                Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Creates a pool.
+     * @param inLowWatermark the number of riddles per schema and difficulty
+     *                       below which a background refill is started.
+     * @param inHighWatermark the maximum number of riddles per schema
+     *                        and difficulty to keep in the pool.
+     * @param threads the number of background workers.
+     * @throws IllegalArgumentException if the watermarks or the
+     * thread count are out of range.
+     */
+    public RiddlePool(final int inLowWatermark,
+                      final int inHighWatermark,
+                      final int threads) {
+        if (inLowWatermark < 0) {
+            throw new IllegalArgumentException(
+                    "lowWatermark (" + inLowWatermark + ") must be >= 0");
+        }
+        if (inHighWatermark < 1 || inHighWatermark < inLowWatermark) {
+            throw new IllegalArgumentException(
+                    "highWatermark (" + inHighWatermark
+                            + ") must be >= 1 and >= lowWatermark ("
+                            + inLowWatermark + ")");
+        }
+        if (threads < 1) {
+            throw new IllegalArgumentException(
+                    "threads (" + threads + ") must be >= 1");
+        }
+        this.lowWatermark = inLowWatermark;
+        this.highWatermark = inHighWatermark;
+        this.buckets = new ConcurrentHashMap<>();
+        this.workers = Executors.newFixedThreadPool(threads,
+                new DaemonThreadFactory());
+    }
+
+    /** Get the low watermark.
+     * @return the number of riddles per schema and difficulty below
+     * which a background refill is started.
+     */
+    public int getLowWatermark() {
+        return lowWatermark;
+    }
+
+    /** Get the high watermark.
+     * @return the maximum number of riddles per schema and difficulty
+     * kept in the pool.
+     */
+    public int getHighWatermark() {
+        return highWatermark;
+    }
+
+    /**
+     * Takes a riddle out of the pool. If the pool has no riddle
+     * ready, the riddle is created in the calling thread.
+     * @param schema the dimensions of the riddle.
+     * @param difficulty the requested difficulty of the riddle.
+     * @return a riddle that was not handed out before.
+     * @throws IllegalStateException if the pool is closed.
+     */
+    public Riddle take(final GameSchema schema, final Difficulty difficulty) {
+        Riddle riddle = poll(schema, difficulty);
+        if (riddle == null) {
+            riddle = create(schema, difficulty);
+        }
+        return riddle;
+    }
+
+    /**
+     * Takes a riddle out of the pool without waiting.
+     * @param schema the dimensions of the riddle.
+     * @param difficulty the requested difficulty of the riddle.
+     * @return a riddle that was not handed out before, or {@code null}
+     * if the pool has no riddle ready.
+     * @throws IllegalStateException if the pool is closed.
+     */
+    public Riddle poll(final GameSchema schema, final Difficulty difficulty) {
+        Bucket bucket = bucket(schema, difficulty);
+        Riddle riddle = bucket.riddles.poll();
+        int size;
+        if (riddle != null) {
+            size = bucket.size.decrementAndGet();
+        } else {
+            size = bucket.size.get();
+        }
+        if (size < lowWatermark || riddle == null) {
+            refill(bucket);
+        }
+        return riddle;
+    }
+
+    /**
+     * Starts the background refill for the given schema and difficulty
+     * without taking a riddle.
+     * @param schema the dimensions of the riddles.
+     * @param difficulty the requested difficulty of the riddles.
+     * @throws IllegalStateException if the pool is closed.
+     */
+    public void prefill(final GameSchema schema,
+                        final Difficulty difficulty) {
+        refill(bucket(schema, difficulty));
+    }
+
+    /**
+     * Get the number of riddles ready for the given schema and difficulty.
+     * @param schema the dimensions of the riddles.
+     * @param difficulty the requested difficulty of the riddles.
+     * @return the number of riddles in the pool.
+     */
+    public int size(final GameSchema schema, final Difficulty difficulty) {
+        Bucket bucket = buckets.get(new Key(schema, difficulty));
+        return bucket != null ? bucket.size.get() : 0;
+    }
+
+    /** Stops the background workers. Riddles that are
+     * currently being created are discarded.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        workers.shutdownNow();
+    }
+
+    /** Get or create the bucket for a schema and difficulty.
+     * @param schema the dimensions of the riddles.
+     * @param difficulty the requested difficulty of the riddles.
+     * @return the bucket for the pair.
+     */
+    private Bucket bucket(final GameSchema schema,
+                          final Difficulty difficulty) {
+        if (closed) {
+            throw new IllegalStateException("Pool is closed");
+        }
+        Key key = new Key(schema, difficulty);
+        Bucket bucket = buckets.get(key);
+        if (bucket == null) {
+            bucket = buckets.computeIfAbsent(key, k -> new Bucket(k));
+        }
+        return bucket;
+    }
+
+    /** Schedules a refill of the bucket unless one is already running.
+     * @param bucket the bucket to refill.
+     */
+    private void refill(final Bucket bucket) {
+        if (closed || bucket.size.get() >= highWatermark
+                || !bucket.refilling.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            workers.execute(() -> fill(bucket));
+        } catch (RejectedExecutionException e) {
+            bucket.refilling.set(false);
+        }
+    }
+
+    /** Creates riddles for the bucket until the high watermark is reached.
+     * Runs in a background worker.
+     * @param bucket the bucket to fill.
+     */
+    private void fill(final Bucket bucket) {
+        try {
+            while (!closed
+                    && !Thread.currentThread().isInterrupted()
+                    && bucket.size.get() < highWatermark) {
+                Riddle riddle = create(bucket.key.schema,
+                        bucket.key.difficulty);
+                bucket.riddles.offer(riddle);
+                bucket.size.incrementAndGet();
+            }
+        } finally {
+            bucket.refilling.set(false);
+        }
+        // a take could have happened between the last check and the reset
+        if (bucket.size.get() < lowWatermark) {
+            refill(bucket);
+        }
+    }
+
+    /** Creates a new riddle.
+     * @param schema the dimensions of the riddle.
+     * @param difficulty the requested difficulty of the riddle.
+     * @return a newly created riddle.
+     */
+    private static Riddle create(final GameSchema schema,
+                                 final Difficulty difficulty) {
+        GameMatrix full = Creator.createFull(schema);
+        return Creator.createRiddle(full, difficulty);
+    }
+
+    /** Key of a bucket. */
+    private static final class Key {
+        /** The dimensions of the riddles. */
+        private final GameSchema schema;
+        /** The difficulty of the riddles. */
+        private final Difficulty difficulty;
+
+        /** Constructor.
+         * @param inSchema the dimensions of the riddles.
+         * @param inDifficulty the difficulty of the riddles.
+         */
+        Key(final GameSchema inSchema, final Difficulty inDifficulty) {
+            this.schema = Objects.requireNonNull(inSchema,
+                    "schema is null");
+            this.difficulty = Objects.requireNonNull(inDifficulty,
+                    "difficulty is null");
+        }
+
+        @Override
+        public boolean equals(final Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) o;
+            return difficulty == other.difficulty
+                    && schema.equals(other.schema);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(schema, difficulty);
+        }
+    }
+
+    /** The riddles ready for one schema and difficulty. */
+    private static final class Bucket {
+        /** The schema and difficulty of the riddles in here. */
+        private final Key key;
+        /** The riddles ready to take. */
+        private final Queue<Riddle> riddles;
+        /** The number of riddles in {@link #riddles}. */
+        private final AtomicInteger size;
+        /** Whether a background refill is running. */
+        private final AtomicBoolean refilling;
+
+        /** Constructor.
+         * @param inKey the schema and difficulty of the riddles.
+         */
+        Bucket(final Key inKey) {
+            this.key = inKey;
+            this.riddles = new ConcurrentLinkedQueue<>();
+            this.size = new AtomicInteger();
+            this.refilling = new AtomicBoolean();
+        }
+    }
+
+    /** Creates daemon threads so the pool does not keep the VM alive. */
+    private static final class DaemonThreadFactory implements ThreadFactory {
+        /** Number of the next thread. */
+        private final AtomicInteger number = new AtomicInteger();
+
+        @Override
+        public Thread newThread(final Runnable r) {
+            Thread thread = new Thread(r,
+                    "riddle-pool-" + number.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
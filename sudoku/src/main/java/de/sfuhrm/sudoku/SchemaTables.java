@@ -0,0 +1,349 @@
+/*
+Sudoku - a fast Java Sudoku game creation library.
+Copyright (C) 2017-2018  Stephan Fuhrmann
+
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Library General Public
+License as published by the Free Software Foundation; either
+version 2 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+Library General Public License for more details.
+
+You should have received a copy of the GNU Library General Public
+License along with this library; if not, write to the
+Free Software Foundation, Inc., 51 Franklin St, Fifth Floor,
+Boston, MA  02110-1301, USA.
+*/
+package de.sfuhrm.sudoku;
+
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Precomputed lookup tables for the cells and units of a schema.
+ * Cells are numbered in row-major order from 0 to
+ * {@link GameSchema#getTotalFields()} - 1.
+ * Units are the rows, columns and blocks. The rows have the unit
+ * numbers 0 to width - 1, the columns width to 2 * width - 1, and
+ * the blocks 2 * width to 3 * width - 1.
+ * Instances are immutable and shared per schema.
+ * @author Stephan Fuhrmann
+ */
+final class SchemaTables {
+
+    /** The number of unit types: rows, columns and blocks. */
+    static final int UNIT_TYPES = 3;
+
+    /** The seed of the random cell value keys. Fixed so content hashes
+     * are the same in every run.
+     */
+    private static final long KEY_SEED = 0x5375646f6b75L;
+
+    /** The shared tables per schema. */
+    private static final Map<GameSchema, SchemaTables> CACHE =
+            new ConcurrentHashMap<>();
+
+    /** The schema the tables are for. */
+    private final GameSchema schema;
+
+    /** The edge dimension of the schema. */
+    private final int width;
+
+    /** The row per cell. */
+    private final int[] cellRow;
+
+    /** The column per cell. */
+    private final int[] cellColumn;
+
+    /** The block number per cell, counted in row-major order. */
+    private final int[] cellBlock;
+
+    /** The position of a cell within its block. */
+    private final int[] cellBlockPosition;
+
+    /** The cells per unit.
+     * Unit {@code u} has its cells at {@code u * width} to
+     * {@code u * width + width - 1}.
+     */
+    private final int[] unitCells;
+
+    /** The number of peers of one cell. */
+    private final int peerCount;
+
+    /** The peers per cell. The peers of a cell are all other
+     * cells sharing a row, column or block with it.
+     * Cell {@code c} has its peers at {@code c * peerCount} to
+     * {@code c * peerCount + peerCount - 1}.
+     */
+    private final int[] peers;
+
+    /** The number of long words of one peer bit set. */
+    private final int peerWords;
+
+    /** The peers per cell as bit sets over the cell indexes.
+     * Cell {@code c} has its bit set at {@code c * peerWords} to
+     * {@code c * peerWords + peerWords - 1}.
+     */
+    private final long[] peerBits;
+
+    /** The number of keys per cell, one per value including unset. */
+    private final int keysPerCell;
+
+    /** The random keys of the values per cell.
+     * Cell {@code c} with value {@code v} has its key at
+     * {@code c * keysPerCell + v}. The unset value has the key 0.
+     */
+    private final long[] cellValueKeys;
+
+    /** The content hash of an empty grid. A random key of the schema,
+     * so that grids of different schemas hash differently.
+     */
+    private final long emptyHash;
+
+    /**
+     * Constructor.
+     * @param inSchema the schema to create the tables for.
+     */
+    private SchemaTables(final GameSchema inSchema) {
+        this.schema = inSchema;
+        this.width = inSchema.getWidth();
+        final int blockWidth = inSchema.getBlockWidth();
+        final int totalFields = inSchema.getTotalFields();
+
+        cellRow = new int[totalFields];
+        cellColumn = new int[totalFields];
+        cellBlock = new int[totalFields];
+        cellBlockPosition = new int[totalFields];
+        unitCells = new int[UNIT_TYPES * width * width];
+
+        for (int row = 0; row < width; row++) {
+            for (int column = 0; column < width; column++) {
+                int cell = row * width + column;
+                int block = (row / blockWidth) * blockWidth
+                        + column / blockWidth;
+                int position = (row % blockWidth) * blockWidth
+                        + column % blockWidth;
+                cellRow[cell] = row;
+                cellColumn[cell] = column;
+                cellBlock[cell] = block;
+                cellBlockPosition[cell] = position;
+                unitCells[rowUnit(row) * width + column] = cell;
+                unitCells[columnUnit(column) * width + row] = cell;
+                unitCells[blockUnit(block) * width + position] = cell;
+            }
+        }
+
+        // row and column peers plus the block cells in other lines
+        peerCount = 2 * (width - 1) + (blockWidth - 1) * (blockWidth - 1);
+        peers = new int[totalFields * peerCount];
+        peerWords = (totalFields + Long.SIZE - 1) / Long.SIZE;
+        peerBits = new long[totalFields * peerWords];
+        for (int cell = 0; cell < totalFields; cell++) {
+            int k = cell * peerCount;
+            for (int other = 0; other < totalFields; other++) {
+                if (other != cell
+                        && (cellRow[other] == cellRow[cell]
+                        || cellColumn[other] == cellColumn[cell]
+                        || cellBlock[other] == cellBlock[cell])) {
+                    peers[k++] = other;
+                    peerBits[cell * peerWords + other / Long.SIZE] |=
+                            1L << other;
+                }
+            }
+            assert k == (cell + 1) * peerCount;
+        }
+
+        keysPerCell = inSchema.getMaximumValue() + 1;
+        cellValueKeys = new long[totalFields * keysPerCell];
+        SplittableRandom random = new SplittableRandom(KEY_SEED ^ width);
+        emptyHash = random.nextLong();
+        for (int i = 0; i < cellValueKeys.length; i++) {
+            if (i % keysPerCell != inSchema.getUnsetValue()) {
+                cellValueKeys[i] = random.nextLong();
+            }
+        }
+    }
+
+    /**
+     * Get the shared tables of a schema.
+     * @param schema the schema to get the tables for.
+     * @return the tables of the schema.
+     */
+    static SchemaTables of(final GameSchema schema) {
+        SchemaTables tables = CACHE.get(schema);
+        if (tables == null) {
+            tables = CACHE.computeIfAbsent(schema, SchemaTables::new);
+        }
+        return tables;
+    }
+
+    /**
+     * Get the schema of these tables.
+     * @return the schema.
+     */
+    GameSchema getSchema() {
+        return schema;
+    }
+
+    /**
+     * Get the number of units.
+     * @return the number of rows, columns and blocks.
+     */
+    int getUnitCount() {
+        return UNIT_TYPES * width;
+    }
+
+    /**
+     * Get the unit number of a row.
+     * @param row the row index.
+     * @return the unit number.
+     */
+    int rowUnit(final int row) {
+        return row;
+    }
+
+    /**
+     * Get the unit number of a column.
+     * @param column the column index.
+     * @return the unit number.
+     */
+    int columnUnit(final int column) {
+        return width + column;
+    }
+
+    /**
+     * Get the unit number of a block.
+     * @param block the block index in row-major order.
+     * @return the unit number.
+     */
+    int blockUnit(final int block) {
+        return 2 * width + block;
+    }
+
+    /**
+     * Get the row of a cell.
+     * @param cell the cell index.
+     * @return the row index.
+     */
+    int row(final int cell) {
+        return cellRow[cell];
+    }
+
+    /**
+     * Get the column of a cell.
+     * @param cell the cell index.
+     * @return the column index.
+     */
+    int column(final int cell) {
+        return cellColumn[cell];
+    }
+
+    /**
+     * Get the block of a cell.
+     * @param cell the cell index.
+     * @return the block index in row-major order.
+     */
+    int block(final int cell) {
+        return cellBlock[cell];
+    }
+
+    /**
+     * Get the position of a cell within its block.
+     * @param cell the cell index.
+     * @return the position in row-major order within the block.
+     */
+    int blockPosition(final int cell) {
+        return cellBlockPosition[cell];
+    }
+
+    /**
+     * Get a cell of a unit.
+     * @param unit the unit number.
+     * @param position the position within the unit, from 0 to width - 1.
+     * @return the cell index.
+     */
+    int unitCell(final int unit, final int position) {
+        return unitCells[unit * width + position];
+    }
+
+    /**
+     * Get the number of peers per cell.
+     * @return the number of cells sharing a unit with one cell.
+     */
+    int getPeerCount() {
+        return peerCount;
+    }
+
+    /**
+     * Get a peer of a cell.
+     * @param cell the cell index.
+     * @param index the peer number, from 0 to the peer count - 1.
+     * @return the cell index of the peer.
+     */
+    int peer(final int cell, final int index) {
+        return peers[cell * peerCount + index];
+    }
+
+    /**
+     * Get the number of long words of one peer bit set.
+     * @return the number of words per cell.
+     * @see #peerWord(int, int)
+     */
+    int getPeerWords() {
+        return peerWords;
+    }
+
+    /**
+     * Get a word of the peer bit set of a cell.
+     * Bit {@code b} of word {@code w} is set if the cell with the
+     * index {@code w * 64 + b} is a peer.
+     * @param cell the cell index.
+     * @param word the word number, from 0 to the word count - 1.
+     * @return the bits of the word.
+     */
+    long peerWord(final int cell, final int word) {
+        return peerBits[cell * peerWords + word];
+    }
+
+    /**
+     * Get the content hash of an empty grid of the schema.
+     * @return the random key of the schema.
+     */
+    long emptyHash() {
+        return emptyHash;
+    }
+
+    /**
+     * Get the random key of a cell value for content hashes.
+     * The content hash of a grid is the exclusive or of the
+     * {@link #emptyHash() empty hash} and the keys of all its cells.
+     * @param cell the cell index.
+     * @param value the cell value.
+     * @return the key, 0 for the unset value.
+     */
+    long cellValueKey(final int cell, final int value) {
+        return cellValueKeys[cell * keysPerCell + value];
+    }
+
+    /**
+     * Calculates the content hash of a grid from its cells.
+     * @param matrix the grid of the schema of these tables.
+     * @return the exclusive or of the empty hash and the keys of all
+     * cells.
+     * @see #cellValueKey(int, int)
+     */
+    long contentHash(final GameMatrix matrix) {
+        long result = emptyHash;
+        for (int row = 0; row < width; row++) {
+            for (int column = 0; column < width; column++) {
+                result ^= cellValueKey(row * width + column,
+                        matrix.get(row, column));
+            }
+        }
+        return result;
+    }
+}
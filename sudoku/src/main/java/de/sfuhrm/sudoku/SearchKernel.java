@@ -0,0 +1,178 @@
+/*
+Sudoku - a fast Java Sudoku game creation library.
+Copyright (C) 2017-2018  Stephan Fuhrmann
+
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Library General Public
+License as published by the Free Software Foundation; either
+version 2 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+Library General Public License for more details.
+
+You should have received a copy of the GNU Library General Public
+License along with this library; if not, write to the
+Free Software Foundation, Inc., 51 Franklin St, Fifth Floor,
+Boston, MA  02110-1301, USA.
+*/
+package de.sfuhrm.sudoku;
+
+/**
+ * Depth-first search for completions of a matrix, shared by
+ * {@link Solver} and {@link Creator}.
+ * The search always continues at the free cell with the fewest
+ * candidates and tries the candidates from the lowest value up.
+ * It runs in a loop with an explicit stack of primitive frames
+ * holding the cell and the candidates not tried yet, so the depth
+ * is not limited by the thread stack and no objects are created
+ * per node.
+ * Each completion is passed to a {@link Visitor} which decides
+ * whether to stop. Counting visitors never stop, first-found visitors
+ * stop at the first completion.
+ * Instances are not thread safe.
+ * @author Stephan Fuhrmann
+ */
+final class SearchKernel {
+
+    /** Receives the completions found by the search. */
+    @FunctionalInterface
+    interface Visitor {
+        /**
+         * Visits a completion.
+         * @param matrix the completed matrix. Only valid during the call
+         *               unless the search is stopped.
+         * @return {@code true} to stop the search, {@code false}
+         * to continue with the next completion.
+         */
+        boolean visit(CachedGameMatrixImpl matrix);
+    }
+
+    /** The matrix to complete. */
+    private final CachedGameMatrixImpl matrix;
+
+    /** The value of unset cells. */
+    private final byte unset;
+
+    /** The cell of each frame as row-major index. */
+    private final int[] cells;
+
+    /** The candidates not tried yet of each frame as bits. */
+    private final int[] choices;
+
+    /** Whether the cell of a frame had more than one candidate. */
+    private final boolean[] guesses;
+
+    /** The index of the top frame, -1 if the stack is empty. */
+    private int top;
+
+    /** The number of search nodes visited by the last search. */
+    private long nodes;
+
+    /** The maximum number of nested guesses of the last search. */
+    private int depth;
+
+    /**
+     * Creates a kernel.
+     * @param inMatrix the matrix to complete. The search changes it.
+     */
+    SearchKernel(final CachedGameMatrixImpl inMatrix) {
+        this.matrix = inMatrix;
+        this.unset = inMatrix.getSchema().getUnsetValue();
+        final int totalFields = inMatrix.getSchema().getTotalFields();
+        this.cells = new int[totalFields];
+        this.choices = new int[totalFields];
+        this.guesses = new boolean[totalFields];
+        this.top = -1;
+    }
+
+    /**
+     * Searches the completions of the matrix.
+     * If the search runs through, the matrix is restored to its state
+     * before the call. If the visitor stops it, the matrix keeps the
+     * completion the visitor stopped at until {@link #unwind()}
+     * is called.
+     * @param visitor the receiver of the completions.
+     * @return {@code true} if the visitor stopped the search.
+     */
+    boolean search(final Visitor visitor) {
+        unwind();
+        nodes = 0;
+        depth = 0;
+        final int totalFree = matrix.getSchema().getTotalFields()
+                - matrix.getSetCount();
+        int guessCount = 0;
+        while (true) {
+            // the node reached by the frames on the stack
+            depth = Math.max(depth, guessCount);
+            if (totalFree - (top + 1) == 0) {
+                if (visitor.visit(matrix)) {
+                    return true;
+                }
+            } else {
+                nodes++;
+                int cell = matrix.findLeastFreeCellIndex();
+                if (cell >= 0) {
+                    int free = matrix.getCellFreeMask(cell);
+                    top++;
+                    cells[top] = cell;
+                    choices[top] = free;
+                    guesses[top] = Integer.bitCount(free) > 1;
+                    if (guesses[top]) {
+                        guessCount++;
+                    }
+                }
+            }
+
+            // go to the next candidate, dropping exhausted frames
+            while (top >= 0 && choices[top] == 0) {
+                if (guesses[top]) {
+                    guessCount--;
+                }
+                pop();
+            }
+            if (top < 0) {
+                return false;
+            }
+            int bit = choices[top] & -choices[top];
+            choices[top] ^= bit;
+            matrix.setCell(cells[top],
+                    (byte) Integer.numberOfTrailingZeros(bit));
+        }
+    }
+
+    /**
+     * Clears the cells set by a stopped search.
+     * Does nothing if the search ran through.
+     */
+    void unwind() {
+        while (top >= 0) {
+            pop();
+        }
+    }
+
+    /** Clears the cell of the top frame and removes the frame. */
+    private void pop() {
+        matrix.setCell(cells[top], unset);
+        top--;
+    }
+
+    /**
+     * Get the number of search nodes visited by the last search.
+     * Each node is one cell chosen for trying its candidates.
+     * @return the number of visited nodes.
+     */
+    long getNodes() {
+        return nodes;
+    }
+
+    /**
+     * Get the maximum number of nested guesses of the last search.
+     * Cells with only one candidate do not count as a guess.
+     * @return the maximum guess depth, 0 if no guess was needed.
+     */
+    int getDepth() {
+        return depth;
+    }
+}
@@ -0,0 +1,227 @@
+/*
+Sudoku - a fast Java Sudoku game creation library.
+Copyright (C) 2017-2018  Stephan Fuhrmann
+
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Library General Public
+License as published by the Free Software Foundation; either
+version 2 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+Library General Public License for more details.
+
+You should have received a copy of the GNU Library General Public
+License along with this library; if not, write to the
+Free Software Foundation, Inc., 51 Franklin St, Fifth Floor,
+Boston, MA  02110-1301, USA.
+*/
+package de.sfuhrm.sudoku;
+
+/**
+ * Checks whether a riddle can be solved with naked and hidden
+ * singles only. A riddle that can be filled completely by singles
+ * has exactly one solution, because every single is forced by the
+ * cells set before.
+ * The propagator keeps a copy of the riddle that is updated with
+ * {@link #set(int, int, byte)}, so checking a riddle after clearing
+ * one cell needs no allocation and no backtracking.
+ * @author Stephan Fuhrmann
+ */
+final class SinglesPropagator {
+
+    /** The game schema of the riddle. */
+    private final GameSchema schema;
+
+    /** The cells of the riddle in row-major order. */
+    private final byte[] cells;
+
+    /** Scratch copy of {@link #cells} for one propagation run. */
+    private final byte[] work;
+
+    /** The used digit masks per row for one propagation run. */
+    private final int[] rowUsed;
+
+    /** The used digit masks per column for one propagation run. */
+    private final int[] columnUsed;
+
+    /** The used digit masks per block for one propagation run. */
+    private final int[] blockUsed;
+
+    /** The lookup tables of the schema. */
+    private final SchemaTables tables;
+
+    /**
+     * Creates a propagator for a riddle.
+     * @param riddle the riddle to copy the cells from.
+     */
+    SinglesPropagator(final GameMatrix riddle) {
+        this.schema = riddle.getSchema();
+        this.tables = SchemaTables.of(schema);
+        final int width = schema.getWidth();
+        final int totalFields = schema.getTotalFields();
+
+        cells = new byte[totalFields];
+        work = new byte[totalFields];
+        rowUsed = new int[width];
+        columnUsed = new int[width];
+        blockUsed = new int[width];
+
+        for (int cell = 0; cell < totalFields; cell++) {
+            cells[cell] = riddle.get(tables.row(cell), tables.column(cell));
+        }
+    }
+
+    /**
+     * Updates the copy of the riddle.
+     * @param row the row of the cell.
+     * @param column the column of the cell.
+     * @param value the new value of the cell, may be the unset value.
+     */
+    void set(final int row, final int column, final byte value) {
+        cells[row * schema.getWidth() + column] = value;
+    }
+
+    /**
+     * Tries to fill the riddle with naked and hidden singles.
+     * @return {@code true} if all cells could be filled, which means
+     * that the riddle has exactly one solution. {@code false} if
+     * the singles got stuck or ran into a contradiction. In this case
+     * the riddle can still have one, none or many solutions.
+     */
+    boolean solvesWithSingles() {
+        final int width = schema.getWidth();
+        final byte unset = schema.getUnsetValue();
+        System.arraycopy(cells, 0, work, 0, cells.length);
+        for (int i = 0; i < width; i++) {
+            rowUsed[i] = 0;
+            columnUsed[i] = 0;
+            blockUsed[i] = 0;
+        }
+
+        int free = 0;
+        for (int cell = 0; cell < work.length; cell++) {
+            if (work[cell] == unset) {
+                free++;
+            } else {
+                int bit = 1 << work[cell];
+                rowUsed[cell / width] |= bit;
+                columnUsed[cell % width] |= bit;
+                blockUsed[tables.block(cell)] |= bit;
+            }
+        }
+
+        boolean progress = true;
+        while (free > 0 && progress) {
+            int placed = placeNakedSingles();
+            if (placed < 0) {
+                return false;
+            }
+            int hidden = placeHiddenSingles();
+            if (hidden < 0) {
+                return false;
+            }
+            free -= placed + hidden;
+            progress = placed + hidden > 0;
+        }
+        return free == 0;
+    }
+
+    /**
+     * Get the candidates of an unset cell.
+     * @param cell the index of the cell.
+     * @return the bit mask of digits that can be set in the cell.
+     */
+    private int candidates(final int cell) {
+        final int width = schema.getWidth();
+        return ~(rowUsed[cell / width]
+                | columnUsed[cell % width]
+                | blockUsed[tables.block(cell)])
+                & schema.getBitMask();
+    }
+
+    /**
+     * Sets a digit in the scratch copy.
+     * @param cell the index of the cell.
+     * @param digit the digit to set.
+     */
+    private void place(final int cell, final int digit) {
+        final int width = schema.getWidth();
+        int bit = 1 << digit;
+        work[cell] = (byte) digit;
+        rowUsed[cell / width] |= bit;
+        columnUsed[cell % width] |= bit;
+        blockUsed[tables.block(cell)] |= bit;
+    }
+
+    /**
+     * Sets all cells that have only one candidate left.
+     * @return the number of cells set, or -1 on a contradiction.
+     */
+    private int placeNakedSingles() {
+        final byte unset = schema.getUnsetValue();
+        int placed = 0;
+        for (int cell = 0; cell < work.length; cell++) {
+            if (work[cell] != unset) {
+                continue;
+            }
+            int candidates = candidates(cell);
+            if (candidates == 0) {
+                return -1;
+            }
+            if ((candidates & (candidates - 1)) == 0) {
+                place(cell, Integer.numberOfTrailingZeros(candidates));
+                placed++;
+            }
+        }
+        return placed;
+    }
+
+    /**
+     * Sets digits that have only one possible cell left in a row,
+     * column or block.
+     * @return the number of cells set, or -1 on a contradiction.
+     */
+    private int placeHiddenSingles() {
+        final int width = schema.getWidth();
+        final byte unset = schema.getUnsetValue();
+        final int unitCount = tables.getUnitCount();
+        int placed = 0;
+        for (int unit = 0; unit < unitCount; unit++) {
+            int once = 0;
+            int twice = 0;
+            int used = 0;
+            for (int i = 0; i < width; i++) {
+                int cell = tables.unitCell(unit, i);
+                if (work[cell] == unset) {
+                    int candidates = candidates(cell);
+                    twice |= once & candidates;
+                    once |= candidates;
+                } else {
+                    used |= 1 << work[cell];
+                }
+            }
+            if ((once | used) != schema.getBitMask()) {
+                // a missing digit has no place left in this unit
+                return -1;
+            }
+            int single = once & ~twice;
+            if (single == 0) {
+                continue;
+            }
+            // one digit per unit, the others may have changed meanwhile
+            int digit = Integer.numberOfTrailingZeros(single);
+            for (int i = 0; i < width; i++) {
+                int cell = tables.unitCell(unit, i);
+                if (work[cell] == unset
+                        && (candidates(cell) & (1 << digit)) != 0) {
+                    place(cell, digit);
+                    placed++;
+                    break;
+                }
+            }
+        }
+        return placed;
+    }
+}
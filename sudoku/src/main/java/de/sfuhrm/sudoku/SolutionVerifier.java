@@ -0,0 +1,250 @@
+/*
+Sudoku - a fast Java Sudoku game creation library.
+Copyright (C) 2017-2018  Stephan Fuhrmann
+
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Library General Public
+License as published by the Free Software Foundation; either
+version 2 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+Library General Public License for more details.
+
+You should have received a copy of the GNU Library General Public
+License along with this library; if not, write to the
+Free Software Foundation, Inc., 51 Franklin St, Fifth Floor,
+Boston, MA  02110-1301, USA.
+*/
+package de.sfuhrm.sudoku;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * Verifies many submitted solutions at once.
+ * A grid is given in row-major order with one byte per cell, holding
+ * the cell value. Many grids are stored back to back in a byte array
+ * or a {@link ByteBuffer}, for example a memory mapped file.
+ * A grid is a solution if all cells are set to values of the schema
+ * and no row, column or block contains a value twice.
+ * <p>
+ * Each grid is checked in one pass over its cells with running masks
+ * per row, column and block. Nothing is allocated per grid.
+ * Instances are not thread safe, use one instance per thread.
+ * @author Stephan Fuhrmann
+ */
+public final class SolutionVerifier {
+
+    /** The schema of the grids. */
+    private final GameSchema schema;
+
+    /** The edge dimension of the schema. */
+    private final int width;
+
+    /** The index of the block mask of a row in {@link #masks}. */
+    private final int[] rowBlocks;
+
+    /** The offset of the block of a column relative to the
+     * block mask of its row. */
+    private final int[] columnBlocks;
+
+    /** The number of cells of one grid. */
+    private final int gridSize;
+
+    /** The mask of all values of the schema. */
+    private final int bitMask;
+
+    /** The lowest value of the schema. */
+    private final int minimumValue;
+
+    /** The highest value of the schema. */
+    private final int maximumValue;
+
+    /** The running value masks of the columns and blocks.
+     * The columns come first, then the blocks.
+     */
+    private final int[] masks;
+
+    /** One grid copied out of a buffer without accessible array. */
+    private final byte[] scratch;
+
+    /**
+     * Creates a verifier.
+     * @param inSchema the schema of the grids to verify.
+     */
+    public SolutionVerifier(final GameSchema inSchema) {
+        if (inSchema == null) {
+            throw new NullPointerException("inSchema is null");
+        }
+        this.schema = inSchema;
+        this.width = inSchema.getWidth();
+        final int blockWidth = inSchema.getBlockWidth();
+        this.rowBlocks = new int[width];
+        this.columnBlocks = new int[width];
+        for (int i = 0; i < width; i++) {
+            rowBlocks[i] = width + (i / blockWidth) * blockWidth;
+            columnBlocks[i] = i / blockWidth;
+        }
+        this.gridSize = inSchema.getTotalFields();
+        this.bitMask = inSchema.getBitMask();
+        this.minimumValue = inSchema.getMinimumValue();
+        this.maximumValue = inSchema.getMaximumValue();
+        this.masks = new int[2 * width];
+        this.scratch = new byte[gridSize];
+    }
+
+    /**
+     * Get the schema of the grids.
+     * @return the schema.
+     */
+    public GameSchema getSchema() {
+        return schema;
+    }
+
+    /**
+     * Get the number of bytes of one grid.
+     * @return the number of cells of the schema.
+     */
+    public int getGridSize() {
+        return gridSize;
+    }
+
+    /**
+     * Checks whether one grid is a solution.
+     * @param grids the array holding the grid.
+     * @param offset the index of the first cell of the grid.
+     * @return {@code true} if the grid is a full and valid solution.
+     * @throws IllegalArgumentException if the grid is not
+     * within the array.
+     */
+    public boolean isSolution(final byte[] grids, final int offset) {
+        checkRange(grids.length, offset, 1);
+        return check(grids, offset);
+    }
+
+    /**
+     * Verifies grids stored back to back in an array.
+     * @param grids the array holding the grids.
+     * @param offset the index of the first cell of the first grid.
+     * @param count the number of grids.
+     * @param solutions receives the results. Bit {@code i} is set if
+     *                  grid {@code i} is a solution and cleared otherwise.
+     * @return the number of grids that are solutions.
+     * @throws IllegalArgumentException if the grids are not
+     * within the array.
+     */
+    public int verify(final byte[] grids,
+            final int offset,
+            final int count,
+            final BitSet solutions) {
+        checkRange(grids.length, offset, count);
+        int result = 0;
+        for (int i = 0; i < count; i++) {
+            boolean solution = check(grids, offset + i * gridSize);
+            solutions.set(i, solution);
+            if (solution) {
+                result++;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Verifies the grids stored back to back in the remaining bytes
+     * of a buffer. The position of the buffer is moved behind the
+     * last grid.
+     * @param grids the buffer holding the grids.
+     * @param solutions receives the results. Bit {@code i} is set if
+     *                  the {@code i}-th grid from the position is a
+     *                  solution and cleared otherwise.
+     * @return the number of grids that are solutions.
+     * @throws IllegalArgumentException if the remaining bytes are not
+     * a multiple of the grid size.
+     */
+    public int verify(final ByteBuffer grids, final BitSet solutions) {
+        if (grids.remaining() % gridSize != 0) {
+            throw new IllegalArgumentException("Remaining bytes "
+                    + grids.remaining()
+                    + " are no multiple of the grid size " + gridSize);
+        }
+        final int count = grids.remaining() / gridSize;
+        if (grids.hasArray()) {
+            int result = verify(grids.array(),
+                    grids.arrayOffset() + grids.position(),
+                    count,
+                    solutions);
+            grids.position(grids.limit());
+            return result;
+        }
+        int result = 0;
+        for (int i = 0; i < count; i++) {
+            grids.get(scratch);
+            boolean solution = check(scratch, 0);
+            solutions.set(i, solution);
+            if (solution) {
+                result++;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Checks that grids are within an array.
+     * @param length the length of the array.
+     * @param offset the index of the first cell of the first grid.
+     * @param count the number of grids.
+     * @throws IllegalArgumentException if the grids are not
+     * within the array.
+     */
+    private void checkRange(final int length,
+            final int offset,
+            final int count) {
+        if (offset < 0 || count < 0
+                || (long) offset + (long) count * gridSize > length) {
+            throw new IllegalArgumentException("Grids at offset " + offset
+                    + " with count " + count
+                    + " exceed the length " + length);
+        }
+    }
+
+    /**
+     * Checks whether one grid is a solution.
+     * All cells of a unit are ored into its mask. A unit with
+     * width values in range holds each value once if and only if
+     * its mask has all value bits set, so no duplicate check
+     * is needed per cell.
+     * @param grids the array holding the grid.
+     * @param offset the index of the first cell of the grid.
+     * @return {@code true} if the grid is a full and valid solution.
+     */
+    private boolean check(final byte[] grids, final int offset) {
+        Arrays.fill(masks, 0);
+        int cell = offset;
+        for (int row = 0; row < width; row++) {
+            final int rowBlock = rowBlocks[row];
+            int rowMask = 0;
+            int outOfRange = 0;
+            for (int column = 0; column < width; column++) {
+                final int value = grids[cell++];
+                // negative if below the minimum or above the maximum
+                outOfRange |= (value - minimumValue) | (maximumValue - value);
+                final int bit = 1 << value;
+                rowMask |= bit;
+                masks[column] |= bit;
+                masks[rowBlock + columnBlocks[column]] |= bit;
+            }
+            if (rowMask != bitMask || outOfRange < 0) {
+                return false;
+            }
+        }
+        for (int mask : masks) {
+            if (mask != bitMask) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,212 @@
+/*
+Sudoku - a fast Java Sudoku game creation library.
+Copyright (C) 2017-2018  Stephan Fuhrmann
+
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Library General Public
+License as published by the Free Software Foundation; either
+version 2 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+Library General Public License for more details.
+
+You should have received a copy of the GNU Library General Public
+License along with this library; if not, write to the
+Free Software Foundation, Inc., 51 Franklin St, Fifth Floor,
+Boston, MA  02110-1301, USA.
+*/
+package de.sfuhrm.sudoku;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A solve path stored as packed ints, one per step.
+ * Each step holds the technique ordinal, the row and column plus one,
+ * and the value in one byte each, so adding a step allocates nothing.
+ * The points of the steps are summed while they are added.
+ * {@link SolveStep} objects are only created by {@link #toList()}.
+ * @author Stephan Fuhrmann
+ */
+final class SolvePath {
+
+    /** The bits per packed field. */
+    private static final int FIELD_BITS = 8;
+
+    /** The mask of one packed field. */
+    private static final int FIELD_MASK = (1 << FIELD_BITS) - 1;
+
+    /** The shift of the technique field. */
+    private static final int TECHNIQUE_SHIFT = 3 * FIELD_BITS;
+
+    /** The shift of the row field. */
+    private static final int ROW_SHIFT = 2 * FIELD_BITS;
+
+    /** The shift of the column field. */
+    private static final int COLUMN_SHIFT = FIELD_BITS;
+
+    /** The techniques by ordinal. */
+    private static final SolveTechnique[] TECHNIQUES =
+            SolveTechnique.values();
+
+    /** The packed steps. */
+    private int[] steps;
+
+    /** The number of steps. */
+    private int size;
+
+    /** The sum of the points of all steps. */
+    private int points;
+
+    /** The highest points of one step. */
+    private int maximumStepPoints;
+
+    /**
+     * Creates an empty path.
+     * @param capacity the initial number of steps.
+     */
+    SolvePath(final int capacity) {
+        steps = new int[Math.max(1, capacity)];
+    }
+
+    /**
+     * Creates a path from step objects.
+     * @param path the steps to add.
+     */
+    SolvePath(final List<SolveStep> path) {
+        this(path.size());
+        for (SolveStep step : path) {
+            add(step.getTechnique(), step.getRow(), step.getColumn(),
+                    step.getValue());
+        }
+    }
+
+    /**
+     * Creates a copy with the exact capacity.
+     * @param other the path to copy.
+     */
+    private SolvePath(final SolvePath other) {
+        steps = Arrays.copyOf(other.steps, other.size);
+        size = other.size;
+        points = other.points;
+        maximumStepPoints = other.maximumStepPoints;
+    }
+
+    /**
+     * Adds a step.
+     * @param technique the technique of the step.
+     * @param row the row, or -1 if not cell-specific.
+     * @param column the column, or -1 if not cell-specific.
+     * @param value the value, or 0 if not cell-specific.
+     */
+    void add(final SolveTechnique technique,
+            final int row,
+            final int column,
+            final int value) {
+        if (size == steps.length) {
+            steps = Arrays.copyOf(steps, size * 2);
+        }
+        steps[size++] = technique.ordinal() << TECHNIQUE_SHIFT
+                | (row + 1) << ROW_SHIFT
+                | (column + 1) << COLUMN_SHIFT
+                | value;
+        points += technique.getPoints();
+        maximumStepPoints = Math.max(maximumStepPoints,
+                technique.getPoints());
+    }
+
+    /**
+     * Removes all steps.
+     */
+    void clear() {
+        size = 0;
+        points = 0;
+        maximumStepPoints = 0;
+    }
+
+    /**
+     * Creates an immutable-sized copy of this path.
+     * @return a copy without unused capacity.
+     */
+    SolvePath copy() {
+        return new SolvePath(this);
+    }
+
+    /**
+     * Get the number of steps.
+     * @return the step count.
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * Get the sum of the points of all steps.
+     * @return the total points.
+     */
+    int getPoints() {
+        return points;
+    }
+
+    /**
+     * Get the highest points of one step.
+     * @return the maximum step points.
+     */
+    int getMaximumStepPoints() {
+        return maximumStepPoints;
+    }
+
+    /**
+     * Get the technique of a step.
+     * @param index the step index.
+     * @return the technique.
+     */
+    SolveTechnique getTechnique(final int index) {
+        return TECHNIQUES[steps[index] >>> TECHNIQUE_SHIFT];
+    }
+
+    /**
+     * Get the row of a step.
+     * @param index the step index.
+     * @return the row, or -1 if not cell-specific.
+     */
+    int getRow(final int index) {
+        return ((steps[index] >>> ROW_SHIFT) & FIELD_MASK) - 1;
+    }
+
+    /**
+     * Get the column of a step.
+     * @param index the step index.
+     * @return the column, or -1 if not cell-specific.
+     */
+    int getColumn(final int index) {
+        return ((steps[index] >>> COLUMN_SHIFT) & FIELD_MASK) - 1;
+    }
+
+    /**
+     * Get the value of a step.
+     * @param index the step index.
+     * @return the value set or the candidate removed.
+     */
+    byte getValue(final int index) {
+        return (byte) (steps[index] & FIELD_MASK);
+    }
+
+    /**
+     * Creates step objects for all steps.
+     * @return a new list of steps.
+     */
+    List<SolveStep> toList() {
+        List<SolveStep> result = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            result.add(new SolveStep(getTechnique(i),
+                    getRow(i),
+                    getColumn(i),
+                    getValue(i)));
+        }
+        return result;
+    }
+}
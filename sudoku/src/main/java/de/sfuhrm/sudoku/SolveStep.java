@@ -4,15 +4,19 @@ import java.util.Objects;
 
 /**
  * A single solving step with technique and position.
+ * Placing steps set the value in the cell, the other steps
+ * remove the value as a candidate from the cell.
+ * @see SolveTechnique#isPlacement()
  */
-final class SolveStep {
+public final class SolveStep {
     /** Technique used for the step. */
     private final SolveTechnique technique;
     /** Row of the affected cell or -1 when not cell-specific. */
     private final int row;
     /** Column of the affected cell or -1 when not cell-specific. */
     private final int column;
-    /** Set value or 0 when not cell-specific. */
+    /** Set value, the removed candidate for eliminating techniques,
+     * or 0 when not cell-specific. */
     private final byte value;
 
     /**
@@ -20,7 +24,7 @@ final class SolveStep {
      * @param useTechnique used solving technique.
      * @param inRow row index.
      * @param inColumn column index.
-     * @param setValue value set.
+     * @param setValue value set or candidate removed.
      */
     SolveStep(final SolveTechnique useTechnique,
             final int inRow,
@@ -37,7 +41,7 @@ final class SolveStep {
      * The solving technique used for this step.
      * @return solve technique.
      */
-    SolveTechnique getTechnique() {
+    public SolveTechnique getTechnique() {
         return technique;
     }
 
@@ -45,7 +49,7 @@ final class SolveStep {
      * Row index affected by this step.
      * @return row index.
      */
-    int getRow() {
+    public int getRow() {
         return row;
     }
 
@@ -53,15 +57,15 @@ final class SolveStep {
      * Column index affected by this step.
      * @return column index.
      */
-    int getColumn() {
+    public int getColumn() {
         return column;
     }
 
     /**
-     * Value set by this step.
+     * Value set or candidate removed by this step.
      * @return value.
      */
-    byte getValue() {
+    public byte getValue() {
         return value;
     }
 
@@ -69,7 +73,7 @@ final class SolveStep {
      * Points awarded for this step.
      * @return step points.
      */
-    int getPoints() {
+    public int getPoints() {
         return technique.getPoints();
     }
 }
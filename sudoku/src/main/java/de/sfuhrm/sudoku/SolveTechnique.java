@@ -2,20 +2,59 @@ package de.sfuhrm.sudoku;
 
 /**
  * Solving techniques used for difficulty scoring.
+ * The points follow {@code docs/difficulty-proposal.md}. Hidden pairs and
+ * triples are not rated there; their 5 and 7 points are an implementation
+ * choice that ranks them one point above the naked variants.
  */
-enum SolveTechnique {
+public enum SolveTechnique {
     /** A single candidate in one cell. */
-    NAKED_SINGLE(1),
+    NAKED_SINGLE(1, true),
     /** A candidate that appears only once in a row/column/block. */
-    HIDDEN_SINGLE(2),
+    HIDDEN_SINGLE(2, true),
+    /** Two cells of a unit with the same two candidates. */
+    NAKED_PAIR(4, false),
+    /** Three cells of a unit with three candidates in total. */
+    NAKED_TRIPLE(6, false),
+    /** Two candidates of a unit that fit only into the same two cells. */
+    HIDDEN_PAIR(5, false),
+    /** Three candidates of a unit that fit only into the same
+     * three cells. */
+    HIDDEN_TRIPLE(7, false),
+    /** A candidate of a block that is confined to one row or column. */
+    POINTING_PAIR(5, false),
+    /** A candidate of a row or column that is confined to one block. */
+    BOX_LINE_REDUCTION(5, false),
+    /** A candidate confined to the same two columns in two rows,
+     * or vice versa. */
+    X_WING(12, false),
+    /** A candidate confined to the same three columns in three rows,
+     * or vice versa. */
+    SWORDFISH(18, false),
+    /** A pivot cell with two candidates and two wings seeing it. */
+    XY_WING(15, false),
     /** Non-deductive search is required. */
-    BACKTRACKING(100);
+    BACKTRACKING(100, false);
 
     /** Scoring points for one step with this technique. */
     private final int points;
 
-    SolveTechnique(final int scorePoints) {
+    /** Whether a step sets a value or eliminates a candidate. */
+    private final boolean placement;
+
+    SolveTechnique(final int scorePoints, final boolean isPlacement) {
         this.points = scorePoints;
+        this.placement = isPlacement;
+    }
+
+    /**
+     * Whether steps of this technique set a value in a cell.
+     * Steps of the other techniques remove a candidate from a cell
+     * or are not cell-specific.
+     *
+     * @return {@code true} for placing techniques.
+     */
+    public boolean isPlacement() {
+        return placement;
     }
 
     /**
@@ -23,7 +62,7 @@ enum SolveTechnique {
      *
      * @return points.
      */
-    int getPoints() {
+    public int getPoints() {
         return points;
     }
 }
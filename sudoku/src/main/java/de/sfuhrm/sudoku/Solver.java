@@ -33,10 +33,21 @@ import java.util.Objects;
 public final class Solver {
 
     /**
-     * Current working copy.
+     * Current working copy, or {@code null} if the riddle is solved
+     * with the {@link Grid4x4Table}.
      */
     private final CachedGameMatrixImpl riddle;
 
+    /**
+     * The {@link Grid4x4Table#mask(GameMatrix) mask} of a 4x4 riddle.
+     */
+    private final int tableMask;
+
+    /**
+     * The {@link Grid4x4Table#values(GameMatrix) values} of a 4x4 riddle.
+     */
+    private final int tableValues;
+
     /**
      * The possible solutions for this riddle.
      */
@@ -52,16 +63,47 @@ public final class Solver {
      */
     private int limit;
 
+    /**
+     * Whether found solutions are copied into
+     * {@link #possibleSolutions} or only counted.
+     */
+    private boolean collect;
+
+    /**
+     * The number of solutions found by the last run.
+     */
+    private int solutionCount;
+
+    /**
+     * The number of search nodes visited by the last run.
+     */
+    private long searchNodes;
+
+    /**
+     * The maximum number of nested guesses of the last run.
+     */
+    private int searchDepth;
+
     /**
      * Creates a solver for the given riddle.
+     * 4x4 riddles are solved by looking up the matching grids in a
+     * table of all valid 4x4 grids instead of searching.
      *
      * @param solveMe the riddle to solve.
      */
     public Solver(final GameMatrix solveMe) {
         Objects.requireNonNull(solveMe, "solveMe is null");
         limit = DEFAULT_LIMIT;
-        riddle = new CachedGameMatrixImpl(solveMe.getSchema());
-        riddle.setAll(solveMe.getArray());
+        if (Grid4x4Table.supports(solveMe.getSchema())) {
+            riddle = null;
+            tableMask = Grid4x4Table.mask(solveMe);
+            tableValues = Grid4x4Table.values(solveMe);
+        } else {
+            riddle = new CachedGameMatrixImpl(solveMe.getSchema());
+            riddle.setAll(solveMe.getArray());
+            tableMask = 0;
+            tableValues = 0;
+        }
         possibleSolutions = new ArrayList<>();
     }
 
@@ -78,69 +120,84 @@ public final class Solver {
      * @return the found solutions. Should be only one.
      */
     public List<GameMatrix> solve() {
-        possibleSolutions.clear();
-        int freeCells = riddle.getSchema().getTotalFields()
-                - riddle.getSetCount();
-
-        backtrack(freeCells, new CellIndex());
-
+        run(true);
         return Collections.unmodifiableList(possibleSolutions);
     }
 
     /**
-     * Solves a Sudoku using backtracking.
+     * Counts the solutions up to the limit without copying them.
+     * Also collects the statistics returned by {@link #getSearchNodes()}
+     * and {@link #getSearchDepth()}.
      *
-     * @param freeCells number of free cells, abort criterion.
-     * @param minimumCell coordinates to the so-far found minimum cell.
-     * @return the total number of solutions.
+     * @return the number of solutions found, at most the limit.
      */
-    private int backtrack(final int freeCells, final CellIndex minimumCell) {
-        assert freeCells >= 0 : "freeCells is negative";
+    int countSolutions() {
+        run(false);
+        return solutionCount;
+    }
 
-        // don't recurse further if already at limit
-        if (possibleSolutions.size() >= limit) {
-            return 0;
-        }
+    /**
+     * Get the number of search nodes visited by the last run.
+     * Each node is one cell chosen for trying its candidates.
+     * Table lookups of 4x4 riddles visit no nodes.
+     *
+     * @return the number of visited nodes.
+     */
+    long getSearchNodes() {
+        return searchNodes;
+    }
 
-        // just one result, we have no more to choose
-        if (freeCells == 0) {
-            GameMatrix gmi = new GameMatrixImpl(riddle.getSchema());
-            gmi.setAll(riddle.getArray());
-            possibleSolutions.add(gmi);
+    /**
+     * Get the maximum number of nested guesses of the last run.
+     * Cells with only one candidate do not count as a guess.
+     *
+     * @return the maximum guess depth, 0 if no guess was needed.
+     */
+    int getSearchDepth() {
+        return searchDepth;
+    }
 
-            return 1;
+    /**
+     * Runs the search.
+     *
+     * @param copySolutions whether to copy the solutions into
+     *                      {@link #possibleSolutions}.
+     */
+    private void run(final boolean copySolutions) {
+        possibleSolutions.clear();
+        collect = copySolutions;
+        solutionCount = 0;
+        searchNodes = 0;
+        searchDepth = 0;
+        if (riddle == null) {
+            solutionCount = Grid4x4Table.find(tableMask, tableValues, limit,
+                    copySolutions ? possibleSolutions : null);
+            return;
         }
-
-        GameMatrixImpl.FreeCellResult freeCellResult =
-                riddle.findLeastFreeCell(minimumCell);
-        if (freeCellResult != GameMatrixImpl.FreeCellResult.FOUND) {
-            // no solution
-            return 0;
+        if (limit <= 0) {
+            return;
         }
-
-        int result = 0;
-        int minimumRow = minimumCell.row;
-        int minimumColumn = minimumCell.column;
-        int minimumFree = riddle.getFreeMask(minimumRow, minimumColumn);
-
-        // else we are done
-        // now try each number
-        int remainingChoices = minimumFree;
-        while (remainingChoices != 0) {
-            int selectedBit = remainingChoices & -remainingChoices;
-            int index = Integer.numberOfTrailingZeros(selectedBit);
-            assert index > 0;
-
-            riddle.set(minimumRow, minimumColumn, (byte) index);
-            int resultCount = backtrack(freeCells - 1, minimumCell);
-            result += resultCount;
-
-            remainingChoices ^= selectedBit;
+        SearchKernel kernel = new SearchKernel(riddle);
+        if (kernel.search(this::visit)) {
+            kernel.unwind();
         }
-        riddle.set(minimumRow,
-                minimumColumn,
-                riddle.getSchema().getUnsetValue());
+        searchNodes = kernel.getNodes();
+        searchDepth = kernel.getDepth();
+    }
 
-        return result;
+    /**
+     * Receives a solution from the search.
+     *
+     * @param solution the solved working copy.
+     * @return {@code true} if the limit is reached.
+     */
+    private boolean visit(final CachedGameMatrixImpl solution) {
+        if (collect) {
+            GameMatrix gmi = new GameMatrixImpl(riddle.getSchema());
+            gmi.setAll(solution.getArray());
+            possibleSolutions.add(gmi);
+        }
+        solutionCount++;
+        return solutionCount >= limit;
     }
 }
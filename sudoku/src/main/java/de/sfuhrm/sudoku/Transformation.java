@@ -0,0 +1,463 @@
+/*
+Sudoku - a fast Java Sudoku game creation library.
+Copyright (C) 2017-2018  Stephan Fuhrmann
+
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Library General Public
+License as published by the Free Software Foundation; either
+version 2 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+Library General Public License for more details.
+
+You should have received a copy of the GNU Library General Public
+License along with this library; if not, write to the
+Free Software Foundation, Inc., 51 Franklin St, Fifth Floor,
+Boston, MA  02110-1301, USA.
+*/
+package de.sfuhrm.sudoku;
+
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.Random;
+
+/**
+ * An element of the Sudoku symmetry group.
+ * A transformation relabels the digits, permutes the bands
+ * and the rows within each band, permutes the stacks and the
+ * columns within each stack, and optionally transposes the matrix.
+ * Each of these operations keeps a valid Sudoku valid, keeps the
+ * number of solutions of a riddle and keeps the solving techniques
+ * needed for a riddle.
+ *
+ * <p>A transformation is stored as one target index per row, column
+ * and digit plus a transposition flag. Transformations can be
+ * {@link #compose(Transformation) composed} and
+ * {@link #inverse() inverted} without touching a game matrix, and are
+ * applied to a game matrix in one pass over the cells.
+ * Instances are immutable.</p>
+ * @author Stephan Fuhrmann
+ */
+public final class Transformation {
+
+    /** The game schema this transformation is for. */
+    private final GameSchema schema;
+
+    /** The target row for each source row. */
+    private final int[] rowMap;
+
+    /** The target column for each source column. */
+    private final int[] columnMap;
+
+    /** The target digit for each source digit.
+     * The unset value is mapped to itself.
+     */
+    private final byte[] digitMap;
+
+    /** Whether rows and columns are swapped after mapping them. */
+    private final boolean transpose;
+
+    /**
+     * Constructor.
+     * @param inSchema the game schema this transformation is for.
+     * @param inRowMap the target row for each source row.
+     * @param inColumnMap the target column for each source column.
+     * @param inDigitMap the target digit for each source digit.
+     * @param inTranspose whether to swap rows and columns.
+     */
+    private Transformation(final GameSchema inSchema,
+                           final int[] inRowMap,
+                           final int[] inColumnMap,
+                           final byte[] inDigitMap,
+                           final boolean inTranspose) {
+        this.schema = inSchema;
+        this.rowMap = inRowMap;
+        this.columnMap = inColumnMap;
+        this.digitMap = inDigitMap;
+        this.transpose = inTranspose;
+    }
+
+    /**
+     * Creates a transformation from its maps.
+     * The maps are not copied and must be valid permutations that keep
+     * the lines of each band and stack together.
+     * @param schema the game schema the transformation is for.
+     * @param rowMap the target row for each source row.
+     * @param columnMap the target column for each source column.
+     * @param digitMap the target digit for each source digit.
+     * @param transpose whether to swap rows and columns.
+     * @return the transformation.
+     */
+    static Transformation of(final GameSchema schema,
+                             final int[] rowMap,
+                             final int[] columnMap,
+                             final byte[] digitMap,
+                             final boolean transpose) {
+        return new Transformation(schema,
+                rowMap,
+                columnMap,
+                digitMap,
+                transpose);
+    }
+
+    /**
+     * Creates the transformation that keeps every cell in place.
+     * @param schema the game schema to create the transformation for.
+     * @return the identity transformation.
+     */
+    public static Transformation identity(final GameSchema schema) {
+        int[] lines = new int[schema.getWidth()];
+        for (int i = 0; i < lines.length; i++) {
+            lines[i] = i;
+        }
+        byte[] digitMap = new byte[schema.getMaximumValue() + 1];
+        for (int i = 0; i < digitMap.length; i++) {
+            digitMap[i] = (byte) i;
+        }
+        return new Transformation(schema,
+                lines,
+                lines.clone(),
+                digitMap,
+                false);
+    }
+
+    /**
+     * Creates a random element of the symmetry group of a schema.
+     * Each element of the group has the same probability.
+     * @param schema the game schema to create the transformation for.
+     * @param random the random number generator to use.
+     * @return a random transformation.
+     */
+    public static Transformation random(final GameSchema schema,
+                                        final Random random) {
+        byte[] digitMap = new byte[schema.getMaximumValue() + 1];
+        digitMap[schema.getUnsetValue()] = schema.getUnsetValue();
+        byte[] digits = Creator.createNumbersToDistribute(schema, random, 1);
+        for (int i = 0; i < digits.length; i++) {
+            digitMap[schema.getMinimumValue() + i] = digits[i];
+        }
+        return new Transformation(schema,
+                randomLineMap(schema, random),
+                randomLineMap(schema, random),
+                digitMap,
+                random.nextBoolean());
+    }
+
+    /**
+     * Creates a random line permutation that keeps the lines of each
+     * band (or stack) together.
+     * @param schema the game schema to create the permutation for.
+     * @param random the random number generator to use.
+     * @return the target line for each source line.
+     */
+    private static int[] randomLineMap(final GameSchema schema,
+                                       final Random random) {
+        final int blockWidth = schema.getBlockWidth();
+        final int blockCount = schema.getBlockCount();
+        int[] bands = shuffledIndexes(blockCount, random);
+        int[] map = new int[schema.getWidth()];
+        for (int band = 0; band < blockCount; band++) {
+            int[] lines = shuffledIndexes(blockWidth, random);
+            for (int line = 0; line < blockWidth; line++) {
+                map[band * blockWidth + line] =
+                        bands[band] * blockWidth + lines[line];
+            }
+        }
+        return map;
+    }
+
+    /**
+     * Creates a random permutation of the indexes
+     * from 0 to {@code size - 1}.
+     * @param size the number of indexes.
+     * @param random the random number generator to use.
+     * @return an array with each index occurring once.
+     */
+    private static int[] shuffledIndexes(final int size,
+                                         final Random random) {
+        int[] result = new int[size];
+        for (int i = 0; i < size; i++) {
+            result[i] = i;
+        }
+        for (int i = size - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            int tmp = result[i];
+            result[i] = result[j];
+            result[j] = tmp;
+        }
+        return result;
+    }
+
+    /**
+     * Get the target row of a source cell.
+     * @param row the source row.
+     * @param column the source column.
+     * @return the row the source cell is moved to.
+     */
+    int targetRow(final int row, final int column) {
+        return transpose ? columnMap[column] : rowMap[row];
+    }
+
+    /**
+     * Get the target column of a source cell.
+     * @param row the source row.
+     * @param column the source column.
+     * @return the column the source cell is moved to.
+     */
+    int targetColumn(final int row, final int column) {
+        return transpose ? rowMap[row] : columnMap[column];
+    }
+
+    /**
+     * Get the target value of a source value.
+     * @param value the source value, may be the unset value.
+     * @return the relabeled value.
+     */
+    byte targetValue(final byte value) {
+        return digitMap[value];
+    }
+
+    /**
+     * Get the game schema this transformation is for.
+     * @return the game schema.
+     */
+    public GameSchema getSchema() {
+        return schema;
+    }
+
+    /**
+     * Creates the transformation that applies this transformation
+     * first and then the given transformation.
+     * @param after the transformation to apply after this one.
+     * @return the combined transformation.
+     * @throws IllegalArgumentException if the transformations are
+     * for different schemas.
+     */
+    public Transformation compose(final Transformation after) {
+        checkSchema(after.schema);
+        // after transposing, the rows of this are the columns of after
+        int[] afterRows = transpose ? after.columnMap : after.rowMap;
+        int[] afterColumns = transpose ? after.rowMap : after.columnMap;
+        final int width = schema.getWidth();
+        int[] rows = new int[width];
+        int[] columns = new int[width];
+        for (int i = 0; i < width; i++) {
+            rows[i] = afterRows[rowMap[i]];
+            columns[i] = afterColumns[columnMap[i]];
+        }
+        byte[] digits = new byte[digitMap.length];
+        for (int i = 0; i < digits.length; i++) {
+            digits[i] = after.digitMap[digitMap[i]];
+        }
+        return new Transformation(schema,
+                rows,
+                columns,
+                digits,
+                transpose ^ after.transpose);
+    }
+
+    /**
+     * Creates the transformation that undoes this transformation.
+     * @return the inverse transformation.
+     */
+    public Transformation inverse() {
+        int[] rows = invert(rowMap);
+        int[] columns = invert(columnMap);
+        byte[] digits = new byte[digitMap.length];
+        for (int i = 0; i < digits.length; i++) {
+            digits[digitMap[i]] = (byte) i;
+        }
+        if (transpose) {
+            // a cell (r, c) went to (columnMap[c], rowMap[r])
+            return new Transformation(schema, columns, rows, digits, true);
+        }
+        return new Transformation(schema, rows, columns, digits, false);
+    }
+
+    /**
+     * Inverts a permutation.
+     * @param map the permutation to invert.
+     * @return the inverse permutation.
+     */
+    private static int[] invert(final int[] map) {
+        int[] result = new int[map.length];
+        for (int i = 0; i < map.length; i++) {
+            result[map[i]] = i;
+        }
+        return result;
+    }
+
+    /**
+     * Checks that a schema is the schema of this transformation.
+     * @param other the schema to check.
+     * @throws IllegalArgumentException if the schema differs.
+     */
+    private void checkSchema(final GameSchema other) {
+        if (!schema.equals(other)) {
+            throw new IllegalArgumentException("Schema " + other
+                    + " does not match transformation schema " + schema);
+        }
+    }
+
+    /**
+     * Applies this transformation to a game matrix.
+     * If the game matrix is a {@link Riddle}, the result is a riddle
+     * with transformed writable flags.
+     * @param source the matrix to transform.
+     * @return a new transformed matrix.
+     * @throws IllegalArgumentException if the matrix has a different
+     * schema than this transformation.
+     */
+    public GameMatrix apply(final GameMatrix source) {
+        if (source instanceof Riddle) {
+            return apply((Riddle) source);
+        }
+        GameMatrix target = new GameMatrixImpl(schema);
+        apply(source, target);
+        return target;
+    }
+
+    /**
+     * Applies this transformation to a game matrix and writes the
+     * result into another game matrix.
+     * All cells of the target are overwritten.
+     * @param source the matrix to transform.
+     * @param target the matrix to write the result to. Must not be the
+     *               same object as the source.
+     * @throws IllegalArgumentException if one of the matrixes has a
+     * different schema than this transformation or both are the same.
+     */
+    public void apply(final GameMatrix source, final GameMatrix target) {
+        checkSchema(source.getSchema());
+        checkSchema(target.getSchema());
+        if (source == target) {
+            throw new IllegalArgumentException(
+                    "source and target must be different");
+        }
+        final int width = schema.getWidth();
+        for (int row = 0; row < width; row++) {
+            for (int column = 0; column < width; column++) {
+                target.set(targetRow(row, column),
+                        targetColumn(row, column),
+                        targetValue(source.get(row, column)));
+            }
+        }
+    }
+
+    /**
+     * Applies this transformation to a riddle, including the
+     * writable flags. A known analysis of the riddle is transformed
+     * together with the cells.
+     * @param source the riddle to transform.
+     * @return a new transformed riddle.
+     * @throws IllegalArgumentException if the riddle has a different
+     * schema than this transformation.
+     */
+    public Riddle apply(final Riddle source) {
+        RiddleImpl target = applyCells(source);
+        if (source instanceof RiddleImpl) {
+            RiddleAnalysis known = ((RiddleImpl) source).getKnownAnalysis();
+            if (known != null) {
+                target.setAnalysis(apply(known));
+            }
+        }
+        return target;
+    }
+
+    /**
+     * Applies this transformation to the cells and writable flags
+     * of a riddle.
+     * @param source the riddle to transform.
+     * @return a new transformed riddle without analysis.
+     */
+    private RiddleImpl applyCells(final Riddle source) {
+        RiddleImpl target = new RiddleImpl(schema);
+        apply(source, target);
+        final int width = schema.getWidth();
+        for (int row = 0; row < width; row++) {
+            for (int column = 0; column < width; column++) {
+                target.setWritable(targetRow(row, column),
+                        targetColumn(row, column),
+                        source.getWritable(row, column));
+            }
+        }
+        return target;
+    }
+
+    /**
+     * Applies this transformation to a riddle analysis.
+     * The steps of the solve path are moved to the transformed
+     * cells and values, the score and difficulty stay the same.
+     * @param source the analysis to transform.
+     * @return a new transformed analysis.
+     */
+    RiddleAnalysis apply(final RiddleAnalysis source) {
+        SolvePath sourcePath = source.getSolvePath();
+        SolvePath path = new SolvePath(sourcePath.size());
+        for (int i = 0; i < sourcePath.size(); i++) {
+            int row = sourcePath.getRow(i);
+            int column = sourcePath.getColumn(i);
+            if (row >= 0 && column >= 0) {
+                row = targetRow(sourcePath.getRow(i),
+                        sourcePath.getColumn(i));
+                column = targetColumn(sourcePath.getRow(i),
+                        sourcePath.getColumn(i));
+            }
+            path.add(sourcePath.getTechnique(i),
+                    row,
+                    column,
+                    targetValue(sourcePath.getValue(i)));
+        }
+        return new RiddleAnalysis(path, source.getClassifiedDifficulty(),
+                source.getSearchNodes(), source.getSearchDepth());
+    }
+
+    /**
+     * Applies this transformation to a creation result.
+     * @param source the creation result to transform.
+     * @return a new creation result with transformed riddle and analysis.
+     */
+    CreationResult apply(final CreationResult source) {
+        RiddleImpl riddle = applyCells(source.getRiddle());
+        RiddleAnalysis analysis = apply(source.getAnalysis());
+        riddle.setAnalysis(analysis);
+        return new CreationResult(riddle, analysis);
+    }
+
+    @Override
+    public boolean equals(final Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof Transformation)) {
+            return false;
+        }
+        Transformation other = (Transformation) o;
+        return transpose == other.transpose
+                && schema.equals(other.schema)
+                && Arrays.equals(rowMap, other.rowMap)
+                && Arrays.equals(columnMap, other.columnMap)
+                && Arrays.equals(digitMap, other.digitMap);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(schema,
+                Arrays.hashCode(rowMap),
+                Arrays.hashCode(columnMap),
+                Arrays.hashCode(digitMap),
+                transpose);
+    }
+
+    @Override
+    public String toString() {
+        return "Transformation{"
+                + "rows=" + Arrays.toString(rowMap)
+                + ", columns=" + Arrays.toString(columnMap)
+                + ", digits=" + Arrays.toString(digitMap)
+                + ", transpose=" + transpose
+                + '}';
+    }
+}
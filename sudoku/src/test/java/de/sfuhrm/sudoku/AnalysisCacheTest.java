@@ -0,0 +1,96 @@
+package de.sfuhrm.sudoku;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Test for {@link AnalysisCache}.
+ */
+public class AnalysisCacheTest {
+
+    private final GameSchema schema = GameSchemas.SCHEMA_9X9;
+
+    private final AtomicInteger analyses = new AtomicInteger();
+
+    private final Function<GameMatrix, RiddleAnalysis> analyzer = m -> {
+        analyses.incrementAndGet();
+        return RiddleAnalyzer.analyze(m);
+    };
+
+    private GameMatrix riddle() {
+        return Creator.createRiddle(Creator.createFull(schema),
+                Difficulty.EASY);
+    }
+
+    @Test
+    public void testHitByContent() {
+        AnalysisCache cache = new AnalysisCache(4);
+        GameMatrix riddle = riddle();
+        GameMatrix copy = new GameMatrixImpl(schema);
+        copy.setAll(riddle.getArray());
+
+        RiddleAnalysis first = cache.get(riddle, analyzer);
+        RiddleAnalysis second = cache.get(copy, analyzer);
+
+        assertSame(first, second);
+        assertEquals(1, analyses.get());
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    public void testMissAfterChange() {
+        AnalysisCache cache = new AnalysisCache(4);
+        GameMatrix riddle = riddle();
+        cache.get(riddle, analyzer);
+        int column = 0;
+        while (riddle.get(0, column) == schema.getUnsetValue()) {
+            column++;
+        }
+        riddle.set(0, column, schema.getUnsetValue());
+        cache.get(riddle, analyzer);
+        cache.get(riddle, analyzer);
+
+        assertEquals(2, analyses.get());
+        assertEquals(2, cache.size());
+    }
+
+    @Test
+    public void testLeastRecentlyUsedIsEvicted() {
+        AnalysisCache cache = new AnalysisCache(2);
+        GameMatrix a = riddle();
+        GameMatrix b = riddle();
+        GameMatrix c = riddle();
+        cache.get(a, analyzer);
+        cache.get(b, analyzer);
+        cache.get(a, analyzer);
+        cache.get(c, analyzer);
+        assertEquals(3, analyses.get());
+        assertEquals(2, cache.size());
+
+        cache.get(a, analyzer);
+        assertEquals(3, analyses.get());
+        cache.get(b, analyzer);
+        assertEquals(4, analyses.get());
+    }
+
+    @Test
+    public void testPut() {
+        AnalysisCache cache = new AnalysisCache(2);
+        GameMatrix riddle = riddle();
+        RiddleAnalysis analysis = RiddleAnalyzer.analyze(riddle);
+        cache.put(riddle, analysis);
+        assertSame(analysis, cache.get(riddle, analyzer));
+        assertEquals(0, analyses.get());
+    }
+
+    @Test
+    public void testIllegalCapacity() {
+        assertThrows(IllegalArgumentException.class,
+                () -> new AnalysisCache(0));
+    }
+}
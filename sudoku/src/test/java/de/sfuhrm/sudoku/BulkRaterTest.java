@@ -0,0 +1,134 @@
+package de.sfuhrm.sudoku;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Test for {@link BulkRater}.
+ */
+public class BulkRaterTest {
+
+    private final GameSchema schema = GameSchemas.SCHEMA_9X9;
+
+    private static String toLine(final GameMatrix matrix) {
+        StringBuilder sb = new StringBuilder();
+        int width = matrix.getSchema().getWidth();
+        for (int row = 0; row < width; row++) {
+            for (int column = 0; column < width; column++) {
+                byte value = matrix.get(row, column);
+                sb.append(value == matrix.getSchema().getUnsetValue()
+                        ? '.' : (char) ('0' + value));
+            }
+        }
+        return sb.toString();
+    }
+
+    @Test
+    public void testRateKeepsOrderAndMatchesAnalyzer() throws IOException {
+        List<Riddle> riddles = new ArrayList<>();
+        StringBuilder input = new StringBuilder("# comment\n\n");
+        for (int i = 0; i < 50; i++) {
+            Riddle riddle = Creator.createRiddle(Creator.createFull(schema));
+            riddles.add(riddle);
+            input.append(toLine(riddle)).append('\n');
+        }
+        input.append("not a riddle\n");
+
+        StringWriter out = new StringWriter();
+        BulkRater.Statistics statistics = new BulkRater(schema, 3, 7)
+                .rate(new BufferedReader(new StringReader(input.toString())),
+                        out);
+
+        String[] lines = out.toString().split(System.lineSeparator());
+        assertEquals(51, lines.length);
+        for (int i = 0; i < riddles.size(); i++) {
+            String[] columns = lines[i].split("\t");
+            RiddleAnalysis analysis = RiddleAnalyzer.analyze(riddles.get(i));
+            assertEquals(toLine(riddles.get(i)), columns[0]);
+            assertEquals(analysis.getClassifiedDifficulty().name(),
+                    columns[1]);
+            assertEquals(analysis.getScore().getPoints(),
+                    Integer.parseInt(columns[2]));
+            assertTrue(columns[3].matches("([A-Z_]+=[0-9]+,?)+"));
+        }
+        assertEquals("not a riddle\tINVALID", lines[50]);
+
+        assertEquals(50, statistics.getRiddleCount());
+        assertEquals(1, statistics.getInvalidCount());
+        long total = 0;
+        for (Difficulty difficulty : Difficulty.values()) {
+            total += statistics.getDifficultyCount(difficulty);
+        }
+        assertEquals(50, total);
+        assertTrue(statistics.getTechniqueCount(
+                SolveTechnique.NAKED_SINGLE) > 0);
+        assertTrue(statistics.getTechniqueNanos(
+                SolveTechnique.NAKED_SINGLE) > 0);
+        assertTrue(statistics.toString().contains("50 riddles"));
+    }
+
+    @Test
+    public void testRateWithSpaceSeparatedNumbers() throws IOException {
+        GameMatrix full = Creator.createFull(GameSchemas.SCHEMA_16X16);
+        StringBuilder line = new StringBuilder();
+        for (int row = 0; row < 16; row++) {
+            for (int column = 0; column < 16; column++) {
+                line.append(row == 0 && column == 0
+                        ? 0 : full.get(row, column)).append(' ');
+            }
+        }
+        StringWriter out = new StringWriter();
+        new BulkRater(GameSchemas.SCHEMA_16X16).rate(
+                new BufferedReader(new StringReader(line.toString())), out);
+        assertTrue(out.toString().contains("\tVERY_EASY\t1\tNAKED_SINGLE=1"));
+    }
+
+    @Test
+    public void testRateRejectsBadCellsAndUnsolvableRiddles()
+            throws IOException {
+        GameMatrix full = Creator.createFull(schema);
+        String solved = toLine(full);
+        String placeholders = "_" + solved.substring(1, 40) + "0"
+                + solved.substring(41);
+        String letter = "x" + solved.substring(1);
+        StringBuilder spaced = new StringBuilder("a");
+        for (int i = 1; i < solved.length(); i++) {
+            spaced.append(' ').append(solved.charAt(i));
+        }
+        // no duplicates, but the last cell of row 0 can not be 9
+        String unsolvable = "12345678." + "........9"
+                + solved.substring(18).replaceAll("[0-9]", ".");
+
+        String input = String.join("\n", placeholders, letter,
+                spaced.toString(), unsolvable);
+        StringWriter out = new StringWriter();
+        BulkRater.Statistics statistics = new BulkRater(schema).rate(
+                new BufferedReader(new StringReader(input)), out);
+
+        String[] lines = out.toString().split(System.lineSeparator());
+        assertEquals(4, lines.length);
+        assertTrue(lines[0].startsWith(placeholders + "\tVERY_EASY\t"));
+        assertEquals(letter + "\tINVALID", lines[1]);
+        assertEquals(spaced + "\tINVALID", lines[2]);
+        assertEquals(unsolvable + "\tINVALID", lines[3]);
+        assertEquals(1, statistics.getRiddleCount());
+        assertEquals(3, statistics.getInvalidCount());
+    }
+
+    @Test
+    public void testIllegalArguments() {
+        assertThrows(IllegalArgumentException.class,
+                () -> new BulkRater(schema, 0, 1));
+        assertThrows(IllegalArgumentException.class,
+                () -> new BulkRater(schema, 1, 0));
+    }
+}
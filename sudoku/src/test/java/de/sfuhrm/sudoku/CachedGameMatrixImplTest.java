@@ -62,4 +62,41 @@ public class CachedGameMatrixImplTest extends CommonGameMatrixImplTest {
                 .collect(Collectors.joining("\n"))+"\n";
         assertEquals(expected, out);
      }
+
+    @Test
+    public void testCellAccessMatchesRowColumnAccess() {
+        for (GameSchema schema : GameSchemas.getSupportedGameSchemas()) {
+            CachedGameMatrixImpl byCell = new CachedGameMatrixImpl(schema);
+            CachedGameMatrixImpl byRowColumn = new CachedGameMatrixImpl(schema);
+            int width = schema.getWidth();
+            int blockWidth = schema.getBlockWidth();
+            for (int row = 0; row < width; row += 2) {
+                for (int column = 0; column < width; column++) {
+                    // a valid pattern grid
+                    byte value = (byte) ((row * blockWidth + row / blockWidth
+                            + column) % width + 1);
+                    byCell.setCell(row * width + column, value);
+                    byRowColumn.set(row, column, value);
+                }
+            }
+            assertEquals(byRowColumn, byCell);
+            assertEquals(byRowColumn.getSetCount(), byCell.getSetCount());
+            for (int row = 0; row < width; row++) {
+                for (int column = 0; column < width; column++) {
+                    assertEquals(byRowColumn.getFreeMask(row, column),
+                            byCell.getCellFreeMask(row * width + column));
+                    assertEquals(byCell.getFreeMask(row, column),
+                            byCell.getCellFreeMask(row * width + column));
+                }
+            }
+            assertEquals(byRowColumn.findLeastFreeCellIndex(),
+                    byCell.findLeastFreeCellIndex());
+
+            byCell.setCell(0, schema.getUnsetValue());
+            byRowColumn.set(0, 0, schema.getUnsetValue());
+            assertEquals(byRowColumn, byCell);
+            assertEquals(byRowColumn.getCellFreeMask(0),
+                    byCell.getCellFreeMask(0));
+        }
+    }
 }
@@ -0,0 +1,136 @@
+package de.sfuhrm.sudoku;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Duration;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Test for {@link CandidateGrid} and {@link SchemaTables}.
+ */
+public class CandidateGridTest {
+
+    /** Compares the incremental masks with freshly computed ones. */
+    private static void assertConsistent(final CandidateGrid grid) {
+        GameSchema schema = grid.getSchema();
+        SchemaTables tables = grid.getTables();
+        CachedGameMatrixImpl matrix = new CachedGameMatrixImpl(schema);
+        grid.copyTo(matrix);
+        for (int cell = 0; cell < schema.getTotalFields(); cell++) {
+            if (grid.get(cell) == schema.getUnsetValue()) {
+                assertEquals(matrix.getFreeMask(tables.row(cell),
+                        tables.column(cell)), grid.getCandidates(cell));
+            } else {
+                assertEquals(0, grid.getCandidates(cell));
+            }
+        }
+        for (int unit = 0; unit < tables.getUnitCount(); unit++) {
+            for (int digit = schema.getMinimumValue();
+                    digit <= schema.getMaximumValue(); digit++) {
+                int expected = 0;
+                for (int p = 0; p < schema.getWidth(); p++) {
+                    if ((grid.getCandidates(tables.unitCell(unit, p))
+                            & (1 << digit)) != 0) {
+                        expected |= 1 << p;
+                    }
+                }
+                assertEquals(expected, grid.getPositions(unit, digit));
+            }
+        }
+    }
+
+    @Test
+    public void testTablesPeers() {
+        for (GameSchema schema : GameSchemas.getSupportedGameSchemas()) {
+            SchemaTables tables = SchemaTables.of(schema);
+            assertTrue(tables == SchemaTables.of(schema));
+            int width = schema.getWidth();
+            int blockWidth = schema.getBlockWidth();
+            assertEquals(2 * (width - 1) + (blockWidth - 1) * (blockWidth - 1),
+                    tables.getPeerCount());
+            for (int unit = 0; unit < tables.getUnitCount(); unit++) {
+                for (int p = 0; p < width; p++) {
+                    int cell = tables.unitCell(unit, p);
+                    assertTrue(unit == tables.rowUnit(tables.row(cell))
+                            || unit == tables.columnUnit(tables.column(cell))
+                            || unit == tables.blockUnit(tables.block(cell)));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testResetAndPlaceKeepMasksConsistent() {
+        GameSchema schema = GameSchemas.SCHEMA_9X9;
+        GameMatrix full = Creator.createFull(schema);
+        Riddle riddle = Creator.createRiddle(full);
+        CandidateGrid grid = new CandidateGrid(schema);
+        grid.reset(riddle);
+        assertEquals(riddle.getSetCount(), grid.getSetCount());
+        assertConsistent(grid);
+
+        SchemaTables tables = grid.getTables();
+        for (int cell = 0; cell < schema.getTotalFields(); cell++) {
+            if (grid.get(cell) == schema.getUnsetValue()) {
+                grid.place(cell, full.get(tables.row(cell),
+                        tables.column(cell)));
+                assertConsistent(grid);
+            }
+        }
+        assertEquals(schema.getTotalFields(), grid.getSetCount());
+    }
+
+    @Test
+    public void testEliminate() {
+        GameSchema schema = GameSchemas.SCHEMA_4X4;
+        CandidateGrid grid = new CandidateGrid(schema);
+        grid.reset(new GameMatrixImpl(schema));
+        assertEquals(CandidateGrid.NONE, grid.nextNakedSingle());
+        assertEquals(CandidateGrid.NONE, grid.nextHiddenSingle());
+
+        assertTrue(grid.eliminate(0, 1));
+        assertTrue(grid.eliminate(0, 2));
+        assertTrue(grid.eliminate(0, 3));
+        assertEquals(false, grid.eliminate(0, 3));
+        SchemaTables tables = grid.getTables();
+        assertEquals(0b1110, grid.getPositions(tables.rowUnit(0), 1));
+        assertEquals(0b1110, grid.getPositions(tables.columnUnit(0), 2));
+        assertEquals(0b1110, grid.getPositions(tables.blockUnit(0), 3));
+        assertEquals(0b1111, grid.getPositions(tables.rowUnit(0), 4));
+        assertEquals(0, grid.nextNakedSingle());
+        assertEquals(1 << 4, grid.getCandidates(0));
+    }
+
+    @Test
+    public void testHiddenSingle() {
+        GameSchema schema = GameSchemas.SCHEMA_4X4;
+        CandidateGrid grid = new CandidateGrid(schema);
+        grid.reset(new GameMatrixImpl(schema));
+        // digit 1 only possible in column 3 of row 0
+        grid.eliminate(0, 1);
+        grid.eliminate(1, 1);
+        grid.eliminate(2, 1);
+        int single = grid.nextHiddenSingle();
+        assertEquals(3, grid.singleCell(single));
+        assertEquals(1, grid.singleDigit(single));
+    }
+
+    @Test
+    public void testAnalyze25x25IsFast() {
+        GameSchema schema = GameSchemas.SCHEMA_25X25;
+        GameMatrix full = TransformationTest.patternMatrix(schema);
+        RiddleImpl riddle = new RiddleImpl(schema);
+        riddle.setAll(full.getArray());
+        // every cell of the first row and column is forced by a single
+        for (int i = 0; i < schema.getWidth(); i++) {
+            riddle.set(0, i, schema.getUnsetValue());
+            riddle.set(i, 0, schema.getUnsetValue());
+        }
+        RiddleAnalysis analysis = assertTimeoutPreemptively(
+                Duration.ofSeconds(5), () -> RiddleAnalyzer.analyze(riddle));
+        assertEquals(schema.getTotalFields() - riddle.getSetCount(),
+                analysis.getPath().size());
+    }
+}
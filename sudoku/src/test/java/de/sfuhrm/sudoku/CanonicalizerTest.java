@@ -0,0 +1,145 @@
+package de.sfuhrm.sudoku;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Test for {@link Canonicalizer} and {@link CanonicalForm}.
+ */
+public class CanonicalizerTest {
+
+    private final GameSchema schema = GameSchemas.SCHEMA_9X9;
+
+    private static GameMatrix matrix(final CanonicalForm form) {
+        GameMatrix result = new GameMatrixImpl(form.getSchema());
+        result.setAll(form.getArray());
+        return result;
+    }
+
+    @Test
+    public void testTransformedFullGridsShareForm() {
+        Random random = new Random(1);
+        Canonicalizer canonicalizer = new Canonicalizer(schema);
+        for (int i = 0; i < 5; i++) {
+            GameMatrix full = Creator.createFull(schema);
+            CanonicalForm form = canonicalizer.canonicalize(full);
+            for (int j = 0; j < 10; j++) {
+                GameMatrix variant = Transformation.random(schema, random)
+                        .apply(full);
+                CanonicalForm other = canonicalizer.canonicalize(variant);
+                assertEquals(form, other);
+                assertEquals(form.getFingerprint(), other.getFingerprint());
+                assertEquals(form.getFingerprintHigh(),
+                        other.getFingerprintHigh());
+            }
+        }
+    }
+
+    @Test
+    public void testTransformedRiddlesShareForm() {
+        Random random = new Random(2);
+        Canonicalizer canonicalizer = new Canonicalizer(schema);
+        Riddle riddle = Creator.createRiddle(Creator.createFull(schema),
+                Difficulty.EASY);
+        CanonicalForm form = canonicalizer.canonicalize(riddle);
+        for (int j = 0; j < 10; j++) {
+            Riddle variant = Transformation.random(schema, random)
+                    .apply(riddle);
+            assertEquals(form, canonicalizer.canonicalize(variant));
+        }
+    }
+
+    @Test
+    public void testFormIsMinimalAndFixed() {
+        Canonicalizer canonicalizer = new Canonicalizer(schema);
+        GameMatrix full = Creator.createFull(schema);
+        CanonicalForm form = canonicalizer.canonicalize(full);
+        // the first row of a full grid relabels to the digits in order
+        for (int column = 0; column < 9; column++) {
+            assertEquals(column + 1, form.get(0, column));
+        }
+        GameMatrix canonical = matrix(form);
+        assertTrue(canonical.isValid());
+        assertEquals(form, canonicalizer.canonicalize(canonical));
+        assertEquals(canonical.getContentHash(), form.getFingerprint());
+        assertEquals(81, form.toString().length());
+    }
+
+    @Test
+    public void testTransformationMapsToForm() {
+        Canonicalizer canonicalizer = new Canonicalizer(schema);
+        Random random = new Random(3);
+        Riddle riddle = Creator.createRiddle(Creator.createFull(schema),
+                Difficulty.EASY);
+        Riddle variant = Transformation.random(schema, random)
+                .apply(riddle);
+        CanonicalForm form = canonicalizer.canonicalize(variant);
+        Riddle mapped = form.getTransformation().apply(variant);
+        assertArrayEquals(form.getArray(), mapped.getArray());
+        for (int row = 0; row < 9; row++) {
+            for (int column = 0; column < 9; column++) {
+                assertEquals(mapped.get(row, column) == 0,
+                        mapped.getWritable(row, column));
+            }
+        }
+    }
+
+    @Test
+    public void testDifferentGridsDiffer() {
+        Canonicalizer canonicalizer = new Canonicalizer(schema);
+        CanonicalForm first = canonicalizer.canonicalize(
+                Creator.createFull(schema));
+        CanonicalForm second = canonicalizer.canonicalize(
+                Creator.createFull(schema));
+        // two random grids are isomorphic with negligible probability
+        assertNotEquals(first, second);
+        assertNotEquals(first.getFingerprint(), second.getFingerprint());
+    }
+
+    @Test
+    public void testTwoEssentiallyDifferent4x4Grids() {
+        GameSchema small = GameSchemas.SCHEMA_4X4;
+        Canonicalizer canonicalizer = new Canonicalizer(small);
+        Set<CanonicalForm> forms = new HashSet<>();
+        CachedGameMatrixImpl matrix = new CachedGameMatrixImpl(small);
+        int[] count = new int[1];
+        new SearchKernel(matrix).search(m -> {
+            forms.add(canonicalizer.canonicalize(m));
+            count[0]++;
+            return false;
+        });
+        assertEquals(288, count[0]);
+        assertEquals(2, forms.size());
+    }
+
+    @Test
+    public void testEmptyMatrix() {
+        Canonicalizer canonicalizer = new Canonicalizer(
+                GameSchemas.SCHEMA_4X4);
+        CanonicalForm form = canonicalizer.canonicalize(
+                new GameMatrixImpl(GameSchemas.SCHEMA_4X4));
+        assertEquals("0000000000000000", form.toString());
+    }
+
+    @Test
+    public void testUnsupportedSchemas() {
+        assertTrue(Canonicalizer.supports(GameSchemas.SCHEMA_4X4));
+        assertTrue(Canonicalizer.supports(GameSchemas.SCHEMA_9X9));
+        assertFalse(Canonicalizer.supports(GameSchemas.SCHEMA_16X16));
+        assertThrows(IllegalArgumentException.class,
+                () -> new Canonicalizer(GameSchemas.SCHEMA_16X16));
+        Canonicalizer canonicalizer = new Canonicalizer(schema);
+        assertThrows(IllegalArgumentException.class,
+                () -> canonicalizer.canonicalize(
+                        new GameMatrixImpl(GameSchemas.SCHEMA_4X4)));
+    }
+}
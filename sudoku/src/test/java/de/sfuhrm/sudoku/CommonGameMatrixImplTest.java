@@ -633,4 +633,43 @@ public abstract class CommonGameMatrixImplTest {
 
         assertEquals(schema.getBitMask(), matrix.getFreeMask(min.row, min.column));
     }
+
+    @Test
+    public final void testContentHashFollowsSet() {
+        GameMatrixImpl matrix = newInstance(schema);
+        assertEquals(SchemaTables.of(schema).contentHash(matrix),
+                matrix.getContentHash());
+        assertNotEquals(0L, matrix.getContentHash());
+        assertNotEquals(newInstance(GameSchemas.SCHEMA_4X4).getContentHash(),
+                matrix.getContentHash());
+        matrix.setAll(QuadraticArrays.parse(
+                "359162487",
+                "412837659",
+                "687594123",
+                "876459312",
+                "941623875",
+                "523718946",
+                "234985761",
+                "765341298",
+                "198276534"));
+        long full = matrix.getContentHash();
+        assertEquals(SchemaTables.of(schema).contentHash(matrix), full);
+
+        byte old = matrix.get(4, 4);
+        matrix.set(4, 4, schema.getUnsetValue());
+        assertNotEquals(full, matrix.getContentHash());
+        assertEquals(SchemaTables.of(schema).contentHash(matrix),
+                matrix.getContentHash());
+
+        GameMatrixImpl other = newInstance(schema);
+        other.setAll(matrix.getArray());
+        assertEquals(matrix.getContentHash(), other.getContentHash());
+        assertEquals(matrix.hashCode(), other.hashCode());
+        assertEquals(matrix, other);
+
+        matrix.set(4, 4, old);
+        assertEquals(full, matrix.getContentHash());
+        assertEquals(full, matrix.clone().getContentHash());
+        assertNotEquals(matrix, other);
+    }
 }
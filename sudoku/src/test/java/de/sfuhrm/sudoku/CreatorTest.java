@@ -19,6 +19,7 @@ Boston, MA  02110-1301, USA.
 */
 package de.sfuhrm.sudoku;
 
+import java.time.Duration;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Random;
@@ -172,6 +173,46 @@ public class CreatorTest {
         assertEquals(1, results.size());
     }
 
+    @Test
+    public void testCreateRiddleResultWithExpiredDeadline() {
+        GameMatrix matrix = Creator.createFull();
+        CreationResult result = Creator.createRiddleResult(matrix,
+                Difficulty.VERY_HARD, Duration.ZERO);
+
+        assertNotNull(result.getClassifiedDifficulty());
+        Riddle riddle = result.getRiddle();
+        assertEquals(81 - riddle.getSetCount(), result.getClearCount());
+        assertTrue(result.getClearCount() > 0);
+
+        Solver solver = new Solver(riddle);
+        solver.setLimit(2);
+        assertEquals(1, solver.solve().size());
+    }
+
+    @Test
+    public void testCreateRiddleWithDeadline() {
+        GameMatrix matrix = Creator.createFull();
+        Riddle riddle = assertTimeoutPreemptively(Duration.ofSeconds(5),
+                () -> Creator.createRiddle(matrix, Difficulty.HARD,
+                        Duration.ofMillis(100)));
+
+        for (int i=0; i < schema.getWidth(); i++) {
+            for (int j=0; j < schema.getWidth(); j++) {
+                if (riddle.get(i, j) != schema.getUnsetValue()) {
+                    assertEquals(matrix.get(i, j), riddle.get(i, j));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testCreateRiddleWithNegativeDeadline() {
+        GameMatrix matrix = Creator.createFull();
+        assertThrows(IllegalArgumentException.class,
+                () -> Creator.createRiddle(matrix, Difficulty.HARD,
+                        Duration.ofMillis(-1)));
+    }
+
     @Test
     public void testCreateNumbersToDistributeWithOnce() {
         GameSchema schema = GameSchemas.SCHEMA_9X9;
@@ -356,4 +397,77 @@ public class CreatorTest {
             Creator.createFull(four);
         }
      }
+
+    @Test
+    public void testCreatedRiddleHasAnalysis() {
+        GameMatrix full = Creator.createFull(GameSchemas.SCHEMA_9X9);
+        Riddle riddle = Creator.createRiddle(full, Difficulty.MEDIUM);
+        RiddleAnalysis analysis = riddle.getAnalysis();
+        assertSame(analysis, riddle.getAnalysis());
+
+        RiddleAnalysis fresh = RiddleAnalyzer.analyze(riddle);
+        assertEquals(fresh.getClassifiedDifficulty(),
+                analysis.getClassifiedDifficulty());
+        assertEquals(fresh.getScore().getPoints(),
+                analysis.getScore().getPoints());
+        assertEquals(fresh.getScore().getStepCount(),
+                analysis.getScore().getStepCount());
+        assertEquals(fresh.getScore().getMaximumStepPoints(),
+                analysis.getScore().getMaximumStepPoints());
+    }
+
+    @Test
+    public void testRiddleAnalysisResetOnChange() {
+        GameMatrix full = Creator.createFull(GameSchemas.SCHEMA_9X9);
+        Riddle riddle = Creator.createRiddle(full, Difficulty.EASY);
+        RiddleAnalysis analysis = riddle.getAnalysis();
+        int row = 0;
+        int column = 0;
+        while (riddle.get(row, column) == riddle.getSchema().getUnsetValue()) {
+            column++;
+        }
+        byte old = riddle.get(row, column);
+
+        riddle.set(row, column, riddle.getSchema().getUnsetValue());
+        RiddleAnalysis changed = riddle.getAnalysis();
+        assertNotSame(analysis, changed);
+
+        // the same cells again hit the cache
+        riddle.set(row, column, old);
+        riddle.set(row, column, riddle.getSchema().getUnsetValue());
+        assertSame(changed, riddle.getAnalysis());
+    }
+
+    @Test
+    public void testRiddleVariantHasAnalysis() {
+        GameMatrix full = Creator.createFull(GameSchemas.SCHEMA_9X9);
+        Riddle riddle = Creator.createRiddle(full, Difficulty.HARD);
+        Riddle variant = Creator.createRiddleVariant(riddle);
+        RiddleAnalysis analysis = ((RiddleImpl) variant).getKnownAnalysis();
+        assertNotNull(analysis);
+        assertEquals(riddle.getAnalysis().getScore().getPoints(),
+                analysis.getScore().getPoints());
+        for (SolveStep step : analysis.getPath()) {
+            if (step.getTechnique().isPlacement()) {
+                assertEquals(variant.getSchema().getUnsetValue(),
+                        variant.get(step.getRow(), step.getColumn()));
+            }
+        }
+    }
+
+    @Test
+    public void testCreateFullWithStrategy() {
+        for (GenerationStrategy strategy : GenerationStrategy.values()) {
+            GameMatrix full = Creator.createFull(GameSchemas.SCHEMA_9X9,
+                    strategy);
+            assertEquals(81, full.getSetCount());
+            assertTrue(full.isValid());
+        }
+    }
+
+    @Test
+    public void testCreateFullWithoutStrategy() {
+        assertThrows(IllegalArgumentException.class,
+                () -> Creator.createFull(GameSchemas.SCHEMA_9X9, null));
+    }
 }
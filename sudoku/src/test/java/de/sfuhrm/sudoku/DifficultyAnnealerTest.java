@@ -0,0 +1,74 @@
+package de.sfuhrm.sudoku;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Test for {@link DifficultyAnnealer}.
+ */
+public class DifficultyAnnealerTest {
+
+    private final GameSchema schema = GameSchemas.SCHEMA_9X9;
+
+    private static CreationResult start(final GameMatrix full,
+            final int clearCount) {
+        RiddleImpl riddle = (RiddleImpl) Creator.createRiddle(full,
+                clearCount);
+        RiddleAnalysis analysis = RiddleAnalyzer.analyze(riddle);
+        riddle.setAnalysis(analysis);
+        return new CreationResult(riddle, analysis);
+    }
+
+    private static int distance(final Difficulty target,
+            final CreationResult result) {
+        return RiddleAnalyzer.distance(result.getRiddle().getSchema(),
+                target, result.getScore().getPoints());
+    }
+
+    @Test
+    public void testAnnealTowardsHard() {
+        Random random = new Random(1);
+        for (int i = 0; i < 5; i++) {
+            GameMatrix full = Creator.createFull(schema);
+            CreationResult start = start(full, 30);
+            DifficultyAnnealer annealer = new DifficultyAnnealer(full,
+                    Difficulty.HARD, random);
+            CreationResult result = annealer.anneal(start,
+                    DifficultyAnnealer.DEFAULT_MOVES, () -> false);
+
+            assertTrue(distance(Difficulty.HARD, result)
+                    <= distance(Difficulty.HARD, start));
+            Riddle riddle = result.getRiddle();
+            Solver solver = new Solver(riddle);
+            solver.setLimit(2);
+            assertEquals(1, solver.solve().size());
+            for (int row = 0; row < 9; row++) {
+                for (int column = 0; column < 9; column++) {
+                    byte value = riddle.get(row, column);
+                    assertEquals(value == schema.getUnsetValue(),
+                            riddle.getWritable(row, column));
+                    if (value != schema.getUnsetValue()) {
+                        assertEquals(full.get(row, column), value);
+                    }
+                }
+            }
+            assertSame(result.getAnalysis(), riddle.getAnalysis());
+            assertEquals(RiddleAnalyzer.analyze(riddle).getScore()
+                    .getPoints(), result.getScore().getPoints());
+        }
+    }
+
+    @Test
+    public void testAnnealStopsWhenExpired() {
+        GameMatrix full = Creator.createFull(schema);
+        CreationResult start = start(full, 30);
+        DifficultyAnnealer annealer = new DifficultyAnnealer(full,
+                Difficulty.VERY_HARD, new Random(2));
+        assertSame(start, annealer.anneal(start,
+                DifficultyAnnealer.DEFAULT_MOVES, () -> true));
+    }
+}
@@ -0,0 +1,125 @@
+package de.sfuhrm.sudoku;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Test for {@link DuplicateFilter}.
+ */
+public class DuplicateFilterTest {
+
+    @Test
+    public void testAddedKeysAreDuplicates() {
+        DuplicateFilter filter = new DuplicateFilter(10_000, 0.01);
+        Random random = new Random(1);
+        long[] keys = new long[10_000];
+        int added = 0;
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = random.nextLong();
+            if (filter.add(keys[i])) {
+                added++;
+            }
+        }
+        for (long key : keys) {
+            assertTrue(filter.mightContain(key));
+            assertFalse(filter.add(key));
+        }
+
+        DuplicateFilter.Statistics statistics = filter.getStatistics();
+        assertEquals(added, statistics.getNewCount());
+        assertEquals(2 * keys.length - added,
+                statistics.getDuplicateCount());
+    }
+
+    @Test
+    public void testFalsePositiveRateIsNearTarget() {
+        double target = 0.01;
+        int keys = 100_000;
+        DuplicateFilter filter = new DuplicateFilter(keys, target);
+        Random random = new Random(2);
+        for (int i = 0; i < keys; i++) {
+            filter.add(random.nextLong());
+        }
+        int falsePositives = 0;
+        for (int i = 0; i < keys; i++) {
+            if (filter.mightContain(random.nextLong())) {
+                falsePositives++;
+            }
+        }
+        double measured = (double) falsePositives / keys;
+        assertTrue(measured < 1.5 * target, "measured " + measured);
+        assertTrue(measured > target / 2, "measured " + measured);
+
+        DuplicateFilter.Statistics statistics = filter.getStatistics();
+        assertEquals(7, statistics.getHashCount());
+        assertEquals(target, statistics.getExpectedFalsePositiveRate(),
+                target / 10);
+        assertEquals(measured, statistics.getFalsePositiveRate(),
+                target / 4);
+        // about 9.6 bits per key
+        assertTrue(statistics.getMemoryBytes() < keys * 10 / 8);
+    }
+
+    @Test
+    public void testMemoryBound() {
+        DuplicateFilter filter = new DuplicateFilter(1_000_000, 0.001, 1024);
+        DuplicateFilter.Statistics statistics = filter.getStatistics();
+        assertEquals(1024, statistics.getMemoryBytes());
+        assertEquals(1, statistics.getHashCount());
+        assertEquals(0.001, statistics.getTargetFalsePositiveRate());
+        assertTrue(statistics.getExpectedFalsePositiveRate() > 0.9);
+        assertEquals(0, statistics.getFillRatio());
+        assertTrue(filter.add(1));
+        assertTrue(statistics.toString().contains("0 new"));
+        assertTrue(filter.getStatistics().toString().contains("1 new"));
+        assertFalse(statistics.toString().endsWith(System.lineSeparator()));
+    }
+
+    @Test
+    public void testEveryKeySetsDistinctBits() {
+        for (long key = 0; key < 1000; key++) {
+            DuplicateFilter filter = new DuplicateFilter(1, 0.001, 8);
+            int hashCount = filter.getStatistics().getHashCount();
+            assertTrue(hashCount > 1);
+            filter.add(key);
+            assertEquals(hashCount / 64.,
+                    filter.getStatistics().getFillRatio(), 1e-9);
+        }
+    }
+
+    @Test
+    public void testMatricesAndCanonicalForms() {
+        GameSchema schema = GameSchemas.SCHEMA_9X9;
+        DuplicateFilter filter = new DuplicateFilter(100, 0.001);
+        GameMatrix full = Creator.createFull(schema);
+        GameMatrix copy = new GameMatrixImpl(schema);
+        copy.setAll(full.getArray());
+        assertTrue(filter.add(full));
+        assertFalse(filter.add(copy));
+
+        Canonicalizer canonicalizer = new Canonicalizer(schema);
+        GameMatrix variant = Transformation.random(schema, new Random(3))
+                .apply(full);
+        assertTrue(filter.add(canonicalizer.canonicalize(full)));
+        assertFalse(filter.add(canonicalizer.canonicalize(variant)));
+    }
+
+    @Test
+    public void testIllegalArguments() {
+        assertThrows(IllegalArgumentException.class,
+                () -> new DuplicateFilter(0, 0.01));
+        assertThrows(IllegalArgumentException.class,
+                () -> new DuplicateFilter(10, 0));
+        assertThrows(IllegalArgumentException.class,
+                () -> new DuplicateFilter(10, 1));
+        assertThrows(IllegalArgumentException.class,
+                () -> new DuplicateFilter(10, Double.NaN));
+        assertThrows(IllegalArgumentException.class,
+                () -> new DuplicateFilter(10, 0.01, 7));
+    }
+}
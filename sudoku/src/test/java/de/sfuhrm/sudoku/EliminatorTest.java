@@ -0,0 +1,153 @@
+package de.sfuhrm.sudoku;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Test for {@link Eliminator}.
+ */
+public class EliminatorTest {
+
+    private final GameSchema schema = GameSchemas.SCHEMA_9X9;
+
+    private CandidateGrid emptyGrid() {
+        CandidateGrid grid = new CandidateGrid(schema);
+        grid.reset(new GameMatrixImpl(schema));
+        return grid;
+    }
+
+    /** Reduces the candidates of a cell to the given digits. */
+    private static void keepOnly(final CandidateGrid grid, final int cell,
+            final int... digits) {
+        int keep = 0;
+        for (int digit : digits) {
+            keep |= 1 << digit;
+        }
+        for (int digit = 1; digit <= 9; digit++) {
+            if ((keep & (1 << digit)) == 0) {
+                grid.eliminate(cell, digit);
+            }
+        }
+    }
+
+    @Test
+    public void testNothingOnEmptyGrid() {
+        assertNull(new Eliminator(emptyGrid()).eliminate());
+    }
+
+    @Test
+    public void testNakedPair() {
+        CandidateGrid grid = emptyGrid();
+        keepOnly(grid, 0, 1, 2);
+        keepOnly(grid, 1, 1, 2);
+        Eliminator eliminator = new Eliminator(grid);
+        assertEquals(SolveTechnique.NAKED_PAIR, eliminator.eliminate());
+        assertEquals(2, eliminator.getCell());
+        assertEquals(1, eliminator.getDigit());
+        for (int column = 2; column < 9; column++) {
+            assertEquals(0, grid.getCandidates(column) & 0b110);
+        }
+    }
+
+    @Test
+    public void testPointingPair() {
+        CandidateGrid grid = emptyGrid();
+        for (int row = 1; row < 3; row++) {
+            for (int column = 0; column < 3; column++) {
+                grid.eliminate(row * 9 + column, 5);
+            }
+        }
+        Eliminator eliminator = new Eliminator(grid);
+        assertEquals(SolveTechnique.POINTING_PAIR, eliminator.eliminate());
+        assertEquals(3, eliminator.getCell());
+        assertEquals(5, eliminator.getDigit());
+    }
+
+    @Test
+    public void testXWing() {
+        CandidateGrid grid = emptyGrid();
+        for (int column = 1; column < 8; column++) {
+            grid.eliminate(column, 7);
+            grid.eliminate(8 * 9 + column, 7);
+        }
+        Eliminator eliminator = new Eliminator(grid);
+        assertEquals(SolveTechnique.X_WING, eliminator.eliminate());
+        assertEquals(9, eliminator.getCell());
+        assertEquals(7, eliminator.getDigit());
+        for (int row = 1; row < 8; row++) {
+            assertEquals(0, grid.getCandidates(row * 9) & (1 << 7));
+            assertEquals(0, grid.getCandidates(row * 9 + 8) & (1 << 7));
+        }
+    }
+
+    @Test
+    public void testXyWing() {
+        CandidateGrid grid = emptyGrid();
+        keepOnly(grid, 0, 1, 2);
+        keepOnly(grid, 4, 1, 3);
+        keepOnly(grid, 4 * 9, 2, 3);
+        Eliminator eliminator = new Eliminator(grid);
+        assertEquals(SolveTechnique.XY_WING, eliminator.eliminate());
+        assertEquals(4 * 9 + 4, eliminator.getCell());
+        assertEquals(3, eliminator.getDigit());
+    }
+
+    /** Eliminations never remove the digit of the unique solution. */
+    @Test
+    public void testEliminationsAreSound() {
+        for (int i = 0; i < 30; i++) {
+            GameMatrix full = Creator.createFull(schema);
+            Riddle riddle = Creator.createRiddle(full);
+            CandidateGrid grid = new CandidateGrid(schema);
+            grid.reset(riddle);
+            Eliminator eliminator = new Eliminator(grid);
+            SchemaTables tables = grid.getTables();
+            while (eliminator.eliminate() != null) {
+                for (int cell = 0; cell < schema.getTotalFields(); cell++) {
+                    if (grid.get(cell) == schema.getUnsetValue()) {
+                        byte digit = full.get(tables.row(cell),
+                                tables.column(cell));
+                        assertTrue((grid.getCandidates(cell)
+                                & (1 << digit)) != 0);
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testAnalyzerUsesTechniques() {
+        // singles get stuck, an elimination technique is needed
+        GameMatrixImpl riddle = new GameMatrixImpl(schema);
+        riddle.setAll(QuadraticArrays.parse(
+                "400000938",
+                "032094100",
+                "095300240",
+                "370609004",
+                "529001673",
+                "604703090",
+                "957008300",
+                "003900400",
+                "240030709"));
+        RiddleAnalysis analysis = RiddleAnalyzer.analyze(riddle);
+        List<SolveStep> path = analysis.getPath();
+        assertTrue(path.stream().noneMatch(step
+                -> step.getTechnique() == SolveTechnique.BACKTRACKING));
+        assertTrue(path.stream().anyMatch(step
+                -> !step.getTechnique().isPlacement()));
+        CandidateGrid grid = new CandidateGrid(schema);
+        grid.reset(riddle);
+        int placements = 0;
+        for (SolveStep step : path) {
+            if (step.getTechnique().isPlacement()) {
+                placements++;
+            }
+        }
+        assertEquals(schema.getTotalFields() - grid.getSetCount(),
+                placements);
+    }
+}
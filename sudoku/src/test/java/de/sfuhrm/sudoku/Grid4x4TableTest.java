@@ -0,0 +1,84 @@
+package de.sfuhrm.sudoku;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Test for {@link Grid4x4Table}.
+ */
+public class Grid4x4TableTest {
+
+    private final GameSchema schema = GameSchemas.SCHEMA_4X4;
+
+    @Test
+    public void testSupports() {
+        assertTrue(Grid4x4Table.supports(GameSchemas.SCHEMA_4X4));
+        assertFalse(Grid4x4Table.supports(GameSchemas.SCHEMA_9X9));
+    }
+
+    @Test
+    public void testAllGridsAreValidAndDistinct() {
+        GameMatrix empty = new GameMatrixImpl(schema);
+        List<GameMatrix> grids = new ArrayList<>();
+        int count = Grid4x4Table.find(Grid4x4Table.mask(empty),
+                Grid4x4Table.values(empty), Integer.MAX_VALUE, grids);
+
+        assertEquals(Grid4x4Table.GRID_COUNT, count);
+        Set<GameMatrix> distinct = new HashSet<>(grids);
+        assertEquals(Grid4x4Table.GRID_COUNT, distinct.size());
+        for (GameMatrix grid : grids) {
+            assertEquals(schema.getTotalFields(), grid.getSetCount());
+            assertTrue(grid.isValid());
+        }
+    }
+
+    @Test
+    public void testFindMatchesClues() {
+        Random random = new Random(1);
+        for (int i = 0; i < 100; i++) {
+            GameMatrix riddle = new GameMatrixImpl(schema);
+            Grid4x4Table.random(random, riddle);
+            for (int cell = 0; cell < schema.getTotalFields(); cell++) {
+                if (random.nextBoolean()) {
+                    riddle.set(cell / 4, cell % 4, schema.getUnsetValue());
+                }
+            }
+            List<GameMatrix> solutions = new ArrayList<>();
+            int count = Grid4x4Table.find(Grid4x4Table.mask(riddle),
+                    Grid4x4Table.values(riddle), Integer.MAX_VALUE, solutions);
+            assertTrue(count >= 1);
+            assertEquals(count, solutions.size());
+            for (GameMatrix solution : solutions) {
+                for (int row = 0; row < 4; row++) {
+                    for (int column = 0; column < 4; column++) {
+                        byte value = riddle.get(row, column);
+                        if (value != schema.getUnsetValue()) {
+                            assertEquals(value, solution.get(row, column));
+                        }
+                    }
+                }
+            }
+            assertEquals(Math.min(count, 2), Grid4x4Table.find(
+                    Grid4x4Table.mask(riddle), Grid4x4Table.values(riddle),
+                    2, null));
+        }
+    }
+
+    @Test
+    public void testNoSolutionForInvalidRiddle() {
+        GameMatrix riddle = new GameMatrixImpl(schema);
+        riddle.set(0, 0, (byte) 1);
+        riddle.set(0, 3, (byte) 1);
+        assertEquals(0, Grid4x4Table.find(Grid4x4Table.mask(riddle),
+                Grid4x4Table.values(riddle), Integer.MAX_VALUE, null));
+        assertEquals(0, new Solver(riddle).solve().size());
+    }
+}
@@ -0,0 +1,123 @@
+package de.sfuhrm.sudoku;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Test for {@link HintSession}.
+ */
+public class HintSessionTest {
+
+    private final GameSchema schema = GameSchemas.SCHEMA_9X9;
+
+    /** Follows the hints until the board is complete. */
+    private static int play(final HintSession session) {
+        int hints = 0;
+        SolveStep hint;
+        while ((hint = session.nextHint()) != null) {
+            if (hint.getTechnique().isPlacement()
+                    || hint.getTechnique() == SolveTechnique.BACKTRACKING) {
+                session.set(hint.getRow(), hint.getColumn(), hint.getValue());
+            }
+            hints++;
+            assertTrue(hints < 10000);
+        }
+        return hints;
+    }
+
+    @Test
+    public void testFollowingHintsSolvesRiddle() {
+        for (int i = 0; i < 10; i++) {
+            GameMatrix full = Creator.createFull(schema);
+            Riddle riddle = Creator.createRiddle(full, Difficulty.HARD);
+            HintSession session = new HintSession(riddle);
+            play(session);
+            for (int row = 0; row < schema.getWidth(); row++) {
+                for (int column = 0; column < schema.getWidth(); column++) {
+                    assertEquals(full.get(row, column),
+                            session.get(row, column));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testBacktrackingHint() {
+        GameMatrixImpl riddle = new GameMatrixImpl(schema);
+        riddle.setAll(QuadraticArrays.parse(
+                "800000000",
+                "003600000",
+                "070090200",
+                "050007000",
+                "000045700",
+                "000100030",
+                "001000068",
+                "008500010",
+                "090000400"));
+        GameMatrix solution = new Solver(riddle).solve().get(0);
+        HintSession session = new HintSession(riddle);
+        SolveStep hint;
+        do {
+            hint = session.nextHint();
+            assertNotNull(hint);
+        } while (hint.getTechnique() != SolveTechnique.BACKTRACKING);
+        assertEquals(solution.get(hint.getRow(), hint.getColumn()),
+                hint.getValue());
+        play(session);
+        for (int row = 0; row < schema.getWidth(); row++) {
+            for (int column = 0; column < schema.getWidth(); column++) {
+                assertEquals(solution.get(row, column),
+                        session.get(row, column));
+            }
+        }
+    }
+
+    @Test
+    public void testHintsAfterClearingCell() {
+        GameMatrix full = Creator.createFull(schema);
+        HintSession session = new HintSession(full);
+        assertNull(session.nextHint());
+
+        session.set(3, 5, schema.getUnsetValue());
+        SolveStep hint = session.nextHint();
+        assertEquals(SolveTechnique.NAKED_SINGLE, hint.getTechnique());
+        assertEquals(3, hint.getRow());
+        assertEquals(5, hint.getColumn());
+        assertEquals(full.get(3, 5), hint.getValue());
+
+        session.set(3, 5, hint.getValue());
+        assertNull(session.nextHint());
+    }
+
+    @Test
+    public void testNoHintAfterWrongMove() {
+        GameMatrix full = Creator.createFull(schema);
+        GameMatrix riddle = new GameMatrixImpl(schema);
+        riddle.setAll(full.getArray());
+        for (int column = 0; column < schema.getWidth(); column++) {
+            riddle.set(0, column, schema.getUnsetValue());
+        }
+        HintSession session = new HintSession(riddle);
+        // the digit of the neighbour cell leaves no candidate there
+        session.set(0, 0, full.get(0, 1));
+        play(session);
+        assertEquals(schema.getUnsetValue(), session.get(0, 1));
+        assertNull(session.nextHint());
+    }
+
+    @Test
+    public void testSetWithIllegalArguments() {
+        HintSession session = new HintSession(new GameMatrixImpl(schema));
+        assertThrows(IllegalArgumentException.class,
+                () -> session.set(9, 0, (byte) 1));
+        assertThrows(IllegalArgumentException.class,
+                () -> session.set(0, 0, (byte) 10));
+        assertThrows(IllegalArgumentException.class,
+                () -> session.reset(new GameMatrixImpl(GameSchemas.SCHEMA_4X4)));
+    }
+}
@@ -0,0 +1,92 @@
+package de.sfuhrm.sudoku;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Test for {@link MaskedGameMatrixImpl}.
+ */
+public class MaskedGameMatrixImplTest extends GameMatrixImplTest {
+
+    private final GameSchema schema = GameSchemas.SCHEMA_9X9;
+
+    @Override
+    protected MaskedGameMatrixImpl newInstance(GameSchema gameSchema) {
+        return new MaskedGameMatrixImpl(gameSchema);
+    }
+
+    @Test
+    public void testDuplicateIsUndoneCorrectly() {
+        MaskedGameMatrixImpl matrix = newInstance(schema);
+        matrix.set(0, 0, (byte) 5);
+        matrix.set(0, 8, (byte) 5);
+        assertFalse(matrix.isValid());
+        assertFalse(matrix.canSet(0, 4, (byte) 5));
+
+        // the other 5 still blocks the row
+        matrix.set(0, 0, schema.getUnsetValue());
+        assertFalse(matrix.canSet(0, 4, (byte) 5));
+        assertTrue(matrix.canSet(4, 0, (byte) 5));
+
+        matrix.set(0, 8, schema.getUnsetValue());
+        assertTrue(matrix.canSet(0, 4, (byte) 5));
+        assertEquals(0, matrix.getSetCount());
+    }
+
+    @Test
+    public void testMasksMatchScanningMatrix() {
+        Random random = new Random(1);
+        for (GameSchema gameSchema : GameSchemas.getSupportedGameSchemas()) {
+            MaskedGameMatrixImpl masked = newInstance(gameSchema);
+            GameMatrixImpl scanning = new GameMatrixImpl(gameSchema);
+            int width = gameSchema.getWidth();
+            for (int i = 0; i < 20 * width * width; i++) {
+                int row = random.nextInt(width);
+                int column = random.nextInt(width);
+                // illegal moves included, a third of the moves clear
+                byte value = random.nextInt(3) == 0
+                        ? gameSchema.getUnsetValue()
+                        : (byte) (1 + random.nextInt(width));
+                masked.set(row, column, value);
+                scanning.set(row, column, value);
+
+                assertEquals(scanning.getSetCount(), masked.getSetCount());
+                assertEquals(scanning.getFreeMask(row, column),
+                        masked.getFreeMask(row, column));
+                assertEquals(scanning.getRowFreeMask(row),
+                        masked.getRowFreeMask(row));
+                assertEquals(scanning.getColumnFreeMask(column),
+                        masked.getColumnFreeMask(column));
+                assertEquals(scanning.getBlockFreeMask(row, column),
+                        masked.getBlockFreeMask(row, column));
+            }
+            assertEquals(scanning, masked);
+        }
+    }
+
+    @Test
+    public void testCloneKeepsMasks() {
+        MaskedGameMatrixImpl matrix = newInstance(schema);
+        matrix.setAll(QuadraticArrays.parse(
+                CachedGameMatrixImplTest.FULL_EXAMPLE));
+        matrix.set(4, 4, schema.getUnsetValue());
+        MaskedGameMatrixImpl clone = matrix.clone();
+
+        assertEquals(80, clone.getSetCount());
+        assertEquals(1 << 2, clone.getFreeMask(4, 4));
+        clone.set(4, 4, (byte) 2);
+        assertEquals(1 << 2, matrix.getFreeMask(4, 4));
+        assertTrue(clone.isValid());
+    }
+
+    @Test
+    public void testFactoryAndRiddleUseMasks() {
+        GameMatrixFactory factory = new GameMatrixFactory();
+        assertTrue(factory.newGameMatrix() instanceof MaskedGameMatrixImpl);
+        assertTrue(factory.newRiddle() instanceof MaskedGameMatrixImpl);
+    }
+}
@@ -0,0 +1,55 @@
+package de.sfuhrm.sudoku;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTimeout;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Duration;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Test for {@link MinConflictsGenerator}.
+ */
+public class MinConflictsGeneratorTest {
+
+    @Test
+    public void testGenerateAllSchemas() {
+        Random random = new Random(1);
+        for (GameSchema schema : GameSchemas.getSupportedGameSchemas()) {
+            MinConflictsGenerator generator =
+                    new MinConflictsGenerator(schema, random);
+            for (int i = 0; i < 3; i++) {
+                GameMatrix grid = new GameMatrixImpl(schema);
+                assertTrue(generator.generate(grid,
+                        generator.getDefaultIterations()));
+                assertEquals(schema.getTotalFields(), grid.getSetCount());
+                assertTrue(grid.isValid());
+            }
+        }
+    }
+
+    @Test
+    public void testGiveUp() {
+        GameSchema schema = GameSchemas.SCHEMA_9X9;
+        MinConflictsGenerator generator =
+                new MinConflictsGenerator(schema, new Random(2));
+        GameMatrix grid = new GameMatrixImpl(schema);
+        assertFalse(generator.generate(grid, 0));
+        assertEquals(0, grid.getSetCount());
+    }
+
+    @Test
+    public void testCreateFull25x25() {
+        assertTimeout(Duration.ofSeconds(30), () -> {
+            for (int i = 0; i < 10; i++) {
+                GameMatrix grid = Creator.createFull(
+                        GameSchemas.SCHEMA_25X25,
+                        GenerationStrategy.MIN_CONFLICTS);
+                assertEquals(625, grid.getSetCount());
+                assertTrue(grid.isValid());
+            }
+        });
+    }
+}
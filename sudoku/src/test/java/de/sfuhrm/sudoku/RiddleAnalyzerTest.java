@@ -41,6 +41,40 @@ public class RiddleAnalyzerTest {
         assertTrue(analysis.getScore().getPoints() >= 100);
     }
 
+    @Test
+    public void testSearchStatistics() {
+        GameMatrixImpl riddle = new GameMatrixImpl(GameSchemas.SCHEMA_9X9);
+        riddle.setAll(QuadraticArrays.parse(
+                "800000000",
+                "003600000",
+                "070090200",
+                "050007000",
+                "000045700",
+                "000100030",
+                "001000068",
+                "008500010",
+                "090000400"));
+
+        RiddleAnalysis analysis = RiddleAnalyzer.analyze(riddle);
+
+        assertEquals(SolveTechnique.BACKTRACKING,
+                analysis.getPath().get(analysis.getPath().size() - 1)
+                        .getTechnique());
+        assertTrue(analysis.getSearchNodes() > 0);
+        assertTrue(analysis.getSearchDepth() > 0);
+    }
+
+    @Test
+    public void testNoSearchStatisticsWithoutBacktracking() {
+        GameMatrix full = Creator.createFull(GameSchemas.SCHEMA_9X9);
+        full.set(4, 4, GameSchemas.SCHEMA_9X9.getUnsetValue());
+
+        RiddleAnalysis analysis = RiddleAnalyzer.analyze(full);
+
+        assertEquals(0, analysis.getSearchNodes());
+        assertEquals(0, analysis.getSearchDepth());
+    }
+
     @Test
     public void testCreationResultContainsAnalysis() {
         assertCreationResultContainsAnalysis(Difficulty.EASY);
@@ -70,4 +104,25 @@ public class RiddleAnalyzerTest {
         assertTrue(result.getScore().getPoints() > 0);
     }
 
+
+    @Test
+    public void testDistance() {
+        GameSchema schema = GameSchemas.SCHEMA_9X9;
+        assertEquals(0, RiddleAnalyzer.distance(schema,
+                Difficulty.VERY_EASY, 0));
+        assertEquals(1, RiddleAnalyzer.distance(schema,
+                Difficulty.VERY_EASY, 41));
+        assertEquals(50, RiddleAnalyzer.distance(schema,
+                Difficulty.EASY, 140));
+        assertEquals(0, RiddleAnalyzer.distance(schema,
+                Difficulty.MEDIUM, 91));
+        assertEquals(0, RiddleAnalyzer.distance(schema,
+                Difficulty.MEDIUM, 160));
+        assertEquals(1, RiddleAnalyzer.distance(schema,
+                Difficulty.MEDIUM, 90));
+        assertEquals(61, RiddleAnalyzer.distance(schema,
+                Difficulty.VERY_HARD, 200));
+        assertEquals(0, RiddleAnalyzer.distance(schema,
+                Difficulty.VERY_HARD, 1000));
+    }
 }
@@ -59,4 +59,47 @@ public class RiddleImplTest {
         assertNotSame(clone, m);
         assertEquals(clone, m);
     }
+
+    @Test
+    public void testWritableAcrossWords() {
+        GameSchema big = GameSchemas.SCHEMA_25X25;
+        RiddleImpl m = new RiddleImpl(big);
+        for (int row = 0; row < 25; row++) {
+            for (int column = 0; column < 25; column++) {
+                assertTrue(m.getWritable(row, column));
+                // every third cell, crossing the 64 bit words
+                m.setWritable(row, column, (row * 25 + column) % 3 != 0);
+            }
+        }
+        RiddleImpl clone = m.clone();
+        clone.setWritable(24, 24, true);
+        for (int row = 0; row < 25; row++) {
+            for (int column = 0; column < 25; column++) {
+                boolean expected = (row * 25 + column) % 3 != 0;
+                assertEquals(expected, m.getWritable(row, column));
+                if (row != 24 || column != 24) {
+                    assertEquals(expected, clone.getWritable(row, column));
+                }
+            }
+        }
+        assertTrue(clone.getWritable(24, 24));
+        assertFalse(m.getWritable(24, 24));
+    }
+
+    @Test
+    public void testEqualsAndHashCodeOfCells() {
+        RiddleImpl m = new RiddleImpl(schema);
+        m.setAll(QuadraticArrays.parse(FULL_EXAMPLE));
+        GameMatrixImpl plain = new GameMatrixImpl(schema);
+        plain.setAll(QuadraticArrays.parse(FULL_EXAMPLE));
+
+        assertEquals(plain, m);
+        assertEquals(plain.hashCode(), m.hashCode());
+        assertArrayEquals(plain.getArray(), m.getArray());
+
+        m.set(8, 8, schema.getUnsetValue());
+        assertNotEquals(plain, m);
+        assertNotEquals(new GameMatrixImpl(GameSchemas.SCHEMA_4X4),
+                new GameMatrixImpl(GameSchemas.SCHEMA_9X9));
+    }
 }
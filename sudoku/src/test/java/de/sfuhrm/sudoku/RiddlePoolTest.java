@@ -0,0 +1,79 @@
+package de.sfuhrm.sudoku;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Duration;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Test for {@link RiddlePool}.
+ */
+public class RiddlePoolTest {
+
+    private final GameSchema schema = GameSchemas.SCHEMA_4X4;
+
+    @Test
+    public void testConstructorWithInvalidWatermarks() {
+        assertThrows(IllegalArgumentException.class,
+                () -> new RiddlePool(-1, 2, 1));
+        assertThrows(IllegalArgumentException.class,
+                () -> new RiddlePool(3, 2, 1));
+        assertThrows(IllegalArgumentException.class,
+                () -> new RiddlePool(0, 0, 1));
+        assertThrows(IllegalArgumentException.class,
+                () -> new RiddlePool(1, 2, 0));
+    }
+
+    @Test
+    public void testTakeFromEmptyPool() {
+        try (RiddlePool pool = new RiddlePool(1, 2, 1)) {
+            Riddle riddle = pool.take(schema, Difficulty.EASY);
+            assertNotNull(riddle);
+            assertEquals(schema, riddle.getSchema());
+            assertUnique(riddle);
+        }
+    }
+
+    @Test
+    public void testPrefillReachesHighWatermark() {
+        try (RiddlePool pool = new RiddlePool(2, 5, 2)) {
+            pool.prefill(schema, Difficulty.MEDIUM);
+            assertTimeoutPreemptively(Duration.ofSeconds(20), () -> {
+                while (pool.size(schema, Difficulty.MEDIUM) < 5) {
+                    Thread.sleep(1);
+                }
+            });
+            assertEquals(5, pool.size(schema, Difficulty.MEDIUM));
+            assertEquals(0, pool.size(schema, Difficulty.HARD));
+
+            Riddle first = pool.poll(schema, Difficulty.MEDIUM);
+            Riddle second = pool.poll(schema, Difficulty.MEDIUM);
+            assertNotNull(first);
+            assertNotNull(second);
+            assertNotSame(first, second);
+            assertUnique(first);
+            assertTrue(pool.size(schema, Difficulty.MEDIUM) <= 5);
+        }
+    }
+
+    @Test
+    public void testTakeAfterClose() {
+        RiddlePool pool = new RiddlePool(1, 2, 1);
+        pool.close();
+        assertThrows(IllegalStateException.class,
+                () -> pool.take(schema, Difficulty.EASY));
+    }
+
+    private static void assertUnique(final Riddle riddle) {
+        Solver solver = new Solver(riddle);
+        solver.setLimit(2);
+        List<GameMatrix> solutions = solver.solve();
+        assertEquals(1, solutions.size());
+    }
+}
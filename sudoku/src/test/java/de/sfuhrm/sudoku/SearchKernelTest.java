@@ -0,0 +1,94 @@
+package de.sfuhrm.sudoku;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Test for {@link SearchKernel}.
+ */
+public class SearchKernelTest {
+
+    @Test
+    public void testCountAllCompletionsOf4x4() {
+        CachedGameMatrixImpl matrix =
+                new CachedGameMatrixImpl(GameSchemas.SCHEMA_4X4);
+        SearchKernel kernel = new SearchKernel(matrix);
+        int[] count = new int[1];
+        boolean stopped = kernel.search(m -> {
+            assertTrue(m.isValid());
+            assertEquals(16, m.getSetCount());
+            count[0]++;
+            return false;
+        });
+        assertFalse(stopped);
+        assertEquals(288, count[0]);
+        assertEquals(0, matrix.getSetCount());
+        assertTrue(kernel.getNodes() > 0);
+        assertTrue(kernel.getDepth() > 0);
+    }
+
+    @Test
+    public void testFirstFoundKeepsCompletion() {
+        GameMatrix full = Creator.createFull(GameSchemas.SCHEMA_9X9);
+        CachedGameMatrixImpl matrix =
+                new CachedGameMatrixImpl(GameSchemas.SCHEMA_9X9);
+        matrix.setAll(full.getArray());
+        for (int column = 0; column < 9; column++) {
+            matrix.set(4, column, (byte) 0);
+        }
+        SearchKernel kernel = new SearchKernel(matrix);
+        assertTrue(kernel.search(m -> true));
+        assertTrue(matrix.isValid());
+        assertEquals(81, matrix.getSetCount());
+        for (int column = 0; column < 9; column++) {
+            assertEquals(full.get(4, column), matrix.get(4, column));
+        }
+        assertEquals(0, kernel.getDepth());
+
+        kernel.unwind();
+        assertEquals(72, matrix.getSetCount());
+    }
+
+    @Test
+    public void testNoCompletionRestoresMatrix() {
+        CachedGameMatrixImpl matrix =
+                new CachedGameMatrixImpl(GameSchemas.SCHEMA_4X4);
+        // no candidate is left for the top left cell
+        matrix.set(0, 1, (byte) 2);
+        matrix.set(0, 2, (byte) 3);
+        matrix.set(1, 0, (byte) 1);
+        matrix.set(2, 0, (byte) 4);
+        byte[][] before = matrix.getArray();
+        SearchKernel kernel = new SearchKernel(matrix);
+        assertFalse(kernel.search(m -> true));
+        for (int row = 0; row < 4; row++) {
+            for (int column = 0; column < 4; column++) {
+                assertEquals(before[row][column], matrix.get(row, column));
+            }
+        }
+        assertEquals(0, kernel.getDepth());
+    }
+
+    @Test
+    public void testDeepSearchOn25x25() {
+        CachedGameMatrixImpl matrix =
+                new CachedGameMatrixImpl(GameSchemas.SCHEMA_25X25);
+        // diagonal blocks leave the rest free for a 500 cell deep search
+        for (int block = 0; block < 5; block++) {
+            int value = 1;
+            for (int row = 0; row < 5; row++) {
+                for (int column = 0; column < 5; column++) {
+                    matrix.set(block * 5 + row, block * 5 + column,
+                            (byte) value++);
+                }
+            }
+        }
+        SearchKernel kernel = new SearchKernel(matrix);
+        assertTrue(kernel.search(m -> true));
+        assertTrue(matrix.isValid());
+        assertEquals(625, matrix.getSetCount());
+    }
+}
@@ -0,0 +1,69 @@
+package de.sfuhrm.sudoku;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Test for {@link SinglesPropagator}.
+ */
+public class SinglesPropagatorTest {
+
+    private final GameSchema schema = GameSchemas.SCHEMA_9X9;
+
+    @Test
+    public void testWithOneClearedCell() {
+        GameMatrix full = Creator.createFull(schema);
+        SinglesPropagator propagator = new SinglesPropagator(full);
+        propagator.set(4, 4, schema.getUnsetValue());
+        assertTrue(propagator.solvesWithSingles());
+    }
+
+    @Test
+    public void testWithEmptyMatrix() {
+        SinglesPropagator propagator = new SinglesPropagator(
+                new GameMatrixImpl(schema));
+        assertFalse(propagator.solvesWithSingles());
+    }
+
+    @Test
+    public void testWithRiddleNeedingBacktracking() {
+        GameMatrixImpl riddle = new GameMatrixImpl(schema);
+        riddle.setAll(QuadraticArrays.parse(
+                "800000000",
+                "003600000",
+                "070090200",
+                "050007000",
+                "000045700",
+                "000100030",
+                "001000068",
+                "008500010",
+                "090000400"));
+        assertFalse(new SinglesPropagator(riddle).solvesWithSingles());
+    }
+
+    @Test
+    public void testAgreesWithSolver() {
+        for (int i = 0; i < 20; i++) {
+            Riddle riddle = Creator.createRiddle(Creator.createFull(schema));
+            SinglesPropagator propagator = new SinglesPropagator(riddle);
+            for (int row = 0; row < schema.getWidth(); row++) {
+                byte old = riddle.get(row, row);
+                if (old == schema.getUnsetValue()) {
+                    continue;
+                }
+                riddle.set(row, row, schema.getUnsetValue());
+                propagator.set(row, row, schema.getUnsetValue());
+                if (propagator.solvesWithSingles()) {
+                    Solver solver = new Solver(riddle);
+                    solver.setLimit(2);
+                    assertEquals(1, solver.solve().size());
+                }
+                riddle.set(row, row, old);
+                propagator.set(row, row, old);
+            }
+        }
+    }
+}
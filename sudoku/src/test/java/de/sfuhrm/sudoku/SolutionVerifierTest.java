@@ -0,0 +1,133 @@
+package de.sfuhrm.sudoku;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.ByteBuffer;
+import java.util.BitSet;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Test for {@link SolutionVerifier}.
+ */
+public class SolutionVerifierTest {
+
+    private final GameSchema schema = GameSchemas.SCHEMA_9X9;
+
+    private static byte[] cells(final GameMatrix matrix) {
+        int width = matrix.getSchema().getWidth();
+        byte[] result = new byte[width * width];
+        for (int row = 0; row < width; row++) {
+            for (int column = 0; column < width; column++) {
+                result[row * width + column] = matrix.get(row, column);
+            }
+        }
+        return result;
+    }
+
+    /** Packs three grids: a solution, one with swapped cells
+     * and one with an unset cell. */
+    private byte[] threeGrids() {
+        byte[] full = cells(Creator.createFull(schema));
+        byte[] grids = new byte[3 * 81];
+        System.arraycopy(full, 0, grids, 0, 81);
+        System.arraycopy(full, 0, grids, 81, 81);
+        System.arraycopy(full, 0, grids, 162, 81);
+        // swapping two cells of a row keeps the row but breaks columns
+        byte tmp = grids[81];
+        grids[81] = grids[82];
+        grids[82] = tmp;
+        grids[162 + 40] = 0;
+        return grids;
+    }
+
+    @Test
+    public void testIsSolutionForAllSchemas() {
+        for (GameSchema gameSchema : GameSchemas.getSupportedGameSchemas()) {
+            SolutionVerifier verifier = new SolutionVerifier(gameSchema);
+            int width = gameSchema.getWidth();
+            int blockWidth = gameSchema.getBlockWidth();
+            byte[] grid = new byte[verifier.getGridSize()];
+            for (int row = 0; row < width; row++) {
+                for (int column = 0; column < width; column++) {
+                    // a valid pattern grid
+                    grid[row * width + column] = (byte) ((row * blockWidth
+                            + row / blockWidth + column) % width + 1);
+                }
+            }
+            assertTrue(verifier.isSolution(grid, 0));
+
+            grid[width + 1] = grid[width];
+            assertFalse(verifier.isSolution(grid, 0));
+        }
+    }
+
+    @Test
+    public void testOutOfRangeValues() {
+        SolutionVerifier verifier = new SolutionVerifier(schema);
+        byte[] grid = cells(Creator.createFull(schema));
+        byte old = grid[0];
+        // 33 shifts like 1 in an int
+        grid[0] = (byte) (old + 32);
+        assertFalse(verifier.isSolution(grid, 0));
+        grid[0] = -1;
+        assertFalse(verifier.isSolution(grid, 0));
+        grid[0] = old;
+        assertTrue(verifier.isSolution(grid, 0));
+    }
+
+    @Test
+    public void testVerifyArray() {
+        SolutionVerifier verifier = new SolutionVerifier(schema);
+        byte[] grids = threeGrids();
+        BitSet solutions = new BitSet();
+        solutions.set(1);
+        assertEquals(1, verifier.verify(grids, 0, 3, solutions));
+        assertTrue(solutions.get(0));
+        assertFalse(solutions.get(1));
+        assertFalse(solutions.get(2));
+
+        assertEquals(0, verifier.verify(grids, 81, 2, solutions));
+        assertEquals(0, solutions.cardinality());
+    }
+
+    @Test
+    public void testVerifyBuffers() {
+        SolutionVerifier verifier = new SolutionVerifier(schema);
+        byte[] grids = threeGrids();
+        BitSet heapResult = new BitSet();
+        BitSet directResult = new BitSet();
+
+        ByteBuffer heap = ByteBuffer.wrap(grids);
+        heap.position(81);
+        ByteBuffer direct = ByteBuffer.allocateDirect(grids.length);
+        direct.put(grids);
+        direct.flip();
+
+        assertEquals(0, verifier.verify(heap.slice(), heapResult));
+        assertEquals(1, verifier.verify(direct, directResult));
+        assertEquals(0, direct.remaining());
+        assertEquals(0, heapResult.cardinality());
+        assertTrue(directResult.get(0));
+        assertEquals(1, directResult.cardinality());
+    }
+
+    @Test
+    public void testIllegalArguments() {
+        SolutionVerifier verifier = new SolutionVerifier(schema);
+        BitSet solutions = new BitSet();
+        byte[] grids = new byte[2 * 81];
+        assertThrows(IllegalArgumentException.class,
+                () -> verifier.verify(grids, 1, 2, solutions));
+        assertThrows(IllegalArgumentException.class,
+                () -> verifier.verify(grids, 0, -1, solutions));
+        assertThrows(IllegalArgumentException.class,
+                () -> verifier.isSolution(grids, 82));
+        assertThrows(IllegalArgumentException.class,
+                () -> verifier.verify(ByteBuffer.allocate(80), solutions));
+        assertThrows(NullPointerException.class,
+                () -> new SolutionVerifier(null));
+    }
+}
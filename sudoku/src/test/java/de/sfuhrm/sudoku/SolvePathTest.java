@@ -0,0 +1,75 @@
+package de.sfuhrm.sudoku;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.Arrays;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Test for {@link SolvePath}.
+ */
+public class SolvePathTest {
+
+    @Test
+    public void testAddAndGet() {
+        SolvePath path = new SolvePath(1);
+        path.add(SolveTechnique.HIDDEN_SINGLE, 24, 0, 25);
+        path.add(SolveTechnique.BACKTRACKING, -1, -1, 0);
+        path.add(SolveTechnique.X_WING, 3, 7, 9);
+
+        assertEquals(3, path.size());
+        assertEquals(SolveTechnique.HIDDEN_SINGLE, path.getTechnique(0));
+        assertEquals(24, path.getRow(0));
+        assertEquals(0, path.getColumn(0));
+        assertEquals(25, path.getValue(0));
+        assertEquals(SolveTechnique.BACKTRACKING, path.getTechnique(1));
+        assertEquals(-1, path.getRow(1));
+        assertEquals(-1, path.getColumn(1));
+        assertEquals(0, path.getValue(1));
+        assertEquals(SolveTechnique.X_WING, path.getTechnique(2));
+        assertEquals(3, path.getRow(2));
+        assertEquals(7, path.getColumn(2));
+        assertEquals(9, path.getValue(2));
+    }
+
+    @Test
+    public void testScoreMatchesStepObjects() {
+        List<SolveStep> steps = Arrays.asList(
+                new SolveStep(SolveTechnique.NAKED_SINGLE, 0, 0, (byte) 1),
+                new SolveStep(SolveTechnique.SWORDFISH, 1, 2, (byte) 3),
+                new SolveStep(SolveTechnique.HIDDEN_SINGLE, 4, 5, (byte) 6));
+        SolvePath path = new SolvePath(steps);
+        DifficultyScore score = new DifficultyScore(steps);
+
+        assertEquals(score.getPoints(), path.getPoints());
+        assertEquals(score.getStepCount(), path.size());
+        assertEquals(score.getMaximumStepPoints(),
+                path.getMaximumStepPoints());
+        List<SolveStep> unpacked = path.toList();
+        assertEquals(steps.size(), unpacked.size());
+        for (int i = 0; i < steps.size(); i++) {
+            assertEquals(steps.get(i).getTechnique(),
+                    unpacked.get(i).getTechnique());
+            assertEquals(steps.get(i).getRow(), unpacked.get(i).getRow());
+            assertEquals(steps.get(i).getColumn(),
+                    unpacked.get(i).getColumn());
+            assertEquals(steps.get(i).getValue(), unpacked.get(i).getValue());
+        }
+    }
+
+    @Test
+    public void testCopyAndClear() {
+        SolvePath path = new SolvePath(4);
+        path.add(SolveTechnique.NAKED_PAIR, 1, 1, 2);
+        SolvePath copy = path.copy();
+        path.clear();
+
+        assertEquals(0, path.size());
+        assertEquals(0, path.getPoints());
+        assertEquals(0, path.getMaximumStepPoints());
+        assertEquals(1, copy.size());
+        assertEquals(SolveTechnique.NAKED_PAIR.getPoints(), copy.getPoints());
+        assertEquals(SolveTechnique.NAKED_PAIR, copy.getTechnique(0));
+    }
+}
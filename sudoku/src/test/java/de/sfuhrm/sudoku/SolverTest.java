@@ -99,4 +99,23 @@ public class SolverTest {
         assertEquals(1, solutions.size());
         assertEquals(solution, solutions.get(0));
     }
+
+    @Test
+    public void testCountSolutionsWithoutCopies() {
+        GameMatrix matrix = Creator.createFull(schema);
+        matrix.set(0, 0, schema.getUnsetValue());
+        Solver solver = new Solver(matrix);
+        assertEquals(1, solver.countSolutions());
+        assertEquals(1, solver.getSearchNodes());
+        assertEquals(0, solver.getSearchDepth());
+    }
+
+    @Test
+    public void testCountSolutionsWithLimit() {
+        Solver solver = new Solver(new GameMatrixImpl(schema));
+        solver.setLimit(2);
+        assertEquals(2, solver.countSolutions());
+        assertTrue(solver.getSearchNodes() >= schema.getTotalFields());
+        assertTrue(solver.getSearchDepth() > 0);
+    }
 }
@@ -0,0 +1,154 @@
+package de.sfuhrm.sudoku;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Test for {@link Transformation}.
+ */
+public class TransformationTest {
+
+    @Test
+    public void testApplyKeepsFullMatrixValid() {
+        for (GameSchema schema : new GameSchema[] {
+                GameSchemas.SCHEMA_4X4, GameSchemas.SCHEMA_9X9}) {
+            Random random = new Random(1);
+            GameMatrix full = Creator.createFull(schema);
+            RiddleImpl riddle = new RiddleImpl(schema);
+            riddle.setAll(full.getArray());
+            for (int i = 0; i < 100; i++) {
+                Riddle variant = Transformation.random(schema, random)
+                        .apply(riddle);
+                assertTrue(variant.isValid());
+                assertEquals(schema.getTotalFields(), variant.getSetCount());
+            }
+        }
+    }
+
+    /** Creates a valid full matrix without backtracking. */
+    static GameMatrix patternMatrix(final GameSchema schema) {
+        int width = schema.getWidth();
+        int blockWidth = schema.getBlockWidth();
+        GameMatrix matrix = new GameMatrixImpl(schema);
+        for (int row = 0; row < width; row++) {
+            for (int column = 0; column < width; column++) {
+                int value = (blockWidth * (row % blockWidth)
+                        + row / blockWidth + column) % width;
+                matrix.set(row, column, (byte) (value + 1));
+            }
+        }
+        return matrix;
+    }
+
+    @Test
+    public void testCreateVariantOnAllSchemas() {
+        for (GameSchema schema : GameSchemas.getSupportedGameSchemas()) {
+            GameMatrix original = patternMatrix(schema);
+            assertTrue(original.isValid());
+            GameMatrix variant = Creator.createVariant(original);
+            assertTrue(variant.isValid());
+            assertEquals(schema.getTotalFields(), variant.getSetCount());
+        }
+    }
+
+    @Test
+    public void testInverse() {
+        for (GameSchema schema : GameSchemas.getSupportedGameSchemas()) {
+            Random random = new Random(2);
+            GameMatrix original = patternMatrix(schema);
+            for (int i = 0; i < 20; i++) {
+                Transformation t = Transformation.random(schema, random);
+                assertEquals(Transformation.identity(schema),
+                        t.compose(t.inverse()));
+                assertEquals(Transformation.identity(schema),
+                        t.inverse().compose(t));
+                assertEquals(original, t.inverse().apply(t.apply(original)));
+            }
+        }
+    }
+
+    @Test
+    public void testCompose() {
+        GameSchema schema = GameSchemas.SCHEMA_9X9;
+        Random random = new Random(3);
+        GameMatrix original = patternMatrix(schema);
+        for (int i = 0; i < 50; i++) {
+            Transformation first = Transformation.random(schema, random);
+            Transformation second = Transformation.random(schema, random);
+            assertEquals(second.apply(first.apply(original)),
+                    first.compose(second).apply(original));
+        }
+    }
+
+    @Test
+    public void testApplyWithRiddleAsGameMatrix() {
+        GameSchema schema = GameSchemas.SCHEMA_4X4;
+        RiddleImpl riddle = new RiddleImpl(schema);
+        riddle.setWritable(0, 0, false);
+        GameMatrix matrix = riddle;
+        GameMatrix result = Transformation.identity(schema).apply(matrix);
+        assertTrue(result instanceof Riddle);
+        assertEquals(false, ((Riddle) result).getWritable(0, 0));
+    }
+
+    @Test
+    public void testApplyWithWrongSchema() {
+        Transformation t = Transformation.identity(GameSchemas.SCHEMA_4X4);
+        assertThrows(IllegalArgumentException.class,
+                () -> t.apply(new GameMatrixImpl(GameSchemas.SCHEMA_9X9)));
+    }
+
+    @Test
+    public void testCreateRiddleVariant() {
+        GameSchema schema = GameSchemas.SCHEMA_9X9;
+        Riddle riddle = Creator.createRiddle(Creator.createFull(schema),
+                Difficulty.MEDIUM);
+        Riddle variant = Creator.createRiddleVariant(riddle);
+
+        assertEquals(riddle.getSetCount(), variant.getSetCount());
+        for (int row = 0; row < schema.getWidth(); row++) {
+            for (int column = 0; column < schema.getWidth(); column++) {
+                assertEquals(variant.get(row, column)
+                                == schema.getUnsetValue(),
+                        variant.getWritable(row, column));
+            }
+        }
+        Solver solver = new Solver(variant);
+        solver.setLimit(2);
+        assertEquals(1, solver.solve().size());
+    }
+
+    @Test
+    public void testCreateRiddleVariantOfCreationResult() {
+        GameSchema schema = GameSchemas.SCHEMA_9X9;
+        CreationResult result = Creator.createRiddleResult(
+                Creator.createFull(schema), Difficulty.EASY);
+        CreationResult variant = Creator.createRiddleVariant(result);
+
+        assertEquals(result.getClassifiedDifficulty(),
+                variant.getClassifiedDifficulty());
+        assertEquals(result.getScore().getPoints(),
+                variant.getScore().getPoints());
+        assertEquals(result.getClearCount(), variant.getClearCount());
+
+        // replaying the transformed path solves the transformed riddle
+        Solver solver = new Solver(variant.getRiddle());
+        List<GameMatrix> solutions = solver.solve();
+        assertEquals(1, solutions.size());
+        GameMatrix solution = solutions.get(0);
+        for (SolveStep step : variant.getPath()) {
+            if (step.getTechnique().isPlacement()) {
+                assertEquals(schema.getUnsetValue(),
+                        variant.getRiddle().get(step.getRow(),
+                                step.getColumn()));
+                assertEquals(solution.get(step.getRow(), step.getColumn()),
+                        step.getValue());
+            }
+        }
+    }
+}